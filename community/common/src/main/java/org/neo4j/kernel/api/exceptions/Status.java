@@ -147,6 +147,9 @@ public interface Status
         TransactionTimedOut( ClientError,
                 "The transaction has not completed within the specified timeout. You may want to retry with a longer " +
                 "timeout." ),
+        TransactionStateMemoryLimitReached( ClientError,
+                "The changes made in the transaction have grown beyond the memory budget configured for transaction " +
+                "state. Split the work into smaller transactions, or raise the budget." ),
         InvalidBookmark( ClientError,
                 "Supplied bookmark cannot be interpreted. You should only supply a bookmark previously that was " +
                 "previously generated by Neo4j. Maybe you have generated your own bookmark, " +
@@ -182,6 +185,9 @@ public interface Status
         Outdated( TransientError,
                 "Transaction has seen state which has been invalidated by applied updates while " +
                 "transaction was active. Transaction may succeed if retried." ),
+        SnapshotTooOld( TransientError,
+                "Transaction reads a snapshot of the store that is older than the record versions kept for " +
+                "snapshot reads. Transaction may succeed if retried." ),
         LockClientStopped( TransientError,
                 "Transaction terminated, no more locks can be acquired." ),
         LockAcquisitionTimeout( TransientError,
@@ -174,6 +174,16 @@ public interface JobScheduler extends Lifecycle
          */
         public static Group transactionTimeoutMonitor = new Group( "TransactionTimeoutMonitor" );
 
+        /**
+         * Concurrent stages of committed transaction application.
+         */
+        public static Group transactionApplication = new Group( "TransactionApplication" );
+
+        /**
+         * Background deadlock detection among transactions waiting for locks.
+         */
+        public static Group deadlockDetection = new Group( "DeadlockDetection" );
+
         private Groups()
         {
         }
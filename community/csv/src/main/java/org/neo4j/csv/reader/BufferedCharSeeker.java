@@ -61,12 +61,20 @@ public class BufferedCharSeeker implements CharSeeker
     private String sourceDescription;
     private final boolean multilineFields;
     private final boolean legacyStyleQuoting;
+    // whether to skip through the middle of unquoted values in bulk, see scanToDelimiterOrNewLine
+    private final boolean bulkScan;
     private final Source source;
     private Chunk currentChunk;
 
     public BufferedCharSeeker( Source source, Configuration config )
+    {
+        this( source, config, true );
+    }
+
+    BufferedCharSeeker( Source source, Configuration config, boolean bulkScan )
     {
         this.source = source;
+        this.bulkScan = bulkScan;
         this.quoteChar = config.quotationCharacter();
         this.lineStartPos = this.bufferPos;
         this.multilineFields = config.multilineFields();
@@ -93,6 +101,11 @@ public class BufferedCharSeeker implements CharSeeker
 
         while ( !eof )
         {
+            if ( bulkScan && quoteDepth == 0 && skippedChars == 0 && bufferPos > seekStartPos )
+            {   // In the middle of an unquoted value, where only delimiters and newlines are of interest,
+                // skip ahead to the next one of those in the current buffer in one go
+                bufferPos = scanToDelimiterOrNewLine( buffer, bufferPos, bufferEnd, untilChar );
+            }
             ch = nextChar( skippedChars );
             if ( quoteDepth == 0 )
             {   // In normal mode, i.e. not within quotes
@@ -184,6 +197,28 @@ public class BufferedCharSeeker implements CharSeeker
         return true;
     }
 
+    /**
+     * Scans {@code buffer} for the first delimiter or newline character, in a tight loop outside of
+     * {@link #nextChar(int)}. Most data characters compare higher than all characters sought for,
+     * such that they are ruled out by a single comparison.
+     *
+     * @return index of the first delimiter or newline character at or after {@code from},
+     * or {@code to} if there's none.
+     */
+    private static int scanToDelimiterOrNewLine( char[] buffer, int from, int to, int delimiter )
+    {
+        int highest = Math.max( delimiter, Math.max( EOL_CHAR, EOL_CHAR_2 ) );
+        for ( int i = from; i < to; i++ )
+        {
+            char ch = buffer[i];
+            if ( ch <= highest && (ch == delimiter || ch == EOL_CHAR || ch == EOL_CHAR_2) )
+            {
+                return i;
+            }
+        }
+        return to;
+    }
+
     private void repositionChar( int offset, int stepsBack )
     {
         // We reposition characters because we might have skipped some along the way, double-quotes and what not.
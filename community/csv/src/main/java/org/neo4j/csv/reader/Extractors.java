@@ -948,14 +948,28 @@ public class Extractors
                     "Not an integer: \"" + String.valueOf( data, originalOffset, fullLength ) + "\"" );
         }
 
-        try
+        // Digits are consumed four at a time, which shortens the chain of dependent multiplications.
+        // Validation is branch free: a char outside '0'-'9' makes either digit or 9 - digit negative,
+        // which sets the sign bit of invalid, checked once at the end.
+        int invalid = 0;
+        int i = 0;
+        for ( ; i + 4 <= length; i += 4 )
         {
-            for ( int i = 0; i < length; i++ )
-            {
-                result = result * 10 + digit( data[offset + i] );
-            }
+            int d0 = data[offset + i] - '0';
+            int d1 = data[offset + i + 1] - '0';
+            int d2 = data[offset + i + 2] - '0';
+            int d3 = data[offset + i + 3] - '0';
+            invalid |= d0 | d1 | d2 | d3 | (9 - d0) | (9 - d1) | (9 - d2) | (9 - d3);
+            result = result * 10_000 + d0 * 1_000 + d1 * 100 + d2 * 10 + d3;
+        }
+        for ( ; i < length; i++ )
+        {
+            int digit = data[offset + i] - '0';
+            invalid |= digit | (9 - digit);
+            result = result * 10 + digit;
         }
-        catch ( NumberFormatException ignored )
+
+        if ( invalid < 0 )
         {
             throw new NumberFormatException(
                     "Not an integer: \"" + String.valueOf( data, originalOffset, fullLength ) + "\"" );
@@ -964,16 +978,6 @@ public class Extractors
         return negate ? -result : result;
     }
 
-    private static int digit( char ch )
-    {
-        int digit = ch - '0';
-        if ( (digit < 0) || (digit > 9) )
-        {
-            throw new NumberFormatException();
-        }
-        return digit;
-    }
-
     private static final char[] BOOLEAN_TRUE_CHARACTERS;
     static
     {
@@ -66,6 +66,26 @@ public class BufferedCharSeekerTest
         this.useThreadAhead = useThreadAhead;
     }
 
+    @Test
+    public void shouldSeekUnquotedValuesOfVaryingLengthsAcrossBufferBoundaries() throws Exception
+    {
+        // GIVEN values containing characters sorting both lower and higher than the delimiter and newlines
+        String[][] data = new String[50][];
+        for ( int i = 0; i < data.length; i++ )
+        {
+            String xs = new String( new char[i % 17] ).replace( (char) 0, 'x' );
+            data[i] = new String[] {"a" + i, "b! " + i + " \t", "c", "d" + xs + "\"q"};
+        }
+        seeker = seeker( join( data, ',' ).replace( "\n", "\r\n" ), config( 32 ) );
+
+        // WHEN/THEN
+        for ( String[] line : data )
+        {
+            assertArrayEquals( line, nextLineOfAllStrings( seeker, mark ) );
+        }
+        assertEquals( 0, nextLineOfAllStrings( seeker, mark ).length );
+    }
+
     @Test
     public void shouldFindCertainCharacter() throws Exception
     {
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.csv.reader;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import org.neo4j.test.rule.TestDirectory;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Throughput of {@link BufferedCharSeeker} and {@link Extractors.LongExtractor} over generated files resembling
+ * typical import data: one with a mix of ids, numbers and unquoted strings and one with only numbers.
+ * Seeking is measured with the bulk scanning of unquoted values on and off, and long parsing is compared with
+ * extracting the same values as strings and parsing them with {@link Long#parseLong(String)}.
+ */
+@Ignore( "These are rudimentary benchmarks, but implemented via the jUnit framework to make them easy to run " +
+         "from an IDE." )
+public class CsvParsingBenchmarks
+{
+    private static final int LINES = 4_000_000;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int ROUNDS = 5;
+
+    @Rule
+    public final TestDirectory directory = TestDirectory.testDirectory();
+
+    @Test
+    public void seekMixedValuesWithAndWithoutBulkScanning() throws Exception
+    {
+        File file = directory.file( "mixed.csv" );
+        generate( file, false );
+        compare( "mixed",
+                "bulk scanning", () -> seek( file, true, false ),
+                "no bulk scanning", () -> seek( file, false, false ) );
+    }
+
+    @Test
+    public void seekNumbersWithAndWithoutBulkScanning() throws Exception
+    {
+        File file = directory.file( "longs.csv" );
+        generate( file, true );
+        compare( "longs",
+                "bulk scanning", () -> seek( file, true, true ),
+                "no bulk scanning", () -> seek( file, false, true ) );
+    }
+
+    @Test
+    public void parseLongsWithLongExtractorAndLongParseLong() throws Exception
+    {
+        File file = directory.file( "longs.csv" );
+        generate( file, true );
+        compare( "longs",
+                "LongExtractor", () -> parseLongs( file, true ),
+                "Long.parseLong", () -> parseLongs( file, false ) );
+    }
+
+    private static void compare( String data, String firstName, Run first, String secondName, Run second )
+            throws IOException
+    {
+        for ( int i = 0; i < WARMUP_ROUNDS; i++ )
+        {
+            first.run();
+            second.run();
+        }
+        double bestFirst = 0;
+        double bestSecond = 0;
+        for ( int i = 0; i < ROUNDS; i++ )
+        {
+            // Alternate between the two, so that neither benefits from a quieter period of the machine
+            bestFirst = Math.max( bestFirst, first.run() );
+            bestSecond = Math.max( bestSecond, second.run() );
+        }
+        System.out.printf( "%s, %s: %.1f MB/s%n", data, firstName, bestFirst );
+        System.out.printf( "%s, %s: %.1f MB/s%n", data, secondName, bestSecond );
+    }
+
+    /**
+     * Seeks every value, extracting the numeric columns as longs and the others as strings.
+     *
+     * @return throughput in MB/s.
+     */
+    private static double seek( File file, boolean bulkScan, boolean allLongs ) throws IOException
+    {
+        Extractors extractors = new Extractors( ',' );
+        Mark mark = new Mark();
+        long start = System.nanoTime();
+        long checksum = 0;
+        try ( CharSeeker seeker = seeker( file, bulkScan ) )
+        {
+            int column = 0;
+            while ( seeker.seek( mark, ',' ) )
+            {
+                if ( allLongs || column % 2 == 0 )
+                {
+                    checksum += seeker.extract( mark, extractors.long_() ).longValue();
+                }
+                else
+                {
+                    checksum += seeker.extract( mark, extractors.string() ).value().length();
+                }
+                column = mark.isEndOfLine() ? 0 : column + 1;
+            }
+        }
+        return throughput( file, start, checksum );
+    }
+
+    /**
+     * Extracts every value as a long, either through the {@link Extractors.LongExtractor} or as a string
+     * parsed by {@link Long#parseLong(String)}.
+     *
+     * @return throughput in MB/s.
+     */
+    private static double parseLongs( File file, boolean longExtractor ) throws IOException
+    {
+        Extractors extractors = new Extractors( ',' );
+        Mark mark = new Mark();
+        long start = System.nanoTime();
+        long checksum = 0;
+        try ( CharSeeker seeker = seeker( file, true ) )
+        {
+            while ( seeker.seek( mark, ',' ) )
+            {
+                checksum += longExtractor
+                            ? seeker.extract( mark, extractors.long_() ).longValue()
+                            : Long.parseLong( seeker.extract( mark, extractors.string() ).value() );
+            }
+        }
+        return throughput( file, start, checksum );
+    }
+
+    private static CharSeeker seeker( File file, boolean bulkScan ) throws IOException
+    {
+        Configuration config = Configuration.DEFAULT;
+        return new BufferedCharSeeker( new AutoReadingSource( Readables.files( UTF_8, file ), config.bufferSize() ),
+                config, bulkScan );
+    }
+
+    private static double throughput( File file, long startNanos, long checksum )
+    {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        if ( checksum == 42 )
+        {   // Use the checksum, so that the JIT can't leave out any of the extraction
+            System.out.println( "Lucky checksum" );
+        }
+        return file.length() / 1e6 / seconds;
+    }
+
+    private static void generate( File file, boolean allLongs ) throws IOException
+    {
+        Random random = new Random( 42 );
+        try ( Writer out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), UTF_8 ) ) )
+        {
+            for ( int i = 0; i < LINES; i++ )
+            {
+                if ( allLongs )
+                {
+                    out.write( i + "," + Math.abs( random.nextLong() ) + "," + random.nextInt( 1_000_000 ) + "," +
+                            random.nextInt( 100 ) + "\n" );
+                }
+                else
+                {
+                    out.write( i + ",name" + random.nextInt( 100_000 ) + " surname" + random.nextInt( 1_000 ) + "," +
+                            random.nextInt( 100 ) + ",city-" + random.nextInt( 5_000 ) + "-town," +
+                            Math.abs( random.nextLong() ) + "\n" );
+                }
+            }
+        }
+    }
+
+    private interface Run
+    {
+        double run() throws IOException;
+    }
+}
@@ -22,6 +22,7 @@ package org.neo4j.csv.reader;
 import org.junit.Test;
 
 import org.neo4j.csv.reader.Extractors.IntExtractor;
+import org.neo4j.csv.reader.Extractors.LongExtractor;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -132,6 +133,56 @@ public class ExtractorsTest
         }
     }
 
+    @Test
+    public void shouldExtractLongsOfAllLengths() throws Exception
+    {
+        // GIVEN
+        Extractors extractors = new Extractors( ',' );
+        LongExtractor extractor = extractors.long_();
+
+        long value = 0;
+        for ( int digits = 1; digits <= 18; digits++ )
+        {
+            value = value * 10 + digits % 10;
+            for ( long candidate : new long[] {value, -value} )
+            {
+                // WHEN
+                char[] asChars = (" " + candidate + " ").toCharArray();
+                extractor.extract( asChars, 0, asChars.length, false );
+
+                // THEN
+                assertEquals( candidate, extractor.longValue() );
+            }
+        }
+    }
+
+    @Test
+    public void shouldFailExtractingLongWithNonDigitAtAnyPosition() throws Exception
+    {
+        // GIVEN
+        Extractors extractors = new Extractors( ',' );
+        String number = "1234567890";
+
+        for ( int i = 0; i < number.length(); i++ )
+        {
+            for ( char invalid : new char[] {'/', ':', 'a', '.'} )
+            {
+                char[] asChars = number.toCharArray();
+                asChars[i] = invalid;
+
+                // WHEN
+                try
+                {
+                    extractors.long_().extract( asChars, 0, asChars.length, false );
+                    fail( "Should have failed for " + String.valueOf( asChars ) );
+                }
+                catch ( NumberFormatException e )
+                {   // THEN good
+                }
+            }
+        }
+    }
+
     @Test
     public void shouldExtractNegativeInt() throws Exception
     {
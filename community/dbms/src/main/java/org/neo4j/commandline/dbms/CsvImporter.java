@@ -23,7 +23,9 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 
 import org.neo4j.commandline.admin.IncorrectUsage;
@@ -35,12 +37,15 @@ import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.helpers.Args;
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.util.Converters;
 import org.neo4j.tooling.ImportTool;
 import org.neo4j.unsafe.impl.batchimport.Configuration;
 import org.neo4j.unsafe.impl.batchimport.input.BadCollector;
 import org.neo4j.unsafe.impl.batchimport.input.Collector;
 import org.neo4j.unsafe.impl.batchimport.input.csv.CsvInput;
 import org.neo4j.unsafe.impl.batchimport.input.csv.IdType;
+import org.neo4j.unsafe.impl.batchimport.staging.ExecutionMonitor;
+import org.neo4j.unsafe.impl.batchimport.staging.ExecutionMonitors;
 
 import static java.nio.charset.Charset.defaultCharset;
 
@@ -51,6 +56,7 @@ import static org.neo4j.tooling.ImportTool.importConfiguration;
 import static org.neo4j.tooling.ImportTool.nodeData;
 import static org.neo4j.tooling.ImportTool.relationshipData;
 import static org.neo4j.tooling.ImportTool.validateInputFiles;
+import static org.neo4j.tooling.ImportTool.withMetrics;
 import static org.neo4j.unsafe.impl.batchimport.input.Collectors.badCollector;
 import static org.neo4j.unsafe.impl.batchimport.input.Collectors.collect;
 import static org.neo4j.unsafe.impl.batchimport.input.csv.DataFactories.defaultFormatNodeFileHeader;
@@ -69,6 +75,8 @@ class CsvImporter implements Importer
     private final boolean ignoreBadRelationships;
     private final boolean ignoreDuplicateNodes;
     private final boolean ignoreExtraColumns;
+    private final boolean resume;
+    private final File metricsFile;
 
     CsvImporter( Args args, Config databaseConfig, OutsideWorld outsideWorld ) throws IncorrectUsage
     {
@@ -81,6 +89,8 @@ class CsvImporter implements Importer
         ignoreExtraColumns = args.getBoolean( "ignore-extra-columns", false );
         ignoreDuplicateNodes = args.getBoolean( "ignore-duplicate-nodes", false );
         ignoreBadRelationships = args.getBoolean( "ignore-missing-nodes", false );
+        resume = args.getBoolean( "resume", false, true );
+        metricsFile = args.interpretOption( "metrics", Converters.optional(), Converters.toFile() );
         try
         {
             validateInputFiles( nodesFiles, relationshipsFiles );
@@ -104,12 +114,13 @@ class CsvImporter implements Importer
         File logsDir = databaseConfig.get( GraphDatabaseSettings.logs_directory );
         File reportFile = new File( reportFileName );
 
-        OutputStream badOutput = new BufferedOutputStream( fs.openAsOutputStream( reportFile, false ) );
+        // Bad entries found before the import being resumed failed are kept
+        OutputStream badOutput = new BufferedOutputStream( fs.openAsOutputStream( reportFile, resume ) );
         Collector badCollector = badCollector( badOutput, isIgnoringSomething() ? BadCollector.UNLIMITED_TOLERANCE : 0,
                 collect( ignoreBadRelationships, ignoreDuplicateNodes, ignoreExtraColumns ) );
 
         Configuration configuration = new WrappedBatchImporterConfigurationForNeo4jAdmin( importConfiguration(
-                null, false, databaseConfig, storeDir ) );
+                args, false, databaseConfig, storeDir ) );
         CsvInput input = new CsvInput(
                 nodeData( inputEncoding, nodesFiles ), defaultFormatNodeFileHeader(),
                 relationshipData( inputEncoding, relationshipsFiles ), defaultFormatRelationshipFileHeader(),
@@ -118,8 +129,18 @@ class CsvImporter implements Importer
                 badCollector,
                 configuration.maxNumberOfProcessors(), !ignoreBadRelationships );
 
-        ImportTool.doImport( outsideWorld.errorStream(), outsideWorld.errorStream(), storeDir, logsDir, reportFile, fs,
-                nodesFiles, relationshipsFiles, false, input, this.databaseConfig, badOutput, configuration );
+        ExecutionMonitor executionMonitor = ExecutionMonitors.defaultVisible();
+        try ( Writer metricsOutput = metricsFile != null
+                ? fs.openAsWriter( metricsFile, StandardCharsets.UTF_8, false ) : null )
+        {
+            if ( metricsOutput != null )
+            {
+                executionMonitor = withMetrics( executionMonitor, metricsOutput, metricsFile );
+            }
+            ImportTool.doImport( outsideWorld.errorStream(), outsideWorld.errorStream(), storeDir, logsDir, reportFile,
+                    fs, nodesFiles, relationshipsFiles, false, input, this.databaseConfig, badOutput, configuration,
+                    executionMonitor );
+        }
     }
 
     private boolean isIgnoringSomething()
@@ -126,7 +126,36 @@ public class ImportCommand implements AdminCommand
                     "Maximum memory that neo4j-admin can use for various data structures and caching " +
                             "to improve performance. " +
                             "Values can be plain numbers, like 10000000 or e.g. 20G for 20 gigabyte, or even e.g. 70%" +
-                            "." ) );
+                            "." ) )
+            .withArgument( new OptionalBooleanArg( "incremental", false,
+                    "Whether or not to import into an existing database instead of an empty one. The database " +
+                            "must have been shut down cleanly. Not supported for databases with uniqueness " +
+                            "constraints." ) )
+            .withArgument( new OptionalNamedArg( "existing-node-id-property", "property-key", "",
+                    "When importing incrementally, the property which ids of existing nodes were imported into. " +
+                            "Relationships can refer to existing nodes by these ids." ) )
+            .withArgument( new OptionalBooleanArg( "rebuild-schema-indexes", false,
+                    "When importing incrementally into a database with schema indexes, drop those indexes so " +
+                            "that they are rebuilt on next startup. Such databases are refused otherwise." ) )
+            .withArgument( new OptionalBooleanArg( "resume", false,
+                    "Whether or not to resume a failed import into the same database from its last checkpoint, " +
+                            "instead of starting over. Must be given the same input and options as the failed " +
+                            "import." ) )
+            .withArgument( new OptionalBooleanArg( "external-id-mapping", false,
+                    "Whether or not to keep the mapping of input ids to node ids in files on disk instead of " +
+                            "in memory, for when there are too many input ids to fit in memory." ) )
+            .withArgument( new OptionalNamedArg( "index", "label:property", "",
+                    "Schema index to create and populate as part of the import. Can be specified multiple " +
+                            "times." ) )
+            .withArgument( new OptionalNamedArg( "unique-constraint", "label:property", "",
+                    "Uniqueness constraint to create and populate as part of the import. Can be specified " +
+                            "multiple times." ) )
+            .withArgument( new OptionalBooleanArg( "compact-node-cache", false,
+                    "Whether or not to store nodes in as few bytes as possible in the cache used for linking " +
+                            "relationships, to use less memory for imports with many nodes." ) )
+            .withArgument( new OptionalNamedArg( "metrics", "filename", "",
+                    "File to write statistics about the progress of the import to, as CSV if the file name " +
+                            "ends with '.csv', otherwise as one JSON object per line." ) );
 
     private static final Arguments allArguments = new Arguments()
             .withDatabase()
@@ -193,7 +222,36 @@ public class ImportCommand implements AdminCommand
                     "Maximum memory that neo4j-admin can use for various data structures and caching " +
                             "to improve performance. " +
                             "Values can be plain numbers, like 10000000 or e.g. 20G for 20 gigabyte, or even e.g. 70%" +
-                            "." ) );
+                            "." ) )
+            .withArgument( new OptionalBooleanArg( "incremental", false,
+                    "Whether or not to import into an existing database instead of an empty one. The database " +
+                            "must have been shut down cleanly. Not supported for databases with uniqueness " +
+                            "constraints." ) )
+            .withArgument( new OptionalNamedArg( "existing-node-id-property", "property-key", "",
+                    "When importing incrementally, the property which ids of existing nodes were imported into. " +
+                            "Relationships can refer to existing nodes by these ids." ) )
+            .withArgument( new OptionalBooleanArg( "rebuild-schema-indexes", false,
+                    "When importing incrementally into a database with schema indexes, drop those indexes so " +
+                            "that they are rebuilt on next startup. Such databases are refused otherwise." ) )
+            .withArgument( new OptionalBooleanArg( "resume", false,
+                    "Whether or not to resume a failed import into the same database from its last checkpoint, " +
+                            "instead of starting over. Must be given the same input and options as the failed " +
+                            "import." ) )
+            .withArgument( new OptionalBooleanArg( "external-id-mapping", false,
+                    "Whether or not to keep the mapping of input ids to node ids in files on disk instead of " +
+                            "in memory, for when there are too many input ids to fit in memory." ) )
+            .withArgument( new OptionalNamedArg( "index", "label:property", "",
+                    "Schema index to create and populate as part of the import. Can be specified multiple " +
+                            "times." ) )
+            .withArgument( new OptionalNamedArg( "unique-constraint", "label:property", "",
+                    "Uniqueness constraint to create and populate as part of the import. Can be specified " +
+                            "multiple times." ) )
+            .withArgument( new OptionalBooleanArg( "compact-node-cache", false,
+                    "Whether or not to store nodes in as few bytes as possible in the cache used for linking " +
+                            "relationships, to use less memory for imports with many nodes." ) )
+            .withArgument( new OptionalNamedArg( "metrics", "filename", "",
+                    "File to write statistics about the progress of the import to, as CSV if the file name " +
+                            "ends with '.csv', otherwise as one JSON object per line." ) );
     public static Arguments databaseArguments()
     {
         return databaseArguments;
@@ -233,12 +291,14 @@ public class ImportCommand implements AdminCommand
         String mode;
         Optional<Path> additionalConfigFile;
         String database;
+        boolean intoExistingDatabase;
 
         try
         {
             mode = allArguments.parse( args ).get("mode" );
             database = allArguments.get( "database" );
             additionalConfigFile = allArguments.getOptionalPath( "additional-config" );
+            intoExistingDatabase = allArguments.getBoolean( "incremental" ) || allArguments.getBoolean( "resume" );
         }
         catch ( IllegalArgumentException e )
         {
@@ -249,8 +309,11 @@ public class ImportCommand implements AdminCommand
         {
             Config config =
                     loadNeo4jConfig( homeDir, configDir, database, loadAdditionalConfig( additionalConfigFile ) );
-            Validators.CONTAINS_NO_EXISTING_DATABASE
-                    .validate( config.get( DatabaseManagementSystemSettings.database_path ) );
+            if ( !intoExistingDatabase )
+            {
+                Validators.CONTAINS_NO_EXISTING_DATABASE
+                        .validate( config.get( DatabaseManagementSystemSettings.database_path ) );
+            }
 
             Importer importer = importerFactory.getImporterForMode( mode, Args.parse( args ), config, outsideWorld );
             importer.doImport();
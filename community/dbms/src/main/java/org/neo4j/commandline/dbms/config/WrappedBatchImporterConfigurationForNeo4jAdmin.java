@@ -19,7 +19,11 @@
  */
 package org.neo4j.commandline.dbms.config;
 
+import java.util.Collection;
+
 import org.neo4j.unsafe.impl.batchimport.Configuration;
+import org.neo4j.unsafe.impl.batchimport.index.SchemaIndexDefinition;
+
 /**
  * Provides a wrapper around {@link Configuration} with overridden defaults for neo4j-admin import
  * Use all available processors
@@ -74,4 +78,52 @@ public class WrappedBatchImporterConfigurationForNeo4jAdmin implements Configura
     {
         return defaults.sequentialBackgroundFlushing();
     }
+
+    @Override
+    public boolean incremental()
+    {
+        return defaults.incremental();
+    }
+
+    @Override
+    public String existingNodeIdPropertyKey()
+    {
+        return defaults.existingNodeIdPropertyKey();
+    }
+
+    @Override
+    public boolean rebuildSchemaIndexes()
+    {
+        return defaults.rebuildSchemaIndexes();
+    }
+
+    @Override
+    public boolean externalIdMapping()
+    {
+        return defaults.externalIdMapping();
+    }
+
+    @Override
+    public boolean resume()
+    {
+        return defaults.resume();
+    }
+
+    @Override
+    public Collection<SchemaIndexDefinition> schemaIndexes()
+    {
+        return defaults.schemaIndexes();
+    }
+
+    @Override
+    public boolean compactNodeRelationshipCache()
+    {
+        return defaults.compactNodeRelationshipCache();
+    }
+
+    @Override
+    public boolean throughputProcessorAssignment()
+    {
+        return defaults.throughputProcessorAssignment();
+    }
 }
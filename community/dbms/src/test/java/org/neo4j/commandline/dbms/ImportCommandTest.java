@@ -48,6 +48,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -188,6 +189,29 @@ public class ImportCommandTest
         }
     }
 
+    @Test
+    public void acceptsExistingDatabaseWhenResumingOrImportingIncrementally() throws Exception
+    {
+        Path homeDir = testDir.directory( "home" ).toPath();
+        putStoreInDirectory( homeDir.resolve( "data" ).resolve( "databases" ).resolve( "existing.db" ) );
+        ImporterFactory mockImporterFactory = mock( ImporterFactory.class );
+        when( mockImporterFactory
+                .getImporterForMode( eq( "csv" ), any( Args.class ), any( Config.class ), any( OutsideWorld.class ) ) )
+                .thenReturn( mock( Importer.class ) );
+
+        try ( NullOutsideWorld outsideWorld = new NullOutsideWorld() )
+        {
+            ImportCommand importCommand = new ImportCommand( homeDir, testDir.directory( "conf" ).toPath(),
+                    outsideWorld, mockImporterFactory );
+
+            importCommand.execute( new String[]{"--mode=csv", "--database=existing.db", "--resume"} );
+            importCommand.execute( new String[]{"--mode=csv", "--database=existing.db", "--incremental=true"} );
+
+            verify( mockImporterFactory, times( 2 ) ).getImporterForMode( eq( "csv" ), any( Args.class ),
+                    any( Config.class ), any( OutsideWorld.class ) );
+        }
+    }
+
     @Test
     public void shouldPrintNiceHelp() throws Throwable
     {
@@ -213,6 +237,15 @@ public class ImportCommandTest
                             "                          [--array-delimiter=<array-delimiter-character>]%n" +
                             "                          [--quote=<quotation-character>]%n" +
                             "                          [--max-memory=<max-memory-that-importer-can-use>]%n" +
+                            "                          [--incremental[=<true|false>]]%n" +
+                            "                          [--existing-node-id-property=<property-key>]%n" +
+                            "                          [--rebuild-schema-indexes[=<true|false>]]%n" +
+                            "                          [--resume[=<true|false>]]%n" +
+                            "                          [--external-id-mapping[=<true|false>]]%n" +
+                            "                          [--index=<label:property>]%n" +
+                            "                          [--unique-constraint=<label:property>]%n" +
+                            "                          [--compact-node-cache[=<true|false>]]%n" +
+                            "                          [--metrics=<filename>]%n" +
                             "usage: neo4j-admin import --mode=database [--database=<name>]%n" +
                             "                          [--additional-config=<config-file-path>]%n" +
                             "                          [--from=<source-directory>]%n" +
@@ -286,7 +319,41 @@ public class ImportCommandTest
                             "  --max-memory=<max-memory-that-importer-can-use>%n" +
                             "      Maximum memory that neo4j-admin can use for various data structures and%n" +
                             "      caching to improve performance. Values can be plain numbers, like 10000000%n" +
-                            "      or e.g. 20G for 20 gigabyte, or even e.g. 70%%. [default:90%%]%n"),
+                            "      or e.g. 20G for 20 gigabyte, or even e.g. 70%%. [default:90%%]%n" +
+                            "  --incremental=<true|false>%n" +
+                            "      Whether or not to import into an existing database instead of an empty%n" +
+                            "      one. The database must have been shut down cleanly. Not supported for%n" +
+                            "      databases with uniqueness constraints. [default:false]%n" +
+                            "  --existing-node-id-property=<property-key>%n" +
+                            "      When importing incrementally, the property which ids of existing nodes%n" +
+                            "      were imported into. Relationships can refer to existing nodes by these%n" +
+                            "      ids. [default:]%n" +
+                            "  --rebuild-schema-indexes=<true|false>%n" +
+                            "      When importing incrementally into a database with schema indexes, drop%n" +
+                            "      those indexes so that they are rebuilt on next startup. Such databases are%n" +
+                            "      refused otherwise. [default:false]%n" +
+                            "  --resume=<true|false>%n" +
+                            "      Whether or not to resume a failed import into the same database from its%n" +
+                            "      last checkpoint, instead of starting over. Must be given the same input%n" +
+                            "      and options as the failed import. [default:false]%n" +
+                            "  --external-id-mapping=<true|false>%n" +
+                            "      Whether or not to keep the mapping of input ids to node ids in files on%n" +
+                            "      disk instead of in memory, for when there are too many input ids to fit in%n" +
+                            "      memory. [default:false]%n" +
+                            "  --index=<label:property>%n" +
+                            "      Schema index to create and populate as part of the import. Can be%n" +
+                            "      specified multiple times. [default:]%n" +
+                            "  --unique-constraint=<label:property>%n" +
+                            "      Uniqueness constraint to create and populate as part of the import. Can be%n" +
+                            "      specified multiple times. [default:]%n" +
+                            "  --compact-node-cache=<true|false>%n" +
+                            "      Whether or not to store nodes in as few bytes as possible in the cache%n" +
+                            "      used for linking relationships, to use less memory for imports with many%n" +
+                            "      nodes. [default:false]%n" +
+                            "  --metrics=<filename>%n" +
+                            "      File to write statistics about the progress of the import to, as CSV if%n" +
+                            "      the file name ends with '.csv', otherwise as one JSON object per line.%n" +
+                            "      [default:]%n"),
                     baos.toString() );
         }
     }
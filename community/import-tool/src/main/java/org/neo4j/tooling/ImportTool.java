@@ -21,10 +21,14 @@ package org.neo4j.tooling;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map.Entry;
@@ -38,6 +42,7 @@ import org.neo4j.helpers.ArrayUtil;
 import org.neo4j.helpers.Exceptions;
 import org.neo4j.helpers.Strings;
 import org.neo4j.helpers.collection.IterableWrapper;
+import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.helpers.collection.MapUtil;
 import org.neo4j.io.IOUtils;
 import org.neo4j.io.fs.DefaultFileSystemAbstraction;
@@ -56,19 +61,26 @@ import org.neo4j.kernel.lifecycle.LifeSupport;
 import org.neo4j.unsafe.impl.batchimport.BatchImporter;
 import org.neo4j.unsafe.impl.batchimport.ParallelBatchImporter;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.string.DuplicateInputIdException;
+import org.neo4j.unsafe.impl.batchimport.index.SchemaIndexDefinition;
 import org.neo4j.unsafe.impl.batchimport.input.BadCollector;
 import org.neo4j.unsafe.impl.batchimport.input.Collector;
 import org.neo4j.unsafe.impl.batchimport.input.Input;
+import org.neo4j.unsafe.impl.batchimport.input.InputEntity;
 import org.neo4j.unsafe.impl.batchimport.input.InputException;
 import org.neo4j.unsafe.impl.batchimport.input.InputNode;
 import org.neo4j.unsafe.impl.batchimport.input.InputRelationship;
 import org.neo4j.unsafe.impl.batchimport.input.MissingRelationshipDataException;
+import org.neo4j.unsafe.impl.batchimport.input.binary.BinaryData;
+import org.neo4j.unsafe.impl.batchimport.input.binary.BinaryInput;
 import org.neo4j.unsafe.impl.batchimport.input.csv.Configuration;
 import org.neo4j.unsafe.impl.batchimport.input.csv.CsvInput;
 import org.neo4j.unsafe.impl.batchimport.input.csv.DataFactory;
 import org.neo4j.unsafe.impl.batchimport.input.csv.Decorator;
 import org.neo4j.unsafe.impl.batchimport.input.csv.IdType;
+import org.neo4j.unsafe.impl.batchimport.staging.ExecutionMonitor;
 import org.neo4j.unsafe.impl.batchimport.staging.ExecutionMonitors;
+import org.neo4j.unsafe.impl.batchimport.staging.MetricsExecutionMonitor;
+import org.neo4j.unsafe.impl.batchimport.staging.MultiExecutionMonitor;
 
 import static java.nio.charset.Charset.defaultCharset;
 import static org.neo4j.graphdb.factory.GraphDatabaseSettings.logs_directory;
@@ -94,6 +106,7 @@ import static org.neo4j.unsafe.impl.batchimport.input.csv.Configuration.COMMAS;
 import static org.neo4j.unsafe.impl.batchimport.input.csv.DataFactories.data;
 import static org.neo4j.unsafe.impl.batchimport.input.csv.DataFactories.defaultFormatNodeFileHeader;
 import static org.neo4j.unsafe.impl.batchimport.input.csv.DataFactories.defaultFormatRelationshipFileHeader;
+import static org.neo4j.unsafe.impl.batchimport.input.csv.DataFactories.stream;
 
 /**
  * User-facing command line tool around a {@link BatchImporter}.
@@ -109,7 +122,10 @@ public class ImportTool
             "Note that file groups must be enclosed in quotation marks. " +
             "Each file can be a regular expression and will then include all matching files. " +
             "The file matching is done with number awareness such that e.g. files:" +
-            "'File1Part_001.csv', 'File12Part_003' will be ordered in that order for a pattern like: 'File.*'";
+            "'File1Part_001.csv', 'File12Part_003' will be ordered in that order for a pattern like: 'File.*'. " +
+            "A data source can also be standard input, specified as '-', or a named pipe. These are read " +
+            "once, as the import goes, instead of having to be staged on disk first. Such a data source " +
+            "can't be combined with other files and standard input can only be used for one data source.";
 
     private static final String UNLIMITED = "true";
 
@@ -244,7 +260,58 @@ public class ImportTool
                 "over the heap memory" ),
         HIGH_IO( "high-io", null, "Assume a high-throughput storage subsystem",
                 "(advanced) Ignore environment-based heuristics, and assume that the target storage subsystem can " +
-                "support parallel IO with high throughput." );
+                "support parallel IO with high throughput." ),
+        INCREMENTAL( "incremental", Boolean.FALSE, "<true/false>",
+                "(advanced) Import into an existing database instead of an empty one. The database must have been "
+                        + "shut down cleanly and must not be in use during the import. Relationships in the input "
+                        + "can refer to existing nodes by the ids they were imported with, see "
+                        + "existing-node-id-property. Databases with schema indexes are refused, unless "
+                        + "rebuild-schema-indexes is given. Not supported for databases with uniqueness "
+                        + "constraints." ),
+        EXISTING_NODE_ID_PROPERTY( "existing-node-id-property", null, "<property key>",
+                "(advanced) When importing incrementally, the property key which ids of existing nodes were "
+                        + "imported into, i.e. the name of the :ID column of their input. Existing nodes are matched "
+                        + "against ids in the relationship input using this property." ),
+        REBUILD_SCHEMA_INDEXES( "rebuild-schema-indexes", Boolean.FALSE, "<true/false>",
+                "(advanced) When importing incrementally into a database with schema indexes, drop those indexes "
+                        + "so that they are rebuilt from the whole database on next startup, which can take long "
+                        + "for a big database. The indexes aren't updated with the imported data otherwise." ),
+        EXTERNAL_ID_MAPPING( "external-id-mapping", Boolean.FALSE, "<true/false>",
+                "(advanced) Whether or not to keep the mapping of input ids to node ids in sorted files on disk "
+                        + "instead of in memory. Useful when there are too many input ids to fit in memory, "
+                        + "at the cost of slower import of relationships. Has no effect for id-type ACTUAL." ),
+        INPUT_FORMAT( "input-format", "csv", "<csv/binary>",
+                "(advanced) Format of the node and relationship input files. 'binary' reads files in the binary "
+                        + "input format, where values are stored typed instead of as text. Binary files have no "
+                        + "header and the CSV specific options don't apply to them." ),
+        RESUME( "resume", Boolean.FALSE, "<true/false>",
+                "(advanced) Resume a previous import into the same database directory which failed, continuing "
+                        + "from its last checkpoint instead of starting over. Checkpoints are taken after "
+                        + "relationships have been imported and after they have been linked. Must be given the "
+                        + "same input and options as the failed import. Not supported for incremental imports." ),
+        INDEX( "index", null, "<label>:<property>[,<property>...]",
+                "(advanced) Schema index to create as part of the import, where the index is populated while "
+                        + "nodes are imported instead of by scanning the store after the import. Can be specified "
+                        + "multiple times. Not supported for incremental imports." ),
+        UNIQUE_CONSTRAINT( "unique-constraint", null, "<label>:<property>",
+                "(advanced) Uniqueness constraint to create as part of the import, where its index is populated "
+                        + "while nodes are imported instead of by scanning the store after the import. The import "
+                        + "fails if two imported nodes with the label have the same property value. Can be "
+                        + "specified multiple times. Not supported for incremental imports." ),
+        COMPACT_NODE_CACHE( "compact-node-cache", Boolean.FALSE, "<true/false>",
+                "(advanced) Whether or not to store each node in the cache used for linking relationships in as few "
+                        + "bytes as the number of relationships and the dense node threshold allow, instead of "
+                        + "10 bytes per node. Reduces memory usage for imports with many nodes, at a small cost "
+                        + "in speed of linking relationships." ),
+        THROUGHPUT_PROCESSOR_ASSIGNMENT( "throughput-processor-assignment", Boolean.FALSE, "<true/false>",
+                "(advanced) Whether or not to assign processors to the steps of the import by modeling the "
+                        + "throughput of each step, instead of by moving one processor at a time to the slowest "
+                        + "step." ),
+        METRICS( "metrics", null, "<file>",
+                "(advanced) File to write statistics about the import to at a fixed interval, for other tools "
+                        + "to read, e.g. to compare imports. Each step of each stage gets a row with its "
+                        + "throughput, queue size, number of processors, I/O throughput and memory usage. "
+                        + "Written as CSV if the file name ends with '.csv', otherwise as one JSON object per line." );
 
         private final String key;
         private final Object defaultValue;
@@ -346,6 +413,11 @@ public class ImportTool
      */
     static final String MULTI_FILE_DELIMITER = ",";
 
+    /**
+     * Name of an input file which means standard input.
+     */
+    static final String STANDARD_INPUT = "-";
+
     private ImportTool()
     {
     }
@@ -385,7 +457,6 @@ public class ImportTool
         Collection<Option<File[]>> nodesFiles;
         Collection<Option<File[]>> relationshipsFiles;
         boolean enableStacktrace;
-        Number processors;
         Input input;
         long badTolerance;
         Charset inputEncoding;
@@ -399,14 +470,26 @@ public class ImportTool
         org.neo4j.unsafe.impl.batchimport.Configuration configuration = null;
         File logsDir;
         File badFile = null;
-        Long maxMemory;
-        Boolean defaultHighIO;
+        boolean incremental;
+        String inputFormat;
+        boolean resume;
+        File metricsFile;
+        Writer metricsOutput = null;
 
         boolean success = false;
         try ( FileSystemAbstraction fs = new DefaultFileSystemAbstraction() )
         {
-            storeDir = args.interpretOption( Options.STORE_DIR.key(), Converters.mandatory(),
-                    Converters.toFile(), Validators.DIRECTORY_IS_WRITABLE, Validators.CONTAINS_NO_EXISTING_DATABASE );
+            incremental = args.getBoolean( Options.INCREMENTAL.key(),
+                    (Boolean) Options.INCREMENTAL.defaultValue(), true );
+            inputFormat = args.get( Options.INPUT_FORMAT.key(), (String) Options.INPUT_FORMAT.defaultValue() );
+            resume = args.getBoolean( Options.RESUME.key(), (Boolean) Options.RESUME.defaultValue(), true );
+            metricsFile = args.interpretOption( Options.METRICS.key(), Converters.optional(), Converters.toFile() );
+            storeDir = incremental || resume
+                    ? args.interpretOption( Options.STORE_DIR.key(), Converters.mandatory(),
+                            Converters.toFile(), Validators.DIRECTORY_IS_WRITABLE )
+                    : args.interpretOption( Options.STORE_DIR.key(), Converters.mandatory(),
+                            Converters.toFile(), Validators.DIRECTORY_IS_WRITABLE,
+                            Validators.CONTAINS_NO_EXISTING_DATABASE );
             Config config = Config.defaults( GraphDatabaseSettings.neo4j_home, storeDir.getAbsolutePath() );
             logsDir = config.get( GraphDatabaseSettings.logs_directory );
             fs.mkdirs( logsDir );
@@ -416,16 +499,14 @@ public class ImportTool
             if ( !skipBadEntriesLogging )
             {
                 badFile = new File( storeDir, BAD_FILE_NAME );
-                badOutput = new BufferedOutputStream( fs.openAsOutputStream( badFile, false ) );
+                // Bad entries found before the import being resumed failed are kept
+                badOutput = new BufferedOutputStream( fs.openAsOutputStream( badFile, resume ) );
             }
             nodesFiles = extractInputFiles( args, Options.NODE_DATA.key(), err );
             relationshipsFiles = extractInputFiles( args, Options.RELATIONSHIP_DATA.key(), err );
-            String maxMemoryString = args.get( Options.MAX_MEMORY.key(), null );
-            maxMemory = parseMaxMemory( maxMemoryString );
 
             validateInputFiles( nodesFiles, relationshipsFiles );
             enableStacktrace = args.getBoolean( Options.STACKTRACE.key(), Boolean.FALSE, Boolean.TRUE );
-            processors = args.getNumber( Options.PROCESSORS.key(), null );
             idType = args.interpretOption( Options.ID_TYPE.key(),
                     withDefault( (IdType)Options.ID_TYPE.defaultValue() ), TO_ID_TYPE );
             badTolerance = parseNumberOrUnlimited( args, Options.BAD_TOLERANCE );
@@ -437,8 +518,6 @@ public class ImportTool
                     (Boolean)Options.SKIP_DUPLICATE_NODES.defaultValue(), true );
             ignoreExtraColumns = args.getBoolean( Options.IGNORE_EXTRA_COLUMNS.key(),
                     (Boolean)Options.IGNORE_EXTRA_COLUMNS.defaultValue(), true );
-            defaultHighIO = args.getBoolean( Options.HIGH_IO.key(),
-                    (Boolean)Options.HIGH_IO.defaultValue(), true );
 
             Collector badCollector = getBadCollector( badTolerance, skipBadRelationships, skipDuplicateNodes, ignoreExtraColumns,
                     skipBadEntriesLogging, badOutput );
@@ -447,18 +526,38 @@ public class ImportTool
                     Converters.toFile(), Validators.REGEX_FILE_EXISTS ) );
             dbConfig.augment( loadDbConfig( args.interpretOption( Options.ADDITIONAL_CONFIG.key(), Converters.optional(),
                     Converters.toFile(), Validators.REGEX_FILE_EXISTS ) ) );
-            boolean allowCacheOnHeap = args.getBoolean( Options.CACHE_ON_HEAP.key(),
-                    (Boolean) Options.CACHE_ON_HEAP.defaultValue() );
-            configuration = importConfiguration(
-                    processors, defaultSettingsSuitableForTests, dbConfig, maxMemory, storeDir,
-                    allowCacheOnHeap, defaultHighIO );
-            input = new CsvInput( nodeData( inputEncoding, nodesFiles ), defaultFormatNodeFileHeader(),
-                    relationshipData( inputEncoding, relationshipsFiles ), defaultFormatRelationshipFileHeader(),
-                    idType, csvConfiguration( args, defaultSettingsSuitableForTests ), badCollector,
-                    configuration.maxNumberOfProcessors(), !skipBadRelationships );
+            configuration = importConfiguration( args, defaultSettingsSuitableForTests, dbConfig, storeDir );
+            switch ( inputFormat )
+            {
+            case "csv":
+                input = new CsvInput( nodeData( inputEncoding, nodesFiles ), defaultFormatNodeFileHeader(),
+                        relationshipData( inputEncoding, relationshipsFiles ), defaultFormatRelationshipFileHeader(),
+                        idType, csvConfiguration( args, defaultSettingsSuitableForTests ), badCollector,
+                        configuration.maxNumberOfProcessors(), !skipBadRelationships );
+                break;
+            case "binary":
+                if ( containsStreams( nodesFiles ) || containsStreams( relationshipsFiles ) )
+                {
+                    throw new IllegalArgumentException( "Standard input and named pipes are only supported for " +
+                            "input format 'csv'" );
+                }
+                input = new BinaryInput( binaryNodeData( nodesFiles ), binaryRelationshipData( relationshipsFiles ),
+                        idType, badCollector, configuration.maxNumberOfProcessors(), !skipBadRelationships );
+                break;
+            default:
+                throw new IllegalArgumentException( "Unknown input format '" + inputFormat +
+                        "', expected one of 'csv' or 'binary'" );
+            }
+
+            ExecutionMonitor executionMonitor = ExecutionMonitors.defaultVisible();
+            if ( metricsFile != null )
+            {
+                metricsOutput = fs.openAsWriter( metricsFile, StandardCharsets.UTF_8, false );
+                executionMonitor = withMetrics( executionMonitor, metricsOutput, metricsFile );
+            }
 
             doImport( out, err, storeDir, logsDir, badFile, fs, nodesFiles, relationshipsFiles,
-                    enableStacktrace, input, dbConfig, badOutput, configuration );
+                    enableStacktrace, input, dbConfig, badOutput, configuration, executionMonitor );
 
             success = true;
         }
@@ -476,6 +575,10 @@ public class ImportTool
             {
                 badOutput.close();
             }
+            if ( metricsOutput != null )
+            {
+                metricsOutput.close();
+            }
         }
     }
 
@@ -501,11 +604,32 @@ public class ImportTool
         return null;
     }
 
+    /**
+     * @return {@code monitor} also writing statistics to {@code metricsOutput}, in the format which
+     * the name of {@code metricsFile} asks for.
+     */
+    public static ExecutionMonitor withMetrics( ExecutionMonitor monitor, Writer metricsOutput, File metricsFile )
+    {
+        return new MultiExecutionMonitor( monitor,
+                new MetricsExecutionMonitor( metricsOutput, MetricsExecutionMonitor.Format.forFile( metricsFile ) ) );
+    }
+
     public static void doImport( PrintStream out, PrintStream err, File storeDir, File logsDir, File badFile,
                                  FileSystemAbstraction fs, Collection<Option<File[]>> nodesFiles,
                                  Collection<Option<File[]>> relationshipsFiles, boolean enableStacktrace, Input input,
                                  Config dbConfig, OutputStream badOutput,
                                  org.neo4j.unsafe.impl.batchimport.Configuration configuration ) throws IOException
+    {
+        doImport( out, err, storeDir, logsDir, badFile, fs, nodesFiles, relationshipsFiles, enableStacktrace, input,
+                dbConfig, badOutput, configuration, ExecutionMonitors.defaultVisible() );
+    }
+
+    public static void doImport( PrintStream out, PrintStream err, File storeDir, File logsDir, File badFile,
+                                 FileSystemAbstraction fs, Collection<Option<File[]>> nodesFiles,
+                                 Collection<Option<File[]>> relationshipsFiles, boolean enableStacktrace, Input input,
+                                 Config dbConfig, OutputStream badOutput,
+                                 org.neo4j.unsafe.impl.batchimport.Configuration configuration,
+                                 ExecutionMonitor executionMonitor ) throws IOException
     {
         boolean success;
         LifeSupport life = new LifeSupport();
@@ -519,7 +643,7 @@ public class ImportTool
                 fs,
                 configuration,
                 logService,
-                ExecutionMonitors.defaultVisible(),
+                executionMonitor,
                 dbConfig );
         printOverview( storeDir, nodesFiles, relationshipsFiles, configuration, out );
         success = false;
@@ -564,17 +688,27 @@ public class ImportTool
     {
         return args
                 .interpretOptionsWithMetadata( key, Converters.optional(),
-                        Converters.toFiles( MULTI_FILE_DELIMITER, Converters.regexFiles( true ) ), filesExist(
-                                err ),
+                        Converters.toFiles( MULTI_FILE_DELIMITER, ImportTool::toFiles ), filesExist( err ),
                         Validators.atLeast( "--" + key, 1 ) );
     }
 
+    private static File[] toFiles( String name )
+    {
+        return STANDARD_INPUT.equals( name )
+               ? new File[] {new File( name )}
+               : Converters.regexFiles( true ).apply( name );
+    }
+
     private static Validator<File[]> filesExist( PrintStream err )
     {
         return files ->
         {
             for ( File file : files )
             {
+                if ( isStandardInput( file ) )
+                {
+                    continue;
+                }
                 if ( file.getName().startsWith( ":" ) )
                 {
                     err.println( "It looks like you're trying to specify default label or relationship type (" +
@@ -665,20 +799,98 @@ public class ImportTool
             }
             throw new IllegalArgumentException( "No node input specified, cannot import relationships without nodes" );
         }
+
+        int standardInputs = 0;
+        for ( Option<File[]> group : Iterables.concat( nodesFiles, relationshipsFiles ) )
+        {
+            File[] files = group.value();
+            for ( File file : files )
+            {
+                if ( isStream( file ) && files.length > 1 )
+                {
+                    throw new IllegalArgumentException( file + " is read as a stream, which can't be combined with " +
+                            "other files in the same group" );
+                }
+                if ( isStandardInput( file ) && ++standardInputs > 1 )
+                {
+                    throw new IllegalArgumentException( "Standard input can only be used for one group of input" );
+                }
+            }
+        }
+    }
+
+    private static boolean isStandardInput( File file )
+    {
+        return file.getPath().equals( STANDARD_INPUT );
+    }
+
+    /**
+     * @return whether or not the data in {@code file} can only be read once, i.e. if it's standard input,
+     * a named pipe or some other special file.
+     */
+    private static boolean isStream( File file )
+    {
+        return isStandardInput( file ) || (file.exists() && !file.isFile() && !file.isDirectory());
+    }
+
+    private static boolean containsStreams( Collection<Option<File[]>> files )
+    {
+        for ( Option<File[]> group : files )
+        {
+            for ( File file : group.value() )
+            {
+                if ( isStream( file ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
-    public static org.neo4j.unsafe.impl.batchimport.Configuration importConfiguration(
-            Number processors, boolean defaultSettingsSuitableForTests, Config dbConfig, File storeDir )
+    private static <ENTITY extends InputEntity> DataFactory<ENTITY> csvData( Decorator<ENTITY> decorator,
+            Charset encoding, File[] files )
     {
-        return importConfiguration(
-                processors, defaultSettingsSuitableForTests, dbConfig, null, storeDir,
-                DEFAULT.allowCacheAllocationOnHeap(), (Boolean)Options.HIGH_IO.defaultValue() );
+        if ( files.length == 1 && isStream( files[0] ) )
+        {
+            File file = files[0];
+            return isStandardInput( file )
+                    ? stream( decorator, encoding, "standard input", () -> System.in )
+                    : stream( decorator, encoding, file.getPath(), () -> new FileInputStream( file ) );
+        }
+        return data( decorator, encoding, files );
     }
 
-    public static org.neo4j.unsafe.impl.batchimport.Configuration importConfiguration(
-            Number processors, boolean defaultSettingsSuitableForTests, Config dbConfig, Long maxMemory, File storeDir,
-            boolean allowCacheOnHeap, Boolean defaultHighIO )
+    /**
+     * Configuration of the batch importer from the options in {@code args} which configure it, e.g. number of
+     * processors and max memory, as well as what kind of import to do. Defaults are used for options not given.
+     */
+    public static org.neo4j.unsafe.impl.batchimport.Configuration importConfiguration( Args args,
+            boolean defaultSettingsSuitableForTests, Config dbConfig, File storeDir )
     {
+        Number processors = args.getNumber( Options.PROCESSORS.key(), null );
+        Long maxMemory = parseMaxMemory( args.get( Options.MAX_MEMORY.key(), null ) );
+        boolean allowCacheOnHeap = args.getBoolean( Options.CACHE_ON_HEAP.key(),
+                (Boolean) Options.CACHE_ON_HEAP.defaultValue() );
+        Boolean defaultHighIO = args.getBoolean( Options.HIGH_IO.key(),
+                (Boolean) Options.HIGH_IO.defaultValue(), true );
+        boolean incremental = args.getBoolean( Options.INCREMENTAL.key(),
+                (Boolean) Options.INCREMENTAL.defaultValue(), true );
+        String existingNodeIdPropertyKey = args.get( Options.EXISTING_NODE_ID_PROPERTY.key(), null );
+        boolean rebuildSchemaIndexes = args.getBoolean( Options.REBUILD_SCHEMA_INDEXES.key(),
+                (Boolean) Options.REBUILD_SCHEMA_INDEXES.defaultValue(), true );
+        boolean externalIdMapping = args.getBoolean( Options.EXTERNAL_ID_MAPPING.key(),
+                (Boolean) Options.EXTERNAL_ID_MAPPING.defaultValue(), true );
+        boolean resume = args.getBoolean( Options.RESUME.key(), (Boolean) Options.RESUME.defaultValue(), true );
+        Collection<SchemaIndexDefinition> schemaIndexes = new ArrayList<>();
+        schemaIndexes.addAll( args.interpretOptions( Options.INDEX.key(), Converters.optional(),
+                TO_SCHEMA_INDEX ) );
+        schemaIndexes.addAll( args.interpretOptions( Options.UNIQUE_CONSTRAINT.key(), Converters.optional(),
+                TO_UNIQUENESS_CONSTRAINT ) );
+        boolean compactNodeCache = args.getBoolean( Options.COMPACT_NODE_CACHE.key(),
+                (Boolean) Options.COMPACT_NODE_CACHE.defaultValue(), true );
+        boolean throughputProcessorAssignment = args.getBoolean( Options.THROUGHPUT_PROCESSOR_ASSIGNMENT.key(),
+                (Boolean) Options.THROUGHPUT_PROCESSOR_ASSIGNMENT.defaultValue(), true );
         return new org.neo4j.unsafe.impl.batchimport.Configuration()
         {
             @Override
@@ -716,6 +928,54 @@ public class ImportTool
             {
                 return allowCacheOnHeap;
             }
+
+            @Override
+            public boolean incremental()
+            {
+                return incremental;
+            }
+
+            @Override
+            public String existingNodeIdPropertyKey()
+            {
+                return existingNodeIdPropertyKey;
+            }
+
+            @Override
+            public boolean rebuildSchemaIndexes()
+            {
+                return rebuildSchemaIndexes;
+            }
+
+            @Override
+            public boolean externalIdMapping()
+            {
+                return externalIdMapping;
+            }
+
+            @Override
+            public boolean resume()
+            {
+                return resume;
+            }
+
+            @Override
+            public Collection<SchemaIndexDefinition> schemaIndexes()
+            {
+                return schemaIndexes;
+            }
+
+            @Override
+            public boolean compactNodeRelationshipCache()
+            {
+                return compactNodeCache;
+            }
+
+            @Override
+            public boolean throughputProcessorAssignment()
+            {
+                return throughputProcessorAssignment;
+            }
         };
     }
 
@@ -804,7 +1064,7 @@ public class ImportTool
             @Override
             protected DataFactory<InputRelationship> underlyingObjectToObject( Option<File[]> group )
             {
-                return data( defaultRelationshipType( group.metadata() ), encoding, group.value() );
+                return csvData( defaultRelationshipType( group.metadata() ), encoding, group.value() );
             }
         };
     }
@@ -820,7 +1080,35 @@ public class ImportTool
                 Decorator<InputNode> decorator = input.metadata() != null
                         ? additiveLabels( input.metadata().split( ":" ) )
                         : NO_NODE_DECORATOR;
-                return data( decorator, encoding, input.value() );
+                return csvData( decorator, encoding, input.value() );
+            }
+        };
+    }
+
+    public static Iterable<BinaryData<InputRelationship>> binaryRelationshipData(
+            Collection<Option<File[]>> relationshipsFiles )
+    {
+        return new IterableWrapper<BinaryData<InputRelationship>,Option<File[]>>( relationshipsFiles )
+        {
+            @Override
+            protected BinaryData<InputRelationship> underlyingObjectToObject( Option<File[]> group )
+            {
+                return new BinaryData<>( defaultRelationshipType( group.metadata() ), group.value() );
+            }
+        };
+    }
+
+    public static Iterable<BinaryData<InputNode>> binaryNodeData( Collection<Option<File[]>> nodesFiles )
+    {
+        return new IterableWrapper<BinaryData<InputNode>,Option<File[]>>( nodesFiles )
+        {
+            @Override
+            protected BinaryData<InputNode> underlyingObjectToObject( Option<File[]> input )
+            {
+                Decorator<InputNode> decorator = input.metadata() != null
+                        ? additiveLabels( input.metadata().split( ":" ) )
+                        : NO_NODE_DECORATOR;
+                return new BinaryData<>( decorator, input.value() );
             }
         };
     }
@@ -963,6 +1251,36 @@ public class ImportTool
 
     private static final Function<String,Character> CHARACTER_CONVERTER = new CharacterConverter();
 
+    private static final Function<String,SchemaIndexDefinition> TO_SCHEMA_INDEX =
+            from -> SchemaIndexDefinition.index( schemaIndexLabel( from ), schemaIndexPropertyKeys( from ) );
+
+    private static final Function<String,SchemaIndexDefinition> TO_UNIQUENESS_CONSTRAINT = from ->
+    {
+        String[] propertyKeys = schemaIndexPropertyKeys( from );
+        if ( propertyKeys.length != 1 )
+        {
+            throw new IllegalArgumentException( "Uniqueness constraint must be on a single property, but was '" +
+                    from + "'" );
+        }
+        return SchemaIndexDefinition.uniquenessConstraint( schemaIndexLabel( from ), propertyKeys[0] );
+    };
+
+    private static String schemaIndexLabel( String from )
+    {
+        int colon = from.indexOf( ':' );
+        if ( colon <= 0 || colon == from.length() - 1 )
+        {
+            throw new IllegalArgumentException( "Expected <label>:<property>[,<property>...], but was '" +
+                    from + "'" );
+        }
+        return from.substring( 0, colon );
+    }
+
+    private static String[] schemaIndexPropertyKeys( String from )
+    {
+        return from.substring( schemaIndexLabel( from ).length() + 1 ).split( "," );
+    }
+
     private enum ManualPage
     {
         IMPORT_TOOL_FORMAT( "tools/import/file-header-format/" );
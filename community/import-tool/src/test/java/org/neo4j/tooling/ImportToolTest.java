@@ -23,10 +23,13 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -66,6 +69,7 @@ import org.neo4j.test.rule.SuppressOutput;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.string.DuplicateInputIdException;
 import org.neo4j.unsafe.impl.batchimport.input.InputException;
 import org.neo4j.unsafe.impl.batchimport.input.csv.Configuration;
+import org.neo4j.unsafe.impl.batchimport.input.csv.IdType;
 import org.neo4j.unsafe.impl.batchimport.input.csv.Type;
 
 import static java.lang.String.format;
@@ -143,6 +147,101 @@ public class ImportToolTest
         verifyData();
     }
 
+    @Test
+    public void shouldWriteMetricsAsCsv() throws Exception
+    {
+        // GIVEN
+        List<String> nodeIds = nodeIds();
+        Configuration config = Configuration.COMMAS;
+        File metrics = file( fileName( "metrics.csv" ) );
+
+        // WHEN
+        importTool(
+                "--into", dbRule.getStoreDirAbsolutePath(),
+                "--nodes", nodeData( true, config, nodeIds, TRUE ).getAbsolutePath(),
+                "--relationships", relationshipData( true, config, nodeIds, TRUE, true ).getAbsolutePath(),
+                "--metrics", metrics.getAbsolutePath() );
+
+        // THEN
+        verifyData();
+        String[] lines = FileUtils.readTextFile( metrics, StandardCharsets.UTF_8 ).split( "\n" );
+        assertTrue( lines[0].startsWith( "time,event,stage," ) );
+        assertTrue( lines[1].contains( ",start," ) );
+        assertTrue( lines[lines.length - 1].contains( ",done," ) );
+    }
+
+    @Test
+    public void shouldImportRelationshipsFromStandardInput() throws Exception
+    {
+        // GIVEN
+        List<String> nodeIds = nodeIds();
+        Configuration config = Configuration.COMMAS;
+        File relationshipData = relationshipData( true, config, nodeIds, TRUE, true );
+        InputStream stdIn = System.in;
+
+        // WHEN
+        try ( InputStream relationships = new FileInputStream( relationshipData ) )
+        {
+            System.setIn( relationships );
+            importTool(
+                    "--into", dbRule.getStoreDirAbsolutePath(),
+                    "--nodes", nodeData( true, config, nodeIds, TRUE ).getAbsolutePath(),
+                    "--relationships", "-" );
+        }
+        finally
+        {
+            System.setIn( stdIn );
+        }
+
+        // THEN
+        verifyData();
+    }
+
+    @Test
+    public void shouldImportNodesWithStringIdsFromStandardInput() throws Exception
+    {
+        // GIVEN
+        List<String> nodeIds = nodeIds();
+        Configuration config = Configuration.COMMAS;
+        File nodeData = nodeData( true, config, nodeIds, TRUE );
+        InputStream stdIn = System.in;
+
+        // WHEN string ids, which need the id mapper to be prepared before relationships can be imported
+        try ( InputStream nodes = new FileInputStream( nodeData ) )
+        {
+            System.setIn( nodes );
+            importTool(
+                    "--into", dbRule.getStoreDirAbsolutePath(),
+                    "--id-type", IdType.STRING.name(),
+                    "--nodes", "-",
+                    "--relationships", relationshipData( true, config, nodeIds, TRUE, true ).getAbsolutePath() );
+        }
+        finally
+        {
+            System.setIn( stdIn );
+        }
+
+        // THEN
+        verifyData();
+    }
+
+    @Test
+    public void shouldNotAllowStandardInputForMultipleInputGroups() throws Exception
+    {
+        try
+        {
+            importTool(
+                    "--into", dbRule.getStoreDirAbsolutePath(),
+                    "--nodes", "-",
+                    "--relationships", "-" );
+            fail( "Should have failed" );
+        }
+        catch ( Exception e )
+        {
+            assertExceptionContains( e, "Standard input", IllegalArgumentException.class );
+        }
+    }
+
     @Test
     public void shouldImportWithHeadersBeingInSeparateFiles() throws Exception
     {
@@ -257,6 +257,13 @@ public class GraphDatabaseSettings implements LoadableConfig
     public static final Setting<Duration> transaction_start_timeout =
             setting( "unsupported.dbms.transaction_start_timeout", DURATION, "1s" );
 
+    @Description( "Apply counts store and explicit index changes of committed transactions concurrently with " +
+                  "the graph store and schema index changes, instead of one after the other on the committing " +
+                  "thread. Mostly of use where batches of transactions are applied, e.g. on slaves and read replicas." )
+    @Internal
+    public static final Setting<Boolean> pipelined_transaction_application =
+            setting( "unsupported.dbms.transaction_application.pipelined", BOOLEAN, FALSE );
+
     @Internal
     @Description( "Please use dbms.transaction.timeout instead." )
     @Deprecated
@@ -273,6 +280,72 @@ public class GraphDatabaseSettings implements LoadableConfig
     public static final Setting<Duration> lock_acquisition_timeout = setting( "dbms.lock.acquisition.timeout", DURATION,
             String.valueOf( UNSPECIFIED_TIMEOUT ) );
 
+    @Internal
+    @Description( "Number of exclusive locks on a single resource type, e.g. nodes, that a transaction can hold " +
+            "before the lock manager attempts to escalate them into a single lock on that whole resource type. " +
+            "Escalation only succeeds while no other transaction holds locks on that resource type, otherwise " +
+            "it is attempted again after the same number of additional locks. Zero disables lock escalation." )
+    public static final Setting<Integer> lock_escalation_threshold =
+            buildSetting( "unsupported.dbms.lock.escalation_threshold", INTEGER, "0" ).constraint( min( 0 ) ).build();
+
+    @Internal
+    @Description( "Interval at which a background deadlock detector looks for cycles among transactions waiting for " +
+            "locks. When set, waiting transactions leave deadlock detection to it rather than checking for " +
+            "deadlocks themselves on every wait iteration. Zero disables the background deadlock detector." )
+    public static final Setting<Duration> lock_deadlock_detection_interval =
+            setting( "unsupported.dbms.lock.deadlock_detection_interval", DURATION, "0" );
+
+    @Internal
+    @Description( "Whether transactions waiting for a lock should adapt how they wait to how long locks of that " +
+            "resource type are typically held. Waits expected to be short are spun, longer ones are parked until " +
+            "the lock is released, rather than polling the lock with a fixed back-off." )
+    public static final Setting<Boolean> lock_adaptive_wait =
+            setting( "unsupported.dbms.lock.adaptive_wait", BOOLEAN, FALSE );
+
+    @Internal
+    @Description( "Whether to keep track of how often and how long transactions wait for locks, per resource type, " +
+            "as reported by the lock metrics. Only applies to the default tracer implementation." )
+    public static final Setting<Boolean> lock_wait_tracing =
+            setting( "unsupported.dbms.lock.wait_tracing", BOOLEAN, FALSE );
+
+    @Internal
+    @Description( "Whether transactions adding relationships to a dense node should only take a shared lock on it, " +
+            "and lock the relationship groups they change, so that relationships of different types can be added " +
+            "to the same dense node concurrently. Otherwise, such transactions take an exclusive lock on the node." )
+    public static final Setting<Boolean> relationship_group_locking =
+            setting( "unsupported.dbms.lock.relationship_group_locking", BOOLEAN, FALSE );
+
+    @Internal
+    @Description( "Memory budget for the changes recorded by a single transaction before it is committed. The size " +
+            "of the transaction state is estimated as changes are made, and a change that takes it over the budget " +
+            "fails the transaction. Zero means no limit." )
+    public static final Setting<Long> tx_state_memory_budget =
+            buildSetting( "unsupported.dbms.tx_state.memory_budget", BYTES, "0" ).constraint( min( 0L ) ).build();
+
+    @Internal
+    @Description( "Move the label and property changes of nodes out to temporary files when a transaction reaches " +
+            "its transaction state memory budget, instead of failing it right away. Only the changes of nodes " +
+            "that have no relationship changes in the transaction can be moved out." )
+    public static final Setting<Boolean> tx_state_spill_to_disk =
+            setting( "unsupported.dbms.tx_state.spill_to_disk", BOOLEAN, FALSE );
+
+    @Internal
+    @Description( "Directory to move transaction state out to when unsupported.dbms.tx_state.spill_to_disk is " +
+            "enabled. By default a directory in the store directory is used." )
+    public static final Setting<File> tx_state_spill_directory =
+            pathSetting( "unsupported.dbms.tx_state.spill_directory", NO_DEFAULT );
+
+    @Internal
+    @Description( "Number of most recently applied transactions to keep prior versions of changed node, " +
+            "relationship, relationship group and property records for. Transactions that have not written anything " +
+            "read these records as they were when the transaction started. A transaction that is still reading once " +
+            "more transactions than this have been applied fails with a transient error, as does one that reads " +
+            "a string or array property value or node labels changed since it started. Zero disables snapshot " +
+            "reads." )
+    public static final Setting<Integer> snapshot_read_retained_transactions =
+            buildSetting( "unsupported.dbms.snapshot_read.retained_transactions", INTEGER, "0" )
+                    .constraint( min( 0 ) ).build();
+
     @Description( "Configures the time interval between transaction monitor checks. Determines how often " +
             "monitor thread will check transaction for timeout." )
     public static final Setting<Duration> transaction_monitor_check_interval =
@@ -70,6 +70,7 @@ import org.neo4j.kernel.impl.api.index.IndexingService;
 import org.neo4j.kernel.impl.api.index.SchemaIndexProviderMap;
 import org.neo4j.kernel.impl.api.operations.QueryRegistrationOperations;
 import org.neo4j.kernel.impl.api.state.ConstraintIndexCreator;
+import org.neo4j.kernel.impl.api.state.TxState;
 import org.neo4j.kernel.impl.constraints.ConstraintSemantics;
 import org.neo4j.kernel.impl.core.LabelTokenHolder;
 import org.neo4j.kernel.impl.core.PropertyKeyTokenHolder;
@@ -99,6 +100,7 @@ import org.neo4j.kernel.impl.storemigration.participant.StoreMigrator;
 import org.neo4j.kernel.impl.transaction.TransactionHeaderInformationFactory;
 import org.neo4j.kernel.impl.transaction.TransactionMonitor;
 import org.neo4j.kernel.impl.transaction.log.BatchingTransactionAppender;
+import org.neo4j.kernel.impl.transaction.log.LastCheckPointFile;
 import org.neo4j.kernel.impl.transaction.log.LogFileInformation;
 import org.neo4j.kernel.impl.transaction.log.LogHeaderCache;
 import org.neo4j.kernel.impl.transaction.log.LogPosition;
@@ -111,10 +113,12 @@ import org.neo4j.kernel.impl.transaction.log.PhysicalLogFile;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFileInformation;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFiles;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogicalTransactionStore;
+import org.neo4j.kernel.impl.transaction.log.PhysicalTransactionLogIndex;
 import org.neo4j.kernel.impl.transaction.log.ReadableClosablePositionAwareChannel;
 import org.neo4j.kernel.impl.transaction.log.ReadableLogChannel;
 import org.neo4j.kernel.impl.transaction.log.TransactionAppender;
 import org.neo4j.kernel.impl.transaction.log.TransactionIdStore;
+import org.neo4j.kernel.impl.transaction.log.TransactionLogIndex;
 import org.neo4j.kernel.impl.transaction.log.TransactionMetadataCache;
 import org.neo4j.kernel.impl.transaction.log.checkpoint.CheckPointScheduler;
 import org.neo4j.kernel.impl.transaction.log.checkpoint.CheckPointThreshold;
@@ -228,6 +232,7 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
     }
 
     public static final String DEFAULT_DATA_SOURCE_NAME = "nioneodb";
+    private static final String TX_STATE_SPILL_DIRECTORY = "tx-state";
 
     private final Monitors monitors;
     private final Tracers tracers;
@@ -463,7 +468,8 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
                     monitors.newMonitor( Recovery.Monitor.class ),
                     monitors.newMonitor( PositionToRecoverFrom.Monitor.class ),
                     logFiles, startupStatistics,
-                    storageEngine, transactionLogModule.logicalTransactionStore()
+                    storageEngine, transactionLogModule.logicalTransactionStore(),
+                    transactionLogModule.transactionLogIndex()
             );
 
             // At the time of writing this comes from the storage engine (IndexStoreView)
@@ -639,7 +645,12 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
         }
         String pruningConf = config.get( GraphDatabaseSettings.keep_logical_logs );
 
-        LogPruneStrategy logPruneStrategy = fromConfigValue( fs, logFileInformation, logFiles, pruningConf );
+        final PhysicalTransactionLogIndex transactionLogIndex = life.add( new PhysicalTransactionLogIndex(
+                fileSystemAbstraction, logFiles, PhysicalTransactionLogIndex.DEFAULT_TRANSACTIONS_PER_ENTRY,
+                logProvider ) );
+
+        LogPruneStrategy logPruneStrategy =
+                fromConfigValue( fs, logFileInformation, logFiles, transactionLogIndex, pruningConf );
 
         final LogPruning logPruning = new LogPruningImpl( logPruneStrategy, logProvider );
 
@@ -648,9 +659,9 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
 
         final TransactionAppender appender = life.add( new BatchingTransactionAppender(
                 logFile, logRotation, transactionMetadataCache, transactionIdStore, explicitIndexTransactionOrdering,
-                databaseHealth ) );
-        final LogicalTransactionStore logicalTransactionStore =
-                new PhysicalLogicalTransactionStore( logFile, transactionMetadataCache, logEntryReader );
+                databaseHealth, transactionLogIndex ) );
+        final LogicalTransactionStore logicalTransactionStore = new PhysicalLogicalTransactionStore( logFile,
+                transactionMetadataCache, logEntryReader, transactionLogIndex );
 
         int txThreshold = config.get( GraphDatabaseSettings.check_point_interval_tx );
         final CountCommittedTransactionThreshold countCommittedTransactionThreshold =
@@ -664,7 +675,8 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
 
         final CheckPointerImpl checkPointer = new CheckPointerImpl(
                 transactionIdStore, threshold, storageEngine, logPruning, appender, databaseHealth, logProvider,
-                tracers.checkPointTracer, ioLimiter, storeCopyCheckPointMutex );
+                tracers.checkPointTracer, ioLimiter, storeCopyCheckPointMutex,
+                new LastCheckPointFile( fileSystemAbstraction, logFiles ) );
 
         long recurringPeriod = Math.min( timeMillisThreshold, TimeUnit.SECONDS.toMillis( 10 ) );
         CheckPointScheduler checkPointScheduler = new CheckPointScheduler( checkPointer, ioLimiter, scheduler,
@@ -674,7 +686,7 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
         life.add( checkPointScheduler );
 
         return new NeoStoreTransactionLogModule( logicalTransactionStore, logFileInformation, logFiles, logFile,
-                logRotation, checkPointer, appender, explicitIndexTransactionOrdering );
+                logRotation, checkPointer, appender, explicitIndexTransactionOrdering, transactionLogIndex );
     }
 
     private void buildRecovery(
@@ -686,11 +698,12 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
             final PhysicalLogFiles logFiles,
             final StartupStatisticsProvider startupStatistics,
             StorageEngine storageEngine,
-            LogicalTransactionStore logicalTransactionStore )
+            LogicalTransactionStore logicalTransactionStore,
+            TransactionLogIndex transactionLogIndex )
     {
         Recovery.SPI spi =
                 new DefaultRecoverySPI( storageEngine, logFiles, fileSystemAbstraction, tailScanner, transactionIdStore,
-                        logicalTransactionStore, positionMonitor );
+                        logicalTransactionStore, positionMonitor, transactionLogIndex );
         Recovery recovery = new Recovery( spi, recoveryMonitor );
         monitors.addMonitorListener( new Recovery.Monitor()
         {
@@ -737,7 +750,8 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
         KernelTransactions kernelTransactions = life.add( new KernelTransactions( statementLocksFactory,
                 constraintIndexCreator, statementOperationParts, schemaWriteGuard, transactionHeaderInformationFactory,
                 transactionCommitProcess, indexConfigStore, explicitIndexProviderLookup, hooks, transactionMonitor,
-                availabilityGuard, tracers, storageEngine, procedures, transactionIdStore, clock, accessCapability ) );
+                availabilityGuard, tracers, storageEngine, procedures, transactionIdStore, clock, accessCapability,
+                config.get( GraphDatabaseSettings.tx_state_memory_budget ), txStateSpillDirectory() ) );
 
         buildTransactionMonitor( kernelTransactions, clock, config );
 
@@ -752,6 +766,25 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
         return new NeoStoreKernelModule( transactionCommitProcess, kernel, kernelTransactions, fileListing );
     }
 
+    /**
+     * @return directory for transaction states to spill to, or {@code null} if they shouldn't spill. Spill files
+     * left there by a database which didn't shut down cleanly are deleted.
+     */
+    private File txStateSpillDirectory()
+    {
+        if ( !config.get( GraphDatabaseSettings.tx_state_spill_to_disk ) )
+        {
+            return null;
+        }
+        File directory = config.get( GraphDatabaseSettings.tx_state_spill_directory );
+        if ( directory == null )
+        {
+            directory = new File( storeDir, TX_STATE_SPILL_DIRECTORY );
+        }
+        TxState.deleteSpillFiles( fs, directory );
+        return directory;
+    }
+
     private void buildTransactionMonitor( KernelTransactions kernelTransactions, Clock clock, Config config )
     {
         KernelTransactionTimeoutMonitor kernelTransactionTimeoutMonitor =
@@ -898,7 +931,7 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
         // + Locking
         LockingStatementOperations lockingContext = new LockingStatementOperations( parts.entityReadOperations(),
                 parts.entityWriteOperations(), parts.schemaReadOperations(), parts.schemaWriteOperations(),
-                parts.schemaStateOperations() );
+                parts.schemaStateOperations(), config.get( GraphDatabaseSettings.relationship_group_locking ) );
         parts = parts.override( null, null, null, lockingContext, lockingContext, lockingContext, lockingContext,
                 lockingContext, null, null, null, null );
 
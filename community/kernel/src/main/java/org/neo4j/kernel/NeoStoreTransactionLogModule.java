@@ -24,6 +24,7 @@ import org.neo4j.kernel.impl.transaction.log.LogFileInformation;
 import org.neo4j.kernel.impl.transaction.log.LogicalTransactionStore;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFiles;
 import org.neo4j.kernel.impl.transaction.log.TransactionAppender;
+import org.neo4j.kernel.impl.transaction.log.TransactionLogIndex;
 import org.neo4j.kernel.impl.transaction.log.checkpoint.CheckPointer;
 import org.neo4j.kernel.impl.transaction.log.checkpoint.CheckPointerImpl;
 import org.neo4j.kernel.impl.transaction.log.rotation.LogRotation;
@@ -40,11 +41,13 @@ class NeoStoreTransactionLogModule
     private final CheckPointerImpl checkPointer;
     private final TransactionAppender appender;
     private final SynchronizedArrayIdOrderingQueue explicitIndexTransactionOrdering;
+    private final TransactionLogIndex transactionLogIndex;
 
     NeoStoreTransactionLogModule( LogicalTransactionStore logicalTransactionStore,
             LogFileInformation logFileInformation, PhysicalLogFiles logFiles, LogFile logFile, LogRotation logRotation,
             CheckPointerImpl checkPointer, TransactionAppender appender,
-            SynchronizedArrayIdOrderingQueue explicitIndexTransactionOrdering )
+            SynchronizedArrayIdOrderingQueue explicitIndexTransactionOrdering,
+            TransactionLogIndex transactionLogIndex )
     {
         this.logicalTransactionStore = logicalTransactionStore;
         this.logFileInformation = logFileInformation;
@@ -54,6 +57,7 @@ class NeoStoreTransactionLogModule
         this.checkPointer = checkPointer;
         this.appender = appender;
         this.explicitIndexTransactionOrdering = explicitIndexTransactionOrdering;
+        this.transactionLogIndex = transactionLogIndex;
     }
 
     public LogicalTransactionStore logicalTransactionStore()
@@ -71,6 +75,11 @@ class NeoStoreTransactionLogModule
         return appender;
     }
 
+    TransactionLogIndex transactionLogIndex()
+    {
+        return transactionLogIndex;
+    }
+
     public void satisfyDependencies( Dependencies dependencies )
     {
         dependencies.satisfyDependencies( checkPointer,
@@ -79,6 +88,7 @@ class NeoStoreTransactionLogModule
                                           logFiles, explicitIndexTransactionOrdering,
                                           logicalTransactionStore,
                                           logRotation,
-                                          appender );
+                                          appender,
+                                          transactionLogIndex );
     }
 }
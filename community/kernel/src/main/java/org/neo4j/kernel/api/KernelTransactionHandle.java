@@ -109,4 +109,10 @@ public interface KernelTransactionHandle
      * @return the lock requests granted for this transaction.
      */
     Stream<? extends ActiveLock> activeLocks();
+
+    /**
+     * @return estimated number of bytes used for the transaction state of the underlying transaction, at the time
+     * this handle was created.
+     */
+    long transactionStateMemoryUsage();
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.api.exceptions;
+
+import static java.lang.String.format;
+
+/**
+ * Thrown when a transaction reads a snapshot of the store that is older than the window of record versions kept
+ * for snapshot reads, or reads a record changed since the snapshot whose prior version isn't kept, see
+ * {@link org.neo4j.kernel.impl.store.RecordVersions}. This is a runtime exception since it can be thrown from any
+ * read of a record.
+ */
+public class SnapshotTooOldException extends RuntimeException implements Status.HasStatus
+{
+    public SnapshotTooOldException( long snapshot, long oldestRetainedSnapshot )
+    {
+        super( format( "Transaction reads the store as of transaction %d, but record versions are only kept for " +
+                "transactions after %d", snapshot, oldestRetainedSnapshot ) );
+    }
+
+    public SnapshotTooOldException( long snapshot, String changedRecord, long changedBy )
+    {
+        super( format( "Transaction reads the store as of transaction %d, but %s has been changed by transaction %d " +
+                "since and its prior version is not kept", snapshot, changedRecord, changedBy ) );
+    }
+
+    @Override
+    public Status status()
+    {
+        return Status.Transaction.SnapshotTooOld;
+    }
+}
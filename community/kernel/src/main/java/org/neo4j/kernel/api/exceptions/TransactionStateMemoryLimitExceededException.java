@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.api.exceptions;
+
+import static java.lang.String.format;
+
+/**
+ * Thrown when the changes recorded in a transaction state grow beyond its memory budget. This is a runtime
+ * exception since it can be thrown from any of the mutating methods of
+ * {@link org.neo4j.kernel.api.txstate.TransactionState}.
+ */
+public class TransactionStateMemoryLimitExceededException extends RuntimeException implements Status.HasStatus
+{
+    public TransactionStateMemoryLimitExceededException( long estimatedMemoryUsage, long memoryBudget )
+    {
+        super( format( "Transaction state is estimated to use %d bytes, which is more than its budget of %d bytes",
+                estimatedMemoryUsage, memoryBudget ) );
+    }
+
+    @Override
+    public Status status()
+    {
+        return Status.Transaction.TransactionStateMemoryLimitReached;
+    }
+}
@@ -92,4 +92,17 @@ public interface TransactionState extends ReadableTransactionState
     boolean constraintDoUnRemove( ConstraintDescriptor constraint );
 
     void indexDoUpdateEntry( LabelSchemaDescriptor descriptor, long nodeId, ValueTuple before, ValueTuple after );
+
+    // MEMORY
+
+    /**
+     * @return an estimate of the number of bytes used for recording the changes made in this transaction so far.
+     */
+    long estimatedMemoryUsage();
+
+    /**
+     * Releases resources held outside of the heap by this transaction state, such as spill files. The transaction
+     * state must not be used after this.
+     */
+    void close();
 }
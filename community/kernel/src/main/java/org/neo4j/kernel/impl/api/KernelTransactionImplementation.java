@@ -19,6 +19,7 @@
  */
 package org.neo4j.kernel.impl.api;
 
+import java.io.File;
 import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -107,6 +108,8 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
     private final PageCursorTracerSupplier cursorTracerSupplier;
     private final StoreReadLayer storeLayer;
     private final Clock clock;
+    private final long txStateMemoryBudget;
+    private final File txStateSpillDirectory;
 
     // State that needs to be reset between uses. Most of these should be cleared or released in #release(),
     // whereas others, such as timestamp or txId when transaction starts, even locks, needs to be set in #initialize().
@@ -161,6 +164,30 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
                                             PageCursorTracerSupplier cursorTracerSupplier,
                                             StorageEngine storageEngine,
                                             AccessCapability accessCapability )
+    {
+        this( statementOperations, schemaWriteGuard, hooks, constraintIndexCreator, procedures,
+                headerInformationFactory, commitProcess, transactionMonitor, explicitIndexTxStateSupplier, pool, clock,
+                transactionTracer, lockTracer, cursorTracerSupplier, storageEngine, accessCapability, 0, null );
+    }
+
+    public KernelTransactionImplementation( StatementOperationParts statementOperations,
+                                            SchemaWriteGuard schemaWriteGuard,
+                                            TransactionHooks hooks,
+                                            ConstraintIndexCreator constraintIndexCreator,
+                                            Procedures procedures,
+                                            TransactionHeaderInformationFactory headerInformationFactory,
+                                            TransactionCommitProcess commitProcess,
+                                            TransactionMonitor transactionMonitor,
+                                            Supplier<ExplicitIndexTransactionState> explicitIndexTxStateSupplier,
+                                            Pool<KernelTransactionImplementation> pool,
+                                            Clock clock,
+                                            TransactionTracer transactionTracer,
+                                            LockTracer lockTracer,
+                                            PageCursorTracerSupplier cursorTracerSupplier,
+                                            StorageEngine storageEngine,
+                                            AccessCapability accessCapability,
+                                            long txStateMemoryBudget,
+                                            File txStateSpillDirectory )
     {
         this.statementOperations = statementOperations;
         this.schemaWriteGuard = schemaWriteGuard;
@@ -174,6 +201,8 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
         this.explicitIndexTxStateSupplier = explicitIndexTxStateSupplier;
         this.pool = pool;
         this.clock = clock;
+        this.txStateMemoryBudget = txStateMemoryBudget;
+        this.txStateSpillDirectory = txStateSpillDirectory;
         this.transactionTracer = transactionTracer;
         this.cursorTracerSupplier = cursorTracerSupplier;
         this.storageStatement = storeLayer.newStatement();
@@ -209,6 +238,8 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
         this.transactionId = NOT_COMMITTED_TRANSACTION_ID;
         this.commitTime = NOT_COMMITTED_TRANSACTION_COMMIT_TIME;
         this.currentStatement.initialize( statementLocks, cursorTracerSupplier.get() );
+        // Until it writes, the transaction reads the store as it was when it started
+        this.storageStatement.readSnapshot();
         return this;
     }
 
@@ -345,12 +376,14 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
     void upgradeToDataWrites() throws InvalidTransactionTypeKernelException
     {
         writeState = writeState.upgradeToDataWrites();
+        storageStatement.readLatest();
     }
 
     void upgradeToSchemaWrites() throws InvalidTransactionTypeKernelException
     {
         schemaWriteGuard.assertSchemaWritesAllowed();
         writeState = writeState.upgradeToSchemaWrites();
+        storageStatement.readLatest();
     }
 
     private void dropCreatedConstraintIndexes() throws TransactionFailureException
@@ -379,7 +412,7 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
         if ( txState == null )
         {
             transactionMonitor.upgradeToWriteTransaction();
-            txState = new TxState();
+            txState = new TxState( txStateMemoryBudget, txStateSpillDirectory );
         }
         return txState;
     }
@@ -716,7 +749,11 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
             securityContext = null;
             transactionEvent = null;
             explicitIndexTransactionState = null;
-            txState = null;
+            if ( txState != null )
+            {
+                txState.close();
+                txState = null;
+            }
             hooksState = null;
             closeListeners.clear();
             reuseCount++;
@@ -822,6 +859,19 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
         return locks == null ? Stream.empty() : locks.activeLocks();
     }
 
+    /**
+     * This method will be invoked by concurrent threads for inspecting the size of the transaction state of this
+     * transaction. The returned value is only a best-effort snapshot.
+     *
+     * @return estimated number of bytes used for the transaction state of this transaction, or {@code 0} if it
+     * hasn't made any changes.
+     */
+    public long transactionStateMemoryUsage()
+    {
+        TransactionState state = this.txState;
+        return state == null ? 0 : state.estimatedMemoryUsage();
+    }
+
     /**
      * It is not allowed for the same transaction to perform database writes as well as schema writes.
      * This enum tracks the current write transactionStatus of the transaction, allowing it to transition from
@@ -46,6 +46,7 @@ class KernelTransactionImplementationHandle implements KernelTransactionHandle
     private final SecurityContext securityContext;
     private final Optional<Status> terminationReason;
     private final ExecutingQueryList executingQueries;
+    private final long transactionStateMemoryUsage;
 
     KernelTransactionImplementationHandle( KernelTransactionImplementation tx )
     {
@@ -57,6 +58,7 @@ class KernelTransactionImplementationHandle implements KernelTransactionHandle
         this.securityContext = tx.securityContext();
         this.terminationReason = tx.getReasonIfTerminated();
         this.executingQueries = tx.executingQueries();
+        this.transactionStateMemoryUsage = tx.transactionStateMemoryUsage();
         this.tx = tx;
     }
 
@@ -126,6 +128,12 @@ class KernelTransactionImplementationHandle implements KernelTransactionHandle
         return tx.activeLocks();
     }
 
+    @Override
+    public long transactionStateMemoryUsage()
+    {
+        return transactionStateMemoryUsage;
+    }
+
     @Override
     public boolean equals( Object o )
     {
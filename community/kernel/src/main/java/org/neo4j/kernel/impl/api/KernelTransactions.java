@@ -19,6 +19,7 @@
  */
 package org.neo4j.kernel.impl.api;
 
+import java.io.File;
 import java.time.Clock;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -81,6 +82,8 @@ public class KernelTransactions extends LifecycleAdapter implements Supplier<Ker
     private final AccessCapability accessCapability;
     private final Supplier<ExplicitIndexTransactionState> explicitIndexTxStateSupplier;
     private final Clock clock;
+    private final long txStateMemoryBudget;
+    private final File txStateSpillDirectory;
     private final ReentrantReadWriteLock newTransactionsLock = new ReentrantReadWriteLock();
 
     /**
@@ -127,6 +130,30 @@ public class KernelTransactions extends LifecycleAdapter implements Supplier<Ker
                                Procedures procedures,
                                TransactionIdStore transactionIdStore,
                                Clock clock, AccessCapability accessCapability )
+    {
+        this( statementLocksFactory, constraintIndexCreator, statementOperations, schemaWriteGuard, txHeaderFactory,
+                transactionCommitProcess, indexConfigStore, explicitIndexProviderLookup, hooks, transactionMonitor,
+                availabilityGuard, tracers, storageEngine, procedures, transactionIdStore, clock, accessCapability,
+                0, null );
+    }
+
+    public KernelTransactions( StatementLocksFactory statementLocksFactory,
+                               ConstraintIndexCreator constraintIndexCreator,
+                               StatementOperationParts statementOperations,
+                               SchemaWriteGuard schemaWriteGuard,
+                               TransactionHeaderInformationFactory txHeaderFactory,
+                               TransactionCommitProcess transactionCommitProcess,
+                               IndexConfigStore indexConfigStore,
+                               ExplicitIndexProviderLookup explicitIndexProviderLookup,
+                               TransactionHooks hooks,
+                               TransactionMonitor transactionMonitor,
+                               AvailabilityGuard availabilityGuard,
+                               Tracers tracers,
+                               StorageEngine storageEngine,
+                               Procedures procedures,
+                               TransactionIdStore transactionIdStore,
+                               Clock clock, AccessCapability accessCapability,
+                               long txStateMemoryBudget, File txStateSpillDirectory )
     {
         this.statementLocksFactory = statementLocksFactory;
         this.constraintIndexCreator = constraintIndexCreator;
@@ -145,6 +172,8 @@ public class KernelTransactions extends LifecycleAdapter implements Supplier<Ker
         this.explicitIndexTxStateSupplier = () -> new CachingExplicitIndexTransactionState(
                 new ExplicitIndexTransactionStateImpl( indexConfigStore, explicitIndexProviderLookup ) );
         this.clock = clock;
+        this.txStateMemoryBudget = txStateMemoryBudget;
+        this.txStateSpillDirectory = txStateSpillDirectory;
         blockNewTransactions();
     }
 
@@ -327,7 +356,8 @@ public class KernelTransactions extends LifecycleAdapter implements Supplier<Ker
                             constraintIndexCreator, procedures, transactionHeaderInformationFactory,
                             transactionCommitProcess, transactionMonitor, explicitIndexTxStateSupplier, localTxPool,
                             clock, tracers.transactionTracer, tracers.lockTracer, tracers.pageCursorTracerSupplier,
-                            storageEngine, accessCapability );
+                            storageEngine, accessCapability, txStateMemoryBudget,
+                            txStateSpillDirectory );
             this.transactions.add( tx );
             return tx;
         }
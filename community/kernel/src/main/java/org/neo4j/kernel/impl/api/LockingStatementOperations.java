@@ -24,6 +24,7 @@ import org.apache.commons.lang3.mutable.MutableInt;
 import java.util.Iterator;
 import java.util.function.Function;
 
+import org.neo4j.cursor.Cursor;
 import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.kernel.api.Statement;
 import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
@@ -56,6 +57,7 @@ import org.neo4j.kernel.impl.api.operations.SchemaReadOperations;
 import org.neo4j.kernel.impl.api.operations.SchemaStateOperations;
 import org.neo4j.kernel.impl.api.operations.SchemaWriteOperations;
 import org.neo4j.kernel.impl.locking.ResourceTypes;
+import org.neo4j.storageengine.api.NodeItem;
 import org.neo4j.storageengine.api.lock.ResourceType;
 import org.neo4j.storageengine.api.schema.PopulationProgress;
 import org.neo4j.values.storable.Value;
@@ -75,6 +77,7 @@ public class LockingStatementOperations implements
     private final SchemaReadOperations schemaReadDelegate;
     private final SchemaWriteOperations schemaWriteDelegate;
     private final SchemaStateOperations schemaStateDelegate;
+    private final boolean relationshipGroupLocking;
 
     public LockingStatementOperations(
             EntityReadOperations entityReadDelegate,
@@ -83,6 +86,23 @@ public class LockingStatementOperations implements
             SchemaWriteOperations schemaWriteDelegate,
             SchemaStateOperations schemaStateDelegate )
     {
+        this( entityReadDelegate, entityWriteDelegate, schemaReadDelegate, schemaWriteDelegate, schemaStateDelegate,
+                false );
+    }
+
+    /**
+     * @param relationshipGroupLocking whether or not to only take shared locks on dense nodes when creating
+     * relationships, leaving it to the storage engine to lock the relationship groups it changes.
+     */
+    public LockingStatementOperations(
+            EntityReadOperations entityReadDelegate,
+            EntityWriteOperations entityWriteDelegate,
+            SchemaReadOperations schemaReadDelegate,
+            SchemaWriteOperations schemaWriteDelegate,
+            SchemaStateOperations schemaStateDelegate,
+            boolean relationshipGroupLocking )
+    {
+        this.relationshipGroupLocking = relationshipGroupLocking;
         this.entityReadDelegate = entityReadDelegate;
         this.entityWriteDelegate = entityWriteDelegate;
         this.schemaReadDelegate = schemaReadDelegate;
@@ -283,7 +303,14 @@ public class LockingStatementOperations implements
             throws EntityNotFoundException
     {
         sharedRelationshipTypeLock( state, relationshipTypeId );
-        lockRelationshipNodes( state, startNodeId, endNodeId );
+        if ( relationshipGroupLocking )
+        {
+            lockRelationshipNodesForCreate( state, startNodeId, endNodeId );
+        }
+        else
+        {
+            lockRelationshipNodes( state, startNodeId, endNodeId );
+        }
         return entityWriteDelegate.relationshipCreate( state, relationshipTypeId, startNodeId, endNodeId );
     }
 
@@ -308,6 +335,45 @@ public class LockingStatementOperations implements
         }
     }
 
+    private void lockRelationshipNodesForCreate( KernelStatement state, long startNodeId, long endNodeId )
+            throws EntityNotFoundException
+    {
+        acquireNodeLockForRelationshipCreate( state, min( startNodeId, endNodeId ) );
+        if ( startNodeId != endNodeId )
+        {
+            acquireNodeLockForRelationshipCreate( state, max( startNodeId, endNodeId ) );
+        }
+    }
+
+    /**
+     * Adding a relationship to a dense node only changes the relationship group of its type, which the storage
+     * engine locks when preparing the transaction. So a shared lock is enough to keep the node from being deleted
+     * meanwhile, and lets other transactions add relationships to it concurrently. A node never goes back to being
+     * sparse once dense, so it doesn't matter that we look at it before locking it.
+     */
+    private void acquireNodeLockForRelationshipCreate( KernelStatement state, long nodeId )
+            throws EntityNotFoundException
+    {
+        if ( state.hasTxStateWithChanges() && state.txState().nodeIsAddedInThisTx( nodeId ) )
+        {
+            return;
+        }
+
+        boolean dense;
+        try ( Cursor<NodeItem> node = entityReadDelegate.nodeCursorById( state, nodeId ) )
+        {
+            dense = node.get().isDense();
+        }
+        if ( dense )
+        {
+            sharedOptimisticLock( state, ResourceTypes.NODE, nodeId );
+        }
+        else
+        {
+            exclusiveOptimisticLock( state, ResourceTypes.NODE, nodeId );
+        }
+    }
+
     @Override
     public NodeKeyConstraintDescriptor nodeKeyConstraintCreate( KernelStatement state, LabelSchemaDescriptor descriptor )
             throws CreateConstraintFailureException, AlreadyConstrainedException, AlreadyIndexedException,
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.neo4j.helpers.Exceptions;
+import org.neo4j.kernel.impl.locking.LockGroup;
+import org.neo4j.storageengine.api.CommandsToApply;
+
+/**
+ * Applies a batch of transactions through a primary {@link BatchTransactionApplier} on the calling thread, while
+ * each of a number of independent {@link BatchTransactionApplier}s is fed the same transactions as a stage of its
+ * own, running concurrently on the given {@link Executor}.
+ * <p>
+ * Every stage sees the transactions of the batch one at a time, in the order they were started, but stages don't
+ * wait for each other. This means that an independent applier must neither depend on the store changes
+ * made by the primary applier, nor on changes made by any other stage. Nor can it make use of the
+ * {@link LockGroup} of a transaction, since that may very well be released before the stage gets to it.
+ * <p>
+ * {@link #close()} waits for all stages to complete, so once it returns the whole batch has been applied, just as
+ * with a {@link BatchTransactionApplierFacade}. If a stage fails, subsequent transactions in that stage are skipped
+ * and the failure is thrown from {@link #close()}, or from the next {@link #startTx(CommandsToApply) started}
+ * transaction, whichever comes first.
+ */
+public class PipelinedBatchTransactionApplier implements BatchTransactionApplier
+{
+    private final BatchTransactionApplier primary;
+    private final Stage[] stages;
+
+    public PipelinedBatchTransactionApplier( Executor executor, BatchTransactionApplier primary,
+            BatchTransactionApplier... independentAppliers )
+    {
+        this.primary = primary;
+        this.stages = new Stage[independentAppliers.length];
+        for ( int i = 0; i < independentAppliers.length; i++ )
+        {
+            stages[i] = new Stage( independentAppliers[i], executor );
+        }
+    }
+
+    @Override
+    public TransactionApplier startTx( CommandsToApply transaction ) throws IOException
+    {
+        queueInStages( transaction );
+        return primary.startTx( transaction );
+    }
+
+    @Override
+    public TransactionApplier startTx( CommandsToApply transaction, LockGroup lockGroup ) throws IOException
+    {
+        queueInStages( transaction );
+        return primary.startTx( transaction, lockGroup );
+    }
+
+    private void queueInStages( CommandsToApply transaction ) throws IOException
+    {
+        for ( Stage stage : stages )
+        {
+            stage.assertNotFailed();
+            stage.queue( transaction );
+        }
+    }
+
+    @Override
+    public void close() throws Exception
+    {
+        Throwable failure = null;
+        // Same reverse order as BatchTransactionApplierFacade, stages first since they came last
+        for ( int i = stages.length; i-- > 0; )
+        {
+            try
+            {
+                stages[i].awaitAndClose();
+            }
+            catch ( Throwable t )
+            {
+                failure = Exceptions.chain( failure, t );
+            }
+        }
+        try
+        {
+            primary.close();
+        }
+        catch ( Throwable t )
+        {
+            failure = Exceptions.chain( failure, t );
+        }
+
+        if ( failure != null )
+        {
+            throw Exceptions.launderedException( Exception.class, failure );
+        }
+    }
+
+    /**
+     * Serial, but asynchronous, application of transactions through one {@link BatchTransactionApplier}.
+     * Only ever accessed by the thread applying the batch, each queued transaction is applied after
+     * the previous one has completed.
+     */
+    private static class Stage
+    {
+        private final BatchTransactionApplier applier;
+        private final Executor executor;
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture( null );
+
+        Stage( BatchTransactionApplier applier, Executor executor )
+        {
+            this.applier = applier;
+            this.executor = executor;
+        }
+
+        void queue( CommandsToApply transaction )
+        {
+            tail = tail.thenRunAsync( () -> apply( transaction ), executor );
+        }
+
+        void assertNotFailed() throws IOException
+        {
+            if ( tail.isCompletedExceptionally() )
+            {
+                try
+                {
+                    tail.join();
+                }
+                catch ( CompletionException e )
+                {
+                    throw new IOException( "Concurrent transaction application failed", e.getCause() );
+                }
+            }
+        }
+
+        void awaitAndClose() throws Exception
+        {
+            try
+            {
+                tail.join();
+            }
+            catch ( CompletionException e )
+            {
+                // Close the applier anyway, to release resources it may hold on to
+                try
+                {
+                    applier.close();
+                }
+                catch ( Throwable t )
+                {
+                    e.getCause().addSuppressed( t );
+                }
+                throw Exceptions.launderedException( Exception.class, e.getCause() );
+            }
+            applier.close();
+        }
+
+        private void apply( CommandsToApply transaction )
+        {
+            try ( TransactionApplier txApplier = applier.startTx( transaction ) )
+            {
+                transaction.accept( txApplier );
+            }
+            catch ( Exception e )
+            {
+                throw new CompletionException( e );
+            }
+        }
+    }
+}
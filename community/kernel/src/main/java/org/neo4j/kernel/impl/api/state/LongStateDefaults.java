@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.state;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongCollections;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
+import org.neo4j.helpers.collection.Iterables;
+
+/**
+ * Variant of {@link StateDefaults} for state keyed by entity id, such as node and relationship state. Uses a
+ * {@link PrimitiveLongObjectMap} so that large transactions don't pay for a boxed {@link Long} key and a hash map
+ * entry per changed entity.
+ *
+ * @param <RO> The read-only version of the value type stored in the state
+ * @param <RW> The read/write version of the value type stored in the state
+ */
+abstract class LongStateDefaults<RO, RW extends RO>
+{
+    final RO get( TxState state, long key )
+    {
+        PrimitiveLongObjectMap<RW> map = getMap( state );
+        if ( map == null )
+        {
+            return defaultValue();
+        }
+        RO value = map.get( key );
+        return value == null ? defaultValue() : value;
+    }
+
+    final RW getOrCreate( TxState state, long key )
+    {
+        PrimitiveLongObjectMap<RW> map = getMap( state );
+        if ( map == null )
+        {
+            setMap( state, map = Primitive.longObjectMap() );
+        }
+        RW value = map.get( key );
+        if ( value == null )
+        {
+            map.put( key, value = createValue( key, state ) );
+        }
+        return value;
+    }
+
+    final Iterable<RO> values( TxState state )
+    {
+        PrimitiveLongObjectMap<RW> map = getMap( state );
+        if ( map == null )
+        {
+            return Iterables.empty();
+        }
+        return () -> PrimitiveLongCollections.<RO>map( map::get, map.iterator() );
+    }
+
+    /** Implemented for the value holder - get the map from the state field. */
+    abstract PrimitiveLongObjectMap<RW> getMap( TxState state );
+
+    /** Implemented for the value holder - set the map to the state field. */
+    abstract void setMap( TxState state, PrimitiveLongObjectMap<RW> map );
+
+    /** Implemented for the value type - initializes state by creating a new instance. */
+    abstract RW createValue( long key, TxState state );
+
+    /** Implemented for the value type - returns a default read-only version of the value type. */
+    abstract RO defaultValue();
+}
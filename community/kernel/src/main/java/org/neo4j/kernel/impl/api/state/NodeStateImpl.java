@@ -177,6 +177,16 @@ public class NodeStateImpl extends PropertyContainerStateImpl implements NodeSta
         return intSet();
     }
 
+    /**
+     * @return whether or not this state can be moved out of memory by {@link SpilledNodeStates}, which only keeps
+     * label and property changes.
+     */
+    boolean isSpillable()
+    {
+        return relationshipsAdded == null && relationshipsRemoved == null &&
+                (indexDiffs == null || indexDiffs.isEmpty());
+    }
+
     void addIndexDiff( DiffSets<Long> diff )
     {
         if ( indexDiffs == null )
@@ -232,10 +242,10 @@ public class NodeStateImpl extends PropertyContainerStateImpl implements NodeSta
             PrimitiveLongCollections.emptyIterator();
     }
 
-    public abstract static class Defaults extends StateDefaults<Long, NodeState, NodeStateImpl>
+    public abstract static class Defaults extends LongStateDefaults<NodeState, NodeStateImpl>
     {
         @Override
-        final NodeStateImpl createValue( Long id, TxState state )
+        final NodeStateImpl createValue( long id, TxState state )
         {
             return new NodeStateImpl( id, state );
         }
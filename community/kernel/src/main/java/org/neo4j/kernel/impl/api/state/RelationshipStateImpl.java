@@ -57,10 +57,10 @@ public class RelationshipStateImpl extends PropertyContainerStateImpl implements
         return false;
     }
 
-    public abstract static class Defaults extends StateDefaults<Long, RelationshipState, RelationshipStateImpl>
+    public abstract static class Defaults extends LongStateDefaults<RelationshipState, RelationshipStateImpl>
     {
         @Override
-        RelationshipStateImpl createValue( Long id, TxState state )
+        RelationshipStateImpl createValue( long id, TxState state )
         {
             return new RelationshipStateImpl( id );
         }
@@ -0,0 +1,601 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.state;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongLongMap;
+import org.neo4j.storageengine.api.StorageProperty;
+import org.neo4j.storageengine.api.txstate.NodeState;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Node states of a {@link TxState} that have been moved out of memory and into a temporary file, to keep the
+ * transaction state within its memory budget. Only the label and property changes of a node can be spilled, see
+ * {@link NodeStateImpl#isSpillable()}.
+ * <p>
+ * Spilled states are appended to the file and looked up through an off-heap map from node id to file position.
+ * A spilled state that is needed again for writing, or for reading a single node, is {@link #restore(long, TxState)
+ * restored}, i.e. read back and forgotten by this class, leaving a dead record in the file. At commit all spilled
+ * states are {@link #states(TxState) streamed} back in file order, without bringing them all into memory at once.
+ * <p>
+ * Not thread-safe, like the transaction state itself.
+ */
+final class SpilledNodeStates implements AutoCloseable
+{
+    static final String FILE_PREFIX = "neo4j-tx-state";
+    static final String FILE_SUFFIX = ".spill";
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private static final byte BOOLEAN = 1;
+    private static final byte BYTE = 2;
+    private static final byte SHORT = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte FLOAT = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte CHAR = 8;
+    private static final byte STRING = 9;
+    private static final byte BOOLEAN_ARRAY = 11;
+    private static final byte BYTE_ARRAY = 12;
+    private static final byte SHORT_ARRAY = 13;
+    private static final byte INT_ARRAY = 14;
+    private static final byte LONG_ARRAY = 15;
+    private static final byte FLOAT_ARRAY = 16;
+    private static final byte DOUBLE_ARRAY = 17;
+    private static final byte CHAR_ARRAY = 18;
+    private static final byte STRING_ARRAY = 19;
+
+    private final File directory;
+    private final PrimitiveLongLongMap positions = Primitive.offHeapLongLongMap( INITIAL_CAPACITY );
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream( recordBytes );
+    private FileChannel channel;
+    private long endPosition;
+
+    /**
+     * @param directory directory to create the spill file in, created if it doesn't exist.
+     */
+    SpilledNodeStates( File directory )
+    {
+        this.directory = directory;
+    }
+
+    boolean contains( long nodeId )
+    {
+        return positions.containsKey( nodeId );
+    }
+
+    int size()
+    {
+        return positions.size();
+    }
+
+    void spill( NodeStateImpl state )
+    {
+        try
+        {
+            recordBytes.reset();
+            record.writeInt( 0 ); // record length, filled in below
+            record.writeLong( state.getId() );
+            writeInts( state.labelDiffSets().getAdded().toArray( new Integer[0] ) );
+            writeInts( state.labelDiffSets().getRemoved().toArray( new Integer[0] ) );
+            writeProperties( state.addedProperties() );
+            writeProperties( state.changedProperties() );
+            int removedCount = 0;
+            for ( Iterator<Integer> removed = state.removedProperties(); removed.hasNext(); removed.next() )
+            {
+                removedCount++;
+            }
+            record.writeInt( removedCount );
+            for ( Iterator<Integer> removed = state.removedProperties(); removed.hasNext(); )
+            {
+                record.writeInt( removed.next() );
+            }
+            record.flush();
+
+            ByteBuffer buffer = ByteBuffer.wrap( recordBytes.toByteArray() );
+            buffer.putInt( 0, buffer.limit() );
+            FileChannel channel = channel();
+            long position = endPosition;
+            while ( buffer.hasRemaining() )
+            {
+                endPosition += channel.write( buffer, endPosition );
+            }
+            positions.put( state.getId(), position );
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( "Unable to spill state of node " + state.getId(), e );
+        }
+    }
+
+    /**
+     * Reads back the spilled state of the given node and forgets about it, the caller takes over ownership of it.
+     *
+     * @return the restored node state, or {@code null} if the state of the given node isn't spilled.
+     */
+    NodeStateImpl restore( long nodeId, TxState txState )
+    {
+        if ( !positions.containsKey( nodeId ) )
+        {
+            return null;
+        }
+        NodeStateImpl state = read( positions.remove( nodeId ), txState );
+        if ( positions.size() == 0 )
+        {
+            // Nothing left in the file, start over from the beginning of it
+            endPosition = 0;
+        }
+        return state;
+    }
+
+    /**
+     * @return all spilled node states, read one at a time in file order. The returned states are detached
+     * copies, only meant for reading.
+     */
+    Iterator<NodeState> states( TxState txState )
+    {
+        long[] filePositions = new long[positions.size()];
+        int[] count = new int[1];
+        positions.visitEntries( ( nodeId, position ) ->
+        {
+            filePositions[count[0]++] = position;
+            return false;
+        } );
+        Arrays.sort( filePositions );
+        return new Iterator<NodeState>()
+        {
+            private int next;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < filePositions.length;
+            }
+
+            @Override
+            public NodeState next()
+            {
+                if ( !hasNext() )
+                {
+                    throw new NoSuchElementException();
+                }
+                return read( filePositions[next++], txState );
+            }
+        };
+    }
+
+    @Override
+    public void close()
+    {
+        positions.close();
+        if ( channel != null )
+        {
+            try
+            {
+                channel.close();
+            }
+            catch ( IOException e )
+            {
+                throw new UncheckedIOException( "Unable to close transaction state spill file", e );
+            }
+            finally
+            {
+                channel = null;
+            }
+        }
+    }
+
+    private FileChannel channel() throws IOException
+    {
+        if ( channel == null )
+        {
+            directory.mkdirs();
+            File file = File.createTempFile( FILE_PREFIX, FILE_SUFFIX, directory );
+            channel = FileChannel.open( file.toPath(), READ, WRITE, DELETE_ON_CLOSE );
+        }
+        return channel;
+    }
+
+    private NodeStateImpl read( long position, TxState txState )
+    {
+        try
+        {
+            ByteBuffer lengthBuffer = ByteBuffer.allocate( Integer.BYTES );
+            readFully( lengthBuffer, position );
+            ByteBuffer buffer = ByteBuffer.allocate( lengthBuffer.getInt( 0 ) - Integer.BYTES );
+            readFully( buffer, position + Integer.BYTES );
+            DataInputStream in = new DataInputStream( new ByteArrayInputStream( buffer.array() ) );
+
+            NodeStateImpl state = new NodeStateImpl( in.readLong(), txState );
+            for ( int label : readInts( in ) )
+            {
+                state.getOrCreateLabelDiffSets().add( label );
+            }
+            for ( int label : readInts( in ) )
+            {
+                state.getOrCreateLabelDiffSets().remove( label );
+            }
+            // Added, changed and removed properties have distinct keys, so replaying them in reverse order
+            // ends up with the exact same state as the one that was spilled
+            int added = in.readInt();
+            int[] addedKeys = new int[added];
+            Value[] addedValues = new Value[added];
+            for ( int i = 0; i < added; i++ )
+            {
+                addedKeys[i] = in.readInt();
+                addedValues[i] = readValue( in );
+            }
+            int changed = in.readInt();
+            int[] changedKeys = new int[changed];
+            Value[] changedValues = new Value[changed];
+            for ( int i = 0; i < changed; i++ )
+            {
+                changedKeys[i] = in.readInt();
+                changedValues[i] = readValue( in );
+            }
+            for ( int removedKey : readInts( in ) )
+            {
+                state.removeProperty( removedKey, Values.NO_VALUE );
+            }
+            for ( int i = 0; i < changed; i++ )
+            {
+                state.changeProperty( changedKeys[i], changedValues[i] );
+            }
+            for ( int i = 0; i < added; i++ )
+            {
+                state.addProperty( addedKeys[i], addedValues[i] );
+            }
+            return state;
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( "Unable to read spilled node state at position " + position, e );
+        }
+    }
+
+    private void readFully( ByteBuffer buffer, long position ) throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            int read = channel.read( buffer, position + buffer.position() );
+            if ( read == -1 )
+            {
+                throw new IOException( "Unexpected end of transaction state spill file at " + position );
+            }
+        }
+    }
+
+    private void writeInts( Integer[] values ) throws IOException
+    {
+        record.writeInt( values.length );
+        for ( Integer value : values )
+        {
+            record.writeInt( value );
+        }
+    }
+
+    private static int[] readInts( DataInputStream in ) throws IOException
+    {
+        int[] values = new int[in.readInt()];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private void writeProperties( Iterator<StorageProperty> properties ) throws IOException
+    {
+        ByteArrayOutputStream propertyBytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( propertyBytes );
+        int count = 0;
+        while ( properties.hasNext() )
+        {
+            StorageProperty property = properties.next();
+            out.writeInt( property.propertyKeyId() );
+            writeValue( out, property.value() );
+            count++;
+        }
+        out.flush();
+        record.writeInt( count );
+        propertyBytes.writeTo( record );
+    }
+
+    static void writeValue( DataOutputStream out, Value value ) throws IOException
+    {
+        Object object = value.asObjectCopy();
+        if ( object instanceof Boolean )
+        {
+            out.writeByte( BOOLEAN );
+            out.writeBoolean( (Boolean) object );
+        }
+        else if ( object instanceof Byte )
+        {
+            out.writeByte( BYTE );
+            out.writeByte( (Byte) object );
+        }
+        else if ( object instanceof Short )
+        {
+            out.writeByte( SHORT );
+            out.writeShort( (Short) object );
+        }
+        else if ( object instanceof Integer )
+        {
+            out.writeByte( INT );
+            out.writeInt( (Integer) object );
+        }
+        else if ( object instanceof Long )
+        {
+            out.writeByte( LONG );
+            out.writeLong( (Long) object );
+        }
+        else if ( object instanceof Float )
+        {
+            out.writeByte( FLOAT );
+            out.writeFloat( (Float) object );
+        }
+        else if ( object instanceof Double )
+        {
+            out.writeByte( DOUBLE );
+            out.writeDouble( (Double) object );
+        }
+        else if ( object instanceof Character )
+        {
+            out.writeByte( CHAR );
+            out.writeChar( (Character) object );
+        }
+        else if ( object instanceof String )
+        {
+            out.writeByte( STRING );
+            writeString( out, (String) object );
+        }
+        else if ( object instanceof boolean[] )
+        {
+            boolean[] array = (boolean[]) object;
+            out.writeByte( BOOLEAN_ARRAY );
+            out.writeInt( array.length );
+            for ( boolean item : array )
+            {
+                out.writeBoolean( item );
+            }
+        }
+        else if ( object instanceof byte[] )
+        {
+            byte[] array = (byte[]) object;
+            out.writeByte( BYTE_ARRAY );
+            out.writeInt( array.length );
+            out.write( array );
+        }
+        else if ( object instanceof short[] )
+        {
+            short[] array = (short[]) object;
+            out.writeByte( SHORT_ARRAY );
+            out.writeInt( array.length );
+            for ( short item : array )
+            {
+                out.writeShort( item );
+            }
+        }
+        else if ( object instanceof int[] )
+        {
+            int[] array = (int[]) object;
+            out.writeByte( INT_ARRAY );
+            out.writeInt( array.length );
+            for ( int item : array )
+            {
+                out.writeInt( item );
+            }
+        }
+        else if ( object instanceof long[] )
+        {
+            long[] array = (long[]) object;
+            out.writeByte( LONG_ARRAY );
+            out.writeInt( array.length );
+            for ( long item : array )
+            {
+                out.writeLong( item );
+            }
+        }
+        else if ( object instanceof float[] )
+        {
+            float[] array = (float[]) object;
+            out.writeByte( FLOAT_ARRAY );
+            out.writeInt( array.length );
+            for ( float item : array )
+            {
+                out.writeFloat( item );
+            }
+        }
+        else if ( object instanceof double[] )
+        {
+            double[] array = (double[]) object;
+            out.writeByte( DOUBLE_ARRAY );
+            out.writeInt( array.length );
+            for ( double item : array )
+            {
+                out.writeDouble( item );
+            }
+        }
+        else if ( object instanceof char[] )
+        {
+            char[] array = (char[]) object;
+            out.writeByte( CHAR_ARRAY );
+            out.writeInt( array.length );
+            for ( char item : array )
+            {
+                out.writeChar( item );
+            }
+        }
+        else if ( object instanceof String[] )
+        {
+            String[] array = (String[]) object;
+            out.writeByte( STRING_ARRAY );
+            out.writeInt( array.length );
+            for ( String item : array )
+            {
+                writeString( out, item );
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Unable to spill value " + value );
+        }
+    }
+
+    static Value readValue( DataInputStream in ) throws IOException
+    {
+        byte type = in.readByte();
+        switch ( type )
+        {
+        case BOOLEAN:
+            return Values.booleanValue( in.readBoolean() );
+        case BYTE:
+            return Values.byteValue( in.readByte() );
+        case SHORT:
+            return Values.shortValue( in.readShort() );
+        case INT:
+            return Values.intValue( in.readInt() );
+        case LONG:
+            return Values.longValue( in.readLong() );
+        case FLOAT:
+            return Values.floatValue( in.readFloat() );
+        case DOUBLE:
+            return Values.doubleValue( in.readDouble() );
+        case CHAR:
+            return Values.charValue( in.readChar() );
+        case STRING:
+            return Values.stringValue( readString( in ) );
+        case BOOLEAN_ARRAY:
+        {
+            boolean[] array = new boolean[in.readInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = in.readBoolean();
+            }
+            return Values.booleanArray( array );
+        }
+        case BYTE_ARRAY:
+        {
+            byte[] array = new byte[in.readInt()];
+            in.readFully( array );
+            return Values.byteArray( array );
+        }
+        case SHORT_ARRAY:
+        {
+            short[] array = new short[in.readInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = in.readShort();
+            }
+            return Values.shortArray( array );
+        }
+        case INT_ARRAY:
+        {
+            int[] array = new int[in.readInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = in.readInt();
+            }
+            return Values.intArray( array );
+        }
+        case LONG_ARRAY:
+        {
+            long[] array = new long[in.readInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = in.readLong();
+            }
+            return Values.longArray( array );
+        }
+        case FLOAT_ARRAY:
+        {
+            float[] array = new float[in.readInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = in.readFloat();
+            }
+            return Values.floatArray( array );
+        }
+        case DOUBLE_ARRAY:
+        {
+            double[] array = new double[in.readInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = in.readDouble();
+            }
+            return Values.doubleArray( array );
+        }
+        case CHAR_ARRAY:
+        {
+            char[] array = new char[in.readInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = in.readChar();
+            }
+            return Values.charArray( array );
+        }
+        case STRING_ARRAY:
+        {
+            String[] array = new String[in.readInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = readString( in );
+            }
+            return Values.stringArray( array );
+        }
+        default:
+            throw new IOException( "Unknown spilled value type " + type );
+        }
+    }
+
+    private static void writeString( DataOutputStream out, String string ) throws IOException
+    {
+        byte[] bytes = string.getBytes( UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    private static String readString( DataInputStream in ) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return new String( bytes, UTF_8 );
+    }
+}
@@ -19,9 +19,12 @@
  */
 package org.neo4j.kernel.impl.api.state;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -30,9 +33,12 @@ import java.util.function.Consumer;
 import org.neo4j.collection.primitive.Primitive;
 import org.neo4j.collection.primitive.PrimitiveIntSet;
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
 import org.neo4j.collection.primitive.PrimitiveLongSet;
 import org.neo4j.cursor.Cursor;
 import org.neo4j.helpers.collection.Iterables;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.kernel.api.exceptions.TransactionStateMemoryLimitExceededException;
 import org.neo4j.kernel.api.exceptions.schema.ConstraintValidationException;
 import org.neo4j.kernel.api.exceptions.schema.CreateConstraintFailureException;
 import org.neo4j.kernel.api.schema.LabelSchemaDescriptor;
@@ -66,6 +72,7 @@ import org.neo4j.storageengine.api.txstate.ReadableRelationshipDiffSets;
 import org.neo4j.storageengine.api.txstate.ReadableTransactionState;
 import org.neo4j.storageengine.api.txstate.RelationshipState;
 import org.neo4j.storageengine.api.txstate.TxStateVisitor;
+import org.neo4j.values.storable.ArrayValue;
 import org.neo4j.values.storable.TextValue;
 import org.neo4j.values.storable.Value;
 import org.neo4j.values.storable.ValueTuple;
@@ -87,6 +94,16 @@ import static org.neo4j.helpers.collection.Iterables.map;
  */
 public final class TxState implements TransactionState, RelationshipVisitor.Home
 {
+    // Rough per-change costs, in bytes, of the on-heap representation of the changes, used for estimating
+    // the memory usage of a transaction state. Entity changes are boxed ids in diff sets, entity states
+    // are state objects with their map entry, and so on.
+    private static final long ENTITY_CHANGE_SIZE = 64;
+    private static final long RELATIONSHIP_CHANGE_SIZE = 2 * ENTITY_CHANGE_SIZE;
+    private static final long ENTITY_STATE_SIZE = 96;
+    private static final long LABEL_CHANGE_SIZE = 2 * ENTITY_CHANGE_SIZE;
+    private static final long PROPERTY_CHANGE_SIZE = 80;
+    private static final long VALUE_SIZE = 24;
+
     private Map<Integer/*Label ID*/, LabelState.Mutable> labelStatesMap;
     private static final LabelState.Defaults LABEL_STATE = new LabelState.Defaults()
     {
@@ -102,32 +119,32 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
             state.labelStatesMap = map;
         }
     };
-    private Map<Long/*Node ID*/, NodeStateImpl> nodeStatesMap;
+    private PrimitiveLongObjectMap<NodeStateImpl> nodeStatesMap;
     private static final NodeStateImpl.Defaults NODE_STATE = new NodeStateImpl.Defaults()
     {
         @Override
-        Map<Long, NodeStateImpl> getMap( TxState state )
+        PrimitiveLongObjectMap<NodeStateImpl> getMap( TxState state )
         {
             return state.nodeStatesMap;
         }
 
         @Override
-        void setMap( TxState state, Map<Long, NodeStateImpl> map )
+        void setMap( TxState state, PrimitiveLongObjectMap<NodeStateImpl> map )
         {
             state.nodeStatesMap = map;
         }
     };
-    private Map<Long/*Relationship ID*/, RelationshipStateImpl> relationshipStatesMap;
+    private PrimitiveLongObjectMap<RelationshipStateImpl> relationshipStatesMap;
     private static final RelationshipStateImpl.Defaults RELATIONSHIP_STATE = new RelationshipStateImpl.Defaults()
     {
         @Override
-        Map<Long, RelationshipStateImpl> getMap( TxState state )
+        PrimitiveLongObjectMap<RelationshipStateImpl> getMap( TxState state )
         {
             return state.relationshipStatesMap;
         }
 
         @Override
-        void setMap( TxState state, Map<Long, RelationshipStateImpl> map )
+        void setMap( TxState state, PrimitiveLongObjectMap<RelationshipStateImpl> map )
         {
             state.relationshipStatesMap = map;
         }
@@ -141,8 +158,6 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     private DiffSets<IndexDescriptor> indexChanges;
     private DiffSets<ConstraintDescriptor> constraintsChanges;
 
-    private PropertyChanges propertyChangesForNodes;
-
     // Tracks added and removed nodes, not modified nodes
     private DiffSets<Long> nodes;
 
@@ -170,8 +185,30 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     private boolean hasChanges;
     private boolean hasDataChanges;
 
+    private final long memoryBudget;
+    private final File spillDirectory;
+    private long estimatedMemoryUsage;
+    private SpilledNodeStates spilledNodeStates;
+    // The node state last handed out for writing, which must not be spilled before the write has been made
+    private long pinnedNodeId = -1;
+
     public TxState()
     {
+        this( 0, null );
+    }
+
+    /**
+     * @param memoryBudget maximum number of bytes this transaction state may use for recording changes, as
+     * estimated by {@link #estimatedMemoryUsage()}, or {@code 0} for no limit. Changes that make the transaction
+     * state grow beyond its budget will fail with {@link TransactionStateMemoryLimitExceededException}.
+     * @param spillDirectory directory to move node states out to, in a temporary file, when the budget is reached,
+     * before failing, or {@code null} to not move them out. Only the label and property changes of nodes without
+     * relationship changes can be spilled.
+     */
+    public TxState( long memoryBudget, File spillDirectory )
+    {
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
         singleNodeCursor = new InstanceCache<TxSingleNodeCursor>()
         {
             @Override
@@ -426,7 +463,11 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public Iterable<NodeState> modifiedNodes()
     {
-        return NODE_STATE.values( this );
+        if ( spilledNodeStates == null || spilledNodeStates.size() == 0 )
+        {
+            return NODE_STATE.values( this );
+        }
+        return Iterables.concat( NODE_STATE.values( this ), () -> spilledNodeStates.states( this ) );
     }
 
     private DiffSets<Long> getOrCreateLabelStateNodeDiffSets( int labelId )
@@ -437,7 +478,7 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public ReadableDiffSets<Integer> nodeStateLabelDiffSets( long nodeId )
     {
-        return NODE_STATE.get( this, nodeId ).labelDiffSets();
+        return readNodeState( nodeId ).labelDiffSets();
     }
 
     private DiffSets<Integer> getOrCreateNodeStateLabelDiffSets( long nodeId )
@@ -478,9 +519,160 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
         hasDataChanges = true;
     }
 
+    /**
+     * Adds {@code bytes} to the estimated memory usage of this transaction state. The estimate only shrinks when
+     * node states are spilled to disk, i.e. it doesn't account for changes cancelling each other out, and it is
+     * meant to give the order of magnitude of what the on-heap representation of the changes costs, not an
+     * exact number.
+     */
+    private void allocated( long bytes )
+    {
+        estimatedMemoryUsage += bytes;
+        if ( memoryBudget > 0 && estimatedMemoryUsage > memoryBudget )
+        {
+            if ( spillDirectory != null )
+            {
+                spillNodeStates();
+            }
+            if ( estimatedMemoryUsage > memoryBudget )
+            {
+                // The change is refused, so it mustn't count towards the estimate of the changes already recorded
+                long requested = estimatedMemoryUsage;
+                estimatedMemoryUsage -= bytes;
+                throw new TransactionStateMemoryLimitExceededException( requested, memoryBudget );
+            }
+        }
+    }
+
+    private void spillNodeStates()
+    {
+        if ( nodeStatesMap == null )
+        {
+            return;
+        }
+        List<NodeStateImpl> spillable = new ArrayList<>();
+        nodeStatesMap.visitEntries( ( nodeId, nodeState ) ->
+        {
+            if ( nodeId != pinnedNodeId && nodeState.isSpillable() )
+            {
+                spillable.add( nodeState );
+            }
+            return false;
+        } );
+        if ( spillable.isEmpty() )
+        {
+            return;
+        }
+        if ( spilledNodeStates == null )
+        {
+            spilledNodeStates = new SpilledNodeStates( spillDirectory );
+        }
+        for ( NodeStateImpl nodeState : spillable )
+        {
+            spilledNodeStates.spill( nodeState );
+            nodeStatesMap.remove( nodeState.getId() );
+            estimatedMemoryUsage -= estimatedSize( nodeState );
+        }
+    }
+
+    /**
+     * Brings the state of the given node back into memory, if it has been spilled to disk.
+     *
+     * @return {@code true} if the node state was restored, otherwise {@code false}.
+     */
+    private boolean restoreSpilledNodeState( long nodeId )
+    {
+        if ( spilledNodeStates == null )
+        {
+            return false;
+        }
+        NodeStateImpl nodeState = spilledNodeStates.restore( nodeId, this );
+        if ( nodeState == null )
+        {
+            return false;
+        }
+        if ( nodeStatesMap == null )
+        {
+            nodeStatesMap = Primitive.longObjectMap();
+        }
+        nodeStatesMap.put( nodeId, nodeState );
+        // Restoring doesn't trigger spilling, since the caller is about to use the restored state
+        estimatedMemoryUsage += estimatedSize( nodeState );
+        return true;
+    }
+
+    private NodeState readNodeState( long nodeId )
+    {
+        restoreSpilledNodeState( nodeId );
+        return NODE_STATE.get( this, nodeId );
+    }
+
+    private static long estimatedSize( NodeStateImpl nodeState )
+    {
+        long size = ENTITY_STATE_SIZE;
+        ReadableDiffSets<Integer> labels = nodeState.labelDiffSets();
+        size += (labels.getAdded().size() + labels.getRemoved().size()) * ENTITY_CHANGE_SIZE;
+        for ( Iterator<StorageProperty> properties = nodeState.addedAndChangedProperties(); properties.hasNext(); )
+        {
+            size += PROPERTY_CHANGE_SIZE + estimatedSize( properties.next().value() );
+        }
+        for ( Iterator<Integer> properties = nodeState.removedProperties(); properties.hasNext(); properties.next() )
+        {
+            size += PROPERTY_CHANGE_SIZE;
+        }
+        return size;
+    }
+
+    private static long estimatedSize( Value value )
+    {
+        if ( value instanceof TextValue )
+        {
+            return VALUE_SIZE + 2L * ((TextValue) value).length();
+        }
+        if ( value instanceof ArrayValue )
+        {
+            return VALUE_SIZE + 8L * ((ArrayValue) value).length();
+        }
+        return VALUE_SIZE;
+    }
+
+    @Override
+    public long estimatedMemoryUsage()
+    {
+        return estimatedMemoryUsage;
+    }
+
+    @Override
+    public void close()
+    {
+        if ( spilledNodeStates != null )
+        {
+            spilledNodeStates.close();
+            spilledNodeStates = null;
+        }
+    }
+
+    /**
+     * Deletes spill files left in the given directory by transaction states that were never closed, i.e. by a
+     * database which didn't shut down cleanly. Must not be called while there are transactions spilling to it.
+     */
+    public static void deleteSpillFiles( FileSystemAbstraction fs, File spillDirectory )
+    {
+        File[] files = fs.listFiles( spillDirectory, ( directory, name ) ->
+                name.startsWith( SpilledNodeStates.FILE_PREFIX ) && name.endsWith( SpilledNodeStates.FILE_SUFFIX ) );
+        if ( files != null )
+        {
+            for ( File file : files )
+            {
+                fs.deleteFile( file );
+            }
+        }
+    }
+
     @Override
     public void nodeDoCreate( long id )
     {
+        allocated( ENTITY_CHANGE_SIZE );
         nodes().add( id );
         dataChanged();
     }
@@ -488,11 +680,13 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public void nodeDoDelete( long nodeId )
     {
+        allocated( ENTITY_CHANGE_SIZE );
         if ( nodes().remove( nodeId ) )
         {
             recordNodeDeleted( nodeId );
         }
 
+        restoreSpilledNodeState( nodeId );
         if ( nodeStatesMap != null )
         {
             NodeStateImpl nodeState = nodeStatesMap.remove( nodeId );
@@ -513,6 +707,7 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public void relationshipDoCreate( long id, int relationshipTypeId, long startNodeId, long endNodeId )
     {
+        allocated( RELATIONSHIP_CHANGE_SIZE );
         relationships().add( id );
 
         if ( startNodeId == endNodeId )
@@ -545,6 +740,7 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public void relationshipDoDelete( long id, int type, long startNodeId, long endNodeId )
     {
+        allocated( RELATIONSHIP_CHANGE_SIZE );
         if ( relationships().remove( id ) )
         {
             recordRelationshipDeleted( id );
@@ -587,17 +783,17 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public void nodeDoAddProperty( long nodeId, int newPropertyKeyId, Value value )
     {
+        allocated( PROPERTY_CHANGE_SIZE + estimatedSize( value ) );
         NodeStateImpl nodeState = getOrCreateNodeState( nodeId );
         nodeState.addProperty( newPropertyKeyId, value );
-        nodePropertyChanges().addProperty( nodeId, newPropertyKeyId, value );
         dataChanged();
     }
 
     @Override
     public void nodeDoChangeProperty( long nodeId, int propertyKeyId, Value replacedValue, Value newValue )
     {
+        allocated( PROPERTY_CHANGE_SIZE + estimatedSize( newValue ) );
         getOrCreateNodeState( nodeId ).changeProperty( propertyKeyId, newValue );
-        nodePropertyChanges().changeProperty( nodeId, propertyKeyId, replacedValue, newValue );
         dataChanged();
     }
 
@@ -605,6 +801,7 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     public void relationshipDoReplaceProperty( long relationshipId, int propertyKeyId, Value replacedValue,
             Value newValue )
     {
+        allocated( PROPERTY_CHANGE_SIZE + estimatedSize( newValue ) );
         if ( replacedValue != Values.NO_VALUE )
         {
             getOrCreateRelationshipState( relationshipId ).changeProperty( propertyKeyId, newValue );
@@ -633,14 +830,15 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public void nodeDoRemoveProperty( long nodeId, int propertyKeyId, Value removedValue )
     {
+        allocated( PROPERTY_CHANGE_SIZE );
         getOrCreateNodeState( nodeId ).removeProperty( propertyKeyId, removedValue );
-        nodePropertyChanges().removeProperty( nodeId, propertyKeyId, removedValue );
         dataChanged();
     }
 
     @Override
     public void relationshipDoRemoveProperty( long relationshipId, int propertyKeyId, Value removedValue )
     {
+        allocated( PROPERTY_CHANGE_SIZE );
         getOrCreateRelationshipState( relationshipId ).removeProperty( propertyKeyId, removedValue );
         dataChanged();
     }
@@ -655,6 +853,7 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public void nodeDoAddLabel( int labelId, long nodeId )
     {
+        allocated( LABEL_CHANGE_SIZE );
         getOrCreateLabelStateNodeDiffSets( labelId ).add( nodeId );
         getOrCreateNodeStateLabelDiffSets( nodeId ).add( labelId );
         dataChanged();
@@ -663,6 +862,7 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public void nodeDoRemoveLabel( int labelId, long nodeId )
     {
+        allocated( LABEL_CHANGE_SIZE );
         getOrCreateLabelStateNodeDiffSets( labelId ).remove( nodeId );
         getOrCreateNodeStateLabelDiffSets( nodeId ).remove( labelId );
         dataChanged();
@@ -704,7 +904,7 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public NodeState getNodeState( long id )
     {
-        return NODE_STATE.get( this, id );
+        return readNodeState( id );
     }
 
     @Override
@@ -851,19 +1051,19 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
     @Override
     public int augmentNodeDegree( long nodeId, int degree, Direction direction )
     {
-        return NODE_STATE.get( this, nodeId ).augmentDegree( direction, degree );
+        return readNodeState( nodeId ).augmentDegree( direction, degree );
     }
 
     @Override
     public int augmentNodeDegree( long nodeId, int degree, Direction direction, int typeId )
     {
-        return NODE_STATE.get( this, nodeId ).augmentDegree( direction, degree, typeId );
+        return readNodeState( nodeId ).augmentDegree( direction, degree, typeId );
     }
 
     @Override
     public PrimitiveIntSet nodeRelationshipTypes( long nodeId )
     {
-        return NODE_STATE.get( this, nodeId ).relationshipTypes();
+        return readNodeState( nodeId ).relationshipTypes();
     }
 
     @Override
@@ -889,11 +1089,20 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
 
     private NodeStateImpl getOrCreateNodeState( long nodeId )
     {
+        if ( !restoreSpilledNodeState( nodeId ) && (nodeStatesMap == null || !nodeStatesMap.containsKey( nodeId )) )
+        {
+            allocated( ENTITY_STATE_SIZE );
+        }
+        pinnedNodeId = nodeId;
         return NODE_STATE.getOrCreate( this, nodeId );
     }
 
     private RelationshipStateImpl getOrCreateRelationshipState( long relationshipId )
     {
+        if ( relationshipStatesMap == null || !relationshipStatesMap.containsKey( relationshipId ) )
+        {
+            allocated( ENTITY_STATE_SIZE );
+        }
         return RELATIONSHIP_STATE.getOrCreate( this, relationshipId );
     }
 
@@ -1302,13 +1511,8 @@ public final class TxState implements TransactionState, RelationshipVisitor.Home
 
     private boolean hasNodeState( long nodeId )
     {
-        return nodeStatesMap != null && nodeStatesMap.containsKey( nodeId );
-    }
-
-    private PropertyChanges nodePropertyChanges()
-    {
-        return propertyChangesForNodes == null ?
-                propertyChangesForNodes = new PropertyChanges() : propertyChangesForNodes;
+        return (nodeStatesMap != null && nodeStatesMap.containsKey( nodeId )) ||
+                (spilledNodeStates != null && spilledNodeStates.contains( nodeId ));
     }
 
     @Override
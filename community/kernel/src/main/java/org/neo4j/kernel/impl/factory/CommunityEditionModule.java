@@ -69,6 +69,7 @@ import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.kernel.internal.KernelData;
 import org.neo4j.kernel.lifecycle.LifeSupport;
 import org.neo4j.kernel.lifecycle.LifecycleStatus;
+import org.neo4j.scheduler.JobScheduler;
 import org.neo4j.udc.UsageData;
 
 /**
@@ -102,7 +103,8 @@ public class CommunityEditionModule extends EditionModule
 
         dependencies.satisfyDependency( SslPolicyLoader.create( config, logging.getInternalLogProvider() ) ); // for bolt and web server
 
-        lockManager = dependencies.satisfyDependency( createLockManager( config, platformModule.clock, logging ) );
+        lockManager = dependencies.satisfyDependency( createLockManager( config, platformModule.clock,
+                platformModule.jobScheduler, logging ) );
         statementLocksFactory = createStatementLocksFactory( lockManager, config, logging );
 
         idTypeConfigurationProvider = createIdTypeConfigurationProvider( config );
@@ -222,7 +224,7 @@ public class CommunityEditionModule extends EditionModule
         return new DefaultIdGeneratorFactory( fs, idTypeConfigurationProvider );
     }
 
-    public static Locks createLockManager( Config config, Clock clock, LogService logging )
+    public static Locks createLockManager( Config config, Clock clock, JobScheduler scheduler, LogService logging )
     {
         String key = config.get( GraphDatabaseFacadeFactory.Configuration.lock_manager );
         for ( Locks.Factory candidate : Service.load( Locks.Factory.class ) )
@@ -230,13 +232,13 @@ public class CommunityEditionModule extends EditionModule
             String candidateId = candidate.getKeys().iterator().next();
             if ( key.equals( candidateId ) )
             {
-                return candidate.newInstance( config, clock, ResourceTypes.values() );
+                return candidate.newInstance( config, clock, ResourceTypes.values(), scheduler );
             }
             else if ( key.equals( "" ) )
             {
                 logging.getInternalLog( CommunityEditionModule.class )
                         .info( "No locking implementation specified, defaulting to '" + candidateId + "'" );
-                return candidate.newInstance( config, clock, ResourceTypes.values() );
+                return candidate.newInstance( config, clock, ResourceTypes.values(), scheduler );
             }
         }
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.storageengine.api.lock.ResourceType;
+import org.neo4j.time.Clocks;
+import org.neo4j.time.SystemNanoClock;
+
+/**
+ * Keeps count of the time spent waiting for locks, in total and as a {@link LockWaitHistogram} per resource type,
+ * and tells its {@link Monitor} about every wait as it ends.
+ */
+public class DefaultLockTracer implements LockTracer, LockWaitMonitor
+{
+    public interface Monitor
+    {
+        void lockWaited( ResourceType resourceType, boolean exclusive, long waitNanos );
+    }
+
+    private final SystemNanoClock clock;
+    private final Monitor monitor;
+
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong accumulatedTotalTimeNanos = new AtomicLong();
+    private final ConcurrentMap<String,LockWaitHistogram> histograms = new ConcurrentHashMap<>();
+
+    public DefaultLockTracer( Monitor monitor )
+    {
+        this( Clocks.nanoClock(), monitor );
+    }
+
+    public DefaultLockTracer( SystemNanoClock clock, Monitor monitor )
+    {
+        this.clock = clock;
+        this.monitor = monitor;
+    }
+
+    @Override
+    public LockWaitEvent waitForLock( boolean exclusive, ResourceType resourceType, long... resourceIds )
+    {
+        long startTimeNanos = clock.nanos();
+        return () -> waited( resourceType, exclusive, clock.nanos() - startTimeNanos );
+    }
+
+    @Override
+    public long numberOfLockWaits()
+    {
+        return counter.get();
+    }
+
+    @Override
+    public long lockWaitAccumulatedTotalTimeMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( accumulatedTotalTimeNanos.get() );
+    }
+
+    @Override
+    public LockWaitHistogram lockWaitHistogram( ResourceType resourceType )
+    {
+        return histograms.get( resourceType.name() );
+    }
+
+    private void waited( ResourceType resourceType, boolean exclusive, long waitNanos )
+    {
+        counter.incrementAndGet();
+        accumulatedTotalTimeNanos.addAndGet( waitNanos );
+        histograms.computeIfAbsent( resourceType.name(), name -> new LockWaitHistogram() ).record( waitNanos );
+        monitor.lockWaited( resourceType, exclusive, waitNanos );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DefaultLockTracer[waits=" + counter.get() + ", totalTimeMillis=" +
+               lockWaitAccumulatedTotalTimeMillis() + ", histograms=" + histograms + "]";
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of lock wait times, with buckets of exponentially growing width. Bucket {@code 0} counts waits shorter
+ * than a microsecond, and every bucket {@code i > 0} counts waits of at least {@code 2^(i-1)} and less than
+ * {@code 2^i} microseconds, the last bucket also counting everything longer than that.
+ * <p>
+ * Recording a wait is a single atomic increment, so this is cheap enough to keep for every lock wait.
+ */
+public class LockWaitHistogram
+{
+    public static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray( BUCKETS );
+
+    public void record( long waitNanos )
+    {
+        buckets.incrementAndGet( bucket( waitNanos ) );
+    }
+
+    public long count()
+    {
+        long count = 0;
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            count += buckets.get( i );
+        }
+        return count;
+    }
+
+    public long bucketCount( int bucket )
+    {
+        return buckets.get( bucket );
+    }
+
+    /**
+     * @return the exclusive upper bound, in microseconds, of the wait times counted in the given bucket.
+     */
+    public static long bucketUpperBoundMicros( int bucket )
+    {
+        return 1L << bucket;
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the upper bound, in microseconds, of the bucket that the wait at the given percentile fell into,
+     * or {@code 0} if no waits have been recorded.
+     */
+    public long percentileMicros( double percentile )
+    {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            counts[i] = buckets.get( i );
+            total += counts[i];
+        }
+        if ( total == 0 )
+        {
+            return 0;
+        }
+
+        long rank = Math.max( 1, (long) Math.ceil( total * percentile / 100 ) );
+        long seen = 0;
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            seen += counts[i];
+            if ( seen >= rank )
+            {
+                return bucketUpperBoundMicros( i );
+            }
+        }
+        return bucketUpperBoundMicros( BUCKETS - 1 );
+    }
+
+    static int bucket( long waitNanos )
+    {
+        long micros = TimeUnit.NANOSECONDS.toMicros( waitNanos );
+        int bucket = 64 - Long.numberOfLeadingZeros( micros );
+        return Math.min( bucket, BUCKETS - 1 );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LockWaitHistogram[count=" + count() + ", p50<" + percentileMicros( 50 ) + "us, p99<" +
+               percentileMicros( 99 ) + "us, p999<" + percentileMicros( 99.9 ) + "us]";
+    }
+}
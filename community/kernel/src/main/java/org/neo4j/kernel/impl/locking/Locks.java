@@ -24,6 +24,7 @@ import java.util.stream.Stream;
 
 import org.neo4j.helpers.Service;
 import org.neo4j.kernel.configuration.Config;
+import org.neo4j.scheduler.JobScheduler;
 import org.neo4j.storageengine.api.lock.AcquireLockTimeoutException;
 import org.neo4j.storageengine.api.lock.ResourceLocker;
 import org.neo4j.storageengine.api.lock.ResourceType;
@@ -57,7 +58,8 @@ public interface Locks
             super( key, altKeys );
         }
 
-        public abstract Locks newInstance( Config config, Clock clocks, ResourceType[] resourceTypes );
+        public abstract Locks newInstance( Config config, Clock clocks, ResourceType[] resourceTypes,
+                JobScheduler scheduler );
     }
 
     /** For introspection and debugging. */
@@ -42,7 +42,14 @@ public enum ResourceTypes implements ResourceType
     INDEX_ENTRY( 4, LockWaitStrategies.INCREMENTAL_BACKOFF ),
     EXPLICIT_INDEX( 5, LockWaitStrategies.INCREMENTAL_BACKOFF ),
     LABEL( 6, LockWaitStrategies.INCREMENTAL_BACKOFF ),
-    RELATIONSHIP_TYPE( 7, LockWaitStrategies.INCREMENTAL_BACKOFF );
+    RELATIONSHIP_TYPE( 7, LockWaitStrategies.INCREMENTAL_BACKOFF ),
+    RELATIONSHIP_GROUP( 8, LockWaitStrategies.INCREMENTAL_BACKOFF );
+
+    /**
+     * Relationship type used in {@link #relationshipGroupResourceId(long, int)} for locking the start of the group
+     * chain of a dense node, rather than a particular group.
+     */
+    public static final int RELATIONSHIP_GROUP_CHAIN_HEAD = -1;
 
     private static final boolean useStrongHashing =
             FeatureToggles.flag( ResourceTypes.class, "useStrongHashing", false );
@@ -81,6 +88,17 @@ public enum ResourceTypes implements ResourceType
         return waitStrategy;
     }
 
+    /**
+     * The relationship group of the given type of a dense node. Group locks are taken on top of a shared lock on
+     * the node, so that transactions adding relationships of different types to the same dense node don't have
+     * to wait for each other. Very large node and type ids wrap around, which only means that some groups share a
+     * lock.
+     */
+    public static long relationshipGroupResourceId( long nodeId, int relationshipTypeId )
+    {
+        return nodeId << 24 | ((relationshipTypeId + 1) & 0xFFFFFF);
+    }
+
     /**
      * The index entry hashing method used for entries in explicit indexes.
      */
@@ -49,7 +49,8 @@ public class RecordStorageCommandCreationContext implements CommandCreationConte
     private final PropertyDeleter propertyDeleter;
     private final RenewableBatchIdSequences idBatches;
 
-    RecordStorageCommandCreationContext( NeoStores neoStores, int denseNodeThreshold, int idBatchSize )
+    RecordStorageCommandCreationContext( NeoStores neoStores, int denseNodeThreshold, boolean relationshipGroupLocking,
+            int idBatchSize )
     {
         this.neoStores = neoStores;
         this.idBatches = new RenewableBatchIdSequences( neoStores, idBatchSize );
@@ -57,7 +58,8 @@ public class RecordStorageCommandCreationContext implements CommandCreationConte
         this.loaders = new Loaders( neoStores );
         RelationshipGroupGetter relationshipGroupGetter =
                 new RelationshipGroupGetter( idBatches.idGenerator( StoreType.RELATIONSHIP_GROUP ) );
-        this.relationshipCreator = new RelationshipCreator( relationshipGroupGetter, denseNodeThreshold );
+        this.relationshipCreator = new RelationshipCreator( relationshipGroupGetter, denseNodeThreshold,
+                relationshipGroupLocking );
         PropertyTraverser propertyTraverser = new PropertyTraverser();
         this.propertyDeleter = new PropertyDeleter( propertyTraverser );
         this.relationshipDeleter = new RelationshipDeleter( relationshipGroupGetter, propertyDeleter );
@@ -24,6 +24,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Supplier;
 
 import org.neo4j.concurrent.WorkSync;
@@ -50,6 +52,7 @@ import org.neo4j.kernel.impl.api.ExplicitBatchIndexApplier;
 import org.neo4j.kernel.impl.api.ExplicitIndexApplierLookup;
 import org.neo4j.kernel.impl.api.ExplicitIndexProviderLookup;
 import org.neo4j.kernel.impl.api.IndexReaderFactory;
+import org.neo4j.kernel.impl.api.PipelinedBatchTransactionApplier;
 import org.neo4j.kernel.impl.api.SchemaState;
 import org.neo4j.kernel.impl.api.TransactionApplier;
 import org.neo4j.kernel.impl.api.TransactionApplierFacade;
@@ -76,6 +79,7 @@ import org.neo4j.kernel.impl.locking.LockService;
 import org.neo4j.kernel.impl.storageengine.impl.recordstorage.id.IdController;
 import org.neo4j.kernel.impl.store.NeoStores;
 import org.neo4j.kernel.impl.store.RecordStore;
+import org.neo4j.kernel.impl.store.RecordVersions;
 import org.neo4j.kernel.impl.store.SchemaStorage;
 import org.neo4j.kernel.impl.store.StoreFactory;
 import org.neo4j.kernel.impl.store.StoreType;
@@ -88,6 +92,7 @@ import org.neo4j.kernel.impl.transaction.command.IndexBatchTransactionApplier;
 import org.neo4j.kernel.impl.transaction.command.IndexUpdatesWork;
 import org.neo4j.kernel.impl.transaction.command.LabelUpdateWork;
 import org.neo4j.kernel.impl.transaction.command.NeoStoreBatchTransactionApplier;
+import org.neo4j.kernel.impl.transaction.command.RecordVersionsBatchTransactionApplier;
 import org.neo4j.kernel.impl.transaction.state.IntegrityValidator;
 import org.neo4j.kernel.impl.transaction.state.TransactionRecordState;
 import org.neo4j.kernel.impl.transaction.state.storeview.DynamicIndexStoreView;
@@ -116,6 +121,8 @@ import org.neo4j.storageengine.api.txstate.TxStateVisitor;
 import org.neo4j.unsafe.impl.internal.dragons.FeatureToggles;
 
 import static org.neo4j.kernel.impl.locking.LockService.NO_LOCK_SERVICE;
+import static org.neo4j.storageengine.api.TransactionApplicationMode.EXTERNAL;
+import static org.neo4j.storageengine.api.TransactionApplicationMode.INTERNAL;
 import static org.neo4j.storageengine.api.TransactionApplicationMode.RECOVERY;
 import static org.neo4j.storageengine.api.TransactionApplicationMode.REVERSE_RECOVERY;
 
@@ -150,9 +157,14 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
     private final ExplicitIndexProviderLookup explicitIndexProviderLookup;
     private final PropertyPhysicalToLogicalConverter indexUpdatesConverter;
     private final Supplier<StorageStatement> storeStatementSupplier;
+    private final RecordVersions recordVersions;
     private final IdController idController;
     private final int denseNodeThreshold;
+    private final boolean relationshipGroupLocking;
     private final int recordIdBatchSize;
+    private final boolean pipelinedApplication;
+    private final JobScheduler scheduler;
+    private ExecutorService applicationExecutor;
 
     public RecordStorageEngine(
             File storeDir,
@@ -190,6 +202,8 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
         this.indexConfigStore = indexConfigStore;
         this.constraintSemantics = constraintSemantics;
         this.explicitIndexTransactionOrdering = explicitIndexTransactionOrdering;
+        this.scheduler = scheduler;
+        this.pipelinedApplication = config.get( GraphDatabaseSettings.pipelined_transaction_application );
 
         this.idController = idController;
         StoreFactory factory = new StoreFactory( storeDir, config, idGeneratorFactory, pageCache, fs, logProvider );
@@ -217,6 +231,8 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
             cacheAccess = new BridgingCacheAccess( schemaCache, schemaState,
                     propertyKeyTokenHolder, relationshipTypeTokens, labelTokens );
 
+            recordVersions = new RecordVersions( config.get( GraphDatabaseSettings.snapshot_read_retained_transactions ),
+                    neoStores.getMetaDataStore()::getLastClosedTransactionId );
             storeStatementSupplier = storeStatementSupplier( neoStores );
             storeLayer = new StorageLayer(
                     propertyKeyTokenHolder, labelTokens, relationshipTypeTokens,
@@ -231,6 +247,7 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
             indexUpdatesSync = new WorkSync<>( indexingService );
 
             denseNodeThreshold = config.get( GraphDatabaseSettings.dense_node_threshold );
+            relationshipGroupLocking = config.get( GraphDatabaseSettings.relationship_group_locking );
             recordIdBatchSize = config.get( GraphDatabaseSettings.record_id_batch_size );
         }
         catch ( Throwable failure )
@@ -246,7 +263,7 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
         LockService lockService = takePropertyReadLocks ? this.lockService : NO_LOCK_SERVICE;
 
         return () -> new StoreStatement( neoStores, indexReaderFactory, labelScanStore::newReader, lockService,
-                allocateCommandCreationContext() );
+                allocateCommandCreationContext(), recordVersions );
     }
 
     @Override
@@ -258,7 +275,8 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
     @Override
     public RecordStorageCommandCreationContext allocateCommandCreationContext()
     {
-        return new RecordStorageCommandCreationContext( neoStores, denseNodeThreshold, recordIdBatchSize );
+        return new RecordStorageCommandCreationContext( neoStores, denseNodeThreshold, relationshipGroupLocking,
+                recordIdBatchSize );
     }
 
     @Override
@@ -313,7 +331,7 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
     {
         // Have these command appliers as separate try-with-resource to have better control over
         // point between closing this and the locks above
-        try ( BatchTransactionApplier batchApplier = applier( mode ) )
+        try ( BatchTransactionApplier batchApplier = isPipelined( mode ) ? pipelinedApplier( mode ) : applier( mode ) )
         {
             while ( batch != null )
             {
@@ -347,30 +365,17 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
     {
         ArrayList<BatchTransactionApplier> appliers = new ArrayList<>();
         // Graph store application. The order of the decorated store appliers is irrelevant
-        appliers.add( new NeoStoreBatchTransactionApplier( mode.version(), neoStores, cacheAccess, lockService( mode ) ) );
-        if ( mode.needsHighIdTracking() )
-        {
-            appliers.add( new HighIdBatchTransactionApplier( neoStores ) );
-        }
-        if ( mode.needsCacheInvalidationOnUpdates() )
-        {
-            appliers.add( new CacheInvalidationBatchTransactionApplier( neoStores, cacheAccess ) );
-        }
+        addStoreAppliers( mode, appliers );
         if ( mode.needsAuxiliaryStores() )
         {
             // Counts store application
             appliers.add( new CountsStoreBatchTransactionApplier( neoStores.getCounts(), mode ) );
 
             // Schema index application
-            appliers.add( new IndexBatchTransactionApplier( indexingService, labelScanStoreSync, indexUpdatesSync,
-                    neoStores.getNodeStore(),
-                    indexUpdatesConverter ) );
+            appliers.add( indexApplier() );
 
             // Explicit index application
-            appliers.add(
-                    new ExplicitBatchIndexApplier( indexConfigStore, explicitIndexApplierLookup,
-                            explicitIndexTransactionOrdering,
-                            mode ) );
+            appliers.add( explicitIndexApplier( mode ) );
         }
 
         // Perform the application
@@ -378,6 +383,60 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
                 appliers.toArray( new BatchTransactionApplier[appliers.size()] ) );
     }
 
+    /**
+     * Creates a {@link PipelinedBatchTransactionApplier} applying the same changes as {@link #applier(TransactionApplicationMode)}.
+     * Graph store and schema index changes are applied on the calling thread, since schema index updates are
+     * derived from the graph store. Counts store and explicit index changes depend on neither,
+     * so they are applied concurrently with them, as stages of their own.
+     */
+    private BatchTransactionApplier pipelinedApplier( TransactionApplicationMode mode )
+    {
+        ArrayList<BatchTransactionApplier> appliers = new ArrayList<>();
+        addStoreAppliers( mode, appliers );
+        appliers.add( indexApplier() );
+        BatchTransactionApplierFacade primary = new BatchTransactionApplierFacade(
+                appliers.toArray( new BatchTransactionApplier[appliers.size()] ) );
+
+        return new PipelinedBatchTransactionApplier( applicationExecutor, primary,
+                new CountsStoreBatchTransactionApplier( neoStores.getCounts(), mode ),
+                explicitIndexApplier( mode ) );
+    }
+
+    private boolean isPipelined( TransactionApplicationMode mode )
+    {
+        return applicationExecutor != null && (mode == INTERNAL || mode == EXTERNAL);
+    }
+
+    private void addStoreAppliers( TransactionApplicationMode mode, List<BatchTransactionApplier> appliers )
+    {
+        if ( recordVersions.isEnabled() && (mode == INTERNAL || mode == EXTERNAL) )
+        {
+            // Must keep the prior versions of records before they are overwritten in the store
+            appliers.add( new RecordVersionsBatchTransactionApplier( recordVersions ) );
+        }
+        appliers.add( new NeoStoreBatchTransactionApplier( mode.version(), neoStores, cacheAccess, lockService( mode ) ) );
+        if ( mode.needsHighIdTracking() )
+        {
+            appliers.add( new HighIdBatchTransactionApplier( neoStores ) );
+        }
+        if ( mode.needsCacheInvalidationOnUpdates() )
+        {
+            appliers.add( new CacheInvalidationBatchTransactionApplier( neoStores, cacheAccess ) );
+        }
+    }
+
+    private BatchTransactionApplier indexApplier()
+    {
+        return new IndexBatchTransactionApplier( indexingService, labelScanStoreSync, indexUpdatesSync,
+                neoStores.getNodeStore(), indexUpdatesConverter );
+    }
+
+    private BatchTransactionApplier explicitIndexApplier( TransactionApplicationMode mode )
+    {
+        return new ExplicitBatchIndexApplier( indexConfigStore, explicitIndexApplierLookup,
+                explicitIndexTransactionOrdering, mode );
+    }
+
     private LockService lockService( TransactionApplicationMode mode )
     {
         return mode == RECOVERY || mode == REVERSE_RECOVERY ? NO_LOCK_SERVICE : lockService;
@@ -420,6 +479,12 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
         indexingService.start();
         labelScanStore.start();
         idController.start();
+        if ( pipelinedApplication )
+        {
+            // Unbounded, since stages may block waiting for other batches, see ExplicitBatchIndexApplier
+            applicationExecutor = Executors.newCachedThreadPool(
+                    scheduler.threadFactory( JobScheduler.Groups.transactionApplication ) );
+        }
     }
 
     @Override
@@ -438,6 +503,11 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
     @Override
     public void stop() throws Throwable
     {
+        if ( applicationExecutor != null )
+        {
+            applicationExecutor.shutdown();
+            applicationExecutor = null;
+        }
         labelScanStore.stop();
         indexingService.stop();
         idController.stop();
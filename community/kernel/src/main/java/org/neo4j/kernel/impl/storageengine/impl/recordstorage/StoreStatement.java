@@ -40,6 +40,7 @@ import org.neo4j.kernel.impl.store.NeoStores;
 import org.neo4j.kernel.impl.store.NodeStore;
 import org.neo4j.kernel.impl.store.RecordCursors;
 import org.neo4j.kernel.impl.store.RecordStore;
+import org.neo4j.kernel.impl.store.RecordVersions;
 import org.neo4j.kernel.impl.store.RelationshipStore;
 import org.neo4j.kernel.impl.store.StoreType;
 import org.neo4j.kernel.impl.store.record.RelationshipGroupRecord;
@@ -75,6 +76,7 @@ public class StoreStatement implements StorageStatement
     private final Supplier<LabelScanReader> labelScanStore;
     private final RecordStore<RelationshipGroupRecord> relationshipGroupStore;
     private final RecordStorageCommandCreationContext commandCreationContext;
+    private final RecordVersions recordVersions;
 
     private IndexReaderFactory indexReaderFactory;
     private LabelScanReader labelScanReader;
@@ -85,6 +87,14 @@ public class StoreStatement implements StorageStatement
     public StoreStatement( NeoStores neoStores, Supplier<IndexReaderFactory> indexReaderFactory,
             Supplier<LabelScanReader> labelScanReaderSupplier, LockService lockService,
             RecordStorageCommandCreationContext commandCreationContext )
+    {
+        this( neoStores, indexReaderFactory, labelScanReaderSupplier, lockService, commandCreationContext,
+                RecordVersions.NO_VERSIONS );
+    }
+
+    public StoreStatement( NeoStores neoStores, Supplier<IndexReaderFactory> indexReaderFactory,
+            Supplier<LabelScanReader> labelScanReaderSupplier, LockService lockService,
+            RecordStorageCommandCreationContext commandCreationContext, RecordVersions recordVersions )
     {
         this.neoStores = neoStores;
         this.indexReaderFactorySupplier = indexReaderFactory;
@@ -93,7 +103,8 @@ public class StoreStatement implements StorageStatement
         this.nodeStore = neoStores.getNodeStore();
         this.relationshipStore = neoStores.getRelationshipStore();
         this.relationshipGroupStore = neoStores.getRelationshipGroupStore();
-        this.recordCursors = new RecordCursors( neoStores );
+        this.recordVersions = recordVersions;
+        this.recordCursors = new RecordCursors( neoStores, recordVersions );
 
         singleNodeCursor = new InstanceCache<StoreSingleNodeCursor>()
         {
@@ -199,6 +210,21 @@ public class StoreStatement implements StorageStatement
         return singlePropertyCursorCache.get().init( propertyId, propertyKeyId, lock, assertOpen );
     }
 
+    @Override
+    public void readSnapshot()
+    {
+        if ( recordVersions.isEnabled() )
+        {
+            recordCursors.readSnapshot( recordVersions.snapshot() );
+        }
+    }
+
+    @Override
+    public void readLatest()
+    {
+        recordCursors.readLatest();
+    }
+
     @Override
     public void release()
     {
@@ -19,6 +19,10 @@
  */
 package org.neo4j.kernel.impl.store;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import org.neo4j.io.IOUtils;
 import org.neo4j.kernel.impl.store.record.AbstractBaseRecord;
 import org.neo4j.kernel.impl.store.record.DynamicRecord;
@@ -42,21 +46,65 @@ public class RecordCursors implements AutoCloseable
     private final RecordCursor<DynamicRecord> propertyString;
     private final RecordCursor<DynamicRecord> propertyArray;
     private final RecordCursor<DynamicRecord> label;
+    private final VersionedRecordCursor<?>[] versioned;
 
     public RecordCursors( NeoStores neoStores )
     {
-        node = newCursor( neoStores.getNodeStore() );
-        relationship = newCursor( neoStores.getRelationshipStore() );
-        relationshipGroup = newCursor( neoStores.getRelationshipGroupStore() );
-        property = newCursor( neoStores.getPropertyStore() );
-        propertyString = newCursor( neoStores.getPropertyStore().getStringStore() );
-        propertyArray = newCursor( neoStores.getPropertyStore().getArrayStore() );
-        label = newCursor( neoStores.getNodeStore().getDynamicLabelStore() );
+        this( neoStores, RecordVersions.NO_VERSIONS );
+    }
+
+    public RecordCursors( NeoStores neoStores, RecordVersions versions )
+    {
+        List<VersionedRecordCursor<?>> versioned = new ArrayList<>();
+        node = newCursor( neoStores.getNodeStore(), versions, versions.nodes(), versioned );
+        relationship = newCursor( neoStores.getRelationshipStore(), versions, versions.relationships(), versioned );
+        relationshipGroup = newCursor( neoStores.getRelationshipGroupStore(), versions,
+                versions.relationshipGroups(), versioned );
+        property = newCursor( neoStores.getPropertyStore(), versions, versions.properties(), versioned );
+        propertyString = newCursor( neoStores.getPropertyStore().getStringStore(), versions,
+                versions.propertyStrings(), versioned );
+        propertyArray = newCursor( neoStores.getPropertyStore().getArrayStore(), versions,
+                versions.propertyArrays(), versioned );
+        label = newCursor( neoStores.getNodeStore().getDynamicLabelStore(), versions, versions.labels(), versioned );
+        this.versioned = versioned.toArray( new VersionedRecordCursor[versioned.size()] );
+    }
+
+    private static <R extends AbstractBaseRecord> RecordCursor<R> newCursor( RecordStore<R> store,
+            RecordVersions versions, RecordVersions.Versions<R> versionsOfStore,
+            Collection<VersionedRecordCursor<?>> versioned )
+    {
+        RecordCursor<R> cursor =
+                store.newRecordCursor( store.newRecord() ).acquire( store.getNumberOfReservedLowIds(), NORMAL );
+        if ( !versions.isEnabled() )
+        {
+            return cursor;
+        }
+        VersionedRecordCursor<R> versionedCursor =
+                new VersionedRecordCursor<>( cursor, versionsOfStore, store::getNextRecordReference );
+        versioned.add( versionedCursor );
+        return versionedCursor;
+    }
+
+    /**
+     * Makes all cursors see records as they were when the given transaction closed, as far as
+     * {@link RecordVersions} keeps versions of them. Has no effect if no versions are kept.
+     *
+     * @param snapshot id of the last transaction whose changes should be visible.
+     */
+    public void readSnapshot( long snapshot )
+    {
+        for ( VersionedRecordCursor<?> cursor : versioned )
+        {
+            cursor.readSnapshot( snapshot );
+        }
     }
 
-    private static <R extends AbstractBaseRecord> RecordCursor<R> newCursor( RecordStore<R> store )
+    /**
+     * Makes all cursors see the latest version of the records in the store, which is the default.
+     */
+    public void readLatest()
     {
-        return store.newRecordCursor( store.newRecord() ).acquire( store.getNumberOfReservedLowIds(), NORMAL );
+        readSnapshot( VersionedRecordCursor.LATEST );
     }
 
     @Override
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.store;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+import org.neo4j.kernel.api.exceptions.SnapshotTooOldException;
+import org.neo4j.kernel.impl.store.record.AbstractBaseRecord;
+import org.neo4j.kernel.impl.store.record.DynamicRecord;
+import org.neo4j.kernel.impl.store.record.NodeRecord;
+import org.neo4j.kernel.impl.store.record.PropertyBlock;
+import org.neo4j.kernel.impl.store.record.PropertyRecord;
+import org.neo4j.kernel.impl.store.record.RelationshipGroupRecord;
+import org.neo4j.kernel.impl.store.record.RelationshipRecord;
+
+/**
+ * Keeps the prior versions of node, relationship, relationship group and property records changed by the most recently
+ * applied transactions, so that a reader can see these records as they were when a given transaction closed, without
+ * being affected by transactions applied after that.
+ * <p>
+ * The prior version of a record is the before-image of the command that changed it, registered with the id of the
+ * transaction that changed it, before that command is applied to the store. For a given record id the registered
+ * versions form a chain from the newest to the oldest. A reader of snapshot {@code S} that has read a record from
+ * the store replaces it with the before-image of the oldest version newer than {@code S}, if there is one.
+ * <p>
+ * Dynamic records, i.e. string and array property values and node labels, have no before-images in the commands
+ * changing them. For these only the fact that a transaction changed them is kept, and a reader of snapshot {@code S}
+ * that reads a dynamic record changed after {@code S} fails with {@link SnapshotTooOldException} rather than seeing
+ * data that may since belong to another entity, given that the ids of deleted records are reused.
+ * <p>
+ * Versions are kept for a bounded window of transactions. Once a transaction more than the window newer than a
+ * snapshot has been applied, readers of that snapshot fail with {@link SnapshotTooOldException} rather than seeing
+ * an inconsistent store.
+ */
+public class RecordVersions
+{
+    public static final RecordVersions NO_VERSIONS = new RecordVersions( 0, () -> 0 );
+
+    private final int retainedTransactions;
+    private final LongSupplier lastClosedTransactionId;
+    private final Queue<Version<?>> versionsInOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    private volatile long oldestRetainedSnapshot;
+
+    private final Versions<NodeRecord> nodes = new Versions<>( "Node", RecordVersions::copyNode );
+    private final Versions<RelationshipRecord> relationships =
+            new Versions<>( "Relationship", RecordVersions::copyRelationship );
+    private final Versions<RelationshipGroupRecord> relationshipGroups =
+            new Versions<>( "Relationship group", RecordVersions::copyRelationshipGroup );
+    private final Versions<PropertyRecord> properties =
+            new Versions<>( "Property", RecordVersions::propertyVersion, RecordVersions::copyProperty );
+    private final Versions<DynamicRecord> propertyStrings = new Versions<>( "String property value", null, null );
+    private final Versions<DynamicRecord> propertyArrays = new Versions<>( "Array property value", null, null );
+    private final Versions<DynamicRecord> labels = new Versions<>( "Node labels", null, null );
+
+    /**
+     * @param retainedTransactions number of transactions, counted back from the one being applied, to keep record
+     * versions for. {@code 0} means that no versions are kept and snapshots are not supported.
+     * @param lastClosedTransactionId supplier of the id of the last closed transaction, where all transactions up
+     * to and including it are fully applied to the store.
+     */
+    public RecordVersions( int retainedTransactions, LongSupplier lastClosedTransactionId )
+    {
+        this.retainedTransactions = retainedTransactions;
+        this.lastClosedTransactionId = lastClosedTransactionId;
+    }
+
+    public boolean isEnabled()
+    {
+        return retainedTransactions > 0;
+    }
+
+    /**
+     * @return the snapshot a reader starting now should read, which is the id of the last closed transaction.
+     */
+    public long snapshot()
+    {
+        return lastClosedTransactionId.getAsLong();
+    }
+
+    public Versions<NodeRecord> nodes()
+    {
+        return nodes;
+    }
+
+    public Versions<RelationshipRecord> relationships()
+    {
+        return relationships;
+    }
+
+    public Versions<RelationshipGroupRecord> relationshipGroups()
+    {
+        return relationshipGroups;
+    }
+
+    public Versions<PropertyRecord> properties()
+    {
+        return properties;
+    }
+
+    public Versions<DynamicRecord> propertyStrings()
+    {
+        return propertyStrings;
+    }
+
+    public Versions<DynamicRecord> propertyArrays()
+    {
+        return propertyArrays;
+    }
+
+    public Versions<DynamicRecord> labels()
+    {
+        return labels;
+    }
+
+    /**
+     * Drops versions that no reader of a snapshot within the window is going to need, once transaction
+     * {@code txId} is being applied. Readers of older snapshots will fail from now on.
+     *
+     * @param txId id of the transaction being applied.
+     */
+    public void prune( long txId )
+    {
+        long oldest = txId - retainedTransactions;
+        if ( oldest <= oldestRetainedSnapshot || !pruning.compareAndSet( false, true ) )
+        {
+            return;
+        }
+        try
+        {
+            // raise the bar before dropping versions, readers check it after having read a version
+            oldestRetainedSnapshot = oldest;
+            Version<?> version;
+            while ( (version = versionsInOrder.peek()) != null && version.txId <= oldest )
+            {
+                versionsInOrder.poll();
+                version.drop();
+            }
+        }
+        finally
+        {
+            pruning.set( false );
+        }
+    }
+
+    int numberOfVersions()
+    {
+        return versionsInOrder.size();
+    }
+
+    void checkSnapshot( long snapshot )
+    {
+        long oldest = oldestRetainedSnapshot;
+        if ( snapshot < oldest )
+        {
+            throw new SnapshotTooOldException( snapshot, oldest );
+        }
+    }
+
+    /**
+     * Versions of records of one type, keyed by record id.
+     *
+     * @param <R> type of record.
+     */
+    public final class Versions<R extends AbstractBaseRecord>
+    {
+        private final ConcurrentMap<Long,Version<R>> newest = new ConcurrentHashMap<>();
+        private final String name;
+        private final UnaryOperator<R> keeper;
+        private final BiConsumer<R,R> copier;
+
+        @SuppressWarnings( "unchecked" )
+        private Versions( String name, BiConsumer<R,R> copier )
+        {
+            this( name, record -> (R) record.clone(), copier );
+        }
+
+        /**
+         * @param name of the records, for error messages.
+         * @param keeper makes the before-image to keep from the before-image of a command.
+         * @param copier copies a kept before-image into a record read from the store, or {@code null} if only
+         * changes are {@link #keepChange(long, long) kept} for these records.
+         */
+        private Versions( String name, UnaryOperator<R> keeper, BiConsumer<R,R> copier )
+        {
+            this.name = name;
+            this.keeper = keeper;
+            this.copier = copier;
+        }
+
+        /**
+         * Registers the state of a record before it was changed by the given transaction. Must be called before the
+         * change is applied to the store.
+         *
+         * @param txId id of the transaction changing the record.
+         * @param before the record as it was before the transaction changed it.
+         */
+        public void keep( long txId, R before )
+        {
+            assert copier != null : name + " records have no before-images to keep";
+            add( new Version<>( this, txId, before.getId(), keeper.apply( before ) ) );
+        }
+
+        /**
+         * Registers that the given transaction changed a record, for records whose before-images are not kept.
+         * Must be called before the change is applied to the store.
+         *
+         * @param txId id of the transaction changing the record.
+         * @param recordId id of the changed record.
+         */
+        public void keepChange( long txId, long recordId )
+        {
+            add( new Version<>( this, txId, recordId, null ) );
+        }
+
+        private void add( Version<R> version )
+        {
+            newest.compute( version.id, ( id, previous ) ->
+            {
+                version.older = previous;
+                return version;
+            } );
+            versionsInOrder.add( version );
+        }
+
+        /**
+         * Replaces the given record, just read from the store, with the version of it that the given snapshot
+         * should see, if it has changed since.
+         *
+         * @param record record read from the store, which will be overwritten if it has changed since the snapshot.
+         * @param snapshot id of the last transaction the reader should see the changes of.
+         * @throws SnapshotTooOldException if versions that the snapshot would need may have been dropped, or if the
+         * record has changed since the snapshot and its before-image is not kept.
+         */
+        void read( R record, long snapshot )
+        {
+            Version<R> candidate = null;
+            for ( Version<R> version = newest.get( record.getId() );
+                  version != null && version.txId > snapshot; version = version.older )
+            {
+                candidate = version;
+            }
+            checkSnapshot( snapshot );
+            if ( candidate != null )
+            {
+                if ( candidate.record == null )
+                {
+                    throw new SnapshotTooOldException( snapshot, name + " record " + record.getId(), candidate.txId );
+                }
+                copier.accept( candidate.record, record );
+            }
+        }
+
+        private void drop( Version<R> version )
+        {
+            newest.computeIfPresent( version.id, ( id, head ) ->
+            {
+                if ( head == version )
+                {
+                    return null;
+                }
+                for ( Version<R> newer = head; newer.older != null; newer = newer.older )
+                {
+                    if ( newer.older == version )
+                    {
+                        newer.older = null;
+                        break;
+                    }
+                }
+                return head;
+            } );
+        }
+    }
+
+    private static final class Version<R extends AbstractBaseRecord>
+    {
+        private final Versions<R> versions;
+        private final long txId;
+        private final long id;
+        // null if only the change is kept, not the before-image
+        private final R record;
+        private volatile Version<R> older;
+
+        Version( Versions<R> versions, long txId, long id, R record )
+        {
+            this.versions = versions;
+            this.txId = txId;
+            this.id = id;
+            this.record = record;
+        }
+
+        void drop()
+        {
+            versions.drop( this );
+        }
+    }
+
+    private static void copyNode( NodeRecord from, NodeRecord to )
+    {
+        to.initialize( from.inUse(), from.getNextProp(), from.isDense(), from.getNextRel(), from.getLabelField() );
+        copyRecordUnits( from, to );
+    }
+
+    private static void copyRelationship( RelationshipRecord from, RelationshipRecord to )
+    {
+        to.initialize( from.inUse(), from.getNextProp(), from.getFirstNode(), from.getSecondNode(), from.getType(),
+                from.getFirstPrevRel(), from.getFirstNextRel(), from.getSecondPrevRel(), from.getSecondNextRel(),
+                from.isFirstInFirstChain(), from.isFirstInSecondChain() );
+        copyRecordUnits( from, to );
+    }
+
+    private static void copyRelationshipGroup( RelationshipGroupRecord from, RelationshipGroupRecord to )
+    {
+        to.initialize( from.inUse(), from.getType(), from.getFirstOut(), from.getFirstIn(), from.getFirstLoop(),
+                from.getOwningNode(), from.getNext() );
+        to.setPrev( from.getPrev() );
+        copyRecordUnits( from, to );
+    }
+
+    /**
+     * Keeps only what a property record read from the store has, i.e. its pointers and raw blocks. These are
+     * rebuilt from the property blocks since the raw blocks aren't filled in for records read from the log.
+     */
+    private static PropertyRecord propertyVersion( PropertyRecord before )
+    {
+        PropertyRecord version = new PropertyRecord( before.getId() );
+        version.initialize( before.inUse(), before.getPrevProp(), before.getNextProp() );
+        if ( before.inUse() )
+        {
+            for ( PropertyBlock block : before )
+            {
+                for ( long valueBlock : block.getValueBlocks() )
+                {
+                    version.addLoadedBlock( valueBlock );
+                }
+            }
+        }
+        copyRecordUnits( before, version );
+        return version;
+    }
+
+    private static void copyProperty( PropertyRecord from, PropertyRecord to )
+    {
+        to.initialize( from.inUse(), from.getPrevProp(), from.getNextProp() );
+        long[] blocks = from.getBlocks();
+        for ( int i = 0; i < from.getNumberOfBlocks(); i++ )
+        {
+            to.addLoadedBlock( blocks[i] );
+        }
+        copyRecordUnits( from, to );
+    }
+
+    private static void copyRecordUnits( AbstractBaseRecord from, AbstractBaseRecord to )
+    {
+        to.setSecondaryUnitId( from.getSecondaryUnitId() );
+        to.setRequiresSecondaryUnit( from.requiresSecondaryUnit() );
+        to.setUseFixedReferences( from.isUseFixedReferences() );
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.store;
+
+import java.util.function.ToLongFunction;
+
+import org.neo4j.kernel.impl.store.record.AbstractBaseRecord;
+import org.neo4j.kernel.impl.store.record.RecordLoad;
+
+import static org.neo4j.kernel.impl.store.record.Record.NULL_REFERENCE;
+import static org.neo4j.kernel.impl.store.record.RecordLoad.CHECK;
+import static org.neo4j.kernel.impl.store.record.RecordLoad.FORCE;
+import static org.neo4j.kernel.impl.store.record.RecordLoad.NORMAL;
+
+/**
+ * {@link RecordCursor} that, while {@link #readSnapshot(long) reading a snapshot}, replaces records read from
+ * the store with the versions of them that the snapshot should see, as kept by {@link RecordVersions}.
+ *
+ * @param <R> type of {@link AbstractBaseRecord}.
+ */
+class VersionedRecordCursor<R extends AbstractBaseRecord> extends RecordCursor.Delegator<R>
+{
+    static final long LATEST = -1;
+
+    private final RecordVersions.Versions<R> versions;
+    private final ToLongFunction<R> nextReference;
+    private RecordLoad mode = NORMAL;
+    private long snapshot = LATEST;
+    // Id of the record to read in next(), following the references of the versions read, not the latest records
+    private long currentId = NULL_REFERENCE.intValue();
+
+    VersionedRecordCursor( RecordCursor<R> actual, RecordVersions.Versions<R> versions,
+            ToLongFunction<R> nextReference )
+    {
+        super( actual );
+        this.versions = versions;
+        this.nextReference = nextReference;
+    }
+
+    void readSnapshot( long snapshot )
+    {
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public RecordCursor<R> acquire( long id, RecordLoad mode )
+    {
+        this.mode = mode;
+        this.currentId = id;
+        return super.acquire( id, mode );
+    }
+
+    @Override
+    public void placeAt( long id, RecordLoad mode )
+    {
+        this.mode = mode;
+        this.currentId = id;
+        super.placeAt( id, mode );
+    }
+
+    @Override
+    public boolean next()
+    {
+        if ( snapshot == LATEST )
+        {
+            return super.next();
+        }
+        R record = get();
+        try
+        {
+            return next( currentId, record, mode );
+        }
+        finally
+        {
+            // same as the store cursor, but from the version read, which may link to other records than the latest
+            currentId = record.inUse() || mode == FORCE
+                    ? nextReference.applyAsLong( record )
+                    : NULL_REFERENCE.intValue();
+        }
+    }
+
+    @Override
+    public boolean next( long id )
+    {
+        if ( snapshot == LATEST )
+        {
+            return super.next( id );
+        }
+        return next( id, get(), mode );
+    }
+
+    @Override
+    public boolean next( long id, R record, RecordLoad mode )
+    {
+        if ( snapshot == LATEST )
+        {
+            return super.next( id, record, mode );
+        }
+        // a record deleted after the snapshot is still in use in the snapshot, so verify only after reading it
+        super.next( id, record, mode == NORMAL ? CHECK : mode );
+        versions.read( record, snapshot );
+        // same as the store cursor, which throws for NORMAL and otherwise returns whether or not in use, also for FORCE
+        mode.verify( record );
+        return record.inUse();
+    }
+}
@@ -40,6 +40,7 @@ import org.neo4j.kernel.impl.store.kvstore.ReadableBuffer;
 import org.neo4j.kernel.impl.store.kvstore.Rotation;
 import org.neo4j.kernel.impl.store.kvstore.RotationMonitor;
 import org.neo4j.kernel.impl.store.kvstore.RotationTimerFactory;
+import org.neo4j.kernel.impl.store.kvstore.State;
 import org.neo4j.kernel.impl.store.kvstore.UnknownKey;
 import org.neo4j.kernel.impl.store.kvstore.WritableBuffer;
 import org.neo4j.logging.Log;
@@ -66,12 +67,14 @@ import static org.neo4j.kernel.impl.store.counts.keys.CountsKeyFactory.relations
  * {@linkplain CountsUpdater the value serialisation format}, and
  * {@linkplain #HEADER_FIELDS the header fields}.
  *
- * The {@linkplain AbstractKeyValueStore parent class} defines the life cycle of the store.
+ * The {@linkplain AbstractKeyValueStore parent class} defines the life cycle of the store. Changes since the last
+ * rotation are kept in a {@linkplain State.Strategy#PACKED packed state}, since both keys and values are 16 bytes.
  *
  * The pattern of immutable store files, and rotation strategy, et.c. is defined in the
  * {@code kvstore}-package, see {@link org.neo4j.kernel.impl.store.kvstore.KeyValueStoreFile} for a good entry point.
  */
 @Rotation( value = Rotation.Strategy.LEFT_RIGHT, parameters = {CountsTracker.LEFT, CountsTracker.RIGHT} )
+@State( State.Strategy.PACKED )
 public class CountsTracker extends AbstractKeyValueStore<CountsKey>
         implements CountsVisitor.Visitable, CountsAccessor
 {
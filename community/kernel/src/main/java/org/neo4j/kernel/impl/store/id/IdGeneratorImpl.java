@@ -21,6 +21,7 @@ package org.neo4j.kernel.impl.store.id;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 import org.neo4j.io.fs.FileSystemAbstraction;
@@ -56,6 +57,11 @@ import org.neo4j.kernel.impl.store.id.validation.IdValidator;
  * same file. There can only be one id generator instance per id generator file.
  * <p>
  * In case of disk/file I/O failure an <CODE>IOException</CODE> is thrown.
+ * <p>
+ * Allocation of new ids, i.e. bumping the high id, is lock-free. Freed ids are first collected in a number of
+ * striped buffers, picked by calling thread, and only moved over to the underlying {@link IdContainer}, which
+ * isn't thread-safe, in batches and under the monitor of this generator. The monitor is also taken when
+ * looking for reusable ids in the {@link IdContainer}, but only as long as it may have any.
  */
 public class IdGeneratorImpl implements IdGenerator
 {
@@ -65,9 +71,21 @@ public class IdGeneratorImpl implements IdGenerator
      */
     public static final long INTEGER_MINUS_ONE = 0xFFFFFFFFL;  // 4294967295L;
 
+    private static final int FREE_ID_STRIPES =
+            Integer.highestOneBit( Runtime.getRuntime().availableProcessors() * 2 - 1 ) * 2;
+    private static final int FREE_ID_BUFFER_SIZE = 128;
+
     private final long max;
+    private final boolean aggressiveReuse;
     private final IdContainer idContainer;
-    private long highId;
+    private final AtomicLong highId;
+    private final FreeIdBuffer[] freeIdBuffers;
+    /**
+     * Hint about whether or not {@link #idContainer} may have reusable ids, so that {@link #nextId()} can avoid
+     * taking the monitor of this generator when there are none. Set to {@code false} only under that monitor
+     * and when the container actually came up empty.
+     */
+    private volatile boolean containerMayHaveReusableIds;
 
     /**
      * Opens the id generator represented by <CODE>fileName</CODE>. The
@@ -99,7 +117,13 @@ public class IdGeneratorImpl implements IdGenerator
             Supplier<Long> highId )
     {
         this.max = max;
+        this.aggressiveReuse = aggressiveReuse;
         this.idContainer = new IdContainer( fs, file, grabSize, aggressiveReuse );
+        this.freeIdBuffers = new FreeIdBuffer[FREE_ID_STRIPES];
+        for ( int i = 0; i < freeIdBuffers.length; i++ )
+        {
+            freeIdBuffers[i] = new FreeIdBuffer();
+        }
         /*
          * The highId supplier will be called only if the id container tells us that the information found in the
          * id file is not reliable (typically the file had to be created). Calling the supplier can be a potentially
@@ -107,12 +131,13 @@ public class IdGeneratorImpl implements IdGenerator
          */
         if ( this.idContainer.init() )
         {
-            this.highId = idContainer.getInitialHighId();
+            this.highId = new AtomicLong( idContainer.getInitialHighId() );
         }
         else
         {
-            this.highId = highId.get();
+            this.highId = new AtomicLong( highId.get() );
         }
+        this.containerMayHaveReusableIds = idContainer.getFreeIdCount() > 0;
     }
 
     /**
@@ -127,25 +152,29 @@ public class IdGeneratorImpl implements IdGenerator
      * @throws IllegalStateException if this id generator has been closed
      */
     @Override
-    public synchronized long nextId()
+    public long nextId()
     {
         assertStillOpen();
-        long nextDefragId = idContainer.getReusableId();
-        if ( nextDefragId != IdContainer.NO_RESULT )
+        long reusableId = nextReusableId();
+        if ( reusableId != IdContainer.NO_RESULT )
         {
-            return nextDefragId;
+            return reusableId;
         }
 
-        if ( IdValidator.isReservedId( highId ) )
+        while ( true )
         {
-            highId++;
+            long current = highId.get();
+            long id = IdValidator.isReservedId( current ) ? current + 1 : current;
+            IdValidator.assertValidId( id, max );
+            if ( highId.compareAndSet( current, id + 1 ) )
+            {
+                return id;
+            }
         }
-        IdValidator.assertValidId( highId, max );
-        return highId++;
     }
 
     @Override
-    public synchronized IdRange nextIdBatch( int size )
+    public IdRange nextIdBatch( int size )
     {
         assertStillOpen();
 
@@ -154,8 +183,8 @@ public class IdGeneratorImpl implements IdGenerator
         long[] defragIds = new long[size];
         while ( count < size )
         {
-            long id = idContainer.getReusableId();
-            if ( id == -1 )
+            long id = nextReusableId();
+            if ( id == IdContainer.NO_RESULT )
             {
                 break;
             }
@@ -168,8 +197,13 @@ public class IdGeneratorImpl implements IdGenerator
         System.arraycopy( tmpArray, 0, defragIds, 0, count );
 
         int sizeLeftForRange = size - count;
-        long start = highId;
-        setHighId( start + sizeLeftForRange );
+        long start;
+        do
+        {
+            start = highId.get();
+            IdValidator.assertIdWithinCapacity( start + sizeLeftForRange, max );
+        }
+        while ( !highId.compareAndSet( start, start + sizeLeftForRange ) );
         return new IdRange( defragIds, start, sizeLeftForRange );
     }
 
@@ -180,10 +214,10 @@ public class IdGeneratorImpl implements IdGenerator
      * @param id The next free id returned from {@link #nextId()} if there are no existing free ids.
      */
     @Override
-    public synchronized void setHighId( long id )
+    public void setHighId( long id )
     {
         IdValidator.assertIdWithinCapacity( id, max );
-        highId = id;
+        highId.set( id );
     }
 
     /**
@@ -193,15 +227,15 @@ public class IdGeneratorImpl implements IdGenerator
      * @return The next free "high" id
      */
     @Override
-    public synchronized long getHighId()
+    public long getHighId()
     {
-        return highId;
+        return highId.get();
     }
 
     @Override
-    public synchronized long getHighestPossibleIdInUse()
+    public long getHighestPossibleIdInUse()
     {
-        return highId - 1;
+        return highId.get() - 1;
     }
 
     /**
@@ -218,7 +252,7 @@ public class IdGeneratorImpl implements IdGenerator
      *            The id to be made available again
      */
     @Override
-    public synchronized void freeId( long id )
+    public void freeId( long id )
     {
         idContainer.assertStillOpen();
 
@@ -227,11 +261,20 @@ public class IdGeneratorImpl implements IdGenerator
             return;
         }
 
-        if ( id < 0 || id >= highId )
+        long currentHighId = highId.get();
+        if ( id < 0 || id >= currentHighId )
         {
-            throw new IllegalArgumentException( "Illegal id[" + id + "], highId is " + highId );
+            throw new IllegalArgumentException( "Illegal id[" + id + "], highId is " + currentHighId );
+        }
+        FreeIdBuffer buffer = freeIdBuffer();
+        synchronized ( buffer )
+        {
+            if ( buffer.isFull() )
+            {
+                flush( buffer );
+            }
+            buffer.add( id );
         }
-        idContainer.freeId( id );
     }
 
     /**
@@ -244,9 +287,21 @@ public class IdGeneratorImpl implements IdGenerator
      * since the highest returned id has been set to a negative value.
      */
     @Override
-    public synchronized void close()
+    public void close()
     {
-        idContainer.close( highId );
+        // Buffers are flushed before taking the monitor of this generator, since flushing a buffer
+        // takes that monitor while holding the buffer monitor, not the other way around.
+        for ( FreeIdBuffer buffer : freeIdBuffers )
+        {
+            synchronized ( buffer )
+            {
+                flush( buffer );
+            }
+        }
+        synchronized ( this )
+        {
+            idContainer.close( highId.get() );
+        }
     }
 
     /**
@@ -268,21 +323,40 @@ public class IdGeneratorImpl implements IdGenerator
     }
 
     @Override
-    public synchronized long getNumberOfIdsInUse()
+    public long getNumberOfIdsInUse()
     {
-        return highId - getDefragCount();
+        return highId.get() - getDefragCount();
     }
 
     @Override
-    public synchronized long getDefragCount()
+    public long getDefragCount()
     {
-        return idContainer.getFreeIdCount();
+        long count;
+        synchronized ( this )
+        {
+            count = idContainer.getFreeIdCount();
+        }
+        for ( FreeIdBuffer buffer : freeIdBuffers )
+        {
+            count += buffer.size;
+        }
+        return count;
     }
 
     @Override
-    public synchronized void delete()
+    public void delete()
     {
-        idContainer.delete();
+        for ( FreeIdBuffer buffer : freeIdBuffers )
+        {
+            synchronized ( buffer )
+            {
+                buffer.clear();
+            }
+        }
+        synchronized ( this )
+        {
+            idContainer.delete();
+        }
     }
 
     private void assertStillOpen()
@@ -290,9 +364,108 @@ public class IdGeneratorImpl implements IdGenerator
         idContainer.assertStillOpen();
     }
 
+    /**
+     * @return a reusable id, taken first from {@link #idContainer} and then from the free id buffer of the
+     * calling thread, or {@link IdContainer#NO_RESULT} if there are none. Ids freed during this session are
+     * only reused if this generator is configured for aggressive reuse.
+     */
+    private long nextReusableId()
+    {
+        if ( containerMayHaveReusableIds )
+        {
+            synchronized ( this )
+            {
+                long id = idContainer.getReusableId();
+                if ( id != IdContainer.NO_RESULT )
+                {
+                    return id;
+                }
+                containerMayHaveReusableIds = false;
+            }
+        }
+
+        if ( aggressiveReuse )
+        {
+            FreeIdBuffer buffer = freeIdBuffer();
+            synchronized ( buffer )
+            {
+                if ( buffer.size > 0 )
+                {
+                    return buffer.poll();
+                }
+            }
+        }
+        return IdContainer.NO_RESULT;
+    }
+
+    private FreeIdBuffer freeIdBuffer()
+    {
+        long threadId = Thread.currentThread().getId();
+        return freeIdBuffers[(int) (threadId ^ (threadId >>> 16)) & (freeIdBuffers.length - 1)];
+    }
+
+    /**
+     * Moves the ids in {@code buffer} over to {@link #idContainer}. Must be called holding the monitor of
+     * {@code buffer}.
+     */
+    private void flush( FreeIdBuffer buffer )
+    {
+        if ( buffer.size == 0 )
+        {
+            return;
+        }
+        synchronized ( this )
+        {
+            while ( buffer.size > 0 )
+            {
+                idContainer.freeId( buffer.poll() );
+            }
+            if ( aggressiveReuse )
+            {
+                containerMayHaveReusableIds = true;
+            }
+        }
+    }
+
     @Override
     public String toString()
     {
         return "IdGeneratorImpl " + hashCode() + " [max=" + max + ", idContainer=" + idContainer + "]";
     }
+
+    /**
+     * Bounded first-in-first-out buffer of freed ids. Guarded by its own monitor, although {@link #size} may be
+     * read without it for statistics.
+     */
+    private static class FreeIdBuffer
+    {
+        private final long[] ids = new long[FREE_ID_BUFFER_SIZE];
+        private int head;
+        private volatile int size;
+
+        boolean isFull()
+        {
+            return size == ids.length;
+        }
+
+        void add( long id )
+        {
+            ids[(head + size) % ids.length] = id;
+            size++;
+        }
+
+        long poll()
+        {
+            long id = ids[head];
+            head = (head + 1) % ids.length;
+            size--;
+            return id;
+        }
+
+        void clear()
+        {
+            head = 0;
+            size = 0;
+        }
+    }
 }
@@ -200,7 +200,7 @@ class ConcurrentMapState<Key> extends ActiveState<Key>
         }
     }
 
-    private static void update( AtomicLong highestAppliedVersion, long version )
+    static void update( AtomicLong highestAppliedVersion, long version )
     {
         for ( long high; ; )
         {
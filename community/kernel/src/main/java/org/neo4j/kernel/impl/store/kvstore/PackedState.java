@@ -0,0 +1,688 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.store.kvstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * An {@link ActiveState} that keeps the changes made since the last rotation in primitive arrays, rather than in a map
+ * from key objects to value byte arrays like {@link ConcurrentMapState} does.
+ *
+ * Both keys and values must be 16 bytes. Each key is stored as its two big endian long words in an open addressing
+ * table, next to the two long words of its value. Entries are never removed from a table, which is what allows both
+ * lookups and updates to be performed without locking: a slot goes from empty, to claimed, to ready exactly once, and
+ * the value words of a ready slot are updated by atomically adding the difference the {@link ValueUpdate} made. Only
+ * updates that change both value words at once are serialized with each other, by a striped lock, so that the pair is
+ * written from a consistent snapshot. When the probe sequence of a key is exhausted a table of twice the size is
+ * chained after the full one, and the next state created on rotation is sized to hold all the keys of this one.
+ *
+ * Rotation works just like it does for {@link ConcurrentMapState}: the {@link PrototypeState} starts collecting changes
+ * for transactions after the rotation threshold in a table of its own, while the tables of this state stop changing
+ * once the transactions up to the threshold have been applied, and are then written out.
+ *
+ * @param <Key> a base type for the keys stored in this store.
+ */
+class PackedState<Key> extends ActiveState<Key>
+{
+    static final int KEY_SIZE = 16;
+    static final int VALUE_SIZE = 16;
+
+    private final Changes changes;
+    private final File file;
+    private final AtomicLong highestAppliedVersion;
+    private final AtomicLong appliedChanges;
+    private final AtomicBoolean hasTrackedChanges;
+    private final long previousVersion;
+
+    PackedState( ReadableState<Key> store, File file )
+    {
+        super( store );
+        checkFormat( store.keyFormat() );
+        this.previousVersion = store.version();
+        this.file = file;
+        this.highestAppliedVersion = new AtomicLong( previousVersion );
+        this.changes = new Changes( 0 );
+        this.appliedChanges = new AtomicLong();
+        this.hasTrackedChanges = new AtomicBoolean();
+    }
+
+    private PackedState( Prototype<Key> prototype, ReadableState<Key> store, File file )
+    {
+        super( store );
+        this.previousVersion = store.version();
+        this.file = file;
+        this.hasTrackedChanges = prototype.hasTrackedChanges;
+        this.changes = prototype.changes;
+        this.highestAppliedVersion = prototype.highestAppliedVersion;
+        this.appliedChanges = prototype.appliedChanges;
+    }
+
+    private static void checkFormat( KeyFormat<?> keys )
+    {
+        if ( keys.keySize() != KEY_SIZE || keys.valueSize() != VALUE_SIZE )
+        {
+            throw new IllegalArgumentException( String.format(
+                    "Packed state requires %d byte keys and %d byte values, but the store has %d byte keys and " +
+                    "%d byte values.", KEY_SIZE, VALUE_SIZE, keys.keySize(), keys.valueSize() ) );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return super.toString() + "[" + file + "]";
+    }
+
+    @Override
+    public EntryUpdater<Key> updater( long version, Lock lock )
+    {
+        if ( version <= previousVersion )
+        {
+            return EntryUpdater.noUpdates();
+        }
+        ConcurrentMapState.update( highestAppliedVersion, version );
+        hasTrackedChanges.set( true );
+        return new Updater<>( lock, store, changes, appliedChanges );
+    }
+
+    @Override
+    public EntryUpdater<Key> unsafeUpdater( Lock lock )
+    {
+        hasTrackedChanges.set( true );
+        return new Updater<>( lock, store, changes, null );
+    }
+
+    private static class Updater<Key> extends EntryUpdater<Key>
+    {
+        private AtomicLong changeCounter;
+        private final ReadableState<Key> store;
+        private final Changes changes;
+        private final BigEndianByteArrayBuffer key = new BigEndianByteArrayBuffer( KEY_SIZE );
+        private final BigEndianByteArrayBuffer value = new BigEndianByteArrayBuffer( VALUE_SIZE );
+
+        Updater( Lock lock, ReadableState<Key> store, Changes changes, AtomicLong changeCounter )
+        {
+            super( lock );
+            this.changeCounter = changeCounter;
+            this.store = store;
+            this.changes = changes;
+        }
+
+        @Override
+        public void apply( Key key, ValueUpdate update ) throws IOException
+        {
+            ensureOpenOnSameThread();
+            changes.apply( store, key, update, false, this.key, this.value );
+        }
+
+        @Override
+        public void close()
+        {
+            if ( changeCounter != null )
+            {
+                changeCounter.incrementAndGet();
+                changeCounter = null;
+            }
+            super.close();
+        }
+    }
+
+    @Override
+    protected long storedVersion()
+    {
+        return previousVersion;
+    }
+
+    @Override
+    protected EntryUpdater<Key> resettingUpdater( Lock lock, final Runnable closeAction )
+    {
+        if ( hasChanges() )
+        {
+            throw new IllegalStateException( "Cannot reset when there are changes!" );
+        }
+        return new EntryUpdater<Key>( lock )
+        {
+            private final BigEndianByteArrayBuffer key = new BigEndianByteArrayBuffer( KEY_SIZE );
+            private final BigEndianByteArrayBuffer value = new BigEndianByteArrayBuffer( VALUE_SIZE );
+
+            @Override
+            public void apply( Key key, ValueUpdate update ) throws IOException
+            {
+                ensureOpen();
+                changes.apply( store, key, update, true, this.key, this.value );
+            }
+
+            @Override
+            public void close()
+            {
+                try
+                {
+                    closeAction.run();
+                }
+                finally
+                {
+                    super.close();
+                }
+            }
+        };
+    }
+
+    @Override
+    protected PrototypeState<Key> prototype( long version )
+    {
+        return new Prototype<>( this, version );
+    }
+
+    private static class Prototype<Key> extends PrototypeState<Key>
+    {
+        final Changes changes;
+        final AtomicLong highestAppliedVersion;
+        final AtomicLong appliedChanges = new AtomicLong();
+        final AtomicBoolean hasTrackedChanges;
+        private final long threshold;
+
+        Prototype( PackedState<Key> state, long version )
+        {
+            super( state );
+            threshold = version;
+            changes = new Changes( state.changes.size() );
+            hasTrackedChanges = new AtomicBoolean();
+            this.highestAppliedVersion = new AtomicLong( version );
+        }
+
+        @Override
+        protected ActiveState<Key> create( ReadableState<Key> sub, File file )
+        {
+            return new PackedState<>( this, sub, file );
+        }
+
+        @Override
+        protected EntryUpdater<Key> updater( long version, Lock lock )
+        {
+            ConcurrentMapState.update( highestAppliedVersion, version );
+            if ( version > threshold )
+            {
+                hasTrackedChanges.set( true );
+                return new Updater<>( lock, store, changes, appliedChanges );
+            }
+            else
+            {
+                return new Updater<>( lock, store, changes, null );
+            }
+        }
+
+        @Override
+        protected EntryUpdater<Key> unsafeUpdater( Lock lock )
+        {
+            hasTrackedChanges.set( true );
+            return new Updater<>( lock, store, changes, null );
+        }
+
+        @Override
+        protected boolean hasChanges()
+        {
+            return hasTrackedChanges.get() && changes.size() > 0;
+        }
+
+        @Override
+        protected long version()
+        {
+            return highestAppliedVersion.get();
+        }
+
+        @Override
+        protected boolean lookup( Key key, ValueSink sink ) throws IOException
+        {
+            return changes.lookup( store, key, sink );
+        }
+
+        @Override
+        protected DataProvider dataProvider() throws IOException
+        {
+            return changes.dataProvider( store );
+        }
+    }
+
+    @Override
+    protected long version()
+    {
+        return highestAppliedVersion.get();
+    }
+
+    @Override
+    protected long applied()
+    {
+        return appliedChanges.get();
+    }
+
+    @Override
+    protected boolean hasChanges()
+    {
+        return hasTrackedChanges.get() && changes.size() > 0;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        store.close();
+    }
+
+    @Override
+    protected File file()
+    {
+        return file;
+    }
+
+    @Override
+    protected Factory factory()
+    {
+        return State.Strategy.PACKED;
+    }
+
+    @Override
+    protected boolean lookup( Key key, ValueSink sink ) throws IOException
+    {
+        return changes.lookup( store, key, sink );
+    }
+
+    /**
+     * This method is expected to be called under a lock preventing modification to the state.
+     */
+    @Override
+    public DataProvider dataProvider() throws IOException
+    {
+        return changes.dataProvider( store );
+    }
+
+    /**
+     * The changes of one state, in a chain of tables where each table is twice the size of the one before it.
+     */
+    static final class Changes
+    {
+        private static final int MIN_CAPACITY = 1 << 10;
+        private static final int MAX_CAPACITY = 1 << 28;
+        private static final int LOCK_STRIPES = 64;
+
+        private final Table first;
+        private final AtomicLong size = new AtomicLong();
+        private final Object[] stripes = new Object[LOCK_STRIPES];
+
+        Changes( long expectedEntries )
+        {
+            long capacity = MIN_CAPACITY;
+            while ( capacity < expectedEntries * 2 && capacity < MAX_CAPACITY )
+            {
+                capacity <<= 1;
+            }
+            this.first = new Table( (int) capacity );
+            for ( int i = 0; i < stripes.length; i++ )
+            {
+                stripes[i] = new Object();
+            }
+        }
+
+        long size()
+        {
+            return size.get();
+        }
+
+        <Key> boolean lookup( ReadableState<Key> store, Key key, ValueSink sink ) throws IOException
+        {
+            BigEndianByteArrayBuffer buffer = new BigEndianByteArrayBuffer( KEY_SIZE );
+            store.keyFormat().writeKey( key, buffer );
+            long hi = buffer.getLong( 0 );
+            long lo = buffer.getLong( 8 );
+            for ( Table table = first; table != null; table = table.next.get() )
+            {
+                int slot = table.find( hi, lo );
+                if ( slot >= 0 )
+                {
+                    buffer.putLong( 0, table.get( slot, Table.VALUE_HI ) );
+                    buffer.putLong( 8, table.get( slot, Table.VALUE_LO ) );
+                    sink.value( buffer );
+                    return true;
+                }
+                if ( slot == Table.ABSENT )
+                {
+                    break;
+                }
+            }
+            return store.lookup( key, sink );
+        }
+
+        <Key> void apply( ReadableState<Key> store, Key key, ValueUpdate update, boolean reset,
+                BigEndianByteArrayBuffer keyBuffer, BigEndianByteArrayBuffer value ) throws IOException
+        {
+            keyBuffer.clear();
+            store.keyFormat().writeKey( key, keyBuffer );
+            long hi = keyBuffer.getLong( 0 );
+            long lo = keyBuffer.getLong( 8 );
+            boolean initialized = false;
+            for ( Table table = first; ; table = table.nextTable() )
+            {
+                int slot = table.home( hi, lo );
+                for ( int probe = 0; probe < table.maxProbes; )
+                {
+                    int state = table.awaitState( slot );
+                    if ( state == Table.READY )
+                    {
+                        if ( table.holds( slot, hi, lo ) )
+                        {
+                            update( table, slot, update, reset, value );
+                            return;
+                        }
+                        slot = (slot + 1) & table.mask;
+                        probe++;
+                        continue;
+                    }
+                    if ( !initialized )
+                    {
+                        // look up the previous value before claiming the slot, so that the slot is only
+                        // unavailable to other updaters for as long as it takes to write the entry
+                        value.clear();
+                        if ( !reset && !store.lookup( key, new PreviousValue( value ) ) )
+                        {
+                            value.clear();
+                        }
+                        update.update( value );
+                        initialized = true;
+                    }
+                    if ( table.claim( slot ) )
+                    {
+                        table.publish( slot, hi, lo, value.getLong( 0 ), value.getLong( 8 ) );
+                        size.incrementAndGet();
+                        return;
+                    }
+                    // someone else claimed the slot, examine it again once it is ready
+                }
+            }
+        }
+
+        private void update( Table table, int slot, ValueUpdate update, boolean reset, BigEndianByteArrayBuffer value )
+        {
+            if ( reset )
+            {
+                // resetting updaters hold the store exclusively
+                value.clear();
+                update.update( value );
+                table.set( slot, Table.VALUE_HI, value.getLong( 0 ) );
+                table.set( slot, Table.VALUE_LO, value.getLong( 8 ) );
+                return;
+            }
+            long hiBefore = table.get( slot, Table.VALUE_HI );
+            long loBefore = table.get( slot, Table.VALUE_LO );
+            value.putLong( 0, hiBefore ).putLong( 8, loBefore );
+            update.update( value );
+            long hiDelta = value.getLong( 0 ) - hiBefore;
+            long loDelta = value.getLong( 8 ) - loBefore;
+            if ( hiDelta != 0 && loDelta != 0 )
+            {
+                synchronized ( stripes[slot & (LOCK_STRIPES - 1)] )
+                {
+                    hiBefore = table.get( slot, Table.VALUE_HI );
+                    loBefore = table.get( slot, Table.VALUE_LO );
+                    value.putLong( 0, hiBefore ).putLong( 8, loBefore );
+                    update.update( value );
+                    table.add( slot, Table.VALUE_HI, value.getLong( 0 ) - hiBefore );
+                    table.add( slot, Table.VALUE_LO, value.getLong( 8 ) - loBefore );
+                }
+            }
+            else if ( hiDelta != 0 )
+            {
+                table.add( slot, Table.VALUE_HI, hiDelta );
+            }
+            else if ( loDelta != 0 )
+            {
+                table.add( slot, Table.VALUE_LO, loDelta );
+            }
+        }
+
+        <Key> DataProvider dataProvider( ReadableState<Key> store ) throws IOException
+        {
+            if ( size.get() == 0 )
+            {
+                return store.dataProvider();
+            }
+            return new KeyValueMerger( store.dataProvider(), new SortedEntries( sortedEntries() ),
+                    KEY_SIZE, VALUE_SIZE );
+        }
+
+        private Entry[] sortedEntries()
+        {
+            Entry[] entries = new Entry[(int) size.get()];
+            int count = 0;
+            for ( Table table = first; table != null; table = table.next.get() )
+            {
+                for ( int slot = 0; slot <= table.mask; slot++ )
+                {
+                    if ( table.state( slot ) == Table.READY )
+                    {
+                        if ( count == entries.length )
+                        {
+                            // only introspection reads the changes while they are being updated
+                            entries = Arrays.copyOf( entries, count * 2 + 1 );
+                        }
+                        entries[count++] = new Entry(
+                                table.get( slot, Table.KEY_HI ), table.get( slot, Table.KEY_LO ),
+                                table.get( slot, Table.VALUE_HI ), table.get( slot, Table.VALUE_LO ) );
+                    }
+                }
+            }
+            Arrays.sort( entries, 0, count );
+            return count == entries.length ? entries : Arrays.copyOf( entries, count );
+        }
+    }
+
+    private static final class Table
+    {
+        static final int EMPTY = 0;
+        static final int CLAIMED = 1;
+        static final int READY = 2;
+        /** Returned by {@link #find(long, long)} when the key is in neither this table nor any following table. */
+        static final int ABSENT = -1;
+        /** Returned by {@link #find(long, long)} when the key may be in a following table. */
+        static final int FULL = -2;
+
+        static final int KEY_HI = 0;
+        static final int KEY_LO = 1;
+        static final int VALUE_HI = 2;
+        static final int VALUE_LO = 3;
+        private static final int ENTRY_LONGS = 4;
+        private static final int MAX_PROBES = 64;
+
+        final int mask;
+        final int maxProbes;
+        private final AtomicIntegerArray states;
+        private final AtomicLongArray entries;
+        final AtomicReference<Table> next = new AtomicReference<>();
+
+        Table( int capacity )
+        {
+            this.mask = capacity - 1;
+            this.maxProbes = Math.min( MAX_PROBES, capacity );
+            this.states = new AtomicIntegerArray( capacity );
+            this.entries = new AtomicLongArray( capacity * ENTRY_LONGS );
+        }
+
+        int home( long hi, long lo )
+        {
+            long hash = (hi * 0x9E3779B97F4A7C15L) ^ lo;
+            hash *= 0xC2B2AE3D27D4EB4FL;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        int find( long hi, long lo )
+        {
+            int slot = home( hi, lo );
+            for ( int probe = 0; probe < maxProbes; probe++, slot = (slot + 1) & mask )
+            {
+                if ( awaitState( slot ) == EMPTY )
+                {
+                    return ABSENT;
+                }
+                if ( holds( slot, hi, lo ) )
+                {
+                    return slot;
+                }
+            }
+            return FULL;
+        }
+
+        Table nextTable()
+        {
+            Table table = next.get();
+            if ( table == null )
+            {
+                next.compareAndSet( null, new Table( Math.min( (mask + 1) << 1, Changes.MAX_CAPACITY ) ) );
+                table = next.get();
+            }
+            return table;
+        }
+
+        int state( int slot )
+        {
+            return states.get( slot );
+        }
+
+        int awaitState( int slot )
+        {
+            int state;
+            while ( (state = states.get( slot )) == CLAIMED )
+            {
+                Thread.yield();
+            }
+            return state;
+        }
+
+        boolean claim( int slot )
+        {
+            return states.compareAndSet( slot, EMPTY, CLAIMED );
+        }
+
+        void publish( int slot, long hi, long lo, long valueHi, long valueLo )
+        {
+            int base = slot * ENTRY_LONGS;
+            entries.lazySet( base + KEY_HI, hi );
+            entries.lazySet( base + KEY_LO, lo );
+            entries.lazySet( base + VALUE_HI, valueHi );
+            entries.lazySet( base + VALUE_LO, valueLo );
+            states.set( slot, READY );
+        }
+
+        boolean holds( int slot, long hi, long lo )
+        {
+            int base = slot * ENTRY_LONGS;
+            return entries.get( base + KEY_HI ) == hi && entries.get( base + KEY_LO ) == lo;
+        }
+
+        long get( int slot, int field )
+        {
+            return entries.get( slot * ENTRY_LONGS + field );
+        }
+
+        void set( int slot, int field, long value )
+        {
+            entries.set( slot * ENTRY_LONGS + field, value );
+        }
+
+        void add( int slot, int field, long delta )
+        {
+            entries.addAndGet( slot * ENTRY_LONGS + field, delta );
+        }
+    }
+
+    private static class PreviousValue extends ValueSink
+    {
+        private final BigEndianByteArrayBuffer target;
+
+        PreviousValue( BigEndianByteArrayBuffer target )
+        {
+            this.target = target;
+        }
+
+        @Override
+        protected void value( ReadableBuffer value )
+        {
+            target.putLong( 0, value.getLong( 0 ) );
+            target.putLong( 8, value.getLong( 8 ) );
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry>
+    {
+        final long keyHi;
+        final long keyLo;
+        final long valueHi;
+        final long valueLo;
+
+        Entry( long keyHi, long keyLo, long valueHi, long valueLo )
+        {
+            this.keyHi = keyHi;
+            this.keyLo = keyLo;
+            this.valueHi = valueHi;
+            this.valueLo = valueLo;
+        }
+
+        @Override
+        public int compareTo( Entry that )
+        {
+            // keys are compared as unsigned big endian byte sequences, which is the same as comparing the words
+            int cmp = Long.compareUnsigned( this.keyHi, that.keyHi );
+            return cmp != 0 ? cmp : Long.compareUnsigned( this.keyLo, that.keyLo );
+        }
+    }
+
+    private static class SortedEntries implements DataProvider
+    {
+        private final Entry[] entries;
+        private int i;
+
+        SortedEntries( Entry[] entries )
+        {
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean visit( WritableBuffer key, WritableBuffer value ) throws IOException
+        {
+            if ( i < entries.length )
+            {
+                Entry entry = entries[i++];
+                key.putLong( 0, entry.keyHi ).putLong( 8, entry.keyLo );
+                value.putLong( 0, entry.valueHi ).putLong( 8, entry.valueLo );
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+    }
+}
@@ -43,6 +43,14 @@ public @interface State
                 return new ConcurrentMapState<>( store, file );
             }
         },
+        PACKED
+        {
+            @Override
+            public <Key> ActiveState<Key> open( ReadableState<Key> store, File file )
+            {
+                return new PackedState<>( store, file );
+            }
+        },
         READ_ONLY_CONCURRENT_HASH_MAP
         {
             @Override
@@ -20,6 +20,7 @@
 package org.neo4j.kernel.impl.transaction.command;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 
 import org.neo4j.helpers.collection.Iterables;
@@ -431,19 +432,119 @@ public abstract class Command implements StorageCommand
         @Override
         public void serialize( WritableChannel channel ) throws IOException
         {
-            channel.put( NeoCommandType.PROP_COMMAND );
-            channel.putLong( after.getId() );
-            writePropertyRecord( channel, before );
-            writePropertyRecord( channel, after );
+            int[] unchangedBlocks = unchangedBlocks( before, after );
+            if ( unchangedBlocks == null )
+            {
+                channel.put( NeoCommandType.PROP_COMMAND );
+                channel.putLong( after.getId() );
+                writePropertyRecord( channel, before );
+                writePropertyRecord( channel, after );
+            }
+            else
+            {
+                channel.put( NeoCommandType.PROP_DELTA_COMMAND );
+                channel.putLong( after.getId() );
+                writePropertyRecord( channel, after );
+                writePropertyRecordDelta( channel, before, after, unchangedBlocks );
+            }
+        }
+
+        /**
+         * @return for every block in {@code before}, the index of an identical block in {@code after}, or {@code -1}
+         * if the block was changed or removed. {@code null} if there are no unchanged blocks at all, since then
+         * there's nothing to gain from writing the before state as a delta.
+         */
+        private static int[] unchangedBlocks( PropertyRecord before, PropertyRecord after )
+        {
+            int[] unchangedBlocks = null;
+            int beforeIndex = 0;
+            for ( PropertyBlock beforeBlock : before )
+            {
+                // Dynamic records are only loaded for changed blocks, so a light block is all we can refer to
+                if ( beforeBlock.isLight() )
+                {
+                    int afterIndex = 0;
+                    for ( PropertyBlock afterBlock : after )
+                    {
+                        if ( Arrays.equals( beforeBlock.getValueBlocks(), afterBlock.getValueBlocks() ) )
+                        {
+                            if ( unchangedBlocks == null )
+                            {
+                                unchangedBlocks = new int[before.numberOfProperties()];
+                                Arrays.fill( unchangedBlocks, -1 );
+                            }
+                            unchangedBlocks[beforeIndex] = afterIndex;
+                            break;
+                        }
+                        afterIndex++;
+                    }
+                }
+                beforeIndex++;
+            }
+            return unchangedBlocks;
+        }
+
+        /**
+         * Writes {@code before} relative to the already written {@code after}: the header only if it differs,
+         * unchanged blocks as a one byte reference to the block in {@code after} and other blocks in full.
+         */
+        private void writePropertyRecordDelta( WritableChannel channel, PropertyRecord before, PropertyRecord after,
+                int[] unchangedBlocks ) throws IOException
+        {
+            boolean sameHeader = sameHeader( before, after );
+            channel.put( (byte) (sameHeader ? 1 : 0) ); // 1
+            if ( !sameHeader )
+            {
+                writePropertyRecordHeader( channel, before );
+            }
+            channel.put( (byte) before.numberOfProperties() ); // 1
+            int beforeIndex = 0;
+            for ( PropertyBlock block : before )
+            {
+                int afterIndex = unchangedBlocks[beforeIndex++];
+                channel.put( (byte) afterIndex ); // 1
+                if ( afterIndex == -1 )
+                {
+                    writePropertyBlock( channel, block );
+                }
+            }
+            writeDynamicRecords( channel, before.getDeletedRecords() );
+        }
+
+        private static boolean sameHeader( PropertyRecord before, PropertyRecord after )
+        {
+            return headerFlags( before ) == headerFlags( after ) &&
+                   before.getNextProp() == after.getNextProp() &&
+                   before.getPrevProp() == after.getPrevProp() &&
+                   before.getNodeId() == after.getNodeId() &&
+                   before.getRelId() == after.getRelId() &&
+                   (!before.hasSecondaryUnitId() || before.getSecondaryUnitId() == after.getSecondaryUnitId());
         }
 
         private void writePropertyRecord( WritableChannel channel, PropertyRecord record ) throws IOException
         {
-            byte flags = bitFlags( bitFlag( record.inUse(), Record.IN_USE.byteValue() ),
-                                   bitFlag( record.getRelId() != -1, Record.REL_PROPERTY.byteValue() ),
-                                   bitFlag( record.requiresSecondaryUnit(), Record.REQUIRE_SECONDARY_UNIT ),
-                                   bitFlag( record.hasSecondaryUnitId(), Record.HAS_SECONDARY_UNIT ),
-                                   bitFlag( record.isUseFixedReferences(), Record.USES_FIXED_REFERENCE_FORMAT ) );
+            writePropertyRecordHeader( channel, record );
+            channel.put( (byte) record.numberOfProperties() ); // 1
+            for ( PropertyBlock block : record )
+            {
+                assert block.getSize() > 0 : record + " seems kinda broken";
+                writePropertyBlock( channel, block );
+            }
+            writeDynamicRecords( channel, record.getDeletedRecords() );
+        }
+
+        private static byte headerFlags( PropertyRecord record )
+        {
+            return bitFlags( bitFlag( record.inUse(), Record.IN_USE.byteValue() ),
+                             bitFlag( record.getRelId() != -1, Record.REL_PROPERTY.byteValue() ),
+                             bitFlag( record.requiresSecondaryUnit(), Record.REQUIRE_SECONDARY_UNIT ),
+                             bitFlag( record.hasSecondaryUnitId(), Record.HAS_SECONDARY_UNIT ),
+                             bitFlag( record.isUseFixedReferences(), Record.USES_FIXED_REFERENCE_FORMAT ) );
+        }
+
+        private void writePropertyRecordHeader( WritableChannel channel, PropertyRecord record ) throws IOException
+        {
+            byte flags = headerFlags( record );
 
             channel.put( flags ); // 1
             channel.putLong( record.getNextProp() ).putLong( record.getPrevProp() ); // 8 + 8
@@ -467,13 +568,6 @@ public abstract class Command implements StorageCommand
             {
                 channel.putLong( record.getSecondaryUnitId() );
             }
-            channel.put( (byte) record.numberOfProperties() ); // 1
-            for ( PropertyBlock block : record )
-            {
-                assert block.getSize() > 0 : record + " seems kinda broken";
-                writePropertyBlock( channel, block );
-            }
-            writeDynamicRecords( channel, record.getDeletedRecords() );
         }
 
         private void writePropertyBlock( WritableChannel channel, PropertyBlock block ) throws IOException
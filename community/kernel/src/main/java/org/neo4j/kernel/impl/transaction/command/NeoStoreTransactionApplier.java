@@ -51,6 +51,12 @@ public class NeoStoreTransactionApplier extends TransactionApplier.Adapter
     private final CacheAccessBackDoor cacheAccess;
     private final LockService lockService;
 
+    // Commands are grouped per entity, so a node command is typically followed by the property commands
+    // of that same node. Remembering the last locked entity avoids acquiring (and allocating) the same
+    // write lock over and over again for one transaction.
+    private long lastLockedNodeId = -1;
+    private long lastLockedRelationshipId = -1;
+
     public NeoStoreTransactionApplier( Version version, NeoStores neoStores, CacheAccessBackDoor cacheAccess, LockService lockService,
             long transactionId, LockGroup lockGroup )
     {
@@ -72,7 +78,7 @@ public class NeoStoreTransactionApplier extends TransactionApplier.Adapter
     public boolean visitNodeCommand( Command.NodeCommand command ) throws IOException
     {
         // acquire lock
-        lockGroup.add( lockService.acquireNodeLock( command.getKey(), LockService.LockType.WRITE_LOCK ) );
+        lockNode( command.getKey() );
 
         // update store
         updateStore( neoStores.getNodeStore(), command );
@@ -82,7 +88,7 @@ public class NeoStoreTransactionApplier extends TransactionApplier.Adapter
     @Override
     public boolean visitRelationshipCommand( Command.RelationshipCommand command ) throws IOException
     {
-        lockGroup.add( lockService.acquireRelationshipLock( command.getKey(), LockService.LockType.WRITE_LOCK ) );
+        lockRelationship( command.getKey() );
 
         updateStore( neoStores.getRelationshipStore(), command );
         return false;
@@ -94,11 +100,11 @@ public class NeoStoreTransactionApplier extends TransactionApplier.Adapter
         // acquire lock
         if ( command.getNodeId() != -1 )
         {
-            lockGroup.add( lockService.acquireNodeLock( command.getNodeId(), LockService.LockType.WRITE_LOCK ) );
+            lockNode( command.getNodeId() );
         }
         else if ( command.getRelId() != -1 )
         {
-            lockGroup.add( lockService.acquireRelationshipLock( command.getRelId(), LockService.LockType.WRITE_LOCK ) );
+            lockRelationship( command.getRelId() );
         }
 
         updateStore( neoStores.getPropertyStore(), command );
@@ -185,6 +191,24 @@ public class NeoStoreTransactionApplier extends TransactionApplier.Adapter
         return false;
     }
 
+    private void lockNode( long nodeId )
+    {
+        if ( nodeId != lastLockedNodeId )
+        {
+            lockGroup.add( lockService.acquireNodeLock( nodeId, LockService.LockType.WRITE_LOCK ) );
+            lastLockedNodeId = nodeId;
+        }
+    }
+
+    private void lockRelationship( long relationshipId )
+    {
+        if ( relationshipId != lastLockedRelationshipId )
+        {
+            lockGroup.add( lockService.acquireRelationshipLock( relationshipId, LockService.LockType.WRITE_LOCK ) );
+            lastLockedRelationshipId = relationshipId;
+        }
+    }
+
     private <RECORD extends AbstractBaseRecord> void updateStore( RecordStore<RECORD> store, BaseCommand<RECORD> command )
     {
         store.updateRecord( version.select( command ) );
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -409,7 +410,6 @@ public class PhysicalLogCommandReaderV3_0_2 extends BaseCommandReader
         boolean usesFixedReferenceFormat = bitFlag( flags, Record.USES_FIXED_REFERENCE_FORMAT );
 
         NodeRecord record;
-        Collection<DynamicRecord> dynamicLabelRecords = new ArrayList<>();
         long labelField = Record.NO_LABELS_FIELD.intValue();
         if ( inUse )
         {
@@ -428,8 +428,7 @@ public class PhysicalLogCommandReaderV3_0_2 extends BaseCommandReader
         {
             record = new NodeRecord( id );
         }
-        readDynamicRecords( channel, dynamicLabelRecords, COLLECTION_DYNAMIC_RECORD_ADDER );
-        record.setLabelField( labelField, dynamicLabelRecords );
+        record.setLabelField( labelField, readDynamicLabelRecords( channel ) );
         record.setInUse( inUse );
         return record;
     }
@@ -503,6 +502,31 @@ public class PhysicalLogCommandReaderV3_0_2 extends BaseCommandReader
         return record;
     }
 
+    /**
+     * Most nodes keep their labels inlined, so only allocate a collection for dynamic label records
+     * when there actually are any.
+     */
+    private Collection<DynamicRecord> readDynamicLabelRecords( ReadableChannel channel ) throws IOException
+    {
+        int numberOfRecords = channel.getInt();
+        assert numberOfRecords >= 0;
+        if ( numberOfRecords == 0 )
+        {
+            return Collections.emptyList();
+        }
+        Collection<DynamicRecord> records = new ArrayList<>( numberOfRecords );
+        for ( int i = 0; i < numberOfRecords; i++ )
+        {
+            DynamicRecord read = readDynamicRecord( channel );
+            if ( read == null )
+            {
+                break;
+            }
+            records.add( read );
+        }
+        return records;
+    }
+
     private <T> int readDynamicRecords( ReadableChannel channel, T target, DynamicRecordAdder<T> adder )
             throws IOException
     {
@@ -521,11 +545,22 @@ public class PhysicalLogCommandReaderV3_0_2 extends BaseCommandReader
         return numberOfRecords;
     }
 
-    private PropertyRecord readPropertyRecord( long id, ReadableChannel channel ) throws IOException
+    PropertyRecord readPropertyRecord( long id, ReadableChannel channel ) throws IOException
     {
         // in_use(byte)+type(int)+key_indexId(int)+prop_blockId(long)+
         // prev_prop_id(long)+next_prop_id(long)
         PropertyRecord record = new PropertyRecord( id );
+        boolean inUse = readPropertyRecordHeader( record, channel );
+        return readPropertyBlocks( record, inUse, channel );
+    }
+
+    /**
+     * Reads flags, chain pointers, owner and secondary unit of a property record into the given record.
+     *
+     * @return whether or not the record was in use.
+     */
+    boolean readPropertyRecordHeader( PropertyRecord record, ReadableChannel channel ) throws IOException
+    {
         byte flags = channel.get(); // 1
 
         boolean inUse = bitFlag( flags, Record.IN_USE.byteValue() );
@@ -555,6 +590,12 @@ public class PhysicalLogCommandReaderV3_0_2 extends BaseCommandReader
         {
             record.setSecondaryUnitId( channel.getLong() );
         }
+        return inUse;
+    }
+
+    private PropertyRecord readPropertyBlocks( PropertyRecord record, boolean inUse, ReadableChannel channel )
+            throws IOException
+    {
         int nrPropBlocks = channel.get();
         assert nrPropBlocks >= 0;
         if ( nrPropBlocks > 0 )
@@ -570,6 +611,16 @@ public class PhysicalLogCommandReaderV3_0_2 extends BaseCommandReader
             }
             record.addPropertyBlock( block );
         }
+        return readDeletedRecords( record, inUse, channel );
+    }
+
+    /**
+     * Reads the dynamic records deleted from the given property record, which is expected to have all its
+     * blocks at this point, and checks that the record is in use if, and only if, it has any blocks.
+     */
+    PropertyRecord readDeletedRecords( PropertyRecord record, boolean inUse, ReadableChannel channel )
+            throws IOException
+    {
         int deletedRecords = readDynamicRecords( channel, record, PROPERTY_DELETED_DYNAMIC_RECORD_ADDER );
         if ( deletedRecords == -1 )
         {
@@ -592,7 +643,7 @@ public class PhysicalLogCommandReaderV3_0_2 extends BaseCommandReader
         return record;
     }
 
-    private PropertyBlock readPropertyBlock( ReadableChannel channel ) throws IOException
+    PropertyBlock readPropertyBlock( ReadableChannel channel ) throws IOException
     {
         PropertyBlock toReturn = new PropertyBlock();
         byte blockSize = channel.get(); // the size is stored in bytes // 1
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.command;
+
+import java.io.IOException;
+
+import org.neo4j.kernel.impl.store.record.PropertyBlock;
+import org.neo4j.kernel.impl.store.record.PropertyRecord;
+import org.neo4j.storageengine.api.ReadableChannel;
+
+/**
+ * Reads everything {@link PhysicalLogCommandReaderV3_0_2} reads, plus {@link NeoCommandType#PROP_DELTA_COMMAND}
+ * where the before state of a property record is written as a delta against its after state.
+ */
+public class PhysicalLogCommandReaderV3_3 extends PhysicalLogCommandReaderV3_0_2
+{
+    @Override
+    protected Command read( byte commandType, ReadableChannel channel ) throws IOException
+    {
+        if ( commandType == NeoCommandType.PROP_DELTA_COMMAND )
+        {
+            return visitPropertyDeltaCommand( channel );
+        }
+        return super.read( commandType, channel );
+    }
+
+    private Command visitPropertyDeltaCommand( ReadableChannel channel ) throws IOException
+    {
+        // ID
+        long id = channel.getLong(); // 8
+        // AFTER
+        PropertyRecord after = readPropertyRecord( id, channel );
+        if ( after == null )
+        {
+            return null;
+        }
+        // BEFORE, as delta against AFTER
+        PropertyRecord before = readPropertyRecordDelta( id, after, channel );
+        if ( before == null )
+        {
+            return null;
+        }
+        return new Command.PropertyCommand( before, after );
+    }
+
+    private PropertyRecord readPropertyRecordDelta( long id, PropertyRecord after, ReadableChannel channel )
+            throws IOException
+    {
+        PropertyRecord record = new PropertyRecord( id );
+        boolean sameHeader = channel.get() == 1; // 1
+        boolean inUse;
+        if ( sameHeader )
+        {
+            copyHeader( after, record );
+            inUse = after.inUse();
+        }
+        else
+        {
+            inUse = readPropertyRecordHeader( record, channel );
+        }
+
+        PropertyBlock[] afterBlocks = new PropertyBlock[after.numberOfProperties()];
+        int afterIndex = 0;
+        for ( PropertyBlock block : after )
+        {
+            afterBlocks[afterIndex++] = block;
+        }
+
+        int nrPropBlocks = channel.get(); // 1
+        assert nrPropBlocks >= 0;
+        if ( nrPropBlocks > 0 )
+        {
+            record.setInUse( true );
+        }
+        while ( nrPropBlocks-- > 0 )
+        {
+            byte unchangedBlock = channel.get(); // 1
+            PropertyBlock block;
+            if ( unchangedBlock == -1 )
+            {
+                block = readPropertyBlock( channel );
+                if ( block == null )
+                {
+                    return null;
+                }
+            }
+            else
+            {
+                block = new PropertyBlock();
+                block.setValueBlocks( afterBlocks[unchangedBlock].getValueBlocks().clone() );
+            }
+            record.addPropertyBlock( block );
+        }
+        return readDeletedRecords( record, inUse, channel );
+    }
+
+    private static void copyHeader( PropertyRecord from, PropertyRecord to )
+    {
+        to.setRequiresSecondaryUnit( from.requiresSecondaryUnit() );
+        to.setUseFixedReferences( from.isUseFixedReferences() );
+        to.setNextProp( from.getNextProp() );
+        to.setPrevProp( from.getPrevProp() );
+        if ( from.getNodeId() != -1 )
+        {
+            to.setNodeId( from.getNodeId() );
+        }
+        else if ( from.getRelId() != -1 )
+        {
+            to.setRelId( from.getRelId() );
+        }
+        if ( from.hasSecondaryUnitId() )
+        {
+            to.setSecondaryUnitId( from.getSecondaryUnitId() );
+        }
+    }
+}
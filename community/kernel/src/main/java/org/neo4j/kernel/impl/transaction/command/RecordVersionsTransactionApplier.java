@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.command;
+
+import java.io.IOException;
+
+import org.neo4j.kernel.impl.api.TransactionApplier;
+import org.neo4j.kernel.impl.store.PropertyType;
+import org.neo4j.kernel.impl.store.RecordVersions;
+import org.neo4j.kernel.impl.store.record.DynamicRecord;
+import org.neo4j.kernel.impl.store.record.PropertyBlock;
+import org.neo4j.kernel.impl.store.record.PropertyRecord;
+import org.neo4j.kernel.impl.transaction.command.Command.NodeCommand;
+import org.neo4j.kernel.impl.transaction.command.Command.PropertyCommand;
+import org.neo4j.kernel.impl.transaction.command.Command.RelationshipCommand;
+import org.neo4j.kernel.impl.transaction.command.Command.RelationshipGroupCommand;
+
+public class RecordVersionsTransactionApplier extends TransactionApplier.Adapter
+{
+    private final RecordVersions recordVersions;
+    private final long txId;
+
+    public RecordVersionsTransactionApplier( RecordVersions recordVersions, long txId )
+    {
+        this.recordVersions = recordVersions;
+        this.txId = txId;
+    }
+
+    @Override
+    public boolean visitNodeCommand( NodeCommand command ) throws IOException
+    {
+        recordVersions.nodes().keep( txId, command.getBefore() );
+        for ( DynamicRecord labelRecord : command.getAfter().getDynamicLabelRecords() )
+        {
+            recordVersions.labels().keepChange( txId, labelRecord.getId() );
+        }
+        return false;
+    }
+
+    @Override
+    public boolean visitRelationshipCommand( RelationshipCommand command ) throws IOException
+    {
+        recordVersions.relationships().keep( txId, command.getBefore() );
+        return false;
+    }
+
+    @Override
+    public boolean visitRelationshipGroupCommand( RelationshipGroupCommand command ) throws IOException
+    {
+        recordVersions.relationshipGroups().keep( txId, command.getBefore() );
+        return false;
+    }
+
+    @Override
+    public boolean visitPropertyCommand( PropertyCommand command ) throws IOException
+    {
+        recordVersions.properties().keep( txId, command.getBefore() );
+        // the same dynamic records as the property store will write, see PropertyStore#updateRecord
+        PropertyRecord after = command.getAfter();
+        if ( after.inUse() )
+        {
+            for ( PropertyBlock block : after )
+            {
+                if ( !block.isLight() && block.getValueRecords().get( 0 ).isCreated() )
+                {
+                    keepValueChanges( block.getValueRecords() );
+                }
+            }
+        }
+        keepValueChanges( after.getDeletedRecords() );
+        return false;
+    }
+
+    private void keepValueChanges( Iterable<DynamicRecord> valueRecords )
+    {
+        for ( DynamicRecord valueRecord : valueRecords )
+        {
+            RecordVersions.Versions<DynamicRecord> versions = valueRecord.getType() == PropertyType.STRING
+                    ? recordVersions.propertyStrings()
+                    : recordVersions.propertyArrays();
+            versions.keepChange( txId, valueRecord.getId() );
+        }
+    }
+}
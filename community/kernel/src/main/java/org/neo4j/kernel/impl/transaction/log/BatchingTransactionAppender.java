@@ -64,6 +64,7 @@ public class BatchingTransactionAppender extends LifecycleAdapter implements Tra
     private final TransactionIdStore transactionIdStore;
     private final LogPositionMarker positionMarker = new LogPositionMarker();
     private final DatabaseHealth databaseHealth;
+    private final TransactionLogIndex transactionLogIndex;
     private final Lock forceLock = new ReentrantLock();
 
     private FlushablePositionAwareChannel writer;
@@ -73,6 +74,15 @@ public class BatchingTransactionAppender extends LifecycleAdapter implements Tra
     public BatchingTransactionAppender( LogFile logFile, LogRotation logRotation,
             TransactionMetadataCache transactionMetadataCache, TransactionIdStore transactionIdStore,
             IdOrderingQueue explicitIndexTransactionOrdering, DatabaseHealth databaseHealth )
+    {
+        this( logFile, logRotation, transactionMetadataCache, transactionIdStore, explicitIndexTransactionOrdering,
+                databaseHealth, TransactionLogIndex.NO_INDEX );
+    }
+
+    public BatchingTransactionAppender( LogFile logFile, LogRotation logRotation,
+            TransactionMetadataCache transactionMetadataCache, TransactionIdStore transactionIdStore,
+            IdOrderingQueue explicitIndexTransactionOrdering, DatabaseHealth databaseHealth,
+            TransactionLogIndex transactionLogIndex )
     {
         this.logFile = logFile;
         this.logRotation = logRotation;
@@ -80,6 +90,7 @@ public class BatchingTransactionAppender extends LifecycleAdapter implements Tra
         this.explicitIndexTransactionOrdering = explicitIndexTransactionOrdering;
         this.databaseHealth = databaseHealth;
         this.transactionMetadataCache = transactionMetadataCache;
+        this.transactionLogIndex = transactionLogIndex;
     }
 
     @Override
@@ -215,6 +226,7 @@ public class BatchingTransactionAppender extends LifecycleAdapter implements Tra
             transactionMetadataCache
                     .cacheTransactionMetadata( transactionId, logPositionBeforeCommit, transaction.getMasterId(),
                             transaction.getAuthorId(), transactionChecksum, transaction.getTimeCommitted() );
+            transactionLogIndex.indexTransaction( transactionId, logPositionBeforeCommit );
 
             transaction.accept( indexCommandDetector );
             boolean hasExplicitIndexChanges = indexCommandDetector.hasWrittenAnyExplicitIndexCommand();
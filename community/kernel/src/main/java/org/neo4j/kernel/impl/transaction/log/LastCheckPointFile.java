@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+
+/**
+ * A small file with a fixed layout next to the transaction logs, see {@link PhysicalLogFiles#getLastCheckPointFile()},
+ * remembering the log position targeted by the latest check point together with the id of the last transaction
+ * included in it. It lets {@link LogTailScanner} start reading at the latest check point instead of scanning
+ * the logs backwards looking for it.
+ * <p>
+ * The transaction logs are always the source of truth. The contents of this file is only a hint which is
+ * validated against the logs before use, so a missing, stale or torn file only means that the full scan is done.
+ */
+public class LastCheckPointFile
+{
+    static final int RECORD_SIZE = Long.BYTES * 4;
+
+    private final FileSystemAbstraction fileSystem;
+    private final File file;
+
+    public LastCheckPointFile( FileSystemAbstraction fileSystem, PhysicalLogFiles logFiles )
+    {
+        this.fileSystem = fileSystem;
+        this.file = logFiles.getLastCheckPointFile();
+    }
+
+    /**
+     * Records a check point which has been appended to, and forced in, the transaction log.
+     *
+     * @param checkPointedPosition the position the check point entry targets.
+     * @param lastTransactionId id of the last transaction included in the check point.
+     * @throws IOException on I/O error.
+     */
+    public synchronized void write( LogPosition checkPointedPosition, long lastTransactionId ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( RECORD_SIZE );
+        buffer.putLong( checkPointedPosition.getLogVersion() );
+        buffer.putLong( checkPointedPosition.getByteOffset() );
+        buffer.putLong( lastTransactionId );
+        buffer.putLong( checksum( buffer.array() ) );
+        buffer.flip();
+        try ( StoreChannel channel = fileSystem.open( file, "rw" ) )
+        {
+            channel.writeAll( buffer, 0 );
+            channel.truncate( RECORD_SIZE );
+            channel.force( false );
+        }
+    }
+
+    /**
+     * @return the last recorded check point, or {@code null} if there's no file or its contents is not intact.
+     * @throws IOException on I/O error.
+     */
+    public LastCheckPoint read() throws IOException
+    {
+        if ( !fileSystem.fileExists( file ) || fileSystem.getFileSize( file ) != RECORD_SIZE )
+        {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate( RECORD_SIZE );
+        try ( StoreChannel channel = fileSystem.open( file, "r" ) )
+        {
+            while ( buffer.hasRemaining() && channel.read( buffer ) != -1 )
+            {
+                // Keep reading
+            }
+        }
+        if ( buffer.hasRemaining() )
+        {
+            return null;
+        }
+        buffer.flip();
+        long logVersion = buffer.getLong();
+        long byteOffset = buffer.getLong();
+        long lastTransactionId = buffer.getLong();
+        if ( buffer.getLong() != checksum( buffer.array() ) || logVersion < 0 || byteOffset < 0 )
+        {
+            return null;
+        }
+        return new LastCheckPoint( new LogPosition( logVersion, byteOffset ), lastTransactionId );
+    }
+
+    private static long checksum( byte[] record )
+    {
+        CRC32 crc = new CRC32();
+        crc.update( record, 0, RECORD_SIZE - Long.BYTES );
+        return crc.getValue();
+    }
+
+    public static class LastCheckPoint
+    {
+        public final LogPosition checkPointedPosition;
+        public final long lastTransactionId;
+
+        LastCheckPoint( LogPosition checkPointedPosition, long lastTransactionId )
+        {
+            this.checkPointedPosition = checkPointedPosition;
+            this.lastTransactionId = lastTransactionId;
+        }
+    }
+}
@@ -40,12 +40,17 @@ import static org.neo4j.kernel.impl.transaction.log.LogVersionRepository.INITIAL
  * <p>
  * Due to the nature of transaction logs and log rotation, a single transaction log file has to be scanned forward, and
  * if the required data is not found we search backwards through log file versions.
+ * <p>
+ * If the {@link LastCheckPointFile} knows about a check point, the scan instead starts at the position targeted
+ * by it and only reads forward from there. If that check point can't be found in the logs at that position
+ * the backwards scan is done as usual.
  */
 public class LogTailScanner
 {
     private final PhysicalLogFiles logFiles;
     private final FileSystemAbstraction fileSystem;
     private final LogEntryReader<ReadableClosablePositionAwareChannel> logEntryReader;
+    private final LastCheckPointFile lastCheckPointFile;
     private LogTailInformation logTailInformation;
 
     public LogTailScanner( PhysicalLogFiles logFiles, FileSystemAbstraction fileSystem,
@@ -54,9 +59,108 @@ public class LogTailScanner
         this.logFiles = logFiles;
         this.fileSystem = fileSystem;
         this.logEntryReader = logEntryReader;
+        this.lastCheckPointFile = new LastCheckPointFile( fileSystem, logFiles );
     }
 
     private LogTailInformation update() throws IOException
+    {
+        LogTailInformation fromLastCheckPoint = scanFromLastCheckPoint();
+        return fromLastCheckPoint != null ? fromLastCheckPoint : scanBackwards();
+    }
+
+    /**
+     * Reads forward from the position targeted by the check point recorded in the {@link LastCheckPointFile}
+     * up to the end of the latest log version. Everything the backwards scan would have found is after that
+     * position, given that the recorded check point entry is found there.
+     *
+     * @return information about the tail, or {@code null} if the last check point file couldn't be used.
+     */
+    private LogTailInformation scanFromLastCheckPoint() throws IOException
+    {
+        LastCheckPointFile.LastCheckPoint recorded = lastCheckPointFile.read();
+        if ( recorded == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            return scanForwards( recorded );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            // The recorded position may be garbage for the logs we have, e.g. if they were replaced.
+            // The backwards scan is the authority on what's in the logs, so let it decide.
+            return null;
+        }
+    }
+
+    private LogTailInformation scanForwards( LastCheckPointFile.LastCheckPoint recorded ) throws IOException
+    {
+        final long fromVersionBackwards = logFiles.getHighestLogVersion();
+        LogPosition recordedPosition = recorded.checkPointedPosition;
+        if ( recordedPosition.getLogVersion() > fromVersionBackwards )
+        {
+            return null;
+        }
+
+        boolean recordedCheckPointFound = false;
+        CheckPoint latestCheckPoint = null;
+        long latestCheckPointVersion = -1;
+        LogEntryStart latestStartEntry = null;
+        LogEntryVersion latestLogEntryVersion = null;
+        for ( long version = recordedPosition.getLogVersion(); version <= fromVersionBackwards; version++ )
+        {
+            LogVersionedStoreChannel channel =
+                    PhysicalLogFile.tryOpenForVersion( logFiles, fileSystem, version, false );
+            if ( channel == null )
+            {
+                return null;
+            }
+            if ( version == recordedPosition.getLogVersion() )
+            {
+                channel.position( recordedPosition.getByteOffset() );
+            }
+
+            try ( LogEntryCursor cursor = new LogEntryCursor( logEntryReader,
+                    new ReadAheadLogChannel( channel, NO_MORE_CHANNELS ) ) )
+            {
+                while ( cursor.next() )
+                {
+                    LogEntry entry = cursor.get();
+                    if ( entry instanceof CheckPoint )
+                    {
+                        latestCheckPoint = entry.as();
+                        latestCheckPointVersion = version;
+                        recordedCheckPointFound |= recordedPosition.equals( latestCheckPoint.getLogPosition() );
+                    }
+                    if ( entry instanceof LogEntryStart )
+                    {
+                        latestStartEntry = entry.as();
+                    }
+                    latestLogEntryVersion = entry.getVersion();
+                }
+            }
+        }
+
+        if ( !recordedCheckPointFound )
+        {
+            return null;
+        }
+
+        LogTailInformation tail = latestCheckPoint( fromVersionBackwards, latestCheckPointVersion, latestStartEntry,
+                latestCheckPointVersion, latestCheckPoint, latestLogEntryVersion );
+        if ( recordedPosition.equals( latestCheckPoint.getLogPosition() ) &&
+                tail.firstTxIdAfterLastCheckPoint != LogTailInformation.NO_TRANSACTION_ID &&
+                tail.firstTxIdAfterLastCheckPoint != recorded.lastTransactionId + 1 )
+        {
+            // Transactions are appended in id order, so this isn't the check point that was recorded
+            return null;
+        }
+        return tail;
+    }
+
+    private LogTailInformation scanBackwards() throws IOException
     {
         final long fromVersionBackwards = logFiles.getHighestLogVersion();
         long version = fromVersionBackwards;
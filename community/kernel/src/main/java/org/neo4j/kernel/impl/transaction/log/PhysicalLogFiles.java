@@ -57,6 +57,9 @@ public class PhysicalLogFiles
         }
     }
 
+    public static final String INDEX_FILE_SUFFIX = ".idx";
+    public static final String LAST_CHECK_POINT_FILE_SUFFIX = ".checkpoint";
+
     private final File logBaseName;
     private final Pattern logFilePattern;
     private final FileSystemAbstraction fileSystem;
@@ -78,6 +81,25 @@ public class PhysicalLogFiles
         return new File( logBaseName.getPath() + DEFAULT_VERSION_SUFFIX + version );
     }
 
+    /**
+     * @param version log version to get the sparse transaction index file for.
+     * @return the file holding the {@link PhysicalTransactionLogIndex sparse transaction index} of the log
+     * file with the given version. The name doesn't match the log file pattern, so it's never mistaken for a log.
+     */
+    public File getIndexFileForVersion( long version )
+    {
+        return new File( getLogFileForVersion( version ).getPath() + INDEX_FILE_SUFFIX );
+    }
+
+    /**
+     * @return the file holding the position of the {@link LastCheckPointFile last check point} in these logs.
+     * The name doesn't match the log file pattern, so it's never mistaken for a log.
+     */
+    public File getLastCheckPointFile()
+    {
+        return new File( logBaseName.getPath() + LAST_CHECK_POINT_FILE_SUFFIX );
+    }
+
     public boolean versionExists( long version )
     {
         return fileSystem.fileExists( getLogFileForVersion( version ) );
@@ -46,13 +46,22 @@ public class PhysicalLogicalTransactionStore implements LogicalTransactionStore
     private final LogFile logFile;
     private final TransactionMetadataCache transactionMetadataCache;
     private final LogEntryReader<ReadableClosablePositionAwareChannel> logEntryReader;
+    private final TransactionLogIndex transactionLogIndex;
 
     public PhysicalLogicalTransactionStore( LogFile logFile, TransactionMetadataCache transactionMetadataCache,
             LogEntryReader<ReadableClosablePositionAwareChannel> logEntryReader )
+    {
+        this( logFile, transactionMetadataCache, logEntryReader, TransactionLogIndex.NO_INDEX );
+    }
+
+    public PhysicalLogicalTransactionStore( LogFile logFile, TransactionMetadataCache transactionMetadataCache,
+            LogEntryReader<ReadableClosablePositionAwareChannel> logEntryReader,
+            TransactionLogIndex transactionLogIndex )
     {
         this.logFile = logFile;
         this.transactionMetadataCache = transactionMetadataCache;
         this.logEntryReader = logEntryReader;
+        this.transactionLogIndex = transactionLogIndex;
     }
 
     @Override
@@ -87,10 +96,18 @@ public class PhysicalLogicalTransactionStore implements LogicalTransactionStore
             LogVersionLocator headerVisitor = new LogVersionLocator( transactionIdToStartFrom );
             logFile.accept( headerVisitor );
 
-            // ask LogFile
+            // ask the index where in that version to start looking, then ask LogFile
+            LogPosition logStart = headerVisitor.getLogPosition();
+            LogPosition indexedPosition = transactionLogIndex.lookup( transactionIdToStartFrom, logStart );
             TransactionPositionLocator transactionPositionLocator =
                     new TransactionPositionLocator( transactionIdToStartFrom, logEntryReader );
-            logFile.accept( transactionPositionLocator, headerVisitor.getLogPosition() );
+            logFile.accept( transactionPositionLocator, indexedPosition );
+            if ( !transactionPositionLocator.hasFoundTransaction() && !indexedPosition.equals( logStart ) )
+            {
+                // The index should never point past the transaction, but it's only a hint so fall back to a full scan
+                transactionPositionLocator = new TransactionPositionLocator( transactionIdToStartFrom, logEntryReader );
+                logFile.accept( transactionPositionLocator, logStart );
+            }
             LogPosition position = transactionPositionLocator.getAndCacheFoundLogPosition( transactionMetadataCache );
             return new PhysicalTransactionCursor<>( logFile.getReader( position ), logEntryReader );
         }
@@ -182,6 +199,11 @@ public class PhysicalLogicalTransactionStore implements LogicalTransactionStore
             return true;
         }
 
+        public boolean hasFoundTransaction()
+        {
+            return startEntryForFoundTransaction != null;
+        }
+
         public LogPosition getAndCacheFoundLogPosition( TransactionMetadataCache transactionMetadataCache )
                 throws NoSuchTransactionException
         {
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.neo4j.helpers.collection.LruCache;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+import org.neo4j.logging.Log;
+import org.neo4j.logging.LogProvider;
+
+/**
+ * {@link TransactionLogIndex} keeping one small index file next to each log file, see
+ * {@link PhysicalLogFiles#getIndexFileForVersion(long)}. Every {@code transactionsPerEntry}:th appended transaction
+ * gets an entry, consisting of its transaction id and the byte offset of its start entry, both 8 bytes.
+ * <p>
+ * The index files are never forced. Entries missing after a crash only makes lookups read more of the log, while
+ * entries pointing to positions that didn't make it to the log are removed on {@link #start() start} and
+ * when recovery {@link #truncate(LogPosition) truncates} the log. A trailing partially written entry is ignored.
+ * Failing to write an entry is logged and stops indexing of that log version, whose remaining transactions
+ * will be found by scanning from the last entry written.
+ */
+public class PhysicalTransactionLogIndex extends LifecycleAdapter implements TransactionLogIndex
+{
+    public static final int DEFAULT_TRANSACTIONS_PER_ENTRY = 100;
+    static final int ENTRY_SIZE = Long.BYTES * 2;
+
+    private final FileSystemAbstraction fileSystem;
+    private final PhysicalLogFiles logFiles;
+    private final int transactionsPerEntry;
+    private final Log log;
+    private final LruCache<Long /*log version*/, Entries> historicalEntries =
+            new LruCache<>( "Transaction log index cache", 100 );
+    private final ByteBuffer entryBuffer = ByteBuffer.allocate( ENTRY_SIZE );
+
+    // State of the index file currently appended to, i.e. the one belonging to the latest log version
+    private StoreChannel channel;
+    private long channelVersion = -1;
+    private Entries currentEntries;
+    private int transactionsSinceLastEntry;
+    // Log version which failed to be written to, and which therefore won't get any more entries
+    private long failedVersion = -1;
+
+    public PhysicalTransactionLogIndex( FileSystemAbstraction fileSystem, PhysicalLogFiles logFiles,
+            int transactionsPerEntry, LogProvider logProvider )
+    {
+        this.fileSystem = fileSystem;
+        this.logFiles = logFiles;
+        this.transactionsPerEntry = transactionsPerEntry;
+        this.log = logProvider.getLog( getClass() );
+    }
+
+    @Override
+    public synchronized void start() throws IOException
+    {
+        // The index file of the latest log version may have entries for transactions which never made it into
+        // the log before a crash. They must go before the log gets appended to again.
+        long highestVersion = logFiles.getHighestLogVersion();
+        if ( highestVersion >= 0 && fileSystem.fileExists( logFiles.getIndexFileForVersion( highestVersion ) ) )
+        {
+            long logSize = fileSystem.getFileSize( logFiles.getLogFileForVersion( highestVersion ) );
+            truncate( new LogPosition( highestVersion, logSize ) );
+        }
+    }
+
+    @Override
+    public synchronized void shutdown() throws IOException
+    {
+        closeChannel();
+        historicalEntries.clear();
+    }
+
+    @Override
+    public synchronized void indexTransaction( long transactionId, LogPosition startPosition )
+    {
+        long version = startPosition.getLogVersion();
+        if ( version == failedVersion )
+        {
+            return;
+        }
+        try
+        {
+            appendEntry( transactionId, startPosition );
+        }
+        catch ( IOException e )
+        {
+            failedVersion = version;
+            try
+            {
+                closeChannel();
+            }
+            catch ( IOException closeException )
+            {
+                e.addSuppressed( closeException );
+            }
+            log.warn( "Failed to write transaction log index of log version " + version + ", lookups of its " +
+                    "later transactions will scan the log", e );
+        }
+    }
+
+    private void appendEntry( long transactionId, LogPosition startPosition ) throws IOException
+    {
+        long version = startPosition.getLogVersion();
+        if ( version != channelVersion )
+        {
+            openForAppending( version );
+        }
+        if ( !currentEntries.isAfterLast( transactionId, startPosition.getByteOffset() ) )
+        {
+            // Already covered by the index, e.g. a transaction seen again during recovery
+            return;
+        }
+        if ( ++transactionsSinceLastEntry < transactionsPerEntry )
+        {
+            return;
+        }
+        transactionsSinceLastEntry = 0;
+
+        entryBuffer.clear();
+        entryBuffer.putLong( transactionId );
+        entryBuffer.putLong( startPosition.getByteOffset() );
+        entryBuffer.flip();
+        channel.writeAll( entryBuffer, (long) currentEntries.size * ENTRY_SIZE );
+        currentEntries.add( transactionId, startPosition.getByteOffset() );
+    }
+
+    @Override
+    public synchronized LogPosition lookup( long transactionId, LogPosition logStart ) throws IOException
+    {
+        long version = logStart.getLogVersion();
+        Entries entries = entriesFor( version );
+        int index = entries.floor( transactionId );
+        return index == -1 ? logStart : new LogPosition( version, entries.byteOffsets[index] );
+    }
+
+    @Override
+    public synchronized void truncate( LogPosition position ) throws IOException
+    {
+        long version = position.getLogVersion();
+        if ( version == channelVersion )
+        {
+            currentEntries.truncate( position.getByteOffset() );
+            channel.truncate( (long) currentEntries.size * ENTRY_SIZE );
+            return;
+        }
+
+        historicalEntries.remove( version );
+        File file = logFiles.getIndexFileForVersion( version );
+        if ( fileSystem.fileExists( file ) )
+        {
+            try ( StoreChannel fileChannel = fileSystem.open( file, "rw" ) )
+            {
+                Entries entries = read( fileChannel );
+                entries.truncate( position.getByteOffset() );
+                fileChannel.truncate( (long) entries.size * ENTRY_SIZE );
+            }
+        }
+    }
+
+    @Override
+    public synchronized void delete( long version )
+    {
+        historicalEntries.remove( version );
+        fileSystem.deleteFile( logFiles.getIndexFileForVersion( version ) );
+    }
+
+    private void openForAppending( long version ) throws IOException
+    {
+        if ( channel != null )
+        {
+            historicalEntries.put( channelVersion, currentEntries );
+            closeChannel();
+        }
+
+        StoreChannel newChannel = fileSystem.open( logFiles.getIndexFileForVersion( version ), "rw" );
+        currentEntries = read( newChannel );
+        // Get rid of any partially written trailing entry
+        newChannel.truncate( (long) currentEntries.size * ENTRY_SIZE );
+        channel = newChannel;
+        channelVersion = version;
+        transactionsSinceLastEntry = 0;
+        historicalEntries.remove( version );
+    }
+
+    private void closeChannel() throws IOException
+    {
+        if ( channel != null )
+        {
+            try
+            {
+                channel.close();
+            }
+            finally
+            {
+                channel = null;
+                channelVersion = -1;
+                currentEntries = null;
+            }
+        }
+    }
+
+    private Entries entriesFor( long version ) throws IOException
+    {
+        if ( version == channelVersion )
+        {
+            return currentEntries;
+        }
+
+        Entries entries = historicalEntries.get( version );
+        if ( entries == null )
+        {
+            File file = logFiles.getIndexFileForVersion( version );
+            if ( !fileSystem.fileExists( file ) )
+            {
+                // Log written before there was an index, or the index file got lost. Its log will be scanned.
+                return Entries.EMPTY;
+            }
+            try ( StoreChannel fileChannel = fileSystem.open( file, "r" ) )
+            {
+                entries = read( fileChannel );
+            }
+            historicalEntries.put( version, entries );
+        }
+        return entries;
+    }
+
+    private static Entries read( StoreChannel channel ) throws IOException
+    {
+        int entryCount = (int) (channel.size() / ENTRY_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate( entryCount * ENTRY_SIZE );
+        channel.position( 0 );
+        while ( buffer.hasRemaining() && channel.read( buffer ) != -1 )
+        {
+            // Keep reading
+        }
+        buffer.flip();
+
+        Entries entries = new Entries( entryCount );
+        while ( buffer.remaining() >= ENTRY_SIZE )
+        {
+            long transactionId = buffer.getLong();
+            long byteOffset = buffer.getLong();
+            if ( !entries.isAfterLast( transactionId, byteOffset ) )
+            {
+                // Entries are strictly increasing, anything after this is garbage
+                break;
+            }
+            entries.add( transactionId, byteOffset );
+        }
+        return entries;
+    }
+
+    /**
+     * Index entries of one log version, sorted by transaction id as well as byte offset.
+     */
+    static class Entries
+    {
+        static final Entries EMPTY = new Entries( 0 );
+
+        private long[] transactionIds;
+        private long[] byteOffsets;
+        private int size;
+
+        Entries( int initialCapacity )
+        {
+            transactionIds = new long[initialCapacity];
+            byteOffsets = new long[initialCapacity];
+        }
+
+        boolean isAfterLast( long transactionId, long byteOffset )
+        {
+            return size == 0 || (transactionId > transactionIds[size - 1] && byteOffset > byteOffsets[size - 1]);
+        }
+
+        void add( long transactionId, long byteOffset )
+        {
+            if ( size == transactionIds.length )
+            {
+                int newCapacity = Math.max( 16, size * 2 );
+                transactionIds = Arrays.copyOf( transactionIds, newCapacity );
+                byteOffsets = Arrays.copyOf( byteOffsets, newCapacity );
+            }
+            transactionIds[size] = transactionId;
+            byteOffsets[size] = byteOffset;
+            size++;
+        }
+
+        /**
+         * @return index of the entry with the highest transaction id not higher than the given one, or {@code -1}.
+         */
+        int floor( long transactionId )
+        {
+            int index = Arrays.binarySearch( transactionIds, 0, size, transactionId );
+            return index >= 0 ? index : -index - 2;
+        }
+
+        void truncate( long byteOffset )
+        {
+            while ( size > 0 && byteOffsets[size - 1] >= byteOffset )
+            {
+                size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import java.io.IOException;
+
+/**
+ * Sparse index from transaction id to the position of its start entry in the transaction log. Used to narrow down
+ * where to start reading when looking for a transaction which isn't in the {@link TransactionMetadataCache},
+ * so that a lookup doesn't have to scan a log file from its beginning.
+ * <p>
+ * The index is only a hint: a position returned from {@link #lookup(long, LogPosition)} is always the start
+ * of a transaction at or before the sought one, in the same log version, or the given log start position
+ * if the index knows nothing better.
+ */
+public interface TransactionLogIndex
+{
+    TransactionLogIndex NO_INDEX = new TransactionLogIndex()
+    {
+        @Override
+        public void indexTransaction( long transactionId, LogPosition startPosition )
+        {
+        }
+
+        @Override
+        public LogPosition lookup( long transactionId, LogPosition logStart )
+        {
+            return logStart;
+        }
+
+        @Override
+        public void truncate( LogPosition position )
+        {
+        }
+
+        @Override
+        public void delete( long version )
+        {
+        }
+    };
+
+    /**
+     * Offers a transaction which has been appended, or recovered, at the given position. Implementations are free
+     * to only keep some of the offered transactions. Since the index is only a hint, failing to write to it must
+     * not fail the transaction, so implementations handle such failures themselves.
+     *
+     * @param transactionId id of the transaction.
+     * @param startPosition position of the start entry of the transaction.
+     */
+    void indexTransaction( long transactionId, LogPosition startPosition );
+
+    /**
+     * @param transactionId id of the transaction to find.
+     * @param logStart start position of the log version known to contain the transaction.
+     * @return position of the closest indexed transaction start not after the given transaction,
+     * or {@code logStart} if there is no such transaction in the index.
+     * @throws IOException on failure to read the index.
+     */
+    LogPosition lookup( long transactionId, LogPosition logStart ) throws IOException;
+
+    /**
+     * Forgets about all transactions indexed at or after the given position, for example since the log
+     * has been truncated to this position during recovery.
+     *
+     * @param position position in the log from where index entries are no longer valid.
+     * @throws IOException on failure to truncate the index.
+     */
+    void truncate( LogPosition position ) throws IOException;
+
+    /**
+     * Removes the index of the given log version, since that log has been pruned.
+     *
+     * @param version version of the log that no longer exists.
+     */
+    void delete( long version );
+}
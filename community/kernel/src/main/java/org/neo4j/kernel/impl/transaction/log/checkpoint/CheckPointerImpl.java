@@ -22,6 +22,7 @@ package org.neo4j.kernel.impl.transaction.log.checkpoint;
 import java.io.IOException;
 import org.neo4j.graphdb.Resource;
 import org.neo4j.io.pagecache.IOLimiter;
+import org.neo4j.kernel.impl.transaction.log.LastCheckPointFile;
 import org.neo4j.kernel.impl.transaction.log.LogPosition;
 import org.neo4j.kernel.impl.transaction.log.TransactionAppender;
 import org.neo4j.kernel.impl.transaction.log.TransactionIdStore;
@@ -46,6 +47,7 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
     private final Log msgLog;
     private final CheckPointTracer tracer;
     private final StoreCopyCheckPointMutex mutex;
+    private final LastCheckPointFile lastCheckPointFile;
 
     private long lastCheckPointedTx;
 
@@ -60,6 +62,23 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
             CheckPointTracer tracer,
             IOLimiter ioLimiter,
             StoreCopyCheckPointMutex mutex )
+    {
+        this( transactionIdStore, threshold, storageEngine, logPruning, appender, databaseHealth, logProvider,
+                tracer, ioLimiter, mutex, null );
+    }
+
+    public CheckPointerImpl(
+            TransactionIdStore transactionIdStore,
+            CheckPointThreshold threshold,
+            StorageEngine storageEngine,
+            LogPruning logPruning,
+            TransactionAppender appender,
+            DatabaseHealth databaseHealth,
+            LogProvider logProvider,
+            CheckPointTracer tracer,
+            IOLimiter ioLimiter,
+            StoreCopyCheckPointMutex mutex,
+            LastCheckPointFile lastCheckPointFile )
     {
         this.appender = appender;
         this.transactionIdStore = transactionIdStore;
@@ -71,6 +90,7 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
         this.msgLog = logProvider.getLog( CheckPointerImpl.class );
         this.tracer = tracer;
         this.mutex = mutex;
+        this.lastCheckPointFile = lastCheckPointFile;
     }
 
     @Override
@@ -169,6 +189,7 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
             appender.checkPoint( logPosition, logCheckPointEvent );
             threshold.checkPointHappened( lastClosedTransactionId );
             msgLog.info( prefix + " Appending check point entry into the tx log completed" );
+            recordLastCheckPoint( prefix, logPosition, lastClosedTransactionId );
             msgLog.info( prefix + " Check pointing completed" );
             /*
              * Prune up to the version pointed from the latest check point,
@@ -188,6 +209,27 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
         }
     }
 
+    /**
+     * Lets the next startup find this check point without scanning the logs for it. The check point entry is
+     * already safely in the log at this point, so failing to record it only makes that startup slower.
+     */
+    private void recordLastCheckPoint( String prefix, LogPosition logPosition, long lastClosedTransactionId )
+    {
+        if ( lastCheckPointFile == null )
+        {
+            return;
+        }
+        try
+        {
+            lastCheckPointFile.write( logPosition, lastClosedTransactionId );
+        }
+        catch ( IOException e )
+        {
+            msgLog.warn( prefix + " Unable to record position of check point, next startup will have to scan " +
+                    "the tx log for it", e );
+        }
+    }
+
     @Override
     public long lastCheckPointedTransactionId()
     {
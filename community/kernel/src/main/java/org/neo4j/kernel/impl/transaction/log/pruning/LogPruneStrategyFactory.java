@@ -22,6 +22,7 @@ package org.neo4j.kernel.impl.transaction.log.pruning;
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.kernel.impl.transaction.log.LogFileInformation;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFiles;
+import org.neo4j.kernel.impl.transaction.log.TransactionLogIndex;
 import org.neo4j.kernel.impl.transaction.log.pruning.ThresholdConfigParser.ThresholdConfigValue;
 import org.neo4j.time.Clocks;
 
@@ -67,6 +68,7 @@ public class LogPruneStrategyFactory
     public static LogPruneStrategy fromConfigValue( FileSystemAbstraction fileSystem,
                                                     LogFileInformation logFileInformation,
                                                     PhysicalLogFiles files,
+                                                    TransactionLogIndex transactionLogIndex,
                                                     String configValue )
     {
         ThresholdConfigValue value = parse( configValue );
@@ -77,7 +79,8 @@ public class LogPruneStrategyFactory
         }
 
         Threshold thresholdToUse = getThresholdByType( fileSystem, value, configValue );
-        return new ThresholdBasedPruneStrategy( fileSystem, logFileInformation, files, thresholdToUse );
+        return new ThresholdBasedPruneStrategy( fileSystem, logFileInformation, files, thresholdToUse,
+                transactionLogIndex );
     }
 
     // visible for testing
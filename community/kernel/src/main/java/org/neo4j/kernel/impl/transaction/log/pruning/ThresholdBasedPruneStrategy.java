@@ -24,6 +24,7 @@ import java.io.File;
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.kernel.impl.transaction.log.LogFileInformation;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFiles;
+import org.neo4j.kernel.impl.transaction.log.TransactionLogIndex;
 
 import static org.neo4j.kernel.impl.transaction.log.LogVersionRepository.INITIAL_LOG_VERSION;
 import static org.neo4j.kernel.impl.transaction.log.entry.LogHeader.LOG_HEADER_SIZE;
@@ -34,14 +35,17 @@ public class ThresholdBasedPruneStrategy implements LogPruneStrategy
     private final LogFileInformation logFileInformation;
     private final PhysicalLogFiles files;
     private final Threshold threshold;
+    private final TransactionLogIndex transactionLogIndex;
 
     public ThresholdBasedPruneStrategy( FileSystemAbstraction fileSystem, LogFileInformation logFileInformation,
-                                        PhysicalLogFiles files, Threshold threshold )
+                                        PhysicalLogFiles files, Threshold threshold,
+                                        TransactionLogIndex transactionLogIndex )
     {
         this.fileSystem = fileSystem;
         this.logFileInformation = logFileInformation;
         this.files = files;
         this.threshold = threshold;
+        this.transactionLogIndex = transactionLogIndex;
     }
 
     @Override
@@ -107,6 +111,7 @@ public class ThresholdBasedPruneStrategy implements LogPruneStrategy
         for ( long version = lower; version <= upper; version++ )
         {
             fileSystem.deleteFile( files.getLogFileForVersion( version ) );
+            transactionLogIndex.delete( version );
         }
     }
 }
@@ -27,6 +27,7 @@ import org.neo4j.kernel.impl.store.record.Record;
 import org.neo4j.kernel.impl.store.record.RelationshipGroupRecord;
 import org.neo4j.kernel.impl.store.record.RelationshipRecord;
 import org.neo4j.kernel.impl.transaction.state.RecordAccess.RecordProxy;
+import org.neo4j.kernel.impl.transaction.state.RelationshipGroupGetter.RelationshipGroupPosition;
 import org.neo4j.kernel.impl.util.DirectionWrapper;
 import org.neo4j.storageengine.api.lock.ResourceLocker;
 
@@ -34,11 +35,24 @@ public class RelationshipCreator
 {
     private final RelationshipGroupGetter relGroupGetter;
     private final int denseNodeThreshold;
+    private final boolean relationshipGroupLocking;
 
     public RelationshipCreator( RelationshipGroupGetter relGroupGetter, int denseNodeThreshold )
+    {
+        this( relGroupGetter, denseNodeThreshold, false );
+    }
+
+    /**
+     * @param relationshipGroupLocking whether transactions only hold a shared lock on the dense nodes they add
+     * relationships to, in which case the relationship groups are locked here before they are changed.
+     * See {@link ResourceTypes#RELATIONSHIP_GROUP}.
+     */
+    public RelationshipCreator( RelationshipGroupGetter relGroupGetter, int denseNodeThreshold,
+            boolean relationshipGroupLocking )
     {
         this.relGroupGetter = relGroupGetter;
         this.denseNodeThreshold = denseNodeThreshold;
+        this.relationshipGroupLocking = relationshipGroupLocking;
     }
 
     /**
@@ -54,19 +68,37 @@ public class RelationshipCreator
     public void relationshipCreate( long id, int type, long firstNodeId, long secondNodeId,
             RecordAccessSet recordChangeSet, ResourceLocker locks )
     {
-        // TODO could be unnecessary to mark as changed here already, dense nodes may not need to change
-        NodeRecord firstNode = recordChangeSet.getNodeRecords().getOrLoad( firstNodeId, null ).forChangingLinkage();
-        NodeRecord secondNode = recordChangeSet.getNodeRecords().getOrLoad( secondNodeId, null ).forChangingLinkage();
-        convertNodeToDenseIfNecessary( firstNode, recordChangeSet.getRelRecords(),
+        NodeRecord firstNode = loadNode( firstNodeId, recordChangeSet.getNodeRecords() );
+        NodeRecord secondNode = loadNode( secondNodeId, recordChangeSet.getNodeRecords() );
+        convertNodeToDenseIfNecessary( firstNode, recordChangeSet.getNodeRecords(), recordChangeSet.getRelRecords(),
                 recordChangeSet.getRelGroupRecords(), locks );
-        convertNodeToDenseIfNecessary( secondNode, recordChangeSet.getRelRecords(),
+        convertNodeToDenseIfNecessary( secondNode, recordChangeSet.getNodeRecords(), recordChangeSet.getRelRecords(),
                 recordChangeSet.getRelGroupRecords(), locks );
         RelationshipRecord record = recordChangeSet.getRelRecords().create( id, null ).forChangingLinkage();
         record.setLinks( firstNodeId, secondNodeId, type );
         record.setInUse( true );
         record.setCreated();
-        connectRelationship( firstNode, secondNode, record, recordChangeSet.getRelRecords(),
-                recordChangeSet.getRelGroupRecords(), locks );
+        connectRelationship( firstNode, secondNode, record, recordChangeSet.getNodeRecords(),
+                recordChangeSet.getRelRecords(), recordChangeSet.getRelGroupRecords(), locks );
+    }
+
+    /**
+     * Dense nodes don't need to change when relationships are added to them, unless a group is linked in first in
+     * their group chain. With relationship group locking, another transaction may do just that while we only hold a
+     * shared lock on the node, so we must not write back the copy of the node record we read here.
+     */
+    private NodeRecord loadNode( long nodeId, RecordAccess<NodeRecord,Void> nodeRecords )
+    {
+        RecordProxy<NodeRecord,Void> nodeChange = nodeRecords.getOrLoad( nodeId, null );
+        if ( relationshipGroupLocking )
+        {
+            NodeRecord node = nodeChange.forReadingLinkage();
+            if ( node.isDense() )
+            {
+                return node;
+            }
+        }
+        return nodeChange.forChangingLinkage();
     }
 
     public static int relCount( long nodeId, RelationshipRecord rel )
@@ -74,7 +106,7 @@ public class RelationshipCreator
         return (int) (nodeId == rel.getFirstNode() ? rel.getFirstPrevRel() : rel.getSecondPrevRel());
     }
 
-    private void convertNodeToDenseIfNecessary( NodeRecord node,
+    private void convertNodeToDenseIfNecessary( NodeRecord node, RecordAccess<NodeRecord, Void> nodeRecords,
             RecordAccess<RelationshipRecord, Void> relRecords,
             RecordAccess<RelationshipGroupRecord, Integer> relGroupRecords, ResourceLocker locks )
     {
@@ -94,13 +126,14 @@ public class RelationshipCreator
                 // changed in the meantime.
                 relChange = relRecords.getOrLoad( relId, null );
 
-                convertNodeToDenseNode( node, relChange.forChangingLinkage(), relRecords, relGroupRecords, locks );
+                convertNodeToDenseNode( node, relChange.forChangingLinkage(), nodeRecords, relRecords, relGroupRecords,
+                        locks );
             }
         }
     }
 
     private void connectRelationship( NodeRecord firstNode,
-            NodeRecord secondNode, RelationshipRecord rel,
+            NodeRecord secondNode, RelationshipRecord rel, RecordAccess<NodeRecord, Void> nodeRecords,
             RecordAccess<RelationshipRecord, Void> relRecords,
             RecordAccess<RelationshipGroupRecord, Integer> relGroupRecords, ResourceLocker locks )
     {
@@ -124,7 +157,7 @@ public class RelationshipCreator
         }
         else
         {
-            connectRelationshipToDenseNode( firstNode, rel, relRecords, relGroupRecords, locks );
+            connectRelationshipToDenseNode( firstNode, rel, nodeRecords, relRecords, relGroupRecords, locks );
         }
 
         if ( !secondNode.isDense() )
@@ -141,7 +174,7 @@ public class RelationshipCreator
         }
         else if ( firstNode.getId() != secondNode.getId() )
         {
-            connectRelationshipToDenseNode( secondNode, rel, relRecords, relGroupRecords, locks );
+            connectRelationshipToDenseNode( secondNode, rel, nodeRecords, relRecords, relGroupRecords, locks );
         }
 
         if ( !firstNode.isDense() )
@@ -155,11 +188,13 @@ public class RelationshipCreator
     }
 
     private void connectRelationshipToDenseNode( NodeRecord node, RelationshipRecord rel,
-            RecordAccess<RelationshipRecord, Void> relRecords,
+            RecordAccess<NodeRecord, Void> nodeRecords, RecordAccess<RelationshipRecord, Void> relRecords,
             RecordAccess<RelationshipGroupRecord, Integer> relGroupRecords, ResourceLocker locks )
     {
-        RelationshipGroupRecord group =
-                relGroupGetter.getOrCreateRelationshipGroup( node, rel.getType(), relGroupRecords ).forChangingData();
+        RelationshipGroupRecord group = (relationshipGroupLocking
+                ? lockAndGetOrCreateRelationshipGroup( node, rel.getType(), nodeRecords, relGroupRecords, locks )
+                : relGroupGetter.getOrCreateRelationshipGroup( node, rel.getType(), relGroupRecords ))
+                .forChangingData();
         DirectionWrapper dir = DirectionIdentifier.wrapDirection( rel, node );
         long nextRel = dir.getNextRel( group );
         setCorrectNextRel( node, rel, nextRel );
@@ -167,6 +202,52 @@ public class RelationshipCreator
         dir.setNextRel( group, rel.getId() );
     }
 
+    /**
+     * Finds or creates the relationship group of the given type, for a dense node that we only hold a shared lock
+     * on. Other transactions may be changing other groups of the same node meanwhile, each holding the
+     * {@link ResourceTypes#RELATIONSHIP_GROUP} locks of the groups it changes, so we lock every group record before
+     * loading it for changing. Linking in a new group changes the group before it in the chain, or the node record if
+     * it goes first. That is locked as well, after which we have to look again, since the chain may have changed
+     * before we got the lock.
+     */
+    private RecordProxy<RelationshipGroupRecord, Integer> lockAndGetOrCreateRelationshipGroup( NodeRecord node,
+            int type, RecordAccess<NodeRecord, Void> nodeRecords,
+            RecordAccess<RelationshipGroupRecord, Integer> relGroupRecords, ResourceLocker locks )
+    {
+        long nodeId = node.getId();
+        locks.acquireExclusive( LockTracer.NONE, ResourceTypes.RELATIONSHIP_GROUP,
+                ResourceTypes.relationshipGroupResourceId( nodeId, type ) );
+        RecordProxy<NodeRecord, Void> nodeChange = null;
+        int lockedPreviousType = type;
+        while ( true )
+        {
+            RelationshipGroupPosition position = relGroupGetter.getRelationshipGroup( node, type, relGroupRecords );
+            if ( position.group() != null )
+            {
+                return position.group();
+            }
+
+            RecordProxy<RelationshipGroupRecord, Integer> closestPrevious = position.closestPrevious();
+            int previousType = closestPrevious != null ? closestPrevious.forReadingLinkage().getType()
+                                                       : ResourceTypes.RELATIONSHIP_GROUP_CHAIN_HEAD;
+            if ( previousType == lockedPreviousType )
+            {
+                if ( closestPrevious == null )
+                {
+                    node = nodeChange.forChangingLinkage();
+                }
+                return relGroupGetter.createRelationshipGroup( node, type, closestPrevious, relGroupRecords );
+            }
+
+            locks.acquireExclusive( LockTracer.NONE, ResourceTypes.RELATIONSHIP_GROUP,
+                    ResourceTypes.relationshipGroupResourceId( nodeId, previousType ) );
+            lockedPreviousType = previousType;
+            // Look again from a fresh copy of the node record, in case another transaction linked in a group first
+            nodeChange = nodeRecords.getOrLoad( nodeId, null );
+            node = nodeChange.forReadingLinkage();
+        }
+    }
+
     private void connect( NodeRecord node, RelationshipRecord rel,
             RecordAccess<RelationshipRecord, Void> relRecords, ResourceLocker locks )
     {
@@ -174,7 +255,7 @@ public class RelationshipCreator
     }
 
     private void convertNodeToDenseNode( NodeRecord node, RelationshipRecord firstRel,
-            RecordAccess<RelationshipRecord, Void> relRecords,
+            RecordAccess<NodeRecord, Void> nodeRecords, RecordAccess<RelationshipRecord, Void> relRecords,
             RecordAccess<RelationshipGroupRecord, Integer> relGroupRecords, ResourceLocker locks )
     {
         node.setDense( true );
@@ -185,7 +266,7 @@ public class RelationshipCreator
         {
             // Get the next relationship id before connecting it (where linkage is overwritten)
             relId = relChain( relRecord, node.getId() ).get( relRecord );
-            connectRelationshipToDenseNode( node, relRecord, relRecords, relGroupRecords, locks );
+            connectRelationshipToDenseNode( node, relRecord, nodeRecords, relRecords, relGroupRecords, locks );
             if ( relId != Record.NO_NEXT_RELATIONSHIP.intValue() )
             {   // Lock and load the next relationship in the chain
                 locks.acquireExclusive( LockTracer.NONE, ResourceTypes.RELATIONSHIP, relId );
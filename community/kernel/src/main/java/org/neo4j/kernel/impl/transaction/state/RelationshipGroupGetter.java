@@ -69,35 +69,47 @@ public class RelationshipGroupGetter
         RecordProxy<RelationshipGroupRecord, Integer> change = existingGroup.group();
         if ( change == null )
         {
-            assert node.isDense() : "Node " + node + " should have been dense at this point";
-            long id = idGenerator.nextId();
-            change = relGroupRecords.create( id, type );
-            RelationshipGroupRecord record = change.forChangingData();
-            record.setInUse( true );
-            record.setCreated();
-            record.setOwningNode( node.getId() );
+            change = createRelationshipGroup( node, type, existingGroup.closestPrevious(), relGroupRecords );
+        }
+        return change;
+    }
 
-            // Attach it...
-            RecordProxy<RelationshipGroupRecord, Integer> closestPreviousChange = existingGroup.closestPrevious();
-            if ( closestPreviousChange != null )
-            {   // ...after the closest previous one
-                RelationshipGroupRecord closestPrevious = closestPreviousChange.forChangingLinkage();
-                record.setNext( closestPrevious.getNext() );
-                record.setPrev( closestPrevious.getId() );
-                closestPrevious.setNext( id );
-            }
-            else
-            {   // ...first in the chain
-                long firstGroupId = node.getNextRel();
-                if ( firstGroupId != Record.NO_NEXT_RELATIONSHIP.intValue() )
-                {   // There are others, make way for this new group
-                    RelationshipGroupRecord previousFirstRecord =
-                            relGroupRecords.getOrLoad( firstGroupId, type ).forReadingData();
-                    record.setNext( previousFirstRecord.getId() );
-                    previousFirstRecord.setPrev( id );
-                }
-                node.setNextRel( id );
+    /**
+     * Creates a new relationship group for the given type and links it into the group chain of the node, after
+     * {@code closestPreviousChange}, or first in the chain if that is {@code null}. The node record is only changed
+     * in the latter case.
+     */
+    public RecordProxy<RelationshipGroupRecord, Integer> createRelationshipGroup( NodeRecord node, int type,
+            RecordProxy<RelationshipGroupRecord, Integer> closestPreviousChange,
+            RecordAccess<RelationshipGroupRecord, Integer> relGroupRecords )
+    {
+        assert node.isDense() : "Node " + node + " should have been dense at this point";
+        long id = idGenerator.nextId();
+        RecordProxy<RelationshipGroupRecord, Integer> change = relGroupRecords.create( id, type );
+        RelationshipGroupRecord record = change.forChangingData();
+        record.setInUse( true );
+        record.setCreated();
+        record.setOwningNode( node.getId() );
+
+        // Attach it...
+        if ( closestPreviousChange != null )
+        {   // ...after the closest previous one
+            RelationshipGroupRecord closestPrevious = closestPreviousChange.forChangingLinkage();
+            record.setNext( closestPrevious.getNext() );
+            record.setPrev( closestPrevious.getId() );
+            closestPrevious.setNext( id );
+        }
+        else
+        {   // ...first in the chain
+            long firstGroupId = node.getNextRel();
+            if ( firstGroupId != Record.NO_NEXT_RELATIONSHIP.intValue() )
+            {   // There are others, make way for this new group
+                RelationshipGroupRecord previousFirstRecord =
+                        relGroupRecords.getOrLoad( firstGroupId, type ).forReadingData();
+                record.setNext( previousFirstRecord.getId() );
+                previousFirstRecord.setPrev( id );
             }
+            node.setNextRel( id );
         }
         return change;
     }
@@ -23,6 +23,7 @@ import org.neo4j.helpers.Service;
 import org.neo4j.io.pagecache.tracing.PageCacheTracer;
 import org.neo4j.io.pagecache.tracing.cursor.DefaultPageCursorTracerSupplier;
 import org.neo4j.io.pagecache.tracing.cursor.PageCursorTracerSupplier;
+import org.neo4j.kernel.impl.locking.DefaultLockTracer;
 import org.neo4j.kernel.impl.locking.LockTracer;
 import org.neo4j.kernel.impl.transaction.tracing.CheckPointTracer;
 import org.neo4j.kernel.impl.transaction.tracing.TransactionTracer;
@@ -116,6 +117,23 @@ public class Tracers
      * @param jobScheduler a scheduler for async jobs
      */
     public Tracers( String desiredImplementationName, Log msgLog, Monitors monitors, JobScheduler jobScheduler )
+    {
+        this( desiredImplementationName, msgLog, monitors, jobScheduler, false );
+    }
+
+    /**
+     * Create a Tracers subsystem with the desired implementation, if it can be found and created.
+     *
+     * Otherwise the default implementation is used, and a warning is logged to the given StringLogger.
+     * @param desiredImplementationName The name of the desired {@link org.neo4j.kernel.monitoring.tracing
+     * .TracerFactory} implementation, as given by its {@link TracerFactory#getImplementationName()} method.
+     * @param msgLog A {@link Log} for logging when the desired implementation cannot be created.
+     * @param monitors the monitoring manager
+     * @param jobScheduler a scheduler for async jobs
+     * @param traceLockWaits whether to use a {@link DefaultLockTracer} if the implementation doesn't trace locks.
+     */
+    public Tracers( String desiredImplementationName, Log msgLog, Monitors monitors, JobScheduler jobScheduler,
+            boolean traceLockWaits )
     {
         if ( "null".equalsIgnoreCase( desiredImplementationName ) )
         {
@@ -156,7 +174,10 @@ public class Tracers
             pageCacheTracer = foundFactory.createPageCacheTracer( monitors, jobScheduler );
             transactionTracer = foundFactory.createTransactionTracer( monitors, jobScheduler );
             checkPointTracer = foundFactory.createCheckPointTracer( monitors, jobScheduler );
-            lockTracer = foundFactory.createLockTracer( monitors, jobScheduler );
+            LockTracer factoryLockTracer = foundFactory.createLockTracer( monitors, jobScheduler );
+            lockTracer = traceLockWaits && factoryLockTracer == LockTracer.NONE
+                         ? new DefaultLockTracer( monitors.newMonitor( DefaultLockTracer.Monitor.class ) )
+                         : factoryLockTracer;
         }
     }
 }
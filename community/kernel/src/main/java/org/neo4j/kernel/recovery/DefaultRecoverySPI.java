@@ -32,12 +32,14 @@ import org.neo4j.kernel.impl.transaction.log.LogicalTransactionStore;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFiles;
 import org.neo4j.kernel.impl.transaction.log.TransactionCursor;
 import org.neo4j.kernel.impl.transaction.log.TransactionIdStore;
+import org.neo4j.kernel.impl.transaction.log.TransactionLogIndex;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryStart;
 import org.neo4j.kernel.recovery.Recovery.RecoveryApplier;
 import org.neo4j.storageengine.api.StorageEngine;
 import org.neo4j.storageengine.api.TransactionApplicationMode;
 
 import static org.neo4j.kernel.impl.transaction.log.Commitment.NO_COMMITMENT;
+import static org.neo4j.kernel.impl.transaction.log.TransactionLogIndex.NO_INDEX;
 
 public class DefaultRecoverySPI implements Recovery.SPI
 {
@@ -47,6 +49,7 @@ public class DefaultRecoverySPI implements Recovery.SPI
     private final StorageEngine storageEngine;
     private final TransactionIdStore transactionIdStore;
     private final LogicalTransactionStore logicalTransactionStore;
+    private final TransactionLogIndex transactionLogIndex;
 
     public DefaultRecoverySPI(
             StorageEngine storageEngine,
@@ -55,6 +58,18 @@ public class DefaultRecoverySPI implements Recovery.SPI
             TransactionIdStore transactionIdStore, LogicalTransactionStore logicalTransactionStore,
             PositionToRecoverFrom.Monitor monitor )
     {
+        this( storageEngine, logFiles, fs, logTailScanner, transactionIdStore, logicalTransactionStore, monitor,
+                TransactionLogIndex.NO_INDEX );
+    }
+
+    public DefaultRecoverySPI(
+            StorageEngine storageEngine,
+            PhysicalLogFiles logFiles, FileSystemAbstraction fs,
+            LogTailScanner logTailScanner,
+            TransactionIdStore transactionIdStore, LogicalTransactionStore logicalTransactionStore,
+            PositionToRecoverFrom.Monitor monitor, TransactionLogIndex transactionLogIndex )
+    {
+        this.transactionLogIndex = transactionLogIndex;
         this.storageEngine = storageEngine;
         this.logFiles = logFiles;
         this.fs = fs;
@@ -83,7 +98,10 @@ public class DefaultRecoverySPI implements Recovery.SPI
     @Override
     public RecoveryApplier getRecoveryApplier( TransactionApplicationMode mode ) throws Exception
     {
-        return new RecoveryVisitor( new TransactionQueue( 100, ( first, last ) -> storageEngine.apply( first, mode ) ) );
+        // Only the forward pass sees transactions in log order, which is the order the index is written in
+        TransactionLogIndex index = mode == TransactionApplicationMode.RECOVERY ? transactionLogIndex : NO_INDEX;
+        return new RecoveryVisitor( new TransactionQueue( 100, ( first, last ) -> storageEngine.apply( first, mode ) ),
+                index );
     }
 
     @Override
@@ -114,15 +132,18 @@ public class DefaultRecoverySPI implements Recovery.SPI
 
         fs.truncate( logFiles.getLogFileForVersion( positionAfterLastRecoveredTransaction.getLogVersion() ),
                 positionAfterLastRecoveredTransaction.getByteOffset() );
+        transactionLogIndex.truncate( positionAfterLastRecoveredTransaction );
     }
 
     static class RecoveryVisitor implements RecoveryApplier
     {
         private final TransactionQueue transactionsToApply;
+        private final TransactionLogIndex transactionLogIndex;
 
-        RecoveryVisitor( TransactionQueue transactionsToApply )
+        RecoveryVisitor( TransactionQueue transactionsToApply, TransactionLogIndex transactionLogIndex )
         {
             this.transactionsToApply = transactionsToApply;
+            this.transactionLogIndex = transactionLogIndex;
         }
 
         @Override
@@ -133,6 +154,8 @@ public class DefaultRecoverySPI implements Recovery.SPI
             TransactionToApply tx = new TransactionToApply( txRepresentation, txId );
             tx.commitment( NO_COMMITMENT, txId );
             tx.logPosition( transaction.getStartEntry().getStartPosition() );
+            // Recovered transactions may never have made it into the index before the crash
+            transactionLogIndex.indexTransaction( txId, transaction.getStartEntry().getStartPosition() );
             transactionsToApply.queue( tx );
             return false;
         }
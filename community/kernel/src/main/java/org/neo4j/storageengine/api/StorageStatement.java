@@ -66,6 +66,22 @@ public interface StorageStatement extends AutoCloseable
     @Override
     void close();
 
+    /**
+     * Makes the cursors of this statement see the store as it is right now, for as long as the storage engine
+     * keeps versions of changed data, until {@link #readLatest()} is called. Storage engines that don't keep
+     * versions keep reading the latest data.
+     */
+    default void readSnapshot()
+    {
+    }
+
+    /**
+     * Makes the cursors of this statement see the latest data in the store, which is the default.
+     */
+    default void readLatest()
+    {
+    }
+
     /**
      * Acquires {@link Cursor} capable of {@link Cursor#get() serving} {@link NodeItem} for selected nodes.
      * No node is selected when this method returns, a call to {@link Cursor#next()} will have to be made
@@ -19,9 +19,13 @@
  */
 package org.neo4j.unsafe.impl.batchimport;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.impl.pagecache.ConfiguringPageCacheFactory;
 import org.neo4j.kernel.impl.util.OsBeanUtil;
+import org.neo4j.unsafe.impl.batchimport.index.SchemaIndexDefinition;
 import org.neo4j.unsafe.impl.batchimport.staging.Stage;
 import org.neo4j.unsafe.impl.batchimport.staging.Step;
 
@@ -173,6 +177,90 @@ public interface Configuration
         return false;
     }
 
+    /**
+     * Whether or not to import into an existing store, adding to the data already in it. New nodes and
+     * relationships get ids after those already in use and new relationships are linked into the existing
+     * relationship chains and groups of their nodes, as opposed to creating a new store from scratch.
+     * Stores with uniqueness constraints are refused, since imported data isn't verified against them.
+     * Stores with schema indexes are refused too, unless {@link #rebuildSchemaIndexes()}.
+     */
+    default boolean incremental()
+    {
+        return false;
+    }
+
+    /**
+     * Only used for {@link #incremental() incremental} imports. Name of the property holding the input id of
+     * nodes already in the store, i.e. the property which the id field of the node input data was previously
+     * imported into. The existing nodes are looked up by this property, in the global id space, when resolving
+     * input ids of relationships. If {@code null} then input relationships can only refer to nodes imported
+     * in the same import.
+     */
+    default String existingNodeIdPropertyKey()
+    {
+        return null;
+    }
+
+    /**
+     * Only used for {@link #incremental() incremental} imports. Schema indexes aren't updated with the imported
+     * data, so an incremental import into a store with schema indexes is refused, unless this returns {@code true}.
+     * Then the indexes are dropped from disk, to be rebuilt from the whole store on next startup.
+     */
+    default boolean rebuildSchemaIndexes()
+    {
+        return false;
+    }
+
+    /**
+     * @return whether or not the id mapper should keep input ids in sorted files on disk instead of in memory,
+     * see {@link org.neo4j.unsafe.impl.batchimport.input.Input#externalIdMapper}. Useful when the number of
+     * input ids is so big that even their encoded form won't fit in memory. Lookups will be slower.
+     */
+    default boolean externalIdMapping()
+    {
+        return false;
+    }
+
+    /**
+     * Whether or not to resume a previously failed import from its last checkpoint, instead of starting over.
+     * The store directory must contain the store and checkpoint left behind by that import.
+     */
+    default boolean resume()
+    {
+        return false;
+    }
+
+    /**
+     * Schema indexes and uniqueness constraints to create as part of the import. They are populated with
+     * entries gathered while importing nodes, instead of having the database scan the whole store to populate
+     * them when created afterwards. Not supported for {@link #incremental() incremental} imports.
+     */
+    default Collection<SchemaIndexDefinition> schemaIndexes()
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return whether or not the node relationship cache should store each node in as few bytes as the highest
+     * relationship id and the {@link #denseNodeThreshold() dense node threshold} allow, instead of in fixed 10 bytes.
+     * Saves memory for imports with fewer relationships, at the cost of some more work per access.
+     */
+    default boolean compactNodeRelationshipCache()
+    {
+        return false;
+    }
+
+    /**
+     * @return whether or not to assign processors to steps using
+     * {@link org.neo4j.unsafe.impl.batchimport.staging.ThroughputProcessorAssigner}, which models the throughput
+     * of each step, instead of {@link org.neo4j.unsafe.impl.batchimport.staging.DynamicProcessorAssigner},
+     * which moves one processor at a time to the slowest step.
+     */
+    default boolean throughputProcessorAssignment()
+    {
+        return false;
+    }
+
     Configuration DEFAULT = new Configuration()
     {
     };
@@ -256,6 +344,54 @@ public interface Configuration
         {
             return defaults.parallelRecordReadsWhenWriting();
         }
+
+        @Override
+        public boolean incremental()
+        {
+            return defaults.incremental();
+        }
+
+        @Override
+        public String existingNodeIdPropertyKey()
+        {
+            return defaults.existingNodeIdPropertyKey();
+        }
+
+        @Override
+        public boolean rebuildSchemaIndexes()
+        {
+            return defaults.rebuildSchemaIndexes();
+        }
+
+        @Override
+        public boolean externalIdMapping()
+        {
+            return defaults.externalIdMapping();
+        }
+
+        @Override
+        public boolean resume()
+        {
+            return defaults.resume();
+        }
+
+        @Override
+        public Collection<SchemaIndexDefinition> schemaIndexes()
+        {
+            return defaults.schemaIndexes();
+        }
+
+        @Override
+        public boolean compactNodeRelationshipCache()
+        {
+            return defaults.compactNodeRelationshipCache();
+        }
+
+        @Override
+        public boolean throughputProcessorAssignment()
+        {
+            return defaults.throughputProcessorAssignment();
+        }
     }
 
     static Configuration withBatchSize( Configuration config, int batchSize )
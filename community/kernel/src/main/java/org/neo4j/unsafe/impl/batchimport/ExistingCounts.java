@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.neo4j.kernel.impl.api.CountsAccessor;
+import org.neo4j.kernel.impl.api.CountsVisitor;
+import org.neo4j.kernel.impl.store.counts.keys.CountsKey;
+import org.neo4j.kernel.impl.store.counts.keys.NodeKey;
+import org.neo4j.kernel.impl.store.counts.keys.RelationshipKey;
+
+import static org.neo4j.kernel.impl.store.counts.keys.CountsKeyFactory.nodeKey;
+import static org.neo4j.kernel.impl.store.counts.keys.CountsKeyFactory.relationshipKey;
+
+/**
+ * Node and relationship counts of a store which is {@link Configuration#incremental() imported into}.
+ * The counts store is reset when importing and only the imported data is counted, so the counts of the data
+ * already in the store are kept here in the meantime, to be {@link #addingTo(CountsAccessor.Updater) added}
+ * to the new counts. Index counts are not kept since indexes are rebuilt after such an import.
+ */
+class ExistingCounts extends CountsVisitor.Adapter
+{
+    private final Map<CountsKey,Long> counts = new ConcurrentHashMap<>();
+
+    @Override
+    public void visitNodeCount( int labelId, long count )
+    {
+        counts.put( nodeKey( labelId ), count );
+    }
+
+    @Override
+    public void visitRelationshipCount( int startLabelId, int typeId, int endLabelId, long count )
+    {
+        counts.put( relationshipKey( startLabelId, typeId, endLabelId ), count );
+    }
+
+    /**
+     * An updater of a reset counts store replaces, rather than increments, the count of a key each time it's
+     * written. Existing counts are therefore added to the imported count of the same key as it's written,
+     * and those not written by the import are written when the returned updater is closed.
+     *
+     * @param updater updater of the reset counts store.
+     * @return updater which adds the existing counts to the imported ones.
+     */
+    CountsAccessor.Updater addingTo( CountsAccessor.Updater updater )
+    {
+        return new CountsAccessor.Updater()
+        {
+            @Override
+            public void incrementNodeCount( int labelId, long delta )
+            {
+                updater.incrementNodeCount( labelId, delta + existing( nodeKey( labelId ) ) );
+            }
+
+            @Override
+            public void incrementRelationshipCount( int startLabelId, int typeId, int endLabelId, long delta )
+            {
+                updater.incrementRelationshipCount( startLabelId, typeId, endLabelId,
+                        delta + existing( relationshipKey( startLabelId, typeId, endLabelId ) ) );
+            }
+
+            @Override
+            public void close()
+            {
+                for ( Map.Entry<CountsKey,Long> count : counts.entrySet() )
+                {
+                    if ( count.getKey() instanceof NodeKey )
+                    {
+                        updater.incrementNodeCount( ((NodeKey) count.getKey()).getLabelId(), count.getValue() );
+                    }
+                    else
+                    {
+                        RelationshipKey key = (RelationshipKey) count.getKey();
+                        updater.incrementRelationshipCount( key.getStartLabelId(), key.getTypeId(),
+                                key.getEndLabelId(), count.getValue() );
+                    }
+                }
+                counts.clear();
+                updater.close();
+            }
+        };
+    }
+
+    private long existing( CountsKey key )
+    {
+        Long count = counts.remove( key );
+        return count != null ? count : 0;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import java.util.NoSuchElementException;
+
+import org.neo4j.kernel.impl.store.NodeStore;
+import org.neo4j.kernel.impl.store.PropertyStore;
+import org.neo4j.kernel.impl.store.record.NodeRecord;
+import org.neo4j.kernel.impl.store.record.PropertyBlock;
+import org.neo4j.kernel.impl.store.record.PropertyRecord;
+import org.neo4j.kernel.impl.store.record.Record;
+import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper;
+
+import static org.neo4j.kernel.impl.store.record.RecordLoad.CHECK;
+import static org.neo4j.kernel.impl.store.record.RecordLoad.NORMAL;
+
+/**
+ * Input ids of the nodes already in the store when {@link Configuration#incremental() importing into an existing
+ * store}, read from the property which the input ids were previously imported into. There's one input id
+ * per node id, from 0 up to the node high id at the time of the import, where node ids not in use and nodes
+ * w/o such property have {@code null} input id, just like anonymous input nodes. This is so that they can be
+ * put into, and prepared along with, the same {@link IdMapper} as the imported nodes.
+ */
+public class ExistingNodeIds implements InputIterable<Object>
+{
+    public static final int NO_PROPERTY_KEY = -1;
+
+    private final NodeStore nodeStore;
+    private final PropertyStore propertyStore;
+    private final int propertyKeyId;
+    private final long highNodeId;
+
+    /**
+     * @param propertyKeyId id of the property key holding the input ids, or {@link #NO_PROPERTY_KEY} if
+     * existing nodes have no input ids, in which case all input ids will be {@code null}.
+     * @param highNodeId the node high id before importing, i.e. the first node id which will be imported.
+     */
+    public ExistingNodeIds( NodeStore nodeStore, PropertyStore propertyStore, int propertyKeyId, long highNodeId )
+    {
+        this.nodeStore = nodeStore;
+        this.propertyStore = propertyStore;
+        this.propertyKeyId = propertyKeyId;
+        this.highNodeId = highNodeId;
+    }
+
+    @Override
+    public InputIterator<Object> iterator()
+    {
+        return new ExistingNodeIdsIterator();
+    }
+
+    @Override
+    public boolean supportsMultiplePasses()
+    {
+        return true;
+    }
+
+    /**
+     * @param importedNodeIds input ids of the imported nodes, in node id order.
+     * @return input ids of the existing nodes followed by those of the imported nodes, i.e. the input ids of all
+     * nodes in node id order.
+     */
+    public InputIterable<Object> followedBy( InputIterable<Object> importedNodeIds )
+    {
+        return new InputIterable<Object>()
+        {
+            @Override
+            public InputIterator<Object> iterator()
+            {
+                return new ConcatenatedIterator( ExistingNodeIds.this.iterator(), importedNodeIds.iterator() );
+            }
+
+            @Override
+            public boolean supportsMultiplePasses()
+            {
+                return importedNodeIds.supportsMultiplePasses();
+            }
+        };
+    }
+
+    private static class ConcatenatedIterator implements InputIterator<Object>
+    {
+        private final InputIterator<Object> first;
+        private final InputIterator<Object> second;
+        private InputIterator<Object> current;
+
+        ConcatenatedIterator( InputIterator<Object> first, InputIterator<Object> second )
+        {
+            this.first = first;
+            this.second = second;
+            this.current = first;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if ( current == first && !first.hasNext() )
+            {
+                current = second;
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Object next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public String sourceDescription()
+        {
+            return current.sourceDescription();
+        }
+
+        @Override
+        public long lineNumber()
+        {
+            return current.lineNumber();
+        }
+
+        @Override
+        public long position()
+        {
+            return current.position();
+        }
+
+        @Override
+        public void receivePanic( Throwable cause )
+        {
+            first.receivePanic( cause );
+            second.receivePanic( cause );
+        }
+
+        @Override
+        public void close()
+        {
+            first.close();
+            second.close();
+        }
+    }
+
+    private class ExistingNodeIdsIterator implements InputIterator<Object>
+    {
+        private final NodeRecord node = nodeStore.newRecord();
+        private final PropertyRecord property = propertyStore.newRecord();
+        private long nextNodeId;
+
+        @Override
+        public boolean hasNext()
+        {
+            return nextNodeId < highNodeId;
+        }
+
+        @Override
+        public Object next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+
+            long nodeId = nextNodeId++;
+            if ( propertyKeyId == NO_PROPERTY_KEY )
+            {
+                return null;
+            }
+            nodeStore.getRecord( nodeId, node, CHECK );
+            return node.inUse() ? inputId( node.getNextProp() ) : null;
+        }
+
+        private Object inputId( long propertyId )
+        {
+            while ( !Record.NO_NEXT_PROPERTY.is( propertyId ) )
+            {
+                propertyStore.getRecord( propertyId, property, NORMAL );
+                PropertyBlock block = property.getPropertyBlock( propertyKeyId );
+                if ( block != null )
+                {
+                    return block.newPropertyValue( propertyStore ).asObject();
+                }
+                propertyId = property.getNextProp();
+            }
+            return null;
+        }
+
+        @Override
+        public String sourceDescription()
+        {
+            return "existing nodes in " + nodeStore.getStorageFileName();
+        }
+
+        @Override
+        public long lineNumber()
+        {
+            return nextNodeId;
+        }
+
+        @Override
+        public long position()
+        {
+            return nextNodeId;
+        }
+
+        @Override
+        public void receivePanic( Throwable cause )
+        {
+        }
+
+        @Override
+        public void close()
+        {   // Nothing to close
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper;
+import org.neo4j.unsafe.impl.batchimport.staging.Stage;
+
+/**
+ * Puts the input ids of nodes already in the store into the {@link IdMapper} before any new nodes are imported,
+ * so that input relationships can refer to existing nodes when {@link Configuration#incremental() importing
+ * into an existing store}.
+ */
+public class ExistingNodeIdsStage extends Stage
+{
+    public ExistingNodeIdsStage( Configuration config, IdMapper idMapper, InputIterable<Object> existingNodeIds )
+    {
+        super( "Existing nodes", config );
+        add( new ExistingNodeIdsStep( control(), config, idMapper, existingNodeIds ) );
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper;
+import org.neo4j.unsafe.impl.batchimport.input.Group;
+import org.neo4j.unsafe.impl.batchimport.staging.LonelyProcessingStep;
+import org.neo4j.unsafe.impl.batchimport.staging.StageControl;
+
+/**
+ * Puts {@link ExistingNodeIds input ids of existing nodes} into an {@link IdMapper}, in the global id space.
+ */
+public class ExistingNodeIdsStep extends LonelyProcessingStep
+{
+    private final IdMapper idMapper;
+    private final InputIterable<Object> existingNodeIds;
+
+    public ExistingNodeIdsStep( StageControl control, Configuration config, IdMapper idMapper,
+            InputIterable<Object> existingNodeIds )
+    {
+        super( control, "IDS", config );
+        this.idMapper = idMapper;
+        this.existingNodeIds = existingNodeIds;
+    }
+
+    @Override
+    protected void process()
+    {
+        try ( InputIterator<Object> ids = existingNodeIds.iterator() )
+        {
+            for ( long nodeId = 0; ids.hasNext(); nodeId++ )
+            {
+                Object inputId = ids.next();
+                if ( inputId != null )
+                {
+                    idMapper.put( inputId, nodeId, Group.GLOBAL );
+                }
+                progress( 1 );
+            }
+        }
+    }
+}
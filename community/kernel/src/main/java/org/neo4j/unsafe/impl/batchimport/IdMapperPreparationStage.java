@@ -41,4 +41,16 @@ public class IdMapperPreparationStage extends Stage
         add( new IdMapperPreparationStep( control(), config,
                 idMapper, idsOf( nodes ), collector, memoryUsageStats ) );
     }
+
+    /**
+     * Prepares the {@link IdMapper} for both nodes already in the store and the imported nodes,
+     * see {@link Configuration#incremental()}.
+     */
+    public IdMapperPreparationStage( Configuration config, IdMapper idMapper, ExistingNodeIds existingNodeIds,
+            InputIterable<InputNode> nodes, Collector collector, StatsProvider memoryUsageStats )
+    {
+        super( "Prepare node index", config );
+        add( new IdMapperPreparationStep( control(), config,
+                idMapper, existingNodeIds.followedBy( idsOf( nodes ) ), collector, memoryUsageStats ) );
+    }
 }
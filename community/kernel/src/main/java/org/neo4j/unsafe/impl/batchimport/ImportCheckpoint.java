@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import org.apache.commons.lang3.mutable.MutableLong;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.kernel.impl.store.id.IdType;
+import org.neo4j.kernel.impl.store.record.NodeRecord;
+import org.neo4j.kernel.impl.store.record.RelationshipRecord;
+import org.neo4j.unsafe.impl.batchimport.store.BatchingNeoStores;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Keeps track of how far an import has come, such that an import which fails, e.g. by running out of memory
+ * half way through linking relationships, can be resumed from its last checkpoint instead of starting over.
+ * <p>
+ * Checkpoints are only taken at stage boundaries after which all in-memory state needed by the remaining
+ * stages can be rebuilt from the store itself. Node input id mappings are not needed after relationships
+ * have been imported and the {@link org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache} is
+ * built from the relationship store anyway, so what's saved, apart from which {@link Progress} has been made,
+ * is the high ids of all stores, the relationship type distribution and the number of written entities.
+ * Records written by a stage which didn't complete are either overwritten when that stage is run again
+ * or end up above the restored high ids.
+ */
+class ImportCheckpoint
+{
+    static final String CHECKPOINT_FILE_NAME = "import.checkpoint";
+
+    private static final int FORMAT_VERSION = 1;
+
+    enum Progress
+    {
+        /**
+         * Nothing to resume from, the import starts from the beginning.
+         */
+        NONE,
+        /**
+         * Nodes and relationships have been imported, but relationships are not linked.
+         */
+        RELATIONSHIPS_IMPORTED,
+        /**
+         * Relationships have been linked and relationship groups defragmented, only counting is left.
+         */
+        RELATIONSHIPS_LINKED
+    }
+
+    private final FileSystemAbstraction fileSystem;
+    private final File file;
+    private RelationshipTypeDistribution typeDistribution;
+
+    ImportCheckpoint( FileSystemAbstraction fileSystem, File storeDir )
+    {
+        this.fileSystem = fileSystem;
+        this.file = new File( storeDir, CHECKPOINT_FILE_NAME );
+    }
+
+    boolean exists()
+    {
+        return fileSystem.fileExists( file );
+    }
+
+    /**
+     * Makes everything written to the store durable and then saves a checkpoint, replacing any previous one.
+     *
+     * @param progress the progress this checkpoint marks.
+     * @param neoStores the stores to flush and read high ids from.
+     * @param typeDistribution relationship type distribution of the imported relationships, needed when resuming
+     * from {@link Progress#RELATIONSHIPS_IMPORTED}, otherwise {@code null}.
+     * @param storeUpdateMonitor number of written entities so far.
+     */
+    void save( Progress progress, BatchingNeoStores neoStores, RelationshipTypeDistribution typeDistribution,
+            CountingStoreUpdateMonitor storeUpdateMonitor ) throws IOException
+    {
+        // Relationship types are saved by token id, since tokens are created by name along the way
+        List<Map.Entry<Object,MutableLong>> types = new ArrayList<>();
+        if ( typeDistribution != null )
+        {
+            typeDistribution.forEach( type -> types.add( new AbstractMap.SimpleEntry<>(
+                    neoStores.getRelationshipTypeRepository().applyAsInt( type.getKey() ), type.getValue() ) ) );
+        }
+        neoStores.flush();
+
+        File tempFile = new File( file.getPath() + ".tmp" );
+        try ( DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream( fileSystem.openAsOutputStream( tempFile, false ) ) ) )
+        {
+            out.writeInt( FORMAT_VERSION );
+            out.writeUTF( progress.name() );
+
+            Map<IdType,Long> highIds = highIds( neoStores );
+            out.writeInt( highIds.size() );
+            for ( Map.Entry<IdType,Long> highId : highIds.entrySet() )
+            {
+                out.writeUTF( highId.getKey().name() );
+                out.writeLong( highId.getValue() );
+            }
+
+            out.writeInt( types.size() );
+            for ( Map.Entry<Object,MutableLong> type : types )
+            {
+                out.writeInt( (Integer) type.getKey() );
+                out.writeLong( type.getValue().longValue() );
+            }
+
+            out.writeLong( storeUpdateMonitor.nodesWritten() );
+            out.writeLong( storeUpdateMonitor.relationshipsWritten() );
+            out.writeLong( storeUpdateMonitor.propertiesWritten() );
+        }
+        // Replace atomically so that a crash while saving leaves the previous checkpoint intact
+        fileSystem.renameFile( tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING );
+    }
+
+    /**
+     * Reads the saved checkpoint and restores the high ids of the stores and the written entity counts.
+     * After this call the {@link #typeDistribution()} of a {@link Progress#RELATIONSHIPS_IMPORTED} checkpoint
+     * is available.
+     *
+     * @return the progress of the saved checkpoint, or {@link Progress#NONE} if there is no checkpoint.
+     */
+    Progress restore( BatchingNeoStores neoStores, CountingStoreUpdateMonitor storeUpdateMonitor ) throws IOException
+    {
+        if ( !exists() )
+        {
+            return Progress.NONE;
+        }
+
+        try ( DataInputStream in = new DataInputStream(
+                new BufferedInputStream( fileSystem.openAsInputStream( file ) ) ) )
+        {
+            int version = in.readInt();
+            if ( version != FORMAT_VERSION )
+            {
+                throw new IllegalStateException( "Unsupported import checkpoint version " + version + " in " + file );
+            }
+            Progress progress = Progress.valueOf( in.readUTF() );
+
+            int storeCount = in.readInt();
+            for ( int i = 0; i < storeCount; i++ )
+            {
+                neoStores.setHighId( IdType.valueOf( in.readUTF() ), in.readLong() );
+            }
+
+            @SuppressWarnings( "unchecked" )
+            Map.Entry<Object,MutableLong>[] types = new Map.Entry[in.readInt()];
+            for ( int i = 0; i < types.length; i++ )
+            {
+                types[i] = new AbstractMap.SimpleEntry<>( in.readInt(), new MutableLong( in.readLong() ) );
+            }
+            typeDistribution = new RelationshipTypeDistribution( types );
+
+            storeUpdateMonitor.entitiesWritten( NodeRecord.class, in.readLong() );
+            storeUpdateMonitor.entitiesWritten( RelationshipRecord.class, in.readLong() );
+            storeUpdateMonitor.propertiesWritten( in.readLong() );
+            return progress;
+        }
+    }
+
+    /**
+     * @return relationship type distribution saved in the checkpoint which was {@link #restore restored}.
+     */
+    RelationshipTypeDistribution typeDistribution()
+    {
+        return typeDistribution;
+    }
+
+    /**
+     * Deletes the checkpoint, done when the import has completed.
+     */
+    void delete()
+    {
+        fileSystem.deleteFile( file );
+    }
+
+    private static Map<IdType,Long> highIds( BatchingNeoStores neoStores )
+    {
+        Map<IdType,Long> highIds = new EnumMap<>( IdType.class );
+        for ( IdType idType : IdType.values() )
+        {
+            long highId = neoStores.getHighId( idType );
+            if ( highId != -1 )
+            {
+                highIds.put( idType, highId );
+            }
+        }
+        return highIds;
+    }
+}
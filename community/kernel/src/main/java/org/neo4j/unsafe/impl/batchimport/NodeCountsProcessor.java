@@ -39,11 +39,19 @@ public class NodeCountsProcessor implements RecordProcessor<NodeRecord>
     private final NodeLabelsCache cache;
     private final CountsAccessor.Updater counts;
     private final int anyLabel;
+    private final long firstNodeIdToCount;
 
     NodeCountsProcessor( NodeStore nodeStore, NodeLabelsCache cache, int highLabelId,
             CountsAccessor.Updater counts, MigrationProgressMonitor.Section progressMonitor )
+    {
+        this( nodeStore, cache, highLabelId, 0, counts, progressMonitor );
+    }
+
+    NodeCountsProcessor( NodeStore nodeStore, NodeLabelsCache cache, int highLabelId, long firstNodeIdToCount,
+            CountsAccessor.Updater counts, MigrationProgressMonitor.Section progressMonitor )
     {
         this.nodeStore = nodeStore;
+        this.firstNodeIdToCount = firstNodeIdToCount;
         this.cache = cache;
         this.anyLabel = highLabelId;
         this.counts = counts;
@@ -56,15 +64,22 @@ public class NodeCountsProcessor implements RecordProcessor<NodeRecord>
     public boolean process( NodeRecord node )
     {
         long[] labels = NodeLabelsField.get( node, nodeStore );
+        boolean count = node.getId() >= firstNodeIdToCount;
         if ( labels.length > 0 )
         {
-            for ( long labelId : labels )
+            if ( count )
             {
-                labelCounts[(int) labelId]++;
+                for ( long labelId : labels )
+                {
+                    labelCounts[(int) labelId]++;
+                }
             }
             cache.put( node.getId(), labels );
         }
-        labelCounts[anyLabel]++;
+        if ( count )
+        {
+            labelCounts[anyLabel]++;
+        }
         progressMonitor.progress( 1 );
 
         // No need to update the store, we're just reading things here
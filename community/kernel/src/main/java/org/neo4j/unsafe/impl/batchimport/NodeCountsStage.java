@@ -39,12 +39,24 @@ public class NodeCountsStage extends Stage
     public NodeCountsStage( Configuration config, NodeLabelsCache cache, NodeStore nodeStore, int highLabelId,
             CountsAccessor.Updater countsUpdater, MigrationProgressMonitor.Section progressMonitor,
             StatsProvider... additionalStatsProviders )
+    {
+        this( config, cache, nodeStore, highLabelId, 0, countsUpdater, progressMonitor, additionalStatsProviders );
+    }
+
+    /**
+     * @param firstNodeIdToCount nodes with lower ids are only put in the {@link NodeLabelsCache}, not counted,
+     * f.ex. nodes which were in the store before importing into it.
+     */
+    public NodeCountsStage( Configuration config, NodeLabelsCache cache, NodeStore nodeStore, int highLabelId,
+            long firstNodeIdToCount, CountsAccessor.Updater countsUpdater,
+            MigrationProgressMonitor.Section progressMonitor, StatsProvider... additionalStatsProviders )
     {
         super( "Node counts", config );
         add( new BatchFeedStep( control(), config, allIn( nodeStore, config ), nodeStore.getRecordSize() ) );
         add( new ReadRecordsStep<>( control(), config, false, nodeStore, null ) );
         add( new RecordProcessorStep<>( control(), "COUNT", config,
-                new NodeCountsProcessor( nodeStore, cache, highLabelId, countsUpdater, progressMonitor ), true,
+                new NodeCountsProcessor( nodeStore, cache, highLabelId, firstNodeIdToCount, countsUpdater,
+                        progressMonitor ), true,
                 additionalStatsProviders ) );
     }
 }
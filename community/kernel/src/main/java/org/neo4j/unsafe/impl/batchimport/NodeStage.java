@@ -30,6 +30,7 @@ import org.neo4j.kernel.impl.store.record.PropertyRecord;
 import org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdGenerator;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper;
+import org.neo4j.unsafe.impl.batchimport.index.SchemaIndexImporter;
 import org.neo4j.unsafe.impl.batchimport.input.Input;
 import org.neo4j.unsafe.impl.batchimport.input.InputCache;
 import org.neo4j.unsafe.impl.batchimport.input.InputNode;
@@ -45,15 +46,18 @@ import static org.neo4j.unsafe.impl.batchimport.staging.Step.ORDER_SEND_DOWNSTRE
  * Imports nodes and their properties and labels. Steps:
  * <ol>
  * <li>{@link InputIteratorBatcherStep} reading from {@link InputIterator} produced from {@link Input#nodes()}.</li>
- * <li>{@link InputEntityCacherStep} alternatively {@link InputCache caches} this input data
- * (all the {@link InputNode input nodes}) if the iterator doesn't support
- * {@link InputIterable#supportsMultiplePasses() multiple passes}.</li>
+ * <li>{@link InputEntityCacherStep} alternatively {@link InputCache caches} group and id of the
+ * {@link InputNode input nodes} if the iterator doesn't support
+ * {@link InputIterable#supportsMultiplePasses() multiple passes} and the {@link IdMapper} needs them
+ * for {@link IdMapper#needsPreparation() preparation}. Nothing else is read from the input after this stage.</li>
  * <li>{@link PropertyEncoderStep} encodes properties from {@link InputNode input nodes} into {@link PropertyBlock},
  * low level kernel encoded values.</li>
  * <li>{@link NodeEncoderStep} creates the {@link NodeRecord node records} and assigns label ids from input data.
  * It also assigns real store node ids from {@link InputNode#id() input ids} and stores them in {@link IdMapper}
  * for use in other upcoming stages.</li>
  * <li>{@link LabelScanStorePopulationStep} populates the {@link LabelScanStore} with the node labels.</li>
+ * <li>{@link SchemaIndexEntryCollectorStep} alternatively adds entries to the
+ * {@link SchemaIndexImporter schema indexes being imported}.</li>
  * <li>{@link EntityStoreUpdaterStep} forms {@link PropertyRecord property records} out of previously encoded
  * {@link PropertyBlock} and writes those as well as the {@link NodeRecord} to store.</li>
  * </ol>
@@ -66,13 +70,13 @@ public class NodeStage extends Stage
             InputIterable<InputNode> nodes, IdMapper idMapper, IdGenerator idGenerator,
             BatchingNeoStores neoStore, InputCache inputCache, LabelScanStore labelScanStore,
             EntityStoreUpdaterStep.Monitor storeUpdateMonitor,
-            StatsProvider memoryUsage ) throws IOException
+            StatsProvider memoryUsage, SchemaIndexImporter schemaIndexes ) throws IOException
     {
         super( "Nodes", config, ORDER_SEND_DOWNSTREAM );
         add( new InputIteratorBatcherStep<>( control(), config, nodes.iterator(), InputNode.class, t -> true ) );
-        if ( !nodes.supportsMultiplePasses() )
+        if ( !nodes.supportsMultiplePasses() && idMapper.needsPreparation() )
         {
-            add( new InputEntityCacherStep<>( control(), config, inputCache.cacheNodes( MAIN ) ) );
+            add( new InputEntityCacherStep<>( control(), config, inputCache.cacheNodeIds( MAIN ) ) );
         }
 
         nodeStore = neoStore.getNodeStore();
@@ -81,6 +85,11 @@ public class NodeStage extends Stage
                 neoStore.getLabelRepository(), nodeStore, memoryUsage ) );
         add( new PropertyEncoderStep<>( control(), config, neoStore.getPropertyKeyRepository(), propertyStore ) );
         add( new LabelScanStorePopulationStep( control(), config, labelScanStore ) );
+        if ( schemaIndexes != null )
+        {
+            add( new SchemaIndexEntryCollectorStep( control(), config, schemaIndexes,
+                    neoStore.getPropertyKeyRepository() ) );
+        }
         add( new EntityStoreUpdaterStep<>( control(), config, nodeStore, propertyStore, writeMonitor,
                 storeUpdateMonitor ) );
     }
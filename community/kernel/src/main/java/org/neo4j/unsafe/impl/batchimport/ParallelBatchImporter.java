@@ -23,23 +23,33 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.Predicate;
 
 import org.neo4j.collection.primitive.Primitive;
 import org.neo4j.collection.primitive.PrimitiveIntSet;
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
 import org.neo4j.helpers.Exceptions;
 import org.neo4j.helpers.Format;
+import org.neo4j.helpers.Service;
+import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.io.pagecache.PageCache;
 import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+import org.neo4j.kernel.api.index.IndexDirectoryStructure;
 import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.extension.KernelExtensionFactory;
 import org.neo4j.kernel.impl.api.CountsAccessor;
 import org.neo4j.kernel.impl.logging.LogService;
+import org.neo4j.kernel.impl.store.NeoStores;
 import org.neo4j.kernel.impl.store.RecordStore;
 import org.neo4j.kernel.impl.store.RelationshipStore;
+import org.neo4j.kernel.impl.store.SchemaStorage;
 import org.neo4j.kernel.impl.store.format.RecordFormatSelector;
 import org.neo4j.kernel.impl.store.format.RecordFormats;
+import org.neo4j.kernel.impl.store.record.ConstraintRule;
+import org.neo4j.kernel.impl.store.record.IndexRule;
 import org.neo4j.kernel.impl.store.record.RelationshipRecord;
 import org.neo4j.kernel.impl.storemigration.monitoring.MigrationProgressMonitor;
 import org.neo4j.kernel.impl.storemigration.monitoring.SilentMigrationProgressMonitor;
@@ -52,7 +62,9 @@ import org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache;
 import org.neo4j.unsafe.impl.batchimport.cache.NodeType;
 import org.neo4j.unsafe.impl.batchimport.cache.NumberArrayFactory;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdGenerator;
+import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdGenerators;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper;
+import org.neo4j.unsafe.impl.batchimport.index.SchemaIndexImporter;
 import org.neo4j.unsafe.impl.batchimport.input.Collector;
 import org.neo4j.unsafe.impl.batchimport.input.Input;
 import org.neo4j.unsafe.impl.batchimport.input.InputCache;
@@ -68,7 +80,9 @@ import org.neo4j.unsafe.impl.batchimport.store.io.IoMonitor;
 import static java.lang.Long.max;
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
+import static java.util.stream.Collectors.toList;
 
+import static org.neo4j.collection.primitive.PrimitiveLongCollections.filter;
 import static org.neo4j.helpers.Format.bytes;
 import static org.neo4j.unsafe.impl.batchimport.AdditionalInitialIds.EMPTY;
 import static org.neo4j.unsafe.impl.batchimport.SourceOrCachedInputIterable.cachedForSure;
@@ -88,6 +102,8 @@ import static org.neo4j.unsafe.impl.batchimport.staging.ExecutionSupervisors.wit
  */
 public class ParallelBatchImporter implements BatchImporter
 {
+    private static final String ID_MAPPING_DIRECTORY = "id-mapping";
+
     private final File storeDir;
     private final FileSystemAbstraction fileSystem;
     private final Configuration config;
@@ -144,94 +160,236 @@ public class ParallelBatchImporter implements BatchImporter
         long maxMemory = config.maxMemoryUsage();
         NodeRelationshipCache nodeRelationshipCache = null;
         NodeLabelsCache nodeLabelsCache = null;
+        SchemaIndexImporter schemaIndexImporter = null;
         long startTime = currentTimeMillis();
         CountingStoreUpdateMonitor storeUpdateMonitor = new CountingStoreUpdateMonitor();
         long totalTimeMillis;
+        ImportCheckpoint checkpoint = new ImportCheckpoint( fileSystem, storeDir );
+        if ( config.incremental() && !config.schemaIndexes().isEmpty() )
+        {
+            throw new IllegalArgumentException( "Creating schema indexes in an incremental import isn't supported" );
+        }
+        if ( config.resume() )
+        {
+            if ( config.incremental() )
+            {
+                throw new IllegalArgumentException( "Resuming an incremental import isn't supported" );
+            }
+            if ( !checkpoint.exists() )
+            {
+                throw new IllegalStateException( "Can't resume import into " + storeDir + " since there's no " +
+                        "checkpoint from a previous import there. The import has to start over in an empty directory" );
+            }
+        }
         try ( BatchingNeoStores neoStore = getBatchingNeoStores();
               InputCache inputCache = new InputCache( fileSystem, storeDir, recordFormats, config ) )
         {
             NumberArrayFactory numberArrayFactory =
                     NumberArrayFactory.auto( neoStore.getPageCache(), storeDir, config.allowCacheAllocationOnHeap() );
             Collector badCollector = input.badCollector();
-            // Some temporary caches and indexes in the import
-            IoMonitor writeMonitor = new IoMonitor( neoStore.getIoTracer() );
-            IdMapper idMapper = input.idMapper( numberArrayFactory );
-            IdGenerator idGenerator = input.idGenerator();
-            nodeRelationshipCache = new NodeRelationshipCache( numberArrayFactory, config.denseNodeThreshold() );
-            StatsProvider memoryUsageStats = new MemoryUsageStatsProvider( nodeRelationshipCache, idMapper );
-            InputIterable<InputNode> nodes = input.nodes();
-            InputIterable<InputRelationship> relationships = input.relationships();
-            InputIterable<InputNode> cachedNodes = cachedForSure( nodes, inputCache.nodes( MAIN, true ) );
-
+            boolean incremental = config.incremental();
+            boolean dropSchemaIndexes = false;
+            if ( incremental )
+            {
+                assertNoUniquenessConstraints( neoStore.getNeoStores() );
+                dropSchemaIndexes = schemaIndexesToDrop( neoStore.getNeoStores() );
+            }
+            // When importing into an existing store these are the first ids of the imported nodes/relationships,
+            // otherwise 0 for an empty store, or a store partially written by the import being resumed
+            long firstNodeId = incremental ? neoStore.getNodeStore().getHighId() : 0;
+            long firstRelationshipId = incremental ? neoStore.getRelationshipStore().getHighId() : 0;
+            ImportCheckpoint.Progress progress = config.resume()
+                    ? checkpoint.restore( neoStore, storeUpdateMonitor )
+                    : ImportCheckpoint.Progress.NONE;
+            if ( progress != ImportCheckpoint.Progress.NONE )
+            {
+                log.info( "Resuming import from checkpoint " + progress );
+            }
+            nodeRelationshipCache = new NodeRelationshipCache( numberArrayFactory, config.denseNodeThreshold(),
+                    config.compactNodeRelationshipCache() );
             RelationshipStore relationshipStore = neoStore.getRelationshipStore();
+            Configuration relationshipConfig =
+                    configWithRecordsPerPageBasedBatchSize( config, neoStore.getNodeStore() );
+            RelationshipTypeDistribution typeDistribution;
 
-            // Import nodes, properties, labels
-            Configuration nodeConfig = configWithRecordsPerPageBasedBatchSize( config, neoStore.getNodeStore() );
-            NodeStage nodeStage = new NodeStage( nodeConfig, writeMonitor,
-                    nodes, idMapper, idGenerator, neoStore, inputCache, neoStore.getLabelScanStore(),
-                    storeUpdateMonitor, memoryUsageStats );
-            neoStore.startFlushingPageCache();
-            executeStage( nodeStage );
-            neoStore.stopFlushingPageCache();
-            if ( idMapper.needsPreparation() )
+            if ( progress == ImportCheckpoint.Progress.NONE )
             {
-                executeStage( new IdMapperPreparationStage( config, idMapper, cachedNodes,
-                        badCollector, memoryUsageStats ) );
-                PrimitiveLongIterator duplicateNodeIds = badCollector.leftOverDuplicateNodesIds();
-                if ( duplicateNodeIds.hasNext() )
+                // Some temporary caches and indexes in the import
+                IoMonitor writeMonitor = new IoMonitor( neoStore.getIoTracer() );
+                IdMapper idMapper = config.externalIdMapping()
+                        ? input.externalIdMapper( new File( storeDir, ID_MAPPING_DIRECTORY ), numberArrayFactory )
+                        : input.idMapper( numberArrayFactory );
+                IdGenerator idGenerator = input.idGenerator();
+                ExistingNodeIds existingNodeIds = null;
+                if ( incremental )
+                {
+                    idGenerator = IdGenerators.above( idGenerator, firstNodeId );
+                    String idPropertyKey = config.existingNodeIdPropertyKey();
+                    existingNodeIds = new ExistingNodeIds( neoStore.getNodeStore(), neoStore.getPropertyStore(),
+                            idPropertyKey != null
+                                    ? neoStore.getPropertyKeyRepository().getOrCreateId( idPropertyKey )
+                                    : ExistingNodeIds.NO_PROPERTY_KEY, firstNodeId );
+                }
+                StatsProvider memoryUsageStats;
+                if ( !config.schemaIndexes().isEmpty() )
+                {
+                    // Index entries are kept in memory while importing nodes, which is also when the id mapper
+                    // grows, so they get half of the memory available at this point
+                    long indexEntriesMemory = (maxMemory - totalMemoryUsageOf( nodeRelationshipCache, neoStore )) / 2;
+                    schemaIndexImporter = new SchemaIndexImporter( config.schemaIndexes(), neoStore, fileSystem,
+                            storeDir, dbConfig, logService, loadKernelExtensions(), indexEntriesMemory );
+                    memoryUsageStats =
+                            new MemoryUsageStatsProvider( nodeRelationshipCache, idMapper, schemaIndexImporter );
+                }
+                else
                 {
-                    executeStage( new DeleteDuplicateNodesStage( config, duplicateNodeIds, neoStore ) );
+                    memoryUsageStats = new MemoryUsageStatsProvider( nodeRelationshipCache, idMapper );
+                }
+                InputIterable<InputNode> nodes = input.nodes();
+                InputIterable<InputRelationship> relationships = input.relationships();
+                InputIterable<InputNode> cachedNodes = cachedForSure( nodes, inputCache.nodes( MAIN, true ) );
+
+                if ( incremental && idMapper.needsPreparation() )
+                {
+                    // Existing nodes must be known to the id mapper so that imported relationships can refer to them
+                    executeStage( new ExistingNodeIdsStage( config, idMapper, existingNodeIds ) );
+                }
+
+                // Import nodes, properties, labels
+                Configuration nodeConfig = configWithRecordsPerPageBasedBatchSize( config, neoStore.getNodeStore() );
+                NodeStage nodeStage = new NodeStage( nodeConfig, writeMonitor,
+                        nodes, idMapper, idGenerator, neoStore, inputCache, neoStore.getLabelScanStore(),
+                        storeUpdateMonitor, memoryUsageStats, schemaIndexImporter );
+                neoStore.startFlushingPageCache();
+                executeStage( nodeStage );
+                neoStore.stopFlushingPageCache();
+                if ( idMapper.needsPreparation() )
+                {
+                    executeStage( incremental
+                            ? new IdMapperPreparationStage( config, idMapper, existingNodeIds, cachedNodes,
+                                    badCollector, memoryUsageStats )
+                            : new IdMapperPreparationStage( config, idMapper, cachedNodes,
+                                    badCollector, memoryUsageStats ) );
+                    // Existing nodes are never deleted, an imported node colliding with one is the one to go
+                    PrimitiveLongIterator duplicateNodeIds =
+                            filter( badCollector.leftOverDuplicateNodesIds(), id -> id >= firstNodeId );
+                    if ( duplicateNodeIds.hasNext() )
+                    {
+                        executeStage( new DeleteDuplicateNodesStage( config, duplicateNodeIds, neoStore ) );
+                    }
+                }
+                if ( schemaIndexImporter != null )
+                {
+                    // Populated before the first checkpoint, so a resumed import has complete indexes
+                    PrimitiveLongSet deletedNodeIds = Primitive.longSet();
+                    PrimitiveLongIterator duplicateNodeIds = badCollector.leftOverDuplicateNodesIds();
+                    while ( duplicateNodeIds.hasNext() )
+                    {
+                        deletedNodeIds.add( duplicateNodeIds.next() );
+                    }
+                    schemaIndexImporter.populate( deletedNodeIds::contains );
+                }
+                // Import relationships (unlinked), properties
+                RelationshipStage unlinkedRelationshipStage =
+                        new RelationshipStage( relationshipConfig, writeMonitor, relationships, idMapper,
+                                badCollector, neoStore, storeUpdateMonitor );
+                neoStore.startFlushingPageCache();
+                executeStage( unlinkedRelationshipStage );
+                neoStore.stopFlushingPageCache();
+                idMapper.close();
+                typeDistribution = unlinkedRelationshipStage.getDistribution();
+                if ( !incremental )
+                {
+                    // Everything needed from here on can be rebuilt from the store
+                    checkpoint.save( ImportCheckpoint.Progress.RELATIONSHIPS_IMPORTED, neoStore, typeDistribution,
+                            storeUpdateMonitor );
                 }
             }
-            // Import relationships (unlinked), properties
-            Configuration relationshipConfig =
-                    configWithRecordsPerPageBasedBatchSize( config, neoStore.getNodeStore() );
-            RelationshipStage unlinkedRelationshipStage =
-                    new RelationshipStage( relationshipConfig, writeMonitor, relationships, idMapper,
-                            badCollector, inputCache, neoStore, storeUpdateMonitor );
-            neoStore.startFlushingPageCache();
-            executeStage( unlinkedRelationshipStage );
-            neoStore.stopFlushingPageCache();
-            idMapper.close();
-            idMapper = null;
-            // Link relationships together with each other, their nodes and their relationship groups
-            long availableMemory = maxMemory - totalMemoryUsageOf( nodeRelationshipCache, neoStore );
-            // This is where the nodeRelationshipCache is allocated memory.
-            // This has to happen after idMapped is released
-            nodeRelationshipCache.setHighNodeId( neoStore.getNodeStore().getHighId() );
-            NodeDegreeCountStage nodeDegreeStage = new NodeDegreeCountStage( relationshipConfig,
-                    neoStore.getRelationshipStore(), nodeRelationshipCache );
-            neoStore.startFlushingPageCache();
-            executeStage( nodeDegreeStage );
-            neoStore.stopFlushingPageCache();
-
-            linkData( nodeRelationshipCache, neoStore, unlinkedRelationshipStage.getDistribution(),
-                    availableMemory );
-
-            // Release this potentially really big piece of cached data
-            long peakMemoryUsage = totalMemoryUsageOf( nodeRelationshipCache, neoStore );
-            long highNodeId = nodeRelationshipCache.getHighNodeId();
-            nodeRelationshipCache.close();
-            nodeRelationshipCache = null;
-            // Defragment relationships groups for better performance
-            new RelationshipGroupDefragmenter( config, executionMonitor, numberArrayFactory )
-                    .run( max( maxMemory, peakMemoryUsage ), neoStore, highNodeId );
+            else
+            {
+                typeDistribution = checkpoint.typeDistribution();
+            }
+
+            long peakMemoryUsage = 0;
+            if ( incremental )
+            {
+                // Existing relationship chains and groups are already linked, so instead of linking everything
+                // from scratch the imported relationships are inserted into them one by one
+                executeStage( new RelationshipMergeStage( relationshipConfig, neoStore, firstRelationshipId,
+                        config.denseNodeThreshold() ) );
+                peakMemoryUsage = totalMemoryUsageOf( nodeRelationshipCache, neoStore );
+                nodeRelationshipCache.close();
+                nodeRelationshipCache = null;
+            }
+            else if ( progress != ImportCheckpoint.Progress.RELATIONSHIPS_LINKED )
+            {
+                // Link relationships together with each other, their nodes and their relationship groups
+                long availableMemory = maxMemory - totalMemoryUsageOf( nodeRelationshipCache, neoStore );
+                // This is where the nodeRelationshipCache is allocated memory.
+                // This has to happen after idMapped is released
+                nodeRelationshipCache.setHighNodeId( neoStore.getNodeStore().getHighId(),
+                        neoStore.getRelationshipStore().getHighId() );
+                NodeDegreeCountStage nodeDegreeStage = new NodeDegreeCountStage( relationshipConfig,
+                        neoStore.getRelationshipStore(), nodeRelationshipCache );
+                neoStore.startFlushingPageCache();
+                executeStage( nodeDegreeStage );
+                neoStore.stopFlushingPageCache();
+
+                linkData( nodeRelationshipCache, neoStore, typeDistribution, availableMemory );
 
+                // Release this potentially really big piece of cached data
+                peakMemoryUsage = totalMemoryUsageOf( nodeRelationshipCache, neoStore );
+                long highNodeId = nodeRelationshipCache.getHighNodeId();
+                nodeRelationshipCache.close();
+                nodeRelationshipCache = null;
+                // Defragment relationships groups for better performance
+                new RelationshipGroupDefragmenter( config, executionMonitor, numberArrayFactory )
+                        .run( max( maxMemory, peakMemoryUsage ), neoStore, highNodeId );
+                // The temporary relationship group store is gone after this point, so this is the next
+                // point to resume from
+                checkpoint.save( ImportCheckpoint.Progress.RELATIONSHIPS_LINKED, neoStore, null,
+                        storeUpdateMonitor );
+            }
+            // Counts of the existing data are kept and the imported data is counted on top of them
+            ExistingCounts existingCounts = new ExistingCounts();
+            if ( incremental )
+            {
+                neoStore.getCountsStore().accept( existingCounts );
+            }
             // Count nodes per label and labels per node
-            try ( CountsAccessor.Updater countsUpdater = neoStore.getCountsStore().reset(
-                    neoStore.getLastCommittedTransactionId() ) )
+            try ( CountsAccessor.Updater countsUpdater = existingCounts.addingTo( neoStore.getCountsStore().reset(
+                    neoStore.getLastCommittedTransactionId() ) ) )
             {
                 MigrationProgressMonitor progressMonitor = new SilentMigrationProgressMonitor();
                 nodeLabelsCache = new NodeLabelsCache( numberArrayFactory, neoStore.getLabelRepository().getHighId() );
-                memoryUsageStats = new MemoryUsageStatsProvider( nodeLabelsCache );
+                StatsProvider memoryUsageStats = new MemoryUsageStatsProvider( nodeLabelsCache );
                 executeStage( new NodeCountsStage( config, nodeLabelsCache, neoStore.getNodeStore(),
-                        neoStore.getLabelRepository().getHighId(), countsUpdater, progressMonitor.startSection( "Nodes" ),
-                        memoryUsageStats ) );
+                        neoStore.getLabelRepository().getHighId(), firstNodeId, countsUpdater,
+                        progressMonitor.startSection( "Nodes" ), memoryUsageStats ) );
                 // Count label-[type]->label
                 executeStage( new RelationshipCountsStage( config, nodeLabelsCache, relationshipStore,
                         neoStore.getLabelRepository().getHighId(),
                         neoStore.getRelationshipTypeRepository().getHighId(),
-                        countsUpdater, numberArrayFactory, progressMonitor.startSection( "Relationships" ) ) );
+                        countsUpdater, numberArrayFactory, progressMonitor.startSection( "Relationships" ),
+                        firstRelationshipId ) );
+            }
+            if ( schemaIndexImporter != null )
+            {
+                // A resumed import has no samples of the indexes populated before it failed,
+                // those indexes are instead sampled on startup
+                schemaIndexImporter.writeIndexCounts( neoStore.getCountsStore(),
+                        neoStore.getLastCommittedTransactionId() );
+            }
+
+            if ( dropSchemaIndexes )
+            {
+                // Schema indexes don't know about the imported data, have them rebuilt on next startup
+                File schemaIndexes = IndexDirectoryStructure.baseSchemaIndexFolder( storeDir );
+                if ( fileSystem.fileExists( schemaIndexes ) )
+                {
+                    fileSystem.deleteRecursively( schemaIndexes );
+                }
+                log.info( "Schema indexes dropped, they will be rebuilt on next startup" );
             }
 
             // We're done, do some final logging about it
@@ -241,6 +399,7 @@ public class ParallelBatchImporter implements BatchImporter
                     storeUpdateMonitor.toString() +
                     format( "%n" ) +
                     "Peak memory usage: " + bytes( peakMemoryUsage ) );
+            checkpoint.delete();
         }
         catch ( Throwable t )
         {
@@ -257,11 +416,64 @@ public class ParallelBatchImporter implements BatchImporter
             {
                 nodeLabelsCache.close();
             }
+            if ( schemaIndexImporter != null )
+            {
+                schemaIndexImporter.close();
+            }
         }
 
         log.info( "Import completed successfully, took " + Format.duration( totalTimeMillis ) + ". " + storeUpdateMonitor );
     }
 
+    /**
+     * Imported data isn't verified against uniqueness constraints, so an incremental import could leave a
+     * constraint which is violated, with a constraint index failing to rebuild on next startup.
+     */
+    private static void assertNoUniquenessConstraints( NeoStores neoStores )
+    {
+        Iterator<ConstraintRule> constraints =
+                new SchemaStorage( neoStores.getSchemaStore() ).constraintsGetAllIgnoreMalformed();
+        while ( constraints.hasNext() )
+        {
+            ConstraintRule constraint = constraints.next();
+            if ( constraint.getConstraintDescriptor().enforcesUniqueness() )
+            {
+                throw new IllegalStateException( "Incremental import into a store with uniqueness constraints " +
+                        "isn't supported, since imported data isn't verified against them. Found " +
+                        constraint.getConstraintDescriptor() );
+            }
+        }
+    }
+
+    /**
+     * Schema indexes aren't updated with the data of an incremental import, so they would have to be rebuilt from
+     * the whole store on next startup, which takes long for a big store. That's only done when explicitly asked
+     * for, see {@link Configuration#rebuildSchemaIndexes()}, otherwise the import is refused.
+     *
+     * @return whether or not there are schema indexes to drop after the import.
+     */
+    private boolean schemaIndexesToDrop( NeoStores neoStores )
+    {
+        List<IndexRule> indexes =
+                Iterators.asList( new SchemaStorage( neoStores.getSchemaStore() ).indexesGetAll() );
+        if ( indexes.isEmpty() )
+        {
+            return false;
+        }
+        if ( !config.rebuildSchemaIndexes() )
+        {
+            throw new IllegalStateException( "Incremental import into a store with schema indexes isn't " +
+                    "supported, since the indexes aren't updated with the imported data. Found " +
+                    indexes.stream().map( IndexRule::getIndexDescriptor ).collect( toList() ) + ". Allow them to " +
+                    "be dropped, and rebuilt on next startup, with --rebuild-schema-indexes" );
+        }
+        for ( IndexRule index : indexes )
+        {
+            log.warn( "Schema index " + index.getIndexDescriptor() + " will be dropped and rebuilt on next startup" );
+        }
+        return true;
+    }
+
     private BatchingNeoStores getBatchingNeoStores()
     {
         if ( externalPageCache == null )
@@ -276,6 +488,11 @@ public class ParallelBatchImporter implements BatchImporter
         }
     }
 
+    private static Iterable loadKernelExtensions()
+    {
+        return Service.load( KernelExtensionFactory.class );
+    }
+
     private long totalMemoryUsageOf( MemoryStatsVisitor.Visitable... users )
     {
         GatheringMemoryStatsVisitor total = new GatheringMemoryStatsVisitor();
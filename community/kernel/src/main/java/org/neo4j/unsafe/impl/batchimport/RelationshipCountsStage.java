@@ -28,7 +28,8 @@ import org.neo4j.unsafe.impl.batchimport.staging.BatchFeedStep;
 import org.neo4j.unsafe.impl.batchimport.staging.ReadRecordsStep;
 import org.neo4j.unsafe.impl.batchimport.staging.Stage;
 
-import static org.neo4j.unsafe.impl.batchimport.RecordIdIterator.allIn;
+import static java.lang.Math.max;
+import static org.neo4j.unsafe.impl.batchimport.RecordIdIterator.forwards;
 
 /**
  * Reads all records from {@link RelationshipStore} and process the counts in them. Uses a {@link NodeLabelsCache}
@@ -39,10 +40,24 @@ public class RelationshipCountsStage extends Stage
     public RelationshipCountsStage( Configuration config, NodeLabelsCache cache, RelationshipStore relationshipStore,
             int highLabelId, int highRelationshipTypeId, CountsAccessor.Updater countsUpdater,
             NumberArrayFactory cacheFactory, MigrationProgressMonitor.Section progressMonitor )
+    {
+        this( config, cache, relationshipStore, highLabelId, highRelationshipTypeId, countsUpdater, cacheFactory,
+                progressMonitor, 0 );
+    }
+
+    /**
+     * @param firstRelationshipIdToCount relationships with lower ids are not counted, f.ex. relationships which
+     * were in the store before importing into it.
+     */
+    public RelationshipCountsStage( Configuration config, NodeLabelsCache cache, RelationshipStore relationshipStore,
+            int highLabelId, int highRelationshipTypeId, CountsAccessor.Updater countsUpdater,
+            NumberArrayFactory cacheFactory, MigrationProgressMonitor.Section progressMonitor,
+            long firstRelationshipIdToCount )
     {
         super( "Relationship counts", config );
-        add( new BatchFeedStep( control(), config, allIn( relationshipStore, config ),
-                relationshipStore.getRecordSize() ) );
+        add( new BatchFeedStep( control(), config, forwards(
+                max( relationshipStore.getNumberOfReservedLowIds(), firstRelationshipIdToCount ),
+                relationshipStore.getHighId(), config ), relationshipStore.getRecordSize() ) );
         add( new ReadRecordsStep<>( control(), config, false, relationshipStore, null ) );
         add( new ProcessRelationshipCountsDataStep( control(), cache, config,
                 highLabelId, highRelationshipTypeId, countsUpdater, cacheFactory, progressMonitor ) );
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import org.neo4j.kernel.impl.store.RelationshipStore;
+import org.neo4j.unsafe.impl.batchimport.staging.BatchFeedStep;
+import org.neo4j.unsafe.impl.batchimport.staging.ReadRecordsStep;
+import org.neo4j.unsafe.impl.batchimport.staging.Stage;
+import org.neo4j.unsafe.impl.batchimport.store.BatchingNeoStores;
+
+import static org.neo4j.unsafe.impl.batchimport.RecordIdIterator.forwards;
+
+/**
+ * Links relationships imported into an existing store, i.e. those from a certain relationship id and up,
+ * into the relationship chains and groups of their nodes, which may already have relationships.
+ * Used instead of the linking stages of an import into an empty store, which build all chains from scratch.
+ */
+public class RelationshipMergeStage extends Stage
+{
+    public RelationshipMergeStage( Configuration config, BatchingNeoStores neoStore, long firstRelationshipId,
+            int denseNodeThreshold )
+    {
+        super( "Relationships --> existing chains", config );
+        RelationshipStore store = neoStore.getRelationshipStore();
+        add( new BatchFeedStep( control(), config, forwards( firstRelationshipId, store.getHighId(), config ),
+                store.getRecordSize() ) );
+        add( new ReadRecordsStep<>( control(), config, true, store, null ) );
+        add( new RelationshipMergeStep( control(), config, neoStore.getNeoStores(), denseNodeThreshold ) );
+    }
+}
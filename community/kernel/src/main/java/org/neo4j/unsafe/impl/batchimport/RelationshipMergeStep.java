@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import org.neo4j.kernel.impl.locking.Locks;
+import org.neo4j.kernel.impl.locking.NoOpClient;
+import org.neo4j.kernel.impl.store.NeoStores;
+import org.neo4j.kernel.impl.store.RecordStore;
+import org.neo4j.kernel.impl.store.record.AbstractBaseRecord;
+import org.neo4j.kernel.impl.store.record.RelationshipRecord;
+import org.neo4j.kernel.impl.transaction.state.RecordAccess;
+import org.neo4j.kernel.impl.transaction.state.RecordAccess.RecordProxy;
+import org.neo4j.kernel.impl.transaction.state.RelationshipCreator;
+import org.neo4j.kernel.impl.transaction.state.RelationshipGroupGetter;
+import org.neo4j.unsafe.batchinsert.internal.DirectRecordAccessSet;
+import org.neo4j.unsafe.impl.batchimport.staging.BatchSender;
+import org.neo4j.unsafe.impl.batchimport.staging.ProcessorStep;
+import org.neo4j.unsafe.impl.batchimport.staging.StageControl;
+
+/**
+ * Links imported, but not yet linked, {@link RelationshipRecord relationships} into the chains of their nodes
+ * using the same {@link RelationshipCreator} as transactions do, which knows how to insert into existing chains,
+ * create relationship groups and convert nodes into dense nodes. Chains are changed in place in the store,
+ * which is why this step is single-threaded.
+ */
+public class RelationshipMergeStep extends ProcessorStep<RelationshipRecord[]>
+{
+    private final NeoStores neoStores;
+    private final RelationshipCreator relationshipCreator;
+    private final DirectRecordAccessSet recordAccess;
+    // Nothing else touches the store during import, so the locks taken when inserting into existing chains are no-ops
+    private final Locks.Client noopLockClient = new NoOpClient();
+
+    public RelationshipMergeStep( StageControl control, Configuration config, NeoStores neoStores,
+            int denseNodeThreshold )
+    {
+        super( control, "MERGE", config, 1 );
+        this.neoStores = neoStores;
+        this.relationshipCreator = new RelationshipCreator(
+                new RelationshipGroupGetter( neoStores.getRelationshipGroupStore() ), denseNodeThreshold );
+        this.recordAccess = new DirectRecordAccessSet( neoStores );
+    }
+
+    @Override
+    protected void process( RelationshipRecord[] batch, BatchSender sender ) throws Throwable
+    {
+        RecordAccess<RelationshipRecord,Void> relationships = recordAccess.getRelRecords();
+        for ( RelationshipRecord imported : batch )
+        {
+            long id = imported.getId();
+            relationshipCreator.relationshipCreate( id, imported.getType(), imported.getFirstNode(),
+                    imported.getSecondNode(), recordAccess, noopLockClient );
+
+            // The relationship record is created anew when linked, so bring over what was imported along with it
+            RelationshipRecord linked = relationships.getOrLoad( id, null ).forChangingData();
+            linked.setNextProp( imported.getNextProp() );
+            linked.setSecondaryUnitId( imported.getSecondaryUnitId() );
+        }
+
+        prepareForCommit( neoStores.getNodeStore(), recordAccess.getNodeRecords() );
+        prepareForCommit( neoStores.getRelationshipStore(), relationships );
+        prepareForCommit( neoStores.getRelationshipGroupStore(), recordAccess.getRelGroupRecords() );
+        recordAccess.commit();
+    }
+
+    private static <RECORD extends AbstractBaseRecord> void prepareForCommit( RecordStore<RECORD> store,
+            RecordAccess<RECORD,?> records )
+    {
+        for ( RecordProxy<RECORD,?> change : records.changes() )
+        {
+            store.prepareForCommit( change.forReadingLinkage() );
+        }
+    }
+
+    @Override
+    public void close() throws Exception
+    {
+        super.close();
+        recordAccess.close();
+    }
+}
@@ -19,8 +19,6 @@
  */
 package org.neo4j.unsafe.impl.batchimport;
 
-import java.io.IOException;
-
 import org.neo4j.kernel.impl.store.PropertyStore;
 import org.neo4j.kernel.impl.store.RelationshipStore;
 import org.neo4j.kernel.impl.store.record.PropertyBlock;
@@ -29,13 +27,11 @@ import org.neo4j.kernel.impl.store.record.RelationshipRecord;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper;
 import org.neo4j.unsafe.impl.batchimport.input.Collector;
 import org.neo4j.unsafe.impl.batchimport.input.Input;
-import org.neo4j.unsafe.impl.batchimport.input.InputCache;
 import org.neo4j.unsafe.impl.batchimport.input.InputRelationship;
 import org.neo4j.unsafe.impl.batchimport.staging.Stage;
 import org.neo4j.unsafe.impl.batchimport.store.BatchingNeoStores;
 import org.neo4j.unsafe.impl.batchimport.store.io.IoMonitor;
 
-import static org.neo4j.unsafe.impl.batchimport.input.InputCache.MAIN;
 import static org.neo4j.unsafe.impl.batchimport.staging.Step.ORDER_SEND_DOWNSTREAM;
 
 /**
@@ -43,9 +39,6 @@ import static org.neo4j.unsafe.impl.batchimport.staging.Step.ORDER_SEND_DOWNSTRE
  * <ol>
  * <li>{@link InputIteratorBatcherStep} reading from {@link InputIterator} produced from
  * {@link Input#relationships()}.</li>
- * <li>{@link InputEntityCacherStep} alternatively {@link InputCache caches} this input data
- * (all the {@link InputRelationship input relationships}) if the iterator doesn't support
- * {@link InputIterable#supportsMultiplePasses() multiple passes}.</li>
  * into {@link PropertyBlock}, low level kernel encoded values.</li>
  * <li>{@link RelationshipPreparationStep} uses {@link IdMapper} to look up input id --> node id</li>
  * <li>{@link RelationshipRecordPreparationStep} creates {@link RelationshipRecord} and fills them with
@@ -61,21 +54,16 @@ public class RelationshipStage extends Stage
 
     public RelationshipStage( Configuration config, IoMonitor writeMonitor,
             InputIterable<InputRelationship> relationships, IdMapper idMapper,
-            Collector badCollector, InputCache inputCache,
-            BatchingNeoStores neoStore, EntityStoreUpdaterStep.Monitor storeUpdateMonitor ) throws IOException
+            Collector badCollector, BatchingNeoStores neoStore, EntityStoreUpdaterStep.Monitor storeUpdateMonitor )
     {
         super( "Relationships", config, ORDER_SEND_DOWNSTREAM );
         add( new InputIteratorBatcherStep<>( control(), config, relationships.iterator(),
                 InputRelationship.class, r -> true ) );
-        if ( !relationships.supportsMultiplePasses() )
-        {
-            add( new InputEntityCacherStep<>( control(), config, inputCache.cacheRelationships( MAIN ) ) );
-        }
 
         RelationshipStore relationshipStore = neoStore.getRelationshipStore();
         PropertyStore propertyStore = neoStore.getPropertyStore();
         add( typer = new RelationshipTypeCheckerStep( control(), config, neoStore.getRelationshipTypeRepository() ) );
-        add( new AssignRelationshipIdBatchStep( control(), config, 0 ) );
+        add( new AssignRelationshipIdBatchStep( control(), config, relationshipStore.getHighId() ) );
         add( new RelationshipPreparationStep( control(), config, idMapper ) );
         add( new RelationshipRecordPreparationStep( control(), config,
                 neoStore.getRelationshipTypeRepository(), badCollector ) );
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import org.neo4j.kernel.impl.store.record.NodeRecord;
+import org.neo4j.unsafe.impl.batchimport.index.SchemaIndexImporter;
+import org.neo4j.unsafe.impl.batchimport.index.SchemaIndexImporter.Index;
+import org.neo4j.unsafe.impl.batchimport.input.InputNode;
+import org.neo4j.unsafe.impl.batchimport.staging.BatchSender;
+import org.neo4j.unsafe.impl.batchimport.staging.ProcessorStep;
+import org.neo4j.unsafe.impl.batchimport.staging.StageControl;
+import org.neo4j.unsafe.impl.batchimport.store.BatchingTokenRepository.BatchingPropertyKeyTokenRepository;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+/**
+ * Adds entries to the {@link SchemaIndexImporter schema indexes being imported} for all nodes in
+ * {@link Batch batches} passing by which have the label and all the property keys of an index.
+ */
+public class SchemaIndexEntryCollectorStep extends ProcessorStep<Batch<InputNode,NodeRecord>>
+{
+    private final Index[] indexes;
+    private final BatchingPropertyKeyTokenRepository propertyKeyRepository;
+
+    public SchemaIndexEntryCollectorStep( StageControl control, Configuration config,
+            SchemaIndexImporter schemaIndexes, BatchingPropertyKeyTokenRepository propertyKeyRepository )
+    {
+        super( control, "SCHEMA INDEX", config, 0 );
+        this.indexes = schemaIndexes.indexes();
+        this.propertyKeyRepository = propertyKeyRepository;
+    }
+
+    @Override
+    protected void process( Batch<InputNode,NodeRecord> batch, BatchSender sender ) throws Throwable
+    {
+        int length = batch.labels.length;
+        Value[][][] values = new Value[indexes.length][][];
+        long[][] nodeIds = new long[indexes.length][];
+        int[] counts = new int[indexes.length];
+        for ( int i = 0; i < length; i++ )
+        {
+            long[] labels = batch.labels[i];
+            NodeRecord node = batch.records[i];
+            if ( labels == null || !node.inUse() )
+            {
+                continue;
+            }
+
+            Object[] properties = batch.input[i].properties();
+            int[] keyIds = null;
+            for ( int j = 0; j < indexes.length; j++ )
+            {
+                Index index = indexes[j];
+                if ( !contains( labels, index.labelId() ) )
+                {
+                    continue;
+                }
+                if ( keyIds == null )
+                {
+                    keyIds = propertyKeyIds( properties );
+                }
+                Value[] indexValues = indexValues( index.propertyKeyIds(), keyIds, properties );
+                if ( indexValues != null )
+                {
+                    if ( values[j] == null )
+                    {
+                        values[j] = new Value[length][];
+                        nodeIds[j] = new long[length];
+                    }
+                    values[j][counts[j]] = indexValues;
+                    nodeIds[j][counts[j]++] = node.getId();
+                }
+            }
+        }
+
+        for ( int j = 0; j < indexes.length; j++ )
+        {
+            if ( counts[j] > 0 )
+            {
+                indexes[j].add( values[j], nodeIds[j], counts[j] );
+            }
+        }
+        sender.send( batch );
+    }
+
+    private int[] propertyKeyIds( Object[] properties )
+    {
+        int[] keyIds = new int[properties.length >> 1];
+        for ( int i = 0; i < keyIds.length; i++ )
+        {
+            keyIds[i] = propertyKeyRepository.getOrCreateId( properties[i << 1] );
+        }
+        return keyIds;
+    }
+
+    /**
+     * @return values of the given property keys, or {@code null} if any of them is missing.
+     */
+    private static Value[] indexValues( int[] indexKeyIds, int[] keyIds, Object[] properties )
+    {
+        Value[] values = new Value[indexKeyIds.length];
+        for ( int i = 0; i < indexKeyIds.length; i++ )
+        {
+            Object value = null;
+            for ( int k = 0; k < keyIds.length && value == null; k++ )
+            {
+                if ( keyIds[k] == indexKeyIds[i] )
+                {
+                    value = properties[(k << 1) + 1];
+                }
+            }
+            if ( value == null )
+            {
+                return null;
+            }
+            values[i] = Values.of( value );
+        }
+        return values;
+    }
+
+    private static boolean contains( long[] labels, int labelId )
+    {
+        for ( long label : labels )
+        {
+            if ( label == labelId )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.cache;
+
+import java.util.Arrays;
+
+import static java.lang.Math.min;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.BIG_COUNT_MASK;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.COUNT_MASK;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.DENSE_NODE_CHANGED_MASK;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.SPARSE_COUNT_OFFSET;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.SPARSE_ID_OFFSET;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.SPARSE_NODE_CHANGED_MASK;
+
+/**
+ * Main array of a {@link NodeRelationshipCache} in compact mode. Looks like the regular [ID,COUNT] items,
+ * i.e. a 6-byte id and an int count with change bits, but stores them in fewer bytes:
+ *
+ * <pre>
+ * [ID,COUNT]
+ *
+ * ID: as few bytes as required by the highest relationship or relationship group id the import can produce
+ * COUNT: [D,S,count...] as few bytes as required by the dense node threshold
+ *   D: dense node changed bit
+ *   S: sparse node changed bit
+ * </pre>
+ *
+ * A node becomes dense when its count reaches the dense node threshold and the count of a dense node
+ * is from then on kept in the relationship group cache, so counts in here stop at the highest value the
+ * count bits can hold, which is at least the threshold. As an example 30 billion relationships and the default
+ * threshold makes for 6 bytes per node instead of 10. All values having all bits set signals default,
+ * just like for the regular items.
+ *
+ * Every item has its own bytes, so different threads can update different nodes without interfering,
+ * which is what the cache requires. Items have fixed size, so random access is as cheap as with the regular
+ * items, only with a little more shifting and masking.
+ *
+ * Only {@link #get6ByteLong(long, int)}, {@link #getInt(long, int)} and their setters translate between the
+ * regular and the compact items. All other accessors read and write the compact items as they are stored,
+ * i.e. {@link #itemSize()} bytes per item with offsets into those bytes.
+ */
+class CompactNodeRelationshipArray implements ByteArray
+{
+    private static final int UNSET_COUNT = BIG_COUNT_MASK | COUNT_MASK;
+
+    private final ByteArray array;
+    private final int idSize;
+    private final int countSize;
+    private final long defaultId;
+    private final int defaultCount;
+    private final int countBits;
+    private final int maxCount;
+
+    CompactNodeRelationshipArray( NumberArrayFactory factory, long length, int idSize, int countSize )
+    {
+        assert idSize >= 1 && idSize <= 6 && countSize >= 1 && countSize <= 3;
+        this.idSize = idSize;
+        this.countSize = countSize;
+        this.defaultId = (1L << (idSize * Byte.SIZE)) - 1;
+        this.defaultCount = (1 << (countSize * Byte.SIZE)) - 1;
+        this.countBits = countSize * Byte.SIZE - 2;
+        // all count bits set means default, so max is one less than that
+        this.maxCount = (1 << countBits) - 2;
+        byte[] defaultValue = new byte[idSize + countSize];
+        Arrays.fill( defaultValue, (byte) -1 );
+        this.array = factory.newByteArray( length, defaultValue );
+    }
+
+    /**
+     * @param highId highest id to store, exclusive.
+     * @return number of bytes needed for an id field to hold ids up to {@code highId}.
+     */
+    static int idSize( long highId )
+    {
+        int size = 1;
+        // all bits set is reserved for default, i.e. -1
+        while ( size < 6 && highId >= (1L << (size * Byte.SIZE)) - 1 )
+        {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * @param denseNodeThreshold count at which a node is considered dense.
+     * @return number of bytes needed for a count field to count up to {@code denseNodeThreshold},
+     * or {@code 0} if too many for a compact count field.
+     */
+    static int countSize( int denseNodeThreshold )
+    {
+        for ( int size = 1; size <= 3; size++ )
+        {
+            if ( denseNodeThreshold <= (1 << (size * Byte.SIZE - 2)) - 2 )
+            {
+                return size;
+            }
+        }
+        return 0;
+    }
+
+    int itemSize()
+    {
+        return idSize + countSize;
+    }
+
+    @Override
+    public long get6ByteLong( long index, int offset )
+    {
+        assert offset == SPARSE_ID_OFFSET;
+        long id = get( index, 0, idSize );
+        return id == defaultId ? -1 : id;
+    }
+
+    @Override
+    public void set6ByteLong( long index, int offset, long value )
+    {
+        assert offset == SPARSE_ID_OFFSET;
+        if ( value == -1 )
+        {
+            value = defaultId;
+        }
+        else if ( value < 0 || value >= defaultId )
+        {
+            throw new IllegalStateException( "Id " + value + " too big for compact cache, max is " + (defaultId - 1) );
+        }
+        set( index, 0, idSize, value );
+    }
+
+    @Override
+    public int getInt( long index, int offset )
+    {
+        assert offset == SPARSE_COUNT_OFFSET;
+        int compact = (int) get( index, idSize, countSize );
+        if ( compact == defaultCount )
+        {
+            return -1;
+        }
+
+        int count = compact & countMask();
+        return (isSet( compact, countBits + 1 ) ? DENSE_NODE_CHANGED_MASK : 0) |
+               (isSet( compact, countBits ) ? SPARSE_NODE_CHANGED_MASK : 0) |
+               (count == countMask() ? UNSET_COUNT : count);
+    }
+
+    @Override
+    public void setInt( long index, int offset, int value )
+    {
+        assert offset == SPARSE_COUNT_OFFSET;
+        int compact;
+        if ( value == -1 )
+        {
+            compact = defaultCount;
+        }
+        else
+        {
+            // A count which has never been set, but has had its change bits flipped, keeps all its other bits set
+            boolean unset = (value & UNSET_COUNT) == UNSET_COUNT;
+            assert unset || (value & BIG_COUNT_MASK) == 0 : "Compact counts are never big";
+            compact = ((value & DENSE_NODE_CHANGED_MASK) != 0 ? 1 << (countBits + 1) : 0) |
+                      ((value & SPARSE_NODE_CHANGED_MASK) != 0 ? 1 << countBits : 0) |
+                      (unset ? countMask() : min( value & COUNT_MASK, maxCount ));
+        }
+        set( index, idSize, countSize, compact );
+    }
+
+    private int countMask()
+    {
+        return (1 << countBits) - 1;
+    }
+
+    private static boolean isSet( int bits, int bit )
+    {
+        return (bits & (1 << bit)) != 0;
+    }
+
+    private long get( long index, int offset, int size )
+    {
+        switch ( size )
+        {
+        case 1:
+            return array.getByte( index, offset ) & 0xFFL;
+        case 2:
+            return array.getShort( index, offset ) & 0xFFFFL;
+        case 3:
+            return array.get3ByteInt( index, offset ) & 0xFFFFFFL;
+        case 4:
+            return array.getInt( index, offset ) & 0xFFFFFFFFL;
+        case 5:
+            return (array.getInt( index, offset ) & 0xFFFFFFFFL) |
+                   ((array.getByte( index, offset + Integer.BYTES ) & 0xFFL) << Integer.SIZE);
+        case 6:
+            return array.get6ByteLong( index, offset ) & 0xFFFFFFFFFFFFL;
+        default:
+            throw new IllegalArgumentException( "Unsupported size " + size );
+        }
+    }
+
+    private void set( long index, int offset, int size, long value )
+    {
+        switch ( size )
+        {
+        case 1:
+            array.setByte( index, offset, (byte) value );
+            break;
+        case 2:
+            array.setShort( index, offset, (short) value );
+            break;
+        case 3:
+            array.set3ByteInt( index, offset, (int) value );
+            break;
+        case 4:
+            array.setInt( index, offset, (int) value );
+            break;
+        case 5:
+            array.setInt( index, offset, (int) value );
+            array.setByte( index, offset + Integer.BYTES, (byte) (value >>> Integer.SIZE) );
+            break;
+        case 6:
+            array.set6ByteLong( index, offset, value );
+            break;
+        default:
+            throw new IllegalArgumentException( "Unsupported size " + size );
+        }
+    }
+
+    @Override
+    public long length()
+    {
+        return array.length();
+    }
+
+    @Override
+    public void swap( long fromIndex, long toIndex )
+    {
+        array.swap( fromIndex, toIndex );
+    }
+
+    @Override
+    public void clear()
+    {
+        array.clear();
+    }
+
+    @Override
+    public void close()
+    {
+        array.close();
+    }
+
+    @Override
+    public ByteArray at( long index )
+    {
+        // Items are always accessed through this array so that they're translated
+        return this;
+    }
+
+    @Override
+    public void acceptMemoryStatsVisitor( MemoryStatsVisitor visitor )
+    {
+        array.acceptMemoryStatsVisitor( visitor );
+    }
+
+    @Override
+    public void get( long index, byte[] into )
+    {
+        array.get( index, into );
+    }
+
+    @Override
+    public byte getByte( long index, int offset )
+    {
+        return array.getByte( index, offset );
+    }
+
+    @Override
+    public short getShort( long index, int offset )
+    {
+        return array.getShort( index, offset );
+    }
+
+    @Override
+    public long getLong( long index, int offset )
+    {
+        return array.getLong( index, offset );
+    }
+
+    @Override
+    public int get3ByteInt( long index, int offset )
+    {
+        return array.get3ByteInt( index, offset );
+    }
+
+    @Override
+    public void set( long index, byte[] value )
+    {
+        array.set( index, value );
+    }
+
+    @Override
+    public void setByte( long index, int offset, byte value )
+    {
+        array.setByte( index, offset, value );
+    }
+
+    @Override
+    public void setShort( long index, int offset, short value )
+    {
+        array.setShort( index, offset, value );
+    }
+
+    @Override
+    public void setLong( long index, int offset, long value )
+    {
+        array.setLong( index, offset, value );
+    }
+
+    @Override
+    public void set3ByteInt( long index, int offset, int value )
+    {
+        array.set3ByteInt( index, offset, value );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Compact[" + itemSize() + "B items]" + array;
+    }
+}
@@ -54,6 +54,9 @@ import static org.neo4j.helpers.Numbers.unsignedShortToInt;
  * - DEGREE < THRESHOLD: last seen relationship id for this node
  * </pre>
  *
+ * In compact mode the main array items are instead sized after the highest relationship id and the dense
+ * node threshold, see {@link CompactNodeRelationshipArray}.
+ *
  * This class is designed to be thread safe if callers are coordinated such that different threads owns different
  * parts of the main cache array, with the constraint that a thread which accesses item N must continue doing
  * so in order to make further changes to N, if another thread accesses N the semantics will no longer hold.
@@ -78,15 +81,15 @@ public class NodeRelationshipCache implements MemoryStatsVisitor.Visitable
     private static final int ID_SIZE = 6;
     private static final int COUNT_SIZE = 4;
     private static final int ID_AND_COUNT_SIZE = ID_SIZE + COUNT_SIZE;
-    private static final int SPARSE_ID_OFFSET = 0;
-    private static final int SPARSE_COUNT_OFFSET = ID_SIZE;
+    static final int SPARSE_ID_OFFSET = 0;
+    static final int SPARSE_COUNT_OFFSET = ID_SIZE;
 
     // Masking for tracking changes per node
-    private static final int DENSE_NODE_CHANGED_MASK = 0x80000000;
-    private static final int SPARSE_NODE_CHANGED_MASK = 0x40000000;
-    private static final int BIG_COUNT_MASK = 0x20000000;
+    static final int DENSE_NODE_CHANGED_MASK = 0x80000000;
+    static final int SPARSE_NODE_CHANGED_MASK = 0x40000000;
+    static final int BIG_COUNT_MASK = 0x20000000;
     private static final int COUNT_FLAGS_MASKS = DENSE_NODE_CHANGED_MASK | SPARSE_NODE_CHANGED_MASK | BIG_COUNT_MASK;
-    private static final int COUNT_MASK = ~COUNT_FLAGS_MASKS;
+    static final int COUNT_MASK = ~COUNT_FLAGS_MASKS;
 
     private static final int TYPE_SIZE = 2;
     public static final int GROUP_ENTRY_SIZE = TYPE_SIZE + ID_SIZE/*next*/ +
@@ -105,15 +108,35 @@ public class NodeRelationshipCache implements MemoryStatsVisitor.Visitable
     private final NumberArrayFactory arrayFactory;
     private final LongArray bigCounts;
     private final AtomicInteger bigCountsCursor = new AtomicInteger();
+    private final boolean compact;
 
     public NodeRelationshipCache( NumberArrayFactory arrayFactory, int denseNodeThreshold )
     {
-        this( arrayFactory, denseNodeThreshold, CHUNK_SIZE, 0 );
+        this( arrayFactory, denseNodeThreshold, false );
+    }
+
+    /**
+     * @param arrayFactory {@link NumberArrayFactory} for allocating the arrays.
+     * @param denseNodeThreshold number of relationships a node needs to have to be considered dense.
+     * @param compact whether or not to size the main array after the highest relationship id and the dense node
+     * threshold, see {@link CompactNodeRelationshipArray}. Requires the high relationship id to be known
+     * when calling {@link #setHighNodeId(long, long)}.
+     */
+    public NodeRelationshipCache( NumberArrayFactory arrayFactory, int denseNodeThreshold, boolean compact )
+    {
+        this( arrayFactory, denseNodeThreshold, CHUNK_SIZE, 0, compact );
     }
 
     NodeRelationshipCache( NumberArrayFactory arrayFactory, int denseNodeThreshold, int chunkSize, long base )
+    {
+        this( arrayFactory, denseNodeThreshold, chunkSize, base, false );
+    }
+
+    NodeRelationshipCache( NumberArrayFactory arrayFactory, int denseNodeThreshold, int chunkSize, long base,
+            boolean compact )
     {
         this.arrayFactory = arrayFactory;
+        this.compact = compact;
         this.chunkSize = chunkSize;
         this.denseNodeThreshold = denseNodeThreshold;
         this.bigCounts = arrayFactory.newDynamicLongArray( 1_000, 0 );
@@ -235,9 +258,33 @@ public class NodeRelationshipCache implements MemoryStatsVisitor.Visitable
      * @param nodeId high node id in the store, e.g. the highest node id + 1
      */
     public void setHighNodeId( long nodeId )
+    {
+        setHighNodeId( nodeId, MAX_RELATIONSHIP_ID );
+    }
+
+    /**
+     * Like {@link #setHighNodeId(long)}, but also with the high relationship id, which in compact mode
+     * decides how many bytes each node needs.
+     *
+     * @param nodeId high node id in the store, e.g. the highest node id + 1
+     * @param highRelationshipId high relationship id in the store, e.g. the highest relationship id + 1
+     */
+    public void setHighNodeId( long nodeId, long highRelationshipId )
     {
         this.highNodeId = nodeId;
-        this.array = arrayFactory.newByteArray( highNodeId, minusOneBytes( ID_AND_COUNT_SIZE ) );
+        int countSize = CompactNodeRelationshipArray.countSize( denseNodeThreshold );
+        if ( compact && countSize > 0 )
+        {
+            // Dense nodes have their ids point into the relationship group cache, which has at most
+            // one group per relationship end, i.e. two per relationship
+            long highId = relGroupCache.base + 2 * highRelationshipId;
+            int idSize = CompactNodeRelationshipArray.idSize( min( highId, MAX_RELATIONSHIP_ID + 1 ) );
+            this.array = new CompactNodeRelationshipArray( arrayFactory, highNodeId, idSize, countSize );
+        }
+        else
+        {
+            this.array = arrayFactory.newByteArray( highNodeId, minusOneBytes( ID_AND_COUNT_SIZE ) );
+        }
         this.chunkChangedArray = new byte[chunkOf( nodeId ) + 1];
     }
 
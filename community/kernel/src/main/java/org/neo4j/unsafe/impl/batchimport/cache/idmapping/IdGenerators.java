@@ -93,6 +93,43 @@ public class IdGenerators
         };
     }
 
+    /**
+     * For importing into a store which already has nodes in it. Ids generated independently of input ids
+     * start from {@code firstFreeId} and ids from input are required to not be lower than it.
+     *
+     * @param generator {@link IdGenerator} that would have been used for an empty store.
+     * @param firstFreeId the lowest id not already in use in the store.
+     * @return an {@link IdGenerator} which doesn't return ids of existing nodes.
+     */
+    public static IdGenerator above( IdGenerator generator, long firstFreeId )
+    {
+        if ( !generator.dependsOnInput() )
+        {
+            return startingFrom( firstFreeId );
+        }
+
+        return new IdGenerator()
+        {
+            @Override
+            public long generate( Object inputId )
+            {
+                long id = generator.generate( inputId );
+                if ( id < firstFreeId )
+                {
+                    throw new IllegalArgumentException( "Node id " + id + " is already in use in the store, " +
+                            "new nodes must have ids from " + firstFreeId + " and up" );
+                }
+                return id;
+            }
+
+            @Override
+            public boolean dependsOnInput()
+            {
+                return true;
+            }
+        };
+    }
+
     /**
      * @return an {@link IdGenerator} that returns ids incrementally, starting from 0.
      */
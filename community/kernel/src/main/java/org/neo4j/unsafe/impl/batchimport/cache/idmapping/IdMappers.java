@@ -19,11 +19,14 @@
  */
 package org.neo4j.unsafe.impl.batchimport.cache.idmapping;
 
+import java.io.File;
+
 import org.neo4j.helpers.progress.ProgressListener;
 import org.neo4j.unsafe.impl.batchimport.InputIterable;
 import org.neo4j.unsafe.impl.batchimport.cache.MemoryStatsVisitor;
 import org.neo4j.unsafe.impl.batchimport.cache.NumberArrayFactory;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.string.EncodingIdMapper;
+import org.neo4j.unsafe.impl.batchimport.cache.idmapping.string.ExternalSortingIdMapper;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.string.LongEncoder;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.string.Radix;
 import org.neo4j.unsafe.impl.batchimport.cache.idmapping.string.StringEncoder;
@@ -118,4 +121,28 @@ public class IdMappers
     {
         return new EncodingIdMapper( cacheFactory, new LongEncoder(), Radix.LONG, NO_MONITOR, dynamic() );
     }
+
+    /**
+     * An {@link IdMapper} capable of mapping {@link String strings} to long ids, keeping its data in sorted files
+     * on disk instead of in memory.
+     *
+     * @param directory directory to keep the files in, deleted when the {@link IdMapper} is closed.
+     * @return {@link IdMapper} for when there are too many string input ids to fit in memory.
+     */
+    public static IdMapper externalStrings( File directory )
+    {
+        return new ExternalSortingIdMapper( directory, new StringEncoder() );
+    }
+
+    /**
+     * An {@link IdMapper} capable of mapping {@link Long arbitrary longs} to long ids, keeping its data in
+     * sorted files on disk instead of in memory.
+     *
+     * @param directory directory to keep the files in, deleted when the {@link IdMapper} is closed.
+     * @return {@link IdMapper} for when there are too many long input ids to fit in memory.
+     */
+    public static IdMapper externalLongs( File directory )
+    {
+        return new ExternalSortingIdMapper( directory, new LongEncoder() );
+    }
 }
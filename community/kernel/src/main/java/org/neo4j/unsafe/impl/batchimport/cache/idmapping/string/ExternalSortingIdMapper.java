@@ -0,0 +1,771 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.cache.idmapping.string;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.neo4j.helpers.progress.ProgressListener;
+import org.neo4j.io.fs.FileUtils;
+import org.neo4j.unsafe.impl.batchimport.InputIterable;
+import org.neo4j.unsafe.impl.batchimport.InputIterator;
+import org.neo4j.unsafe.impl.batchimport.cache.MemoryStatsVisitor;
+import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper;
+import org.neo4j.unsafe.impl.batchimport.input.Collector;
+import org.neo4j.unsafe.impl.batchimport.input.Group;
+import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
+
+import static java.lang.Long.compareUnsigned;
+import static java.lang.Math.min;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.neo4j.unsafe.impl.batchimport.cache.idmapping.string.SourceInformation.encodeSourceInformation;
+
+/**
+ * {@link IdMapper} for when the input ids are too many to fit in memory, even as encoded {@code long} values
+ * as in {@link EncodingIdMapper}. Memory usage is predictable and mostly independent of number of input ids.
+ *
+ * Input ids are {@link Encoder encoded} into eIds just like in {@link EncodingIdMapper}, but (eId,node id) entries
+ * are collected in fixed-size runs which are sorted in memory and written to disk. In
+ * {@link #prepare(InputIterable, Collector, ProgressListener) preparation} the runs are merged, in multiple passes
+ * if there are many of them, into one sorted file. This file is then memory mapped and
+ * {@link #get(Object, Group) looked up} using a sparse in-memory index holding the first eId of every block
+ * of entries, so that a lookup is a binary search in the sparse index followed by a binary search within
+ * a single block in the file. All reading and writing of the runs and merged file is sequential.
+ *
+ * Collisions, i.e. multiple entries in the same group having the same eId, are detected while merging.
+ * Original input ids of those entries are kept in memory, just like in {@link EncodingIdMapper}.
+ */
+public class ExternalSortingIdMapper implements IdMapper
+{
+    private static final int ENTRY_SIZE = Long.BYTES * 2;
+    // Marks an entry as a collision. Node ids will never have the sign bit set
+    private static final long COLLISION_FLAG = 1L << 63;
+    private static final int DEFAULT_RUN_SIZE = 4_000_000; // 64MiB a piece, plus the same for sorting
+    private static final int INITIAL_RUN_CAPACITY = 1_024;
+    private static final int DEFAULT_BLOCK_SIZE = 4_096; // 64KiB blocks
+    private static final int DEFAULT_MERGE_FACTOR = 64;
+    // Must be a multiple of ENTRY_SIZE
+    private static final long MAPPING_SIZE = 1L << 30;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+    private static final int RADIX_BITS = 16;
+    private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
+    private final File directory;
+    private final Encoder encoder;
+    private final int runSize;
+    private final int blockSize;
+    private final int mergeFactor;
+
+    // State during put, released in prepare. Allocated when first needed and grown as needed up to runSize
+    private long[] runEIds;
+    private long[] runNodeIds;
+    private long[] sortEIds;
+    private long[] sortNodeIds;
+    private int runCursor;
+    private final List<File> runs = new ArrayList<>();
+    private int fileCounter;
+    private long numberOfEntries;
+
+    private IdGroup[] idGroups = new IdGroup[10];
+    private IdGroup currentIdGroup;
+    private long highestSetIndex = -1;
+
+    // State after prepare
+    private long[] blockFirstEIds;
+    private ByteBuffer[] mappings;
+    private long[] collisionNodeIds = new long[16];
+    private int numberOfCollisions;
+    private final List<long[]> collisionSets = new ArrayList<>();
+    private Object[] collisionValues;
+    private boolean readyForUse;
+
+    public ExternalSortingIdMapper( File directory, Encoder encoder )
+    {
+        this( directory, encoder, DEFAULT_RUN_SIZE, DEFAULT_BLOCK_SIZE, DEFAULT_MERGE_FACTOR );
+    }
+
+    /**
+     * @param directory directory to keep runs and merged files in. Will be deleted on {@link #close()}.
+     * @param encoder {@link Encoder} for encoding input ids into eIds.
+     * @param runSize number of entries to sort in memory before writing them as a run to disk.
+     * @param blockSize number of entries in the merged file for every entry in the sparse in-memory index.
+     * @param mergeFactor max number of runs to merge at the same time.
+     */
+    public ExternalSortingIdMapper( File directory, Encoder encoder, int runSize, int blockSize, int mergeFactor )
+    {
+        if ( mergeFactor < 2 )
+        {
+            throw new IllegalArgumentException( "Merge factor must be at least 2, was " + mergeFactor );
+        }
+        this.directory = directory;
+        this.encoder = encoder;
+        this.runSize = runSize;
+        this.blockSize = blockSize;
+        this.mergeFactor = mergeFactor;
+        directory.mkdirs();
+    }
+
+    @Override
+    public void put( Object inputId, long actualId, Group group )
+    {
+        // Check if we're now venturing into a new group. If so then end the previous group.
+        int groupId = group.id();
+        boolean newGroup = false;
+        if ( currentIdGroup == null )
+        {
+            newGroup = true;
+        }
+        else
+        {
+            if ( groupId < currentIdGroup.id() )
+            {
+                throw new IllegalStateException( "Nodes for any specific group must be added in sequence " +
+                        "before adding nodes for any other group" );
+            }
+            newGroup = groupId != currentIdGroup.id();
+        }
+        if ( newGroup )
+        {
+            endPreviousGroup();
+            if ( groupId >= idGroups.length )
+            {
+                idGroups = Arrays.copyOf( idGroups, Math.max( groupId + 1, idGroups.length * 2 ) );
+            }
+            idGroups[groupId] = currentIdGroup = new IdGroup( group, actualId );
+        }
+
+        if ( runEIds == null || runCursor == runEIds.length )
+        {
+            growRun();
+        }
+        runEIds[runCursor] = encoder.encode( inputId );
+        runNodeIds[runCursor] = actualId;
+        highestSetIndex = actualId;
+        numberOfEntries++;
+        if ( ++runCursor == runSize )
+        {
+            writeRun();
+        }
+    }
+
+    private void growRun()
+    {
+        if ( runEIds == null )
+        {
+            int capacity = min( INITIAL_RUN_CAPACITY, runSize );
+            runEIds = new long[capacity];
+            runNodeIds = new long[capacity];
+        }
+        else
+        {
+            int capacity = (int) min( (long) runEIds.length * 2, runSize );
+            runEIds = Arrays.copyOf( runEIds, capacity );
+            runNodeIds = Arrays.copyOf( runNodeIds, capacity );
+        }
+    }
+
+    private void endPreviousGroup()
+    {
+        if ( currentIdGroup != null )
+        {
+            currentIdGroup.setHighDataIndex( highestSetIndex );
+        }
+    }
+
+    private void writeRun()
+    {
+        if ( runCursor == 0 )
+        {
+            return;
+        }
+
+        sortRun( runCursor );
+        File run = nextFile( "run" );
+        try ( DataOutputStream out = writer( run ) )
+        {
+            for ( int i = 0; i < runCursor; i++ )
+            {
+                out.writeLong( runEIds[i] );
+                out.writeLong( runNodeIds[i] );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+        runs.add( run );
+        runCursor = 0;
+    }
+
+    /**
+     * LSD radix sort of the entries in the current run, by unsigned eId. The sort is stable and entries are put
+     * in node id order so entries with equal eIds end up in node id order.
+     */
+    private void sortRun( int count )
+    {
+        if ( sortEIds == null || sortEIds.length < count )
+        {
+            sortEIds = new long[runEIds.length];
+            sortNodeIds = new long[runNodeIds.length];
+        }
+        long[] eIds = runEIds;
+        long[] nodeIds = runNodeIds;
+        long[] sortedEIds = sortEIds;
+        long[] sortedNodeIds = sortNodeIds;
+        int[] offsets = new int[RADIX_MASK + 2];
+        for ( int shift = 0; shift < Long.SIZE; shift += RADIX_BITS )
+        {
+            Arrays.fill( offsets, 0 );
+            for ( int i = 0; i < count; i++ )
+            {
+                offsets[(int) ((eIds[i] >>> shift) & RADIX_MASK) + 1]++;
+            }
+            for ( int r = 1; r < offsets.length; r++ )
+            {
+                offsets[r] += offsets[r - 1];
+            }
+            for ( int i = 0; i < count; i++ )
+            {
+                int target = offsets[(int) ((eIds[i] >>> shift) & RADIX_MASK)]++;
+                sortedEIds[target] = eIds[i];
+                sortedNodeIds[target] = nodeIds[i];
+            }
+            long[] tmp = eIds;
+            eIds = sortedEIds;
+            sortedEIds = tmp;
+            tmp = nodeIds;
+            nodeIds = sortedNodeIds;
+            sortedNodeIds = tmp;
+        }
+        // Even number of passes means the sorted data ended up in the original arrays
+        assert eIds == runEIds || count == 0;
+    }
+
+    @Override
+    public boolean needsPreparation()
+    {
+        return true;
+    }
+
+    /**
+     * There's an assumption that the progress listener supplied here can support multiple calls
+     * to started/done, and that it knows about what stages the processor preparing goes through, namely:
+     * <ol>
+     * <li>Merging sorted runs</li>
+     * <li>(potentially) Collision resolving</li>
+     * </ol>
+     */
+    @Override
+    public void prepare( InputIterable<Object> ids, Collector collector, ProgressListener progress )
+    {
+        endPreviousGroup();
+        try
+        {
+            writeRun();
+            runEIds = null;
+            runNodeIds = null;
+            sortEIds = null;
+            sortNodeIds = null;
+
+            progress.started( "MERGE" );
+            List<File> toMerge = runs;
+            while ( toMerge.size() > mergeFactor )
+            {
+                List<File> merged = new ArrayList<>();
+                for ( int i = 0; i < toMerge.size(); i += mergeFactor )
+                {
+                    List<File> batch = toMerge.subList( i, min( i + mergeFactor, toMerge.size() ) );
+                    File run = nextFile( "run" );
+                    try ( DataOutputStream out = writer( run ) )
+                    {
+                        merge( batch, ( eId, nodeId ) ->
+                        {
+                            out.writeLong( eId );
+                            out.writeLong( nodeId );
+                        }, ProgressListener.NONE );
+                    }
+                    deleteAll( batch );
+                    merged.add( run );
+                }
+                toMerge = merged;
+            }
+
+            File sorted = nextFile( "sorted" );
+            try ( SortedFileWriter writer = new SortedFileWriter( writer( sorted ) ) )
+            {
+                merge( toMerge, writer, progress );
+            }
+            deleteAll( toMerge );
+            runs.clear();
+            mapSortedFile( sorted );
+            progress.done();
+
+            collisionNodeIds = Arrays.copyOf( collisionNodeIds, numberOfCollisions );
+            Arrays.sort( collisionNodeIds );
+            if ( numberOfCollisions > 0 )
+            {
+                try ( InputIterator<Object> idIterator = ids.iterator() )
+                {
+                    buildCollisionInfo( idIterator, collector, progress );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+        readyForUse = true;
+    }
+
+    private void merge( List<File> files, EntryVisitor visitor, ProgressListener progress ) throws IOException
+    {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>( files.size() );
+        List<RunReader> readers = new ArrayList<>( files.size() );
+        try
+        {
+            for ( File file : files )
+            {
+                RunReader reader = new RunReader( file );
+                readers.add( reader );
+                if ( reader.next() )
+                {
+                    queue.add( reader );
+                }
+            }
+
+            int localProgress = 0;
+            while ( !queue.isEmpty() )
+            {
+                RunReader reader = queue.poll();
+                visitor.entry( reader.eId, reader.nodeId );
+                if ( reader.next() )
+                {
+                    queue.add( reader );
+                }
+                if ( ++localProgress == 10_000 )
+                {
+                    progress.add( localProgress );
+                    localProgress = 0;
+                }
+            }
+            progress.add( localProgress );
+        }
+        finally
+        {
+            for ( RunReader reader : readers )
+            {
+                reader.close();
+            }
+        }
+    }
+
+    private void mapSortedFile( File file ) throws IOException
+    {
+        long size = numberOfEntries * ENTRY_SIZE;
+        mappings = new ByteBuffer[(int) ((size + MAPPING_SIZE - 1) / MAPPING_SIZE)];
+        try ( FileChannel channel = FileChannel.open( file.toPath(), READ ) )
+        {
+            for ( int i = 0; i < mappings.length; i++ )
+            {
+                long position = i * MAPPING_SIZE;
+                mappings[i] = channel.map( READ_ONLY, position, min( MAPPING_SIZE, size - position ) );
+            }
+        }
+    }
+
+    private void buildCollisionInfo( InputIterator<Object> ids, Collector collector, ProgressListener progress )
+    {
+        progress.started( "RESOLVE (" + numberOfCollisions + " collisions)" );
+        collisionValues = new Object[numberOfCollisions];
+        long[] collisionSourceInformation = new long[numberOfCollisions];
+        List<String> sourceDescriptions = new ArrayList<>();
+        String lastSourceDescription = null;
+        for ( long i = 0; ids.hasNext(); )
+        {
+            long j = 0;
+            for ( ; j < EncodingIdMapper.COUNTING_BATCH_SIZE && ids.hasNext(); j++, i++ )
+            {
+                Object id = ids.next();
+                int collisionIndex = Arrays.binarySearch( collisionNodeIds, i );
+                if ( collisionIndex >= 0 )
+                {
+                    collisionValues[collisionIndex] = id;
+                    String currentSourceDescription = ids.sourceDescription();
+                    if ( lastSourceDescription == null || !currentSourceDescription.equals( lastSourceDescription ) )
+                    {
+                        sourceDescriptions.add( currentSourceDescription );
+                        lastSourceDescription = currentSourceDescription;
+                    }
+                    collisionSourceInformation[collisionIndex] =
+                            encodeSourceInformation( sourceDescriptions.size() - 1, ids.lineNumber() );
+                }
+            }
+            progress.add( j );
+        }
+        progress.done();
+
+        // Detect input id duplicates within each set of entries having the same eId and group
+        SourceInformation first = new SourceInformation();
+        SourceInformation other = new SourceInformation();
+        for ( long[] collisionSet : collisionSets )
+        {
+            for ( int a = 1; a < collisionSet.length; a++ )
+            {
+                int indexA = Arrays.binarySearch( collisionNodeIds, collisionSet[a] );
+                Object inputId = collisionValues[indexA];
+                for ( int b = 0; b < a; b++ )
+                {
+                    int indexB = Arrays.binarySearch( collisionNodeIds, collisionSet[b] );
+                    if ( inputId.equals( collisionValues[indexB] ) )
+                    {
+                        first.decode( collisionSourceInformation[indexB] );
+                        other.decode( collisionSourceInformation[indexA] );
+                        collector.collectDuplicateNode( inputId, collisionSet[a], groupOf( collisionSet[a] ).name(),
+                                first.describe( sourceDescriptions ), other.describe( sourceDescriptions ) );
+                        break;
+                    }
+                }
+            }
+        }
+        collisionSets.clear();
+    }
+
+    /**
+     * Returns the node id if found, or {@code -1} if not found.
+     */
+    @Override
+    public long get( Object inputId, Group group )
+    {
+        assert readyForUse;
+        if ( numberOfEntries == 0 )
+        {
+            return ID_NOT_FOUND;
+        }
+
+        long x = encoder.encode( inputId );
+        int groupId = group.id();
+        long index = firstIndexOf( x );
+        for ( ; index < numberOfEntries && eIdAt( index ) == x; index++ )
+        {
+            long entry = nodeIdAt( index );
+            long nodeId = entry & ~COLLISION_FLAG;
+            if ( groupOf( nodeId ).id() == groupId )
+            {
+                if ( (entry & COLLISION_FLAG) == 0 )
+                {
+                    // The only one with this eId in this group
+                    return nodeId;
+                }
+                // Entries are in node id order so the first match is the one first put
+                Object value = collisionValues[Arrays.binarySearch( collisionNodeIds, nodeId )];
+                if ( inputId.equals( value ) )
+                {
+                    return nodeId;
+                }
+            }
+        }
+        return ID_NOT_FOUND;
+    }
+
+    /**
+     * @return index of the first entry with an eId equal to, or greater than, {@code x}.
+     */
+    private long firstIndexOf( long x )
+    {
+        // Find the last block starting with an eId lower than x, since entries equal to x may start in it
+        int low = 0;
+        int high = blockFirstEIds.length - 1;
+        int block = 0;
+        while ( low <= high )
+        {
+            int mid = (low + high) >>> 1;
+            if ( compareUnsigned( blockFirstEIds[mid], x ) < 0 )
+            {
+                block = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        long lowIndex = (long) block * blockSize;
+        long highIndex = min( lowIndex + blockSize, numberOfEntries );
+        while ( lowIndex < highIndex )
+        {
+            long mid = (lowIndex + highIndex) >>> 1;
+            if ( compareUnsigned( eIdAt( mid ), x ) < 0 )
+            {
+                lowIndex = mid + 1;
+            }
+            else
+            {
+                highIndex = mid;
+            }
+        }
+        return lowIndex;
+    }
+
+    private long eIdAt( long index )
+    {
+        return longAt( index * ENTRY_SIZE );
+    }
+
+    private long nodeIdAt( long index )
+    {
+        return longAt( index * ENTRY_SIZE + Long.BYTES );
+    }
+
+    private long longAt( long position )
+    {
+        return mappings[(int) (position / MAPPING_SIZE)].getLong( (int) (position % MAPPING_SIZE) );
+    }
+
+    private IdGroup groupOf( long dataIndex )
+    {
+        for ( IdGroup idGroup : idGroups )
+        {
+            if ( idGroup != null && idGroup.covers( dataIndex ) )
+            {
+                return idGroup;
+            }
+        }
+        throw new IllegalArgumentException( "Strange, index " + dataIndex + " isn't included in a group" );
+    }
+
+    private File nextFile( String name )
+    {
+        return new File( directory, name + "-" + fileCounter++ );
+    }
+
+    private static DataOutputStream writer( File file ) throws IOException
+    {
+        return new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ), IO_BUFFER_SIZE ) );
+    }
+
+    private static void deleteAll( List<File> files )
+    {
+        for ( File file : files )
+        {
+            file.delete();
+        }
+    }
+
+    @Override
+    public void acceptMemoryStatsVisitor( MemoryStatsVisitor visitor )
+    {
+        long heap = (long) collisionNodeIds.length * Long.BYTES;
+        heap += heapUsage( runEIds ) + heapUsage( runNodeIds ) + heapUsage( sortEIds ) + heapUsage( sortNodeIds );
+        if ( blockFirstEIds != null )
+        {
+            heap += (long) blockFirstEIds.length * Long.BYTES;
+        }
+        visitor.heapUsage( heap );
+    }
+
+    private static long heapUsage( long[] array )
+    {
+        return array != null ? (long) array.length * Long.BYTES : 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "[" + encoder + "," + directory + "]";
+    }
+
+    @Override
+    public void close()
+    {
+        runEIds = null;
+        runNodeIds = null;
+        sortEIds = null;
+        sortNodeIds = null;
+        if ( mappings != null )
+        {
+            // Unmap right away rather than whenever the buffers are garbage collected, since the file is deleted
+            for ( ByteBuffer mapping : mappings )
+            {
+                UnsafeUtil.invokeCleaner( mapping );
+            }
+            mappings = null;
+        }
+        collisionValues = null;
+        try
+        {
+            FileUtils.deleteRecursively( directory );
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    private interface EntryVisitor
+    {
+        void entry( long eId, long nodeId ) throws IOException;
+    }
+
+    private static class RunReader implements Comparable<RunReader>, AutoCloseable
+    {
+        private final DataInputStream in;
+        private long remaining;
+        private long eId;
+        private long nodeId;
+
+        RunReader( File file ) throws IOException
+        {
+            this.in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), IO_BUFFER_SIZE ) );
+            this.remaining = file.length() / ENTRY_SIZE;
+        }
+
+        boolean next() throws IOException
+        {
+            if ( remaining == 0 )
+            {
+                return false;
+            }
+            eId = in.readLong();
+            nodeId = in.readLong();
+            remaining--;
+            return true;
+        }
+
+        @Override
+        public int compareTo( RunReader other )
+        {
+            int eIdComparison = compareUnsigned( eId, other.eId );
+            return eIdComparison != 0 ? eIdComparison : Long.compare( nodeId, other.nodeId );
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the final sorted file and the sparse index over it. Entries with equal eId are held back until
+     * all of them have been seen, so that collisions can be marked in the entries before they are written.
+     */
+    private class SortedFileWriter implements EntryVisitor, AutoCloseable
+    {
+        private final DataOutputStream out;
+        private long[] pending = new long[16];
+        private int pendingCount;
+        private long pendingEId;
+        private long written;
+
+        SortedFileWriter( DataOutputStream out )
+        {
+            this.out = out;
+            blockFirstEIds = new long[(int) ((numberOfEntries + blockSize - 1) / blockSize)];
+        }
+
+        @Override
+        public void entry( long eId, long nodeId ) throws IOException
+        {
+            if ( pendingCount > 0 && eId != pendingEId )
+            {
+                flushPending();
+            }
+            if ( pendingCount == pending.length )
+            {
+                pending = Arrays.copyOf( pending, pendingCount * 2 );
+            }
+            pendingEId = eId;
+            pending[pendingCount++] = nodeId;
+        }
+
+        private void flushPending() throws IOException
+        {
+            if ( pendingCount > 1 )
+            {
+                // Pending node ids are in order and groups are node id ranges, so entries of the same group
+                // are next to each other. Multiple entries in the same group are collisions
+                int from = 0;
+                while ( from < pendingCount )
+                {
+                    IdGroup group = groupOf( pending[from] );
+                    int to = from + 1;
+                    while ( to < pendingCount && group.covers( pending[to] ) )
+                    {
+                        to++;
+                    }
+                    if ( to - from > 1 )
+                    {
+                        long[] collisionSet = Arrays.copyOfRange( pending, from, to );
+                        collisionSets.add( collisionSet );
+                        for ( int i = from; i < to; i++ )
+                        {
+                            addCollision( pending[i] );
+                            pending[i] |= COLLISION_FLAG;
+                        }
+                    }
+                    from = to;
+                }
+            }
+
+            for ( int i = 0; i < pendingCount; i++ )
+            {
+                if ( written % blockSize == 0 )
+                {
+                    blockFirstEIds[(int) (written / blockSize)] = pendingEId;
+                }
+                out.writeLong( pendingEId );
+                out.writeLong( pending[i] );
+                written++;
+            }
+            pendingCount = 0;
+        }
+
+        private void addCollision( long nodeId )
+        {
+            if ( numberOfCollisions == collisionNodeIds.length )
+            {
+                collisionNodeIds = Arrays.copyOf( collisionNodeIds, numberOfCollisions * 2 );
+            }
+            collisionNodeIds[numberOfCollisions++] = nodeId;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            flushPending();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.LongPredicate;
+
+import org.neo4j.io.ByteUnit;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.kernel.api.exceptions.index.IndexEntryConflictException;
+import org.neo4j.kernel.impl.transaction.log.PhysicalFlushableChannel;
+import org.neo4j.kernel.impl.transaction.log.PhysicalLogVersionedStoreChannel;
+import org.neo4j.kernel.impl.transaction.log.ReadAheadLogChannel;
+import org.neo4j.unsafe.impl.batchimport.cache.MemoryStatsVisitor;
+import org.neo4j.unsafe.impl.batchimport.input.ValueType;
+import org.neo4j.values.storable.ArrayValue;
+import org.neo4j.values.storable.TextValue;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+import static java.lang.Math.min;
+import static org.neo4j.kernel.impl.transaction.log.LogVersionBridge.NO_MORE_CHANNELS;
+
+/**
+ * Sorts (property values,node id) entries of one schema index, for writing them to the index in order.
+ * There may be more entries than fit in memory: entries are collected in runs which are sorted in memory
+ * and written to disk, to be merged when {@link #sort(LongPredicate, EntryVisitor) visiting them}.
+ * Entries are ordered by their values, and for equal values by node id.
+ *
+ * A run is full when it has reached its max number of entries, or when the estimated heap usage of its entries
+ * has reached half of the max memory. A full run is sorted and written by the thread which filled it, while
+ * other threads keep adding entries to the next run. Only one run is written at a time, so at most two runs
+ * are kept in memory.
+ *
+ * Since all entries with equal values end up next to each other, uniqueness is verified and the number of
+ * distinct values counted during the merge, without looking anything up.
+ */
+public class IndexEntrySorter implements AutoCloseable, MemoryStatsVisitor.Visitable
+{
+    static final int DEFAULT_RUN_SIZE = 1_000_000;
+    private static final int INITIAL_RUN_CAPACITY = 1_024;
+    // Rough, slightly pessimistic, estimates of the heap usage of entries
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int REFERENCE_SIZE = 8;
+    private static final int ENTRY_SIZE = OBJECT_OVERHEAD + REFERENCE_SIZE + Long.BYTES;
+    private static final int VALUE_SIZE = OBJECT_OVERHEAD + REFERENCE_SIZE;
+    private static final int STRING_SIZE = OBJECT_OVERHEAD * 2 + Integer.BYTES * 2;
+    private static final int WRITE_BUFFER_SIZE = (int) ByteUnit.mebiBytes( 1 );
+    private static final int READ_BUFFER_SIZE = (int) ByteUnit.kibiBytes( 64 );
+    private static final Comparator<Entry> ENTRY_COMPARATOR = ( a, b ) ->
+    {
+        int compare = compareValues( a.values, b.values );
+        return compare != 0 ? compare : Long.compare( a.nodeId, b.nodeId );
+    };
+
+    private final FileSystemAbstraction fs;
+    private final File directory;
+    private final String name;
+    private final boolean unique;
+    private final int runSize;
+    private final long maxRunMemory;
+    private final Object writeLock = new Object();
+    private final List<File> runs = new ArrayList<>();
+    // Allocated when the first entry of a run is added, and grown as needed up to runSize
+    private Entry[] run;
+    private int runCursor;
+    private volatile long runMemory;
+    private volatile long writingRunMemory;
+
+    // Available after sort
+    private long numberOfEntries;
+    private long numberOfDistinctValues;
+
+    /**
+     * @param fs {@link FileSystemAbstraction} to write runs to.
+     * @param directory directory to keep runs in.
+     * @param name name of the index, used in file names of the runs.
+     * @param unique whether or not to fail on two entries having equal values.
+     * @param runSize max number of entries to sort in memory before writing them as a run to disk.
+     * @param maxMemory max estimated heap usage, in bytes, of entries kept in memory.
+     */
+    public IndexEntrySorter( FileSystemAbstraction fs, File directory, String name, boolean unique, int runSize,
+            long maxMemory )
+    {
+        this.fs = fs;
+        this.directory = directory;
+        this.name = name;
+        this.unique = unique;
+        this.runSize = runSize;
+        this.maxRunMemory = maxMemory / 2;
+    }
+
+    /**
+     * Adds entries, where {@code values[i]} are the property values of node {@code nodeIds[i]}.
+     * Can be called concurrently.
+     */
+    public void add( Value[][] values, long[] nodeIds, int count ) throws IOException
+    {
+        int i = 0;
+        while ( i < count )
+        {
+            Entry[] fullRun;
+            int fullRunCount;
+            long fullRunMemory;
+            File file;
+            synchronized ( this )
+            {
+                while ( i < count && !runIsFull() )
+                {
+                    if ( run == null || runCursor == run.length )
+                    {
+                        growRun();
+                    }
+                    Entry entry = new Entry( values[i], nodeIds[i] );
+                    run[runCursor++] = entry;
+                    runMemory += estimatedHeapUsage( entry );
+                    i++;
+                }
+                if ( !runIsFull() )
+                {
+                    return;
+                }
+
+                // Swap out the full run and sort and write it outside of this lock
+                fullRun = run;
+                fullRunCount = runCursor;
+                fullRunMemory = runMemory;
+                file = new File( directory, name + "-" + runs.size() );
+                runs.add( file );
+                run = null;
+                runCursor = 0;
+                runMemory = 0;
+            }
+            writeRun( fullRun, fullRunCount, fullRunMemory, file );
+        }
+    }
+
+    private boolean runIsFull()
+    {
+        // Runs have a minimum size regardless of memory, to not end up with lots of tiny runs to merge
+        return runCursor == runSize || (runCursor >= INITIAL_RUN_CAPACITY && runMemory >= maxRunMemory);
+    }
+
+    private void growRun()
+    {
+        if ( run == null )
+        {
+            run = new Entry[min( INITIAL_RUN_CAPACITY, runSize )];
+            runMemory = arrayHeapUsage( run.length );
+        }
+        else
+        {
+            int capacity = (int) min( (long) run.length * 2, runSize );
+            runMemory += arrayHeapUsage( capacity ) - arrayHeapUsage( run.length );
+            run = Arrays.copyOf( run, capacity );
+        }
+    }
+
+    private void writeRun( Entry[] entries, int count, long memory, File file ) throws IOException
+    {
+        synchronized ( writeLock )
+        {
+            writingRunMemory = memory;
+            try
+            {
+                Arrays.sort( entries, 0, count, ENTRY_COMPARATOR );
+                fs.mkdirs( directory );
+                write( entries, count, file );
+            }
+            finally
+            {
+                writingRunMemory = 0;
+            }
+        }
+    }
+
+    private void write( Entry[] entries, int count, File file ) throws IOException
+    {
+        try ( PhysicalFlushableChannel channel = new PhysicalFlushableChannel( fs.open( file, "rw" ),
+                WRITE_BUFFER_SIZE ) )
+        {
+            channel.putInt( count );
+            channel.putInt( entries[0].values.length );
+            for ( int i = 0; i < count; i++ )
+            {
+                Entry entry = entries[i];
+                channel.putLong( entry.nodeId );
+                for ( Value value : entry.values )
+                {
+                    Object object = value.asObject();
+                    ValueType type = ValueType.typeOf( object );
+                    channel.put( type.id() );
+                    type.write( object, channel );
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits all added entries in order. Can only be called once, after all entries have been added.
+     *
+     * @param excluded node ids to leave out, e.g. nodes deleted after their entries were added.
+     * @param visitor receives the entries in order.
+     * @throws IndexEntryConflictException if this sorter is unique and two nodes have equal values.
+     */
+    public void sort( LongPredicate excluded, EntryVisitor visitor ) throws IOException, IndexEntryConflictException
+    {
+        List<RunReader> readers = new ArrayList<>( runs.size() + 1 );
+        try
+        {
+            PriorityQueue<RunReader> queue = new PriorityQueue<>();
+            for ( File file : runs )
+            {
+                readers.add( new FileRunReader( file ) );
+            }
+            if ( run != null )
+            {
+                Arrays.sort( run, 0, runCursor, ENTRY_COMPARATOR );
+                readers.add( new MemoryRunReader( run, runCursor ) );
+            }
+            for ( RunReader reader : readers )
+            {
+                if ( reader.next() )
+                {
+                    queue.add( reader );
+                }
+            }
+
+            Entry previous = null;
+            while ( !queue.isEmpty() )
+            {
+                RunReader reader = queue.poll();
+                Entry entry = reader.entry;
+                if ( reader.next() )
+                {
+                    queue.add( reader );
+                }
+                if ( excluded.test( entry.nodeId ) )
+                {
+                    continue;
+                }
+
+                if ( previous == null || compareValues( previous.values, entry.values ) != 0 )
+                {
+                    numberOfDistinctValues++;
+                }
+                else if ( unique )
+                {
+                    throw new IndexEntryConflictException( previous.nodeId, entry.nodeId, entry.values );
+                }
+                numberOfEntries++;
+                visitor.entry( entry.values, entry.nodeId );
+                previous = entry;
+            }
+        }
+        finally
+        {
+            releaseRun();
+            for ( RunReader reader : readers )
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * @return number of entries visited in {@link #sort(LongPredicate, EntryVisitor)}.
+     */
+    public long numberOfEntries()
+    {
+        return numberOfEntries;
+    }
+
+    /**
+     * @return number of distinct values visited in {@link #sort(LongPredicate, EntryVisitor)}.
+     */
+    public long numberOfDistinctValues()
+    {
+        return numberOfDistinctValues;
+    }
+
+    @Override
+    public void acceptMemoryStatsVisitor( MemoryStatsVisitor visitor )
+    {
+        visitor.heapUsage( runMemory + writingRunMemory );
+    }
+
+    @Override
+    public void close()
+    {
+        releaseRun();
+        for ( File file : runs )
+        {
+            fs.deleteFile( file );
+        }
+        runs.clear();
+    }
+
+    private void releaseRun()
+    {
+        run = null;
+        runCursor = 0;
+        runMemory = 0;
+    }
+
+    private static long arrayHeapUsage( int length )
+    {
+        return OBJECT_OVERHEAD + (long) length * REFERENCE_SIZE;
+    }
+
+    private static long estimatedHeapUsage( Entry entry )
+    {
+        long bytes = ENTRY_SIZE + arrayHeapUsage( entry.values.length );
+        for ( Value value : entry.values )
+        {
+            bytes += VALUE_SIZE;
+            if ( value instanceof TextValue )
+            {
+                bytes += STRING_SIZE + 2L * ((TextValue) value).length();
+            }
+            else if ( value instanceof ArrayValue )
+            {
+                bytes += OBJECT_OVERHEAD + (long) Long.BYTES * ((ArrayValue) value).length();
+            }
+        }
+        return bytes;
+    }
+
+    private static int compareValues( Value[] a, Value[] b )
+    {
+        for ( int i = 0; i < a.length; i++ )
+        {
+            int compare = Values.COMPARATOR.compare( a[i], b[i] );
+            if ( compare != 0 )
+            {
+                return compare;
+            }
+        }
+        return 0;
+    }
+
+    public interface EntryVisitor
+    {
+        void entry( Value[] values, long nodeId ) throws IOException, IndexEntryConflictException;
+    }
+
+    private static class Entry
+    {
+        private final Value[] values;
+        private final long nodeId;
+
+        Entry( Value[] values, long nodeId )
+        {
+            this.values = values;
+            this.nodeId = nodeId;
+        }
+    }
+
+    private abstract static class RunReader implements Comparable<RunReader>, AutoCloseable
+    {
+        Entry entry;
+
+        /**
+         * Moves to the next entry of this run.
+         * @return {@code false} if there are no more entries.
+         */
+        abstract boolean next() throws IOException;
+
+        @Override
+        public int compareTo( RunReader other )
+        {
+            return ENTRY_COMPARATOR.compare( entry, other.entry );
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+    }
+
+    private static class MemoryRunReader extends RunReader
+    {
+        private final Entry[] entries;
+        private final int count;
+        private int cursor;
+
+        MemoryRunReader( Entry[] entries, int count )
+        {
+            this.entries = entries;
+            this.count = count;
+        }
+
+        @Override
+        boolean next()
+        {
+            if ( cursor == count )
+            {
+                return false;
+            }
+            entry = entries[cursor++];
+            return true;
+        }
+    }
+
+    private class FileRunReader extends RunReader
+    {
+        private final ReadAheadLogChannel channel;
+        private final int numberOfValues;
+        private int remaining;
+
+        FileRunReader( File file ) throws IOException
+        {
+            this.channel = new ReadAheadLogChannel( new PhysicalLogVersionedStoreChannel(
+                    fs.open( file, "r" ), 0, (byte) 0 ), NO_MORE_CHANNELS, READ_BUFFER_SIZE );
+            this.remaining = channel.getInt();
+            this.numberOfValues = channel.getInt();
+        }
+
+        @Override
+        boolean next() throws IOException
+        {
+            if ( remaining == 0 )
+            {
+                return false;
+            }
+            remaining--;
+            long nodeId = channel.getLong();
+            Value[] values = new Value[numberOfValues];
+            for ( int i = 0; i < numberOfValues; i++ )
+            {
+                values[i] = Values.of( ValueType.typeOf( channel.get() ).read( channel ) );
+            }
+            entry = new Entry( values, nodeId );
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.index;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.neo4j.unsafe.impl.batchimport.Configuration;
+
+import static java.lang.String.format;
+
+/**
+ * Definition of a schema index, or uniqueness constraint, to create and populate as part of an import,
+ * see {@link Configuration#schemaIndexes()}. Labels and property keys are referred to by name.
+ */
+public class SchemaIndexDefinition
+{
+    private final String label;
+    private final String[] propertyKeys;
+    private final boolean unique;
+
+    private SchemaIndexDefinition( String label, String[] propertyKeys, boolean unique )
+    {
+        if ( propertyKeys.length == 0 )
+        {
+            throw new IllegalArgumentException( "No property keys given for index on :" + label );
+        }
+        this.label = label;
+        this.propertyKeys = propertyKeys;
+        this.unique = unique;
+    }
+
+    public static SchemaIndexDefinition index( String label, String... propertyKeys )
+    {
+        return new SchemaIndexDefinition( label, propertyKeys, false );
+    }
+
+    public static SchemaIndexDefinition uniquenessConstraint( String label, String propertyKey )
+    {
+        return new SchemaIndexDefinition( label, new String[] {propertyKey}, true );
+    }
+
+    public String label()
+    {
+        return label;
+    }
+
+    public String[] propertyKeys()
+    {
+        return propertyKeys;
+    }
+
+    /**
+     * @return whether or not this is a uniqueness constraint, i.e. where no two nodes with the label
+     * may have the same property values.
+     */
+    public boolean isUnique()
+    {
+        return unique;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( o == null || getClass() != o.getClass() )
+        {
+            return false;
+        }
+        SchemaIndexDefinition that = (SchemaIndexDefinition) o;
+        return unique == that.unique && label.equals( that.label ) && Arrays.equals( propertyKeys, that.propertyKeys );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash( label, Arrays.hashCode( propertyKeys ), unique );
+    }
+
+    @Override
+    public String toString()
+    {
+        return format( "%s:%s(%s)", unique ? "UNIQUE " : "", label, String.join( ",", propertyKeys ) );
+    }
+}
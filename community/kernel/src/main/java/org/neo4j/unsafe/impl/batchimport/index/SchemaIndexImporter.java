@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+import org.neo4j.index.internal.gbptree.RecoveryCleanupWorkCollector;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.kernel.api.exceptions.index.IndexEntryConflictException;
+import org.neo4j.kernel.api.index.IndexEntryUpdate;
+import org.neo4j.kernel.api.index.IndexPopulator;
+import org.neo4j.kernel.api.index.SchemaIndexProvider;
+import org.neo4j.kernel.api.schema.constaints.ConstraintDescriptorFactory;
+import org.neo4j.kernel.api.schema.index.IndexDescriptor;
+import org.neo4j.kernel.api.schema.index.IndexDescriptorFactory;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.extension.KernelExtensionFactory;
+import org.neo4j.kernel.extension.KernelExtensions;
+import org.neo4j.kernel.extension.UnsatisfiedDependencyStrategies;
+import org.neo4j.kernel.extension.dependency.HighestSelectionStrategy;
+import org.neo4j.kernel.impl.api.CountsAccessor;
+import org.neo4j.kernel.impl.api.index.sampling.IndexSamplingConfig;
+import org.neo4j.kernel.impl.factory.DatabaseInfo;
+import org.neo4j.kernel.impl.locking.LockService;
+import org.neo4j.kernel.impl.logging.LogService;
+import org.neo4j.kernel.impl.spi.SimpleKernelContext;
+import org.neo4j.kernel.impl.store.NeoStores;
+import org.neo4j.kernel.impl.store.SchemaStore;
+import org.neo4j.kernel.impl.store.counts.CountsTracker;
+import org.neo4j.kernel.impl.store.record.ConstraintRule;
+import org.neo4j.kernel.impl.store.record.DynamicRecord;
+import org.neo4j.kernel.impl.store.record.IndexRule;
+import org.neo4j.kernel.impl.transaction.state.storeview.NeoStoreIndexStoreView;
+import org.neo4j.kernel.impl.util.Dependencies;
+import org.neo4j.kernel.lifecycle.LifeSupport;
+import org.neo4j.kernel.monitoring.Monitors;
+import org.neo4j.storageengine.api.schema.SchemaRule;
+import org.neo4j.unsafe.impl.batchimport.cache.MemoryStatsVisitor;
+import org.neo4j.unsafe.impl.batchimport.input.InputException;
+import org.neo4j.unsafe.impl.batchimport.store.BatchingNeoStores;
+import org.neo4j.values.storable.Value;
+
+import static java.lang.String.format;
+
+/**
+ * Creates and populates schema indexes and uniqueness constraints as part of an import, so that they don't
+ * have to be populated by scanning the node and property stores after the import.
+ * <ol>
+ * <li>While nodes are imported, entries are {@link Index#add(Value[][], long[], int) added} for every node
+ * having the label and all the property keys of an index. Entries are sorted externally, see
+ * {@link IndexEntrySorter}.</li>
+ * <li>After all nodes have been imported the entries are {@link #populate(LongPredicate) written} in sorted
+ * order to an index from the {@link SchemaIndexProvider} which the database would use for it,
+ * followed by the schema rules. Uniqueness is verified while merging the sorted entries.</li>
+ * <li>After counts have been written, the exact index samples are {@link #writeIndexCounts(CountsTracker, long)
+ * written} as well, so that the indexes needn't be sampled when the database starts.</li>
+ * </ol>
+ */
+public class SchemaIndexImporter implements AutoCloseable, MemoryStatsVisitor.Visitable
+{
+    private static final String INDEX_ENTRIES_DIRECTORY = "index-entries";
+    private static final int BATCH_SIZE = 10_000;
+
+    private final BatchingNeoStores neoStores;
+    private final FileSystemAbstraction fs;
+    private final File storeDir;
+    private final File directory;
+    private final Config config;
+    private final LogService logService;
+    private final Iterable<KernelExtensionFactory<?>> kernelExtensions;
+    private final Index[] indexes;
+
+    /**
+     * @param maxMemory max estimated heap usage, in bytes, of index entries kept in memory, shared by all indexes.
+     */
+    public SchemaIndexImporter( Collection<SchemaIndexDefinition> definitions, BatchingNeoStores neoStores,
+            FileSystemAbstraction fs, File storeDir, Config config, LogService logService,
+            Iterable<KernelExtensionFactory<?>> kernelExtensions, long maxMemory )
+    {
+        this( definitions, neoStores, fs, storeDir, config, logService, kernelExtensions, maxMemory,
+                IndexEntrySorter.DEFAULT_RUN_SIZE );
+    }
+
+    public SchemaIndexImporter( Collection<SchemaIndexDefinition> definitions, BatchingNeoStores neoStores,
+            FileSystemAbstraction fs, File storeDir, Config config, LogService logService,
+            Iterable<KernelExtensionFactory<?>> kernelExtensions, long maxMemory, int runSize )
+    {
+        this.neoStores = neoStores;
+        this.fs = fs;
+        this.storeDir = storeDir;
+        this.directory = new File( storeDir, INDEX_ENTRIES_DIRECTORY );
+        this.config = config;
+        this.logService = logService;
+        this.kernelExtensions = kernelExtensions;
+        this.indexes = new Index[definitions.size()];
+        long maxMemoryPerIndex = definitions.isEmpty() ? maxMemory : maxMemory / definitions.size();
+        int i = 0;
+        for ( SchemaIndexDefinition definition : definitions )
+        {
+            int labelId = neoStores.getLabelRepository().getOrCreateId( definition.label() );
+            String[] propertyKeys = definition.propertyKeys();
+            int[] propertyKeyIds = new int[propertyKeys.length];
+            for ( int k = 0; k < propertyKeys.length; k++ )
+            {
+                propertyKeyIds[k] = neoStores.getPropertyKeyRepository().getOrCreateId( propertyKeys[k] );
+            }
+            IndexEntrySorter sorter = new IndexEntrySorter( fs, directory, "index-" + i, definition.isUnique(),
+                    runSize, maxMemoryPerIndex );
+            indexes[i++] = new Index( definition, labelId, propertyKeyIds, sorter );
+        }
+    }
+
+    /**
+     * @return the indexes to add entries to while importing nodes.
+     */
+    public Index[] indexes()
+    {
+        return indexes;
+    }
+
+    /**
+     * Writes all added entries to the indexes and the schema rules to the schema store. Call after all nodes
+     * have been imported.
+     *
+     * @param deletedNodes nodes which were deleted after their entries were added, e.g. duplicates.
+     * @throws InputException if nodes violate a uniqueness constraint.
+     */
+    public void populate( LongPredicate deletedNodes ) throws IOException
+    {
+        NeoStores stores = neoStores.getNeoStores();
+        Dependencies deps = new Dependencies();
+        deps.satisfyDependencies( fs, config, logService,
+                new NeoStoreIndexStoreView( LockService.NO_LOCK_SERVICE, stores ), neoStores.getPageCache(),
+                new Monitors(), RecoveryCleanupWorkCollector.IMMEDIATE );
+        LifeSupport life = new LifeSupport();
+        KernelExtensions extensions = life.add( new KernelExtensions(
+                new SimpleKernelContext( storeDir, DatabaseInfo.UNKNOWN, deps ),
+                kernelExtensions, deps, UnsatisfiedDependencyStrategies.ignore() ) );
+        life.start();
+        try
+        {
+            SchemaIndexProvider provider = extensions.resolveDependency( SchemaIndexProvider.class,
+                    HighestSelectionStrategy.INSTANCE );
+            IndexSamplingConfig samplingConfig = new IndexSamplingConfig( config );
+            for ( Index index : indexes )
+            {
+                index.populate( provider, stores.getSchemaStore(), samplingConfig, deletedNodes );
+            }
+        }
+        finally
+        {
+            life.shutdown();
+        }
+    }
+
+    /**
+     * Writes samples of the populated indexes and rotates the counts store so that they are persisted.
+     * Counts of the store are reset when they are written after the import, so call after that.
+     */
+    public void writeIndexCounts( CountsTracker counts, long txId ) throws IOException
+    {
+        try ( CountsAccessor.IndexStatsUpdater updater = counts.updateIndexCounts() )
+        {
+            for ( Index index : indexes )
+            {
+                long size = index.sorter.numberOfEntries();
+                updater.replaceIndexSample( index.ruleId, index.sorter.numberOfDistinctValues(), size );
+                updater.replaceIndexUpdateAndSize( index.ruleId, 0, size );
+            }
+        }
+        counts.rotate( txId );
+    }
+
+    @Override
+    public void acceptMemoryStatsVisitor( MemoryStatsVisitor visitor )
+    {
+        for ( Index index : indexes )
+        {
+            index.sorter.acceptMemoryStatsVisitor( visitor );
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        for ( Index index : indexes )
+        {
+            index.sorter.close();
+        }
+        if ( fs.fileExists( directory ) )
+        {
+            fs.deleteRecursively( directory );
+        }
+    }
+
+    /**
+     * One index, or uniqueness constraint, to import.
+     */
+    public static class Index
+    {
+        private final SchemaIndexDefinition definition;
+        private final int labelId;
+        private final int[] propertyKeyIds;
+        private final IndexEntrySorter sorter;
+        private long ruleId = -1;
+
+        Index( SchemaIndexDefinition definition, int labelId, int[] propertyKeyIds, IndexEntrySorter sorter )
+        {
+            this.definition = definition;
+            this.labelId = labelId;
+            this.propertyKeyIds = propertyKeyIds;
+            this.sorter = sorter;
+        }
+
+        public int labelId()
+        {
+            return labelId;
+        }
+
+        public int[] propertyKeyIds()
+        {
+            return propertyKeyIds;
+        }
+
+        /**
+         * Adds entries where {@code values[i]} are the property values, in the order of
+         * {@link #propertyKeyIds()}, of node {@code nodeIds[i]}. Can be called concurrently.
+         */
+        public void add( Value[][] values, long[] nodeIds, int count ) throws IOException
+        {
+            sorter.add( values, nodeIds, count );
+        }
+
+        private void populate( SchemaIndexProvider provider, SchemaStore schemaStore,
+                IndexSamplingConfig samplingConfig, LongPredicate deletedNodes ) throws IOException
+        {
+            IndexDescriptor descriptor = definition.isUnique()
+                    ? IndexDescriptorFactory.uniqueForLabel( labelId, propertyKeyIds )
+                    : IndexDescriptorFactory.forLabel( labelId, propertyKeyIds );
+            ruleId = schemaStore.nextId();
+            IndexPopulator populator = provider.getPopulator( ruleId, descriptor, samplingConfig );
+            populator.create();
+            boolean success = false;
+            try
+            {
+                BatchingPopulatorVisitor visitor = new BatchingPopulatorVisitor( populator, descriptor );
+                sorter.sort( deletedNodes, visitor );
+                visitor.flush();
+                // Uniqueness has already been verified while sorting, so there are no deferred constraints
+                // to verify for a unique index
+                success = true;
+            }
+            catch ( IndexEntryConflictException e )
+            {
+                throw new InputException( format( "Nodes violate uniqueness constraint %s: %s",
+                        definition, e.getMessage() ), e );
+            }
+            finally
+            {
+                populator.close( success );
+            }
+
+            if ( definition.isUnique() )
+            {
+                long constraintId = schemaStore.nextId();
+                write( schemaStore, IndexRule.constraintIndexRule( ruleId, descriptor,
+                        provider.getProviderDescriptor(), constraintId ) );
+                write( schemaStore, ConstraintRule.constraintRule( constraintId,
+                        ConstraintDescriptorFactory.uniqueForLabel( labelId, propertyKeyIds ), ruleId ) );
+            }
+            else
+            {
+                write( schemaStore, IndexRule.indexRule( ruleId, descriptor, provider.getProviderDescriptor() ) );
+            }
+        }
+
+        private static void write( SchemaStore schemaStore, SchemaRule rule )
+        {
+            for ( DynamicRecord record : schemaStore.allocateFrom( rule ) )
+            {
+                schemaStore.updateRecord( record );
+            }
+        }
+    }
+
+    private static class BatchingPopulatorVisitor implements IndexEntrySorter.EntryVisitor
+    {
+        private final IndexPopulator populator;
+        private final IndexDescriptor descriptor;
+        private List<IndexEntryUpdate<?>> batch = new ArrayList<>( BATCH_SIZE );
+
+        BatchingPopulatorVisitor( IndexPopulator populator, IndexDescriptor descriptor )
+        {
+            this.populator = populator;
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        public void entry( Value[] values, long nodeId ) throws IOException, IndexEntryConflictException
+        {
+            batch.add( IndexEntryUpdate.add( nodeId, descriptor, values ) );
+            if ( batch.size() == BATCH_SIZE )
+            {
+                flush();
+            }
+        }
+
+        void flush() throws IOException, IndexEntryConflictException
+        {
+            if ( !batch.isEmpty() )
+            {
+                populator.add( batch );
+                batch = new ArrayList<>( BATCH_SIZE );
+            }
+        }
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.neo4j.unsafe.impl.batchimport.input;
 
+import java.io.File;
+
 import org.neo4j.unsafe.impl.batchimport.BatchImporter;
 import org.neo4j.unsafe.impl.batchimport.InputIterable;
 import org.neo4j.unsafe.impl.batchimport.cache.NumberArrayFactory;
@@ -55,6 +57,19 @@ public interface Input
      */
     IdMapper idMapper( NumberArrayFactory numberArrayFactory );
 
+    /**
+     * Like {@link #idMapper(NumberArrayFactory)}, but the returned {@link IdMapper} keeps its data in files
+     * in the given directory instead of in memory, for when there are too many input ids to fit in memory.
+     * Defaults to {@link #idMapper(NumberArrayFactory)} for inputs not having such an {@link IdMapper}.
+     *
+     * @param directory directory for the {@link IdMapper} to keep its files in.
+     * @param numberArrayFactory The factory for creating data-structures to use for caching internally in the IdMapper.
+     */
+    default IdMapper externalIdMapper( File directory, NumberArrayFactory numberArrayFactory )
+    {
+        return idMapper( numberArrayFactory );
+    }
+
     /**
      * @return {@link IdGenerator} which is responsible for generating actual node ids from input node ids.
      */
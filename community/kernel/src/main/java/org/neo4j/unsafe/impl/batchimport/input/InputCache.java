@@ -160,6 +160,17 @@ public class InputCache implements Closeable
                 recordFormats, bufferSize, batchSize );
     }
 
+    /**
+     * Like {@link #cacheNodes(String)}, but caches only group and id of each node, which is all that
+     * {@link org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper#prepare preparing an id mapper} needs.
+     * Nodes read back from such a cache have no properties and no labels.
+     */
+    public Receiver<InputNode[],IOException> cacheNodeIds( String subType ) throws IOException
+    {
+        return new InputNodeCacher( channel( NODES, subType, "rw" ), channel( NODES_HEADER, subType, "rw" ),
+                recordFormats, bufferSize, batchSize, true );
+    }
+
     public Receiver<InputRelationship[],IOException> cacheRelationships( String subType ) throws
             IOException
     {
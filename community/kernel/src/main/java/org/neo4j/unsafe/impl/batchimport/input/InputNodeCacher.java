@@ -32,22 +32,41 @@ import static org.neo4j.unsafe.impl.batchimport.input.InputCache.LABEL_REMOVAL;
 import static org.neo4j.unsafe.impl.batchimport.input.InputCache.LABEL_TOKEN;
 
 /**
- * Caches {@link InputNode} to disk using a binary format.
+ * Caches {@link InputNode} to disk using a binary format. Can optionally cache only group and id of the nodes,
+ * in the same format but without properties and labels.
  */
 public class InputNodeCacher extends InputEntityCacher<InputNode>
 {
+    private final boolean idsOnly;
     private String[] previousLabels = InputEntity.NO_LABELS;
 
     public InputNodeCacher( StoreChannel channel, StoreChannel header, RecordFormats recordFormats,
             int bufferSize, int batchSize )
             throws IOException
+    {
+        this( channel, header, recordFormats, bufferSize, batchSize, false );
+    }
+
+    public InputNodeCacher( StoreChannel channel, StoreChannel header, RecordFormats recordFormats,
+            int bufferSize, int batchSize, boolean idsOnly )
+            throws IOException
     {
         super( channel, header, recordFormats, bufferSize, batchSize, 1 );
+        this.idsOnly = idsOnly;
     }
 
     @Override
     protected void writeEntity( InputNode node ) throws IOException
     {
+        if ( idsOnly )
+        {
+            channel.putShort( (short) 0 );
+            writeGroup( node.group(), 0 );
+            writeValue( node.id() );
+            channel.put( END_OF_LABEL_CHANGES );
+            return;
+        }
+
         // properties
         super.writeEntity( node );
 
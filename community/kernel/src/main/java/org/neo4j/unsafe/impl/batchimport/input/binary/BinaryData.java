@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.input.binary;
+
+import java.io.File;
+
+import org.neo4j.unsafe.impl.batchimport.input.InputEntity;
+import org.neo4j.unsafe.impl.batchimport.input.csv.Decorator;
+
+/**
+ * One or more files in the {@link BinaryFormat binary input format}, read one after the other, where each
+ * read entity is decorated by a {@link Decorator}.
+ */
+public class BinaryData<ENTITY extends InputEntity>
+{
+    private final Decorator<ENTITY> decorator;
+    private final File[] files;
+
+    public BinaryData( Decorator<ENTITY> decorator, File... files )
+    {
+        this.decorator = decorator;
+        this.files = files;
+    }
+
+    public Decorator<ENTITY> decorator()
+    {
+        return decorator;
+    }
+
+    public File[] files()
+    {
+        return files;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.input.binary;
+
+import java.io.IOException;
+
+import org.neo4j.kernel.impl.transaction.log.FlushableChannel;
+import org.neo4j.kernel.impl.transaction.log.ReadableClosableChannel;
+import org.neo4j.unsafe.impl.batchimport.input.InputException;
+import org.neo4j.unsafe.impl.batchimport.input.ValueType;
+
+/**
+ * Binary input format, a high-throughput alternative to CSV where values are already typed and need no
+ * parsing. All numbers are big-endian. A file contains either nodes or relationships:
+ *
+ * <pre>
+ * file:         int magic (0x4E344249), byte version (1), byte entity type (0=nodes, 1=relationships), block*,
+ *               int 0 (end of file)
+ * block:        int length (number of bytes following this field), int entity count, entity*
+ * node:         value group, value id, short label count, value label*, properties
+ * relationship: value start group, value start id, value end group, value end id, value type, properties
+ * properties:   short property count, (value key, value value)*
+ * value:        byte type (-1 for null), followed by type specific data as written by {@link ValueType}
+ * </pre>
+ *
+ * Groups, labels, relationship types and property keys are string values. A {@code null} group means the global
+ * group. Blocks are independent of each other and are deserialized in parallel. Files in this format are
+ * preferably written using {@link BinaryInputWriter}.
+ */
+public final class BinaryFormat
+{
+    public static final int MAGIC = 0x4E344249;
+    public static final byte VERSION = 1;
+    public static final byte NODES = 0;
+    public static final byte RELATIONSHIPS = 1;
+    static final int END_OF_BLOCKS = 0;
+    static final byte NULL_VALUE = -1;
+
+    private BinaryFormat()
+    {
+    }
+
+    static void writeValue( Object value, FlushableChannel channel ) throws IOException
+    {
+        if ( value == null )
+        {
+            channel.put( NULL_VALUE );
+            return;
+        }
+        ValueType type = ValueType.typeOf( value );
+        if ( type == null )
+        {
+            throw new IllegalArgumentException( "Unsupported value type " + value.getClass() + " of " + value );
+        }
+        channel.put( type.id() );
+        type.write( value, channel );
+    }
+
+    static Object readValue( ReadableClosableChannel channel ) throws IOException
+    {
+        byte typeId = channel.get();
+        if ( typeId == NULL_VALUE )
+        {
+            return null;
+        }
+        ValueType type = ValueType.typeOf( typeId );
+        if ( type == null )
+        {
+            throw new InputException( "Unknown value type " + typeId );
+        }
+        return type.read( channel );
+    }
+
+    static String readString( ReadableClosableChannel channel ) throws IOException
+    {
+        Object value = readValue( channel );
+        if ( value != null && !(value instanceof String) )
+        {
+            throw new InputException( "Expected a string, but got " + value );
+        }
+        return (String) value;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.input.binary;
+
+import java.io.File;
+
+import org.neo4j.kernel.impl.util.Validators;
+import org.neo4j.unsafe.impl.batchimport.InputIterable;
+import org.neo4j.unsafe.impl.batchimport.InputIterator;
+import org.neo4j.unsafe.impl.batchimport.cache.NumberArrayFactory;
+import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdGenerator;
+import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper;
+import org.neo4j.unsafe.impl.batchimport.input.Collector;
+import org.neo4j.unsafe.impl.batchimport.input.Groups;
+import org.neo4j.unsafe.impl.batchimport.input.Input;
+import org.neo4j.unsafe.impl.batchimport.input.InputNode;
+import org.neo4j.unsafe.impl.batchimport.input.InputRelationship;
+import org.neo4j.unsafe.impl.batchimport.input.MissingRelationshipDataException;
+import org.neo4j.unsafe.impl.batchimport.input.csv.IdType;
+import org.neo4j.unsafe.impl.batchimport.input.csv.InputRelationshipValidator;
+
+/**
+ * {@link Input} reading nodes and relationships from files in the {@link BinaryFormat binary input format}.
+ * Compared to CSV there's no header to interpret and no text to parse, values are stored in their typed form.
+ */
+public class BinaryInput implements Input
+{
+    private final Iterable<BinaryData<InputNode>> nodeData;
+    private final Iterable<BinaryData<InputRelationship>> relationshipData;
+    private final IdType idType;
+    private final Groups groups = new Groups();
+    private final Collector badCollector;
+    private final int maxProcessors;
+    private final boolean validateRelationshipData;
+
+    /**
+     * @param nodeData multiple {@link BinaryData} instances providing node data. From the outside it looks like
+     * one stream of nodes.
+     * @param relationshipData multiple {@link BinaryData} instances providing relationship data.
+     * From the outside it looks like one stream of relationships.
+     * @param idType {@link IdType} to expect in id fields of node and relationship input.
+     * @param badCollector Collector getting calls about bad input data.
+     * @param maxProcessors maximum number of processors deserializing blocks of binary data.
+     * @param validateRelationshipData whether or not to validate relationship data strictly. If {@code true} then
+     * {@link MissingRelationshipDataException} will be thrown if some mandatory relationship field is missing, such as
+     * start id, end id or type, otherwise if {@code false} such relationships will be collected by the {@code badCollector}.
+     */
+    public BinaryInput( Iterable<BinaryData<InputNode>> nodeData, Iterable<BinaryData<InputRelationship>> relationshipData,
+            IdType idType, Collector badCollector, int maxProcessors, boolean validateRelationshipData )
+    {
+        this.nodeData = nodeData;
+        this.relationshipData = relationshipData;
+        this.idType = idType;
+        this.badCollector = badCollector;
+        this.maxProcessors = maxProcessors;
+        this.validateRelationshipData = validateRelationshipData;
+    }
+
+    @Override
+    public InputIterable<InputNode> nodes()
+    {
+        return new InputIterable<InputNode>()
+        {
+            @Override
+            public InputIterator<InputNode> iterator()
+            {
+                return new BinaryInputNodeReader( nodeData, groups, idType, maxProcessors );
+            }
+
+            @Override
+            public boolean supportsMultiplePasses()
+            {
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public InputIterable<InputRelationship> relationships()
+    {
+        return new InputIterable<InputRelationship>()
+        {
+            @Override
+            public InputIterator<InputRelationship> iterator()
+            {
+                return new BinaryInputRelationshipReader( relationshipData, groups, idType,
+                        validateRelationshipData ? new InputRelationshipValidator() : Validators.emptyValidator(),
+                        maxProcessors );
+            }
+
+            @Override
+            public boolean supportsMultiplePasses()
+            {
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public IdMapper idMapper( NumberArrayFactory numberArrayFactory )
+    {
+        return idType.idMapper( numberArrayFactory );
+    }
+
+    @Override
+    public IdMapper externalIdMapper( File directory, NumberArrayFactory numberArrayFactory )
+    {
+        return idType.externalIdMapper( directory, numberArrayFactory );
+    }
+
+    @Override
+    public IdGenerator idGenerator()
+    {
+        return idType.idGenerator();
+    }
+
+    @Override
+    public Collector badCollector()
+    {
+        return badCollector;
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.input.binary;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.neo4j.helpers.Exceptions;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.impl.transaction.log.InMemoryClosableChannel;
+import org.neo4j.kernel.impl.transaction.log.ReadableClosableChannel;
+import org.neo4j.kernel.impl.util.Validator;
+import org.neo4j.unsafe.impl.batchimport.InputIterator;
+import org.neo4j.unsafe.impl.batchimport.executor.TaskExecutionPanicException;
+import org.neo4j.unsafe.impl.batchimport.input.Group;
+import org.neo4j.unsafe.impl.batchimport.input.Groups;
+import org.neo4j.unsafe.impl.batchimport.input.InputEntity;
+import org.neo4j.unsafe.impl.batchimport.input.InputException;
+import org.neo4j.unsafe.impl.batchimport.input.csv.IdType;
+import org.neo4j.unsafe.impl.batchimport.staging.TicketedProcessing;
+
+import static org.neo4j.unsafe.impl.batchimport.input.InputEntity.NO_PROPERTIES;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.END_OF_BLOCKS;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.MAGIC;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.NODES;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.VERSION;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.readString;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.readValue;
+
+/**
+ * Reads entities from files in the {@link BinaryFormat binary input format}. Blocks are read sequentially,
+ * each handed off to one or more processors which deserializes the bytes into {@link InputEntity} instances.
+ * From the outside this is simply an {@link InputIterator}, the parallelization happens inside.
+ */
+abstract class BinaryInputEntityReader<ENTITY extends InputEntity> extends InputIterator.Adapter<ENTITY>
+{
+    private final byte entityType;
+    private final Groups groups;
+    private final IdType idType;
+    private final Validator<ENTITY> validator;
+    private final TicketedProcessing<Block<ENTITY>,Void,Block<ENTITY>> processing;
+
+    // Used by the iterating thread only
+    private Block<ENTITY> currentBlock;
+    private int cursor;
+    private ENTITY last;
+
+    // Used by the block reading thread only
+    private final BlockReader blockReader;
+
+    BinaryInputEntityReader( Iterable<BinaryData<ENTITY>> data, byte entityType, Groups groups, IdType idType,
+            Validator<ENTITY> validator, int maxProcessors )
+    {
+        this.entityType = entityType;
+        this.groups = groups;
+        this.idType = idType;
+        this.validator = validator;
+        this.blockReader = new BlockReader( data.iterator() );
+        this.processing = new TicketedProcessing<>( getClass().getName(), maxProcessors,
+                ( block, ignore ) -> deserialize( block ), () -> null );
+        processing.slurp( blockReader, true );
+    }
+
+    private Block<ENTITY> deserialize( Block<ENTITY> block )
+    {
+        ReadableClosableChannel channel = new InMemoryClosableChannel( block.bytes, true/*append*/ );
+        ProcessorState state = new ProcessorState();
+        try
+        {
+            int count = channel.getInt();
+            Object[] entities = new Object[count];
+            for ( int i = 0; i < count; i++ )
+            {
+                entities[i] = readEntity( channel, state, block.sourceDescription, block.firstEntityNumber + i,
+                        block.position );
+            }
+            block.entities = entities;
+            block.bytes = null;
+            return block;
+        }
+        catch ( IOException e )
+        {
+            throw new InputException( "Couldn't read block at position " + block.position + " in " +
+                    block.sourceDescription, e );
+        }
+    }
+
+    /**
+     * Reads one entity from the channel.
+     *
+     * @param entityNumber number of this entity in its source, starting at 1, used as line number.
+     * @param position byte position of the block this entity is in.
+     */
+    protected abstract ENTITY readEntity( ReadableClosableChannel channel, ProcessorState state,
+            String sourceDescription, long entityNumber, long position ) throws IOException;
+
+    protected Object readInputId( ReadableClosableChannel channel ) throws IOException
+    {
+        Object id = readValue( channel );
+        if ( id == null )
+        {
+            return null;
+        }
+        if ( idType == IdType.STRING )
+        {
+            return id instanceof String ? id : id.toString();
+        }
+        if ( id instanceof Number )
+        {
+            return ((Number) id).longValue();
+        }
+        throw new InputException( "Expected an integer id for id type " + idType + ", but got " + id );
+    }
+
+    protected Object[] readProperties( ReadableClosableChannel channel ) throws IOException
+    {
+        short count = channel.getShort();
+        if ( count == 0 )
+        {
+            return NO_PROPERTIES;
+        }
+        Object[] properties = new Object[count * 2];
+        for ( int i = 0; i < properties.length; i++ )
+        {
+            properties[i++] = readString( channel );
+            properties[i] = readValue( channel );
+        }
+        return properties;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    protected ENTITY fetchNextOrNull()
+    {
+        while ( currentBlock == null || cursor == currentBlock.entities.length )
+        {
+            try
+            {
+                currentBlock = processing.next();
+            }
+            catch ( TaskExecutionPanicException e )
+            {
+                // A processor got an exception and put the executor in panic mode.
+                // The user would like to see the actual exception
+                throw Exceptions.launderedException( e.getCause() );
+            }
+            cursor = 0;
+            if ( currentBlock == null )
+            {
+                return null;
+            }
+        }
+
+        ENTITY entity = currentBlock.data.decorator().apply( (ENTITY) currentBlock.entities[cursor++] );
+        validator.validate( entity );
+        return last = entity;
+    }
+
+    @Override
+    public String sourceDescription()
+    {
+        return last != null ? last.sourceDescription() : super.sourceDescription();
+    }
+
+    @Override
+    public long lineNumber()
+    {
+        return last != null ? last.lineNumber() : super.lineNumber();
+    }
+
+    @Override
+    public long position()
+    {
+        return last != null ? last.position() : super.position();
+    }
+
+    @Override
+    public int processors( int delta )
+    {
+        return processing.processors( delta );
+    }
+
+    @Override
+    public void receivePanic( Throwable cause )
+    {
+        processing.receivePanic( cause );
+    }
+
+    @Override
+    public void close()
+    {
+        processing.close();
+        blockReader.close();
+    }
+
+    /**
+     * State local to the deserialization of one block.
+     */
+    protected class ProcessorState
+    {
+        private final Map<String,Group> groupsByName = new HashMap<>();
+        private Group globalGroup;
+
+        protected Group group( String name )
+        {
+            if ( name == null )
+            {
+                return globalGroup != null ? globalGroup : (globalGroup = groups.getOrCreate( null ));
+            }
+            return groupsByName.computeIfAbsent( name, groups::getOrCreate );
+        }
+    }
+
+    private static class Block<ENTITY extends InputEntity>
+    {
+        private final BinaryData<ENTITY> data;
+        private final String sourceDescription;
+        private final long firstEntityNumber;
+        private final long position;
+        private byte[] bytes;
+        private Object[] entities;
+
+        Block( BinaryData<ENTITY> data, String sourceDescription, long firstEntityNumber, long position,
+                byte[] bytes )
+        {
+            this.data = data;
+            this.sourceDescription = sourceDescription;
+            this.firstEntityNumber = firstEntityNumber;
+            this.position = position;
+            this.bytes = bytes;
+        }
+    }
+
+    private class BlockReader extends PrefetchingIterator<Block<ENTITY>>
+    {
+        private final Iterator<BinaryData<ENTITY>> data;
+        private BinaryData<ENTITY> currentData;
+        private File[] currentFiles = new File[0];
+        private int fileIndex;
+        private DataInputStream in;
+        private String currentSource;
+        private long nextEntityNumber;
+        private long position;
+
+        BlockReader( Iterator<BinaryData<ENTITY>> data )
+        {
+            this.data = data;
+        }
+
+        @Override
+        protected Block<ENTITY> fetchNextOrNull()
+        {
+            try
+            {
+                while ( true )
+                {
+                    if ( in == null && !openNextFile() )
+                    {
+                        return null;
+                    }
+
+                    int length = in.readInt();
+                    if ( length == END_OF_BLOCKS )
+                    {
+                        in.close();
+                        in = null;
+                        continue;
+                    }
+
+                    byte[] bytes = new byte[length];
+                    in.readFully( bytes );
+                    Block<ENTITY> block = new Block<>( currentData, currentSource, nextEntityNumber, position, bytes );
+                    nextEntityNumber += ByteBuffer.wrap( bytes ).getInt();
+                    position += Integer.BYTES + length;
+                    return block;
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new InputException( "Couldn't read binary input from " + currentSource, e );
+            }
+        }
+
+        private boolean openNextFile() throws IOException
+        {
+            while ( fileIndex == currentFiles.length )
+            {
+                if ( !data.hasNext() )
+                {
+                    return false;
+                }
+                currentData = data.next();
+                currentFiles = currentData.files();
+                fileIndex = 0;
+            }
+
+            File file = currentFiles[fileIndex++];
+            currentSource = file.getPath();
+            in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 1 << 20 ) );
+            if ( in.readInt() != MAGIC )
+            {
+                throw new InputException( file + " isn't a file in the binary input format" );
+            }
+            byte version = in.readByte();
+            if ( version != VERSION )
+            {
+                throw new InputException( "Unsupported binary input format version " + version + " in " + file );
+            }
+            byte type = in.readByte();
+            if ( type != entityType )
+            {
+                throw new InputException( file + " contains " + entityTypeName( type ) + ", but expected " +
+                        entityTypeName( entityType ) );
+            }
+            nextEntityNumber = 1;
+            position = Integer.BYTES + 2;
+            return true;
+        }
+
+        void close()
+        {
+            try
+            {
+                if ( in != null )
+                {
+                    in.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new InputException( "Couldn't close " + currentSource, e );
+            }
+        }
+    }
+
+    private static String entityTypeName( byte type )
+    {
+        return type == NODES ? "nodes" : "relationships";
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.input.binary;
+
+import java.io.IOException;
+
+import org.neo4j.kernel.impl.transaction.log.ReadableClosableChannel;
+import org.neo4j.kernel.impl.util.Validators;
+import org.neo4j.unsafe.impl.batchimport.input.Group;
+import org.neo4j.unsafe.impl.batchimport.input.Groups;
+import org.neo4j.unsafe.impl.batchimport.input.InputNode;
+import org.neo4j.unsafe.impl.batchimport.input.csv.IdType;
+
+import static org.neo4j.unsafe.impl.batchimport.input.InputEntity.NO_LABELS;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.NODES;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.readString;
+
+/**
+ * Reads {@link InputNode} from files written by {@link BinaryInputWriter#nodes(java.io.OutputStream)}.
+ */
+class BinaryInputNodeReader extends BinaryInputEntityReader<InputNode>
+{
+    BinaryInputNodeReader( Iterable<BinaryData<InputNode>> data, Groups groups, IdType idType, int maxProcessors )
+    {
+        super( data, NODES, groups, idType, Validators.emptyValidator(), maxProcessors );
+    }
+
+    @Override
+    protected InputNode readEntity( ReadableClosableChannel channel, ProcessorState state, String sourceDescription,
+            long entityNumber, long position ) throws IOException
+    {
+        Group group = state.group( readString( channel ) );
+        Object id = readInputId( channel );
+        short labelCount = channel.getShort();
+        String[] labels = labelCount == 0 ? NO_LABELS : new String[labelCount];
+        for ( int i = 0; i < labelCount; i++ )
+        {
+            labels[i] = readString( channel );
+        }
+        Object[] properties = readProperties( channel );
+        return new InputNode( sourceDescription, entityNumber, position, group, id, properties, null, labels, null );
+    }
+}
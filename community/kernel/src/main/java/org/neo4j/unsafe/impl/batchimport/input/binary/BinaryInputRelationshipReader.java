@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.input.binary;
+
+import java.io.IOException;
+
+import org.neo4j.kernel.impl.transaction.log.ReadableClosableChannel;
+import org.neo4j.kernel.impl.util.Validator;
+import org.neo4j.unsafe.impl.batchimport.input.Group;
+import org.neo4j.unsafe.impl.batchimport.input.Groups;
+import org.neo4j.unsafe.impl.batchimport.input.InputRelationship;
+import org.neo4j.unsafe.impl.batchimport.input.csv.IdType;
+
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.RELATIONSHIPS;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.readString;
+
+/**
+ * Reads {@link InputRelationship} from files written by {@link BinaryInputWriter#relationships(java.io.OutputStream)}.
+ */
+class BinaryInputRelationshipReader extends BinaryInputEntityReader<InputRelationship>
+{
+    BinaryInputRelationshipReader( Iterable<BinaryData<InputRelationship>> data, Groups groups, IdType idType,
+            Validator<InputRelationship> validator, int maxProcessors )
+    {
+        super( data, RELATIONSHIPS, groups, idType, validator, maxProcessors );
+    }
+
+    @Override
+    protected InputRelationship readEntity( ReadableClosableChannel channel, ProcessorState state,
+            String sourceDescription, long entityNumber, long position ) throws IOException
+    {
+        Group startGroup = state.group( readString( channel ) );
+        Object startId = readInputId( channel );
+        Group endGroup = state.group( readString( channel ) );
+        Object endId = readInputId( channel );
+        String type = readString( channel );
+        Object[] properties = readProperties( channel );
+        return new InputRelationship( sourceDescription, entityNumber, position, properties, null,
+                startGroup, startId, endGroup, endId, type, null );
+    }
+}
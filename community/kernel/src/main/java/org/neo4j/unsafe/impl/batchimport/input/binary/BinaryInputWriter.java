@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.input.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.neo4j.io.ByteUnit;
+import org.neo4j.kernel.impl.transaction.log.InMemoryClosableChannel;
+
+import static org.neo4j.helpers.Numbers.safeCastLongToShort;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.END_OF_BLOCKS;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.MAGIC;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.NODES;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.RELATIONSHIPS;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.VERSION;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.writeValue;
+
+/**
+ * Writes nodes or relationships in the {@link BinaryFormat binary input format}. Entities are collected into
+ * blocks of roughly the given block size, where a single entity must fit in a block.
+ */
+public class BinaryInputWriter implements Closeable
+{
+    public static final int DEFAULT_BLOCK_SIZE = (int) ByteUnit.mebiBytes( 1 );
+
+    private final DataOutputStream out;
+    private final byte entityType;
+    private final InMemoryClosableChannel block;
+    private final InMemoryClosableChannel entity;
+    private final byte[] entityBytes;
+    private int entitiesInBlock;
+
+    BinaryInputWriter( OutputStream out, byte entityType, int blockSize ) throws IOException
+    {
+        this.out = new DataOutputStream( new BufferedOutputStream( out ) );
+        this.entityType = entityType;
+        this.block = new InMemoryClosableChannel( blockSize );
+        this.entity = new InMemoryClosableChannel( blockSize );
+        this.entityBytes = new byte[blockSize];
+        this.out.writeInt( MAGIC );
+        this.out.writeByte( VERSION );
+        this.out.writeByte( entityType );
+    }
+
+    public static BinaryInputWriter nodes( OutputStream out ) throws IOException
+    {
+        return new BinaryInputWriter( out, NODES, DEFAULT_BLOCK_SIZE );
+    }
+
+    public static BinaryInputWriter relationships( OutputStream out ) throws IOException
+    {
+        return new BinaryInputWriter( out, RELATIONSHIPS, DEFAULT_BLOCK_SIZE );
+    }
+
+    /**
+     * @param group name of group the node id belongs to, or {@code null} for the global group.
+     * @param id input id of the node, or {@code null} if no other input will refer to it.
+     * @param labels label names.
+     * @param properties property keys and values in an alternating fashion, i.e. key, value, key, value...
+     */
+    public void writeNode( String group, Object id, String[] labels, Object[] properties ) throws IOException
+    {
+        assertEntityType( NODES );
+        clear( entity );
+        writeValue( group, entity );
+        writeValue( id, entity );
+        entity.putShort( safeCastLongToShort( labels.length ) );
+        for ( String label : labels )
+        {
+            writeValue( label, entity );
+        }
+        writeProperties( properties );
+        addEntityToBlock();
+    }
+
+    /**
+     * @param startGroup name of group the start node id belongs to, or {@code null} for the global group.
+     * @param startId input id of the start node.
+     * @param endGroup name of group the end node id belongs to, or {@code null} for the global group.
+     * @param endId input id of the end node.
+     * @param type relationship type name.
+     * @param properties property keys and values in an alternating fashion, i.e. key, value, key, value...
+     */
+    public void writeRelationship( String startGroup, Object startId, String endGroup, Object endId, String type,
+            Object[] properties ) throws IOException
+    {
+        assertEntityType( RELATIONSHIPS );
+        clear( entity );
+        writeValue( startGroup, entity );
+        writeValue( startId, entity );
+        writeValue( endGroup, entity );
+        writeValue( endId, entity );
+        writeValue( type, entity );
+        writeProperties( properties );
+        addEntityToBlock();
+    }
+
+    private void assertEntityType( byte expected )
+    {
+        if ( entityType != expected )
+        {
+            throw new IllegalStateException( "This writer writes " +
+                    (entityType == NODES ? "nodes" : "relationships") );
+        }
+    }
+
+    private void writeProperties( Object[] properties ) throws IOException
+    {
+        entity.putShort( safeCastLongToShort( properties.length / 2 ) );
+        for ( Object property : properties )
+        {
+            writeValue( property, entity );
+        }
+    }
+
+    private void addEntityToBlock() throws IOException
+    {
+        int size = entity.writerPosition();
+        if ( size > block.availableBytesToWrite() )
+        {
+            flushBlock();
+        }
+        entity.get( entityBytes, size );
+        block.put( entityBytes, size );
+        entitiesInBlock++;
+    }
+
+    private void flushBlock() throws IOException
+    {
+        if ( entitiesInBlock == 0 )
+        {
+            return;
+        }
+        int size = block.writerPosition();
+        block.get( entityBytes, size );
+        out.writeInt( Integer.BYTES + size );
+        out.writeInt( entitiesInBlock );
+        out.write( entityBytes, 0, size );
+        clear( block );
+        entitiesInBlock = 0;
+    }
+
+    private static void clear( InMemoryClosableChannel channel )
+    {
+        channel.positionWriter( 0 );
+        channel.positionReader( 0 );
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        flushBlock();
+        out.writeInt( END_OF_BLOCKS );
+        out.close();
+    }
+}
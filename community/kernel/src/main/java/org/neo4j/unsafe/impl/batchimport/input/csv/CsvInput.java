@@ -19,6 +19,7 @@
  */
 package org.neo4j.unsafe.impl.batchimport.input.csv;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import org.neo4j.csv.reader.CharSeeker;
@@ -126,7 +127,7 @@ public class CsvInput implements Input
             @Override
             public boolean supportsMultiplePasses()
             {
-                return true;
+                return allSupportMultiplePasses( nodeDataFactory );
             }
         };
     }
@@ -150,17 +151,35 @@ public class CsvInput implements Input
             @Override
             public boolean supportsMultiplePasses()
             {
-                return true;
+                return allSupportMultiplePasses( relationshipDataFactory );
             }
         };
     }
 
+    private static boolean allSupportMultiplePasses( Iterable<? extends DataFactory<?>> dataFactories )
+    {
+        for ( DataFactory<?> dataFactory : dataFactories )
+        {
+            if ( !dataFactory.supportsMultiplePasses() )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public IdMapper idMapper( NumberArrayFactory numberArrayFactory )
     {
         return idType.idMapper( numberArrayFactory );
     }
 
+    @Override
+    public IdMapper externalIdMapper( File directory, NumberArrayFactory numberArrayFactory )
+    {
+        return idType.externalIdMapper( directory, numberArrayFactory );
+    }
+
     @Override
     public IdGenerator idGenerator()
     {
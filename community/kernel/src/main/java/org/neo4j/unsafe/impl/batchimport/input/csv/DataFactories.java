@@ -21,11 +21,13 @@ package org.neo4j.unsafe.impl.batchimport.input.csv;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 import org.neo4j.csv.reader.CharReadable;
@@ -34,9 +36,11 @@ import org.neo4j.csv.reader.Extractor;
 import org.neo4j.csv.reader.Extractors;
 import org.neo4j.csv.reader.Mark;
 import org.neo4j.function.Factory;
+import org.neo4j.function.ThrowingSupplier;
 import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.unsafe.impl.batchimport.input.DuplicateHeaderException;
 import org.neo4j.unsafe.impl.batchimport.input.HeaderException;
+import org.neo4j.unsafe.impl.batchimport.input.Input;
 import org.neo4j.unsafe.impl.batchimport.input.InputEntity;
 import org.neo4j.unsafe.impl.batchimport.input.InputException;
 import org.neo4j.unsafe.impl.batchimport.input.InputNode;
@@ -45,6 +49,7 @@ import org.neo4j.unsafe.impl.batchimport.input.MissingHeaderException;
 import org.neo4j.unsafe.impl.batchimport.input.csv.Header.Entry;
 
 import static org.neo4j.csv.reader.Readables.files;
+import static org.neo4j.csv.reader.Readables.wrap;
 
 /**
  * Provides common implementations of factories required by f.ex {@link CsvInput}.
@@ -116,6 +121,60 @@ public class DataFactories
         };
     }
 
+    /**
+     * Creates a {@link DataFactory} where data comes from a stream, e.g. standard input or a named pipe,
+     * which is opened when first read. A stream can only be read once, so {@link Input} using this data
+     * must be imported in a single pass, see {@link DataFactory#supportsMultiplePasses()}.
+     *
+     * @param sourceDescription description of the stream, used in error messages.
+     * @param stream opens the stream to read data from.
+     * @return {@link DataFactory} that returns a {@link CharSeeker} over the supplied {@code stream}.
+     */
+    public static <ENTITY extends InputEntity> DataFactory<ENTITY> stream( final Decorator<ENTITY> decorator,
+            final Charset charset, final String sourceDescription,
+            final ThrowingSupplier<InputStream,IOException> stream )
+    {
+        AtomicBoolean opened = new AtomicBoolean();
+        return new DataFactory<ENTITY>()
+        {
+            @Override
+            public Data<ENTITY> create( Configuration config )
+            {
+                return new Data<ENTITY>()
+                {
+                    @Override
+                    public CharReadable stream()
+                    {
+                        if ( !opened.compareAndSet( false, true ) )
+                        {
+                            throw new InputException( sourceDescription + " can only be read once" );
+                        }
+                        try
+                        {
+                            return wrap( stream.get(), sourceDescription, charset );
+                        }
+                        catch ( IOException e )
+                        {
+                            throw new InputException( e.getMessage(), e );
+                        }
+                    }
+
+                    @Override
+                    public Decorator<ENTITY> decorator()
+                    {
+                        return decorator;
+                    }
+                };
+            }
+
+            @Override
+            public boolean supportsMultiplePasses()
+            {
+                return false;
+            }
+        };
+    }
+
     /**
      * Header parser that will read header information, using the default node header format,
      * from the top of the data file.
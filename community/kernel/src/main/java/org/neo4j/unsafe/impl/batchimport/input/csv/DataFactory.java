@@ -28,4 +28,13 @@ import org.neo4j.unsafe.impl.batchimport.input.InputEntity;
 public interface DataFactory<ENTITY extends InputEntity>
 {
     Data<ENTITY> create( Configuration config );
+
+    /**
+     * @return whether or not {@link #create(Configuration) created} data can be read more than once.
+     * Data from a stream, e.g. standard input or a named pipe, can only be read once.
+     */
+    default boolean supportsMultiplePasses()
+    {
+        return true;
+    }
 }
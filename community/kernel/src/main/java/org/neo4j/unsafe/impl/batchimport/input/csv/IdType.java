@@ -19,6 +19,8 @@
  */
 package org.neo4j.unsafe.impl.batchimport.input.csv;
 
+import java.io.File;
+
 import org.neo4j.csv.reader.Extractor;
 import org.neo4j.csv.reader.Extractors;
 import org.neo4j.unsafe.impl.batchimport.cache.NumberArrayFactory;
@@ -53,6 +55,12 @@ public enum IdType
             return IdMappers.strings( numberArrayFactory );
         }
 
+        @Override
+        public IdMapper externalIdMapper( File directory, NumberArrayFactory numberArrayFactory )
+        {
+            return IdMappers.externalStrings( directory );
+        }
+
         @Override
         public IdGenerator idGenerator()
         {
@@ -78,6 +86,12 @@ public enum IdType
             return IdMappers.longs( numberArrayFactory );
         }
 
+        @Override
+        public IdMapper externalIdMapper( File directory, NumberArrayFactory numberArrayFactory )
+        {
+            return IdMappers.externalLongs( directory );
+        }
+
         @Override
         public IdGenerator idGenerator()
         {
@@ -119,6 +133,14 @@ public enum IdType
 
     public abstract IdMapper idMapper( NumberArrayFactory numberArrayFactory );
 
+    /**
+     * @see org.neo4j.unsafe.impl.batchimport.input.Input#externalIdMapper(File, NumberArrayFactory)
+     */
+    public IdMapper externalIdMapper( File directory, NumberArrayFactory numberArrayFactory )
+    {
+        return idMapper( numberArrayFactory );
+    }
+
     public abstract IdGenerator idGenerator();
 
     public boolean idsAreExternal()
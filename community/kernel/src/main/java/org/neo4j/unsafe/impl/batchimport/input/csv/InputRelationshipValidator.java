@@ -23,7 +23,7 @@ import org.neo4j.kernel.impl.util.Validator;
 import org.neo4j.unsafe.impl.batchimport.input.InputRelationship;
 import org.neo4j.unsafe.impl.batchimport.input.MissingRelationshipDataException;
 
-class InputRelationshipValidator implements Validator<InputRelationship>
+public class InputRelationshipValidator implements Validator<InputRelationship>
 {
     @Override
     public void validate( InputRelationship entity )
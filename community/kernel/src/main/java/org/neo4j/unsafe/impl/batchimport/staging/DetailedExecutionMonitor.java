@@ -36,6 +36,7 @@ import static org.neo4j.helpers.Format.duration;
 public class DetailedExecutionMonitor extends ExecutionMonitor.Adapter
 {
     private final PrintStream out;
+    private String lastProcessorAssignment;
 
     public DetailedExecutionMonitor( PrintStream out )
     {
@@ -52,6 +53,7 @@ public class DetailedExecutionMonitor extends ExecutionMonitor.Adapter
     public void start( StageExecution execution )
     {
         out.println( format( "%n>>>>> EXECUTING STAGE %s <<<<<%n", execution.getStageName() ) );
+        lastProcessorAssignment = null;
     }
 
     @Override
@@ -75,6 +77,12 @@ public class DetailedExecutionMonitor extends ExecutionMonitor.Adapter
                    .append( step == bottleNeck ? "  <== BOTTLE NECK" : "" );
             i++;
         }
+        String processorAssignment = execution.lastProcessorAssignment();
+        if ( processorAssignment != null && !processorAssignment.equals( lastProcessorAssignment ) )
+        {
+            builder.append( format( "%n  Processors: %s", processorAssignment ) );
+            lastProcessorAssignment = processorAssignment;
+        }
 
         String toPrint = builder.toString();
         printAndBackUpAgain( toPrint );
@@ -92,17 +92,20 @@ public class ExecutionSupervisors
     }
 
     /**
-     * Decorates an {@link ExecutionMonitor} with a {@link DynamicProcessorAssigner} responsible for
-     * constantly assigning and reevaluating an optimal number of processors to all individual steps.
+     * Decorates an {@link ExecutionMonitor} with a {@link DynamicProcessorAssigner}, or a
+     * {@link ThroughputProcessorAssigner} if {@link Configuration#throughputProcessorAssignment() configured},
+     * responsible for constantly assigning and reevaluating an optimal number of processors to all individual steps.
      *
      * @param monitor {@link ExecutionMonitor} to decorate.
-     * @param config {@link Configuration} that the {@link DynamicProcessorAssigner} will use. Max total processors
+     * @param config {@link Configuration} that the processor assigner will use. Max total processors
      * in a {@link Stage} will be the smallest of that value and {@link Runtime#availableProcessors()}.
      * @return the decorated monitor with dynamic processor assignment capabilities.
      */
     public static ExecutionMonitor withDynamicProcessorAssignment( ExecutionMonitor monitor, Configuration config )
     {
-        DynamicProcessorAssigner dynamicProcessorAssigner = new DynamicProcessorAssigner( config );
-        return new MultiExecutionMonitor( monitor, dynamicProcessorAssigner );
+        ExecutionMonitor processorAssigner = config.throughputProcessorAssignment()
+                ? new ThroughputProcessorAssigner( config )
+                : new DynamicProcessorAssigner( config );
+        return new MultiExecutionMonitor( monitor, processorAssigner );
     }
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.staging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.helpers.collection.Pair;
+import org.neo4j.time.Clocks;
+import org.neo4j.unsafe.impl.batchimport.stats.Key;
+import org.neo4j.unsafe.impl.batchimport.stats.Keys;
+import org.neo4j.unsafe.impl.batchimport.stats.Stat;
+import org.neo4j.unsafe.impl.batchimport.stats.StepStats;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * An {@link ExecutionMonitor} that writes statistics about each {@link Stage} and the {@link Step steps}
+ * therein as rows meant to be read by tools rather than humans, e.g. to compare one import with another.
+ * Each check writes one row per step with its throughput, queue size, number of processors and all its
+ * {@link Keys statistics}, like I/O throughput and memory usage, where the step has them. The start and end
+ * of each stage, as well as the end of the whole import, are written as rows of their own.
+ *
+ * Every row has the same {@link #COLUMNS columns}, where a column which doesn't apply to a row is left out
+ * in {@link Format#JSON_LINES} and left empty in {@link Format#CSV}. Times are in milliseconds.
+ */
+public class MetricsExecutionMonitor extends ExecutionMonitor.Adapter
+{
+    static final String TIME = "time";
+    static final String EVENT = "event";
+    static final String STAGE = "stage";
+    static final String STAGE_TIME = "stage_time";
+    static final String STEP = "step";
+    static final String COMPLETED = "completed";
+    static final String BOTTLE_NECK = "bottle_neck";
+    static final String PROCESSORS = "processors";
+    static final String QUEUED_BATCHES = "queued_batches";
+    static final String BATCHES_PER_SECOND = "batches_per_second";
+    static final String[] COLUMNS = columns( TIME, EVENT, STAGE, STAGE_TIME, STEP, COMPLETED, BOTTLE_NECK,
+            PROCESSORS, QUEUED_BATCHES, BATCHES_PER_SECOND );
+
+    static final String START = "start";
+    static final String CHECK = "check";
+    static final String END = "end";
+    static final String DONE = "done";
+
+    /**
+     * How rows are written.
+     */
+    public enum Format
+    {
+        /**
+         * One JSON object per line, with the columns which apply to the row as fields.
+         */
+        JSON_LINES
+        {
+            @Override
+            void writeHeader( Writer out )
+            {   // No header, each row names its fields
+            }
+
+            @Override
+            void writeRow( Writer out, Object[] values ) throws IOException
+            {
+                out.write( '{' );
+                boolean first = true;
+                for ( int i = 0; i < COLUMNS.length; i++ )
+                {
+                    if ( values[i] != null )
+                    {
+                        if ( !first )
+                        {
+                            out.write( ',' );
+                        }
+                        writeString( out, COLUMNS[i] );
+                        out.write( ':' );
+                        if ( values[i] instanceof String )
+                        {
+                            writeString( out, (String) values[i] );
+                        }
+                        else
+                        {
+                            out.write( String.valueOf( values[i] ) );
+                        }
+                        first = false;
+                    }
+                }
+                out.write( '}' );
+                out.write( '\n' );
+            }
+
+            private void writeString( Writer out, String value ) throws IOException
+            {
+                out.write( '"' );
+                for ( int i = 0; i < value.length(); i++ )
+                {
+                    char ch = value.charAt( i );
+                    if ( ch == '"' || ch == '\\' )
+                    {
+                        out.write( '\\' );
+                        out.write( ch );
+                    }
+                    else if ( ch < ' ' )
+                    {
+                        out.write( String.format( "\\u%04x", (int) ch ) );
+                    }
+                    else
+                    {
+                        out.write( ch );
+                    }
+                }
+                out.write( '"' );
+            }
+        },
+
+        /**
+         * Comma separated values, one line per row, preceded by a header line with the column names.
+         */
+        CSV
+        {
+            @Override
+            void writeHeader( Writer out ) throws IOException
+            {
+                writeRow( out, COLUMNS );
+            }
+
+            @Override
+            void writeRow( Writer out, Object[] values ) throws IOException
+            {
+                for ( int i = 0; i < COLUMNS.length; i++ )
+                {
+                    if ( i > 0 )
+                    {
+                        out.write( ',' );
+                    }
+                    if ( values[i] != null )
+                    {
+                        String value = String.valueOf( values[i] );
+                        if ( value.indexOf( ',' ) != -1 || value.indexOf( '"' ) != -1 || value.indexOf( '\n' ) != -1 )
+                        {
+                            value = '"' + value.replace( "\"", "\"\"" ) + '"';
+                        }
+                        out.write( value );
+                    }
+                }
+                out.write( '\n' );
+            }
+        };
+
+        abstract void writeHeader( Writer out ) throws IOException;
+
+        abstract void writeRow( Writer out, Object[] values ) throws IOException;
+
+        /**
+         * @param file file to write rows to.
+         * @return {@link #CSV} if the name of the {@code file} ends with {@code .csv}, otherwise {@link #JSON_LINES}.
+         */
+        public static Format forFile( File file )
+        {
+            return file.getName().toLowerCase().endsWith( ".csv" ) ? CSV : JSON_LINES;
+        }
+    }
+
+    private final Clock clock;
+    private final Writer out;
+    private final Format format;
+    private boolean headerWritten;
+    private long stageStartTime;
+
+    public MetricsExecutionMonitor( Writer out, Format format )
+    {
+        this( out, format, 5, SECONDS );
+    }
+
+    public MetricsExecutionMonitor( Writer out, Format format, long time, TimeUnit unit )
+    {
+        this( Clocks.systemClock(), out, format, time, unit );
+    }
+
+    public MetricsExecutionMonitor( Clock clock, Writer out, Format format, long time, TimeUnit unit )
+    {
+        super( clock, time, unit );
+        this.clock = clock;
+        this.out = out;
+        this.format = format;
+    }
+
+    @Override
+    public void start( StageExecution execution )
+    {
+        stageStartTime = clock.millis();
+        Object[] row = row( START, execution.getStageName() );
+        set( row, STAGE_TIME, 0L );
+        write( row );
+    }
+
+    @Override
+    public void end( StageExecution execution, long totalTimeMillis )
+    {
+        Object[] row = row( END, execution.getStageName() );
+        set( row, STAGE_TIME, totalTimeMillis );
+        write( row );
+    }
+
+    @Override
+    public void done( long totalTimeMillis, String additionalInformation )
+    {
+        Object[] row = row( DONE, null );
+        set( row, STAGE_TIME, totalTimeMillis );
+        write( row );
+    }
+
+    @Override
+    public void check( StageExecution execution )
+    {
+        long stageTime = clock.millis() - stageStartTime;
+        Iterator<Pair<Step<?>,Float>> slowest = execution.stepsOrderedBy( Keys.avg_processing_time, false ).iterator();
+        Step<?> bottleNeck = slowest.hasNext() ? slowest.next().first() : null;
+        for ( Step<?> step : execution.steps() )
+        {
+            StepStats stats = step.stats();
+            Object[] row = row( CHECK, execution.getStageName() );
+            set( row, STAGE_TIME, stageTime );
+            set( row, STEP, step.name() );
+            set( row, COMPLETED, !stats.stillWorking() );
+            set( row, BOTTLE_NECK, step == bottleNeck );
+            set( row, PROCESSORS, step.processors( 0 ) );
+            for ( Keys key : Keys.values() )
+            {
+                set( row, key.name(), value( stats, key ) );
+            }
+            Long received = value( stats, Keys.received_batches );
+            Long done = value( stats, Keys.done_batches );
+            if ( received != null && done != null )
+            {
+                set( row, QUEUED_BATCHES, Math.max( 0, received - done ) );
+            }
+            if ( done != null && stageTime > 0 )
+            {
+                set( row, BATCHES_PER_SECOND, done * 1000 / stageTime );
+            }
+            write( row );
+        }
+    }
+
+    private Object[] row( String event, String stageName )
+    {
+        Object[] row = new Object[COLUMNS.length];
+        set( row, TIME, clock.millis() );
+        set( row, EVENT, event );
+        set( row, STAGE, stageName );
+        return row;
+    }
+
+    private static Long value( StepStats stats, Key key )
+    {
+        Stat stat = stats.stat( key );
+        if ( stat == null )
+        {
+            return null;
+        }
+        long value = stat.asLong();
+        // Some statistics, like I/O throughput, are -1 until there's enough data to calculate them
+        return value >= 0 ? value : null;
+    }
+
+    private static void set( Object[] row, String column, Object value )
+    {
+        for ( int i = 0; i < COLUMNS.length; i++ )
+        {
+            if ( COLUMNS[i].equals( column ) )
+            {
+                row[i] = value;
+                return;
+            }
+        }
+        throw new IllegalArgumentException( "Unknown column " + column );
+    }
+
+    private void write( Object[] row )
+    {
+        try
+        {
+            if ( !headerWritten )
+            {
+                format.writeHeader( out );
+                headerWritten = true;
+            }
+            format.writeRow( out, row );
+            out.flush();
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    private static String[] columns( String... fixed )
+    {
+        Keys[] keys = Keys.values();
+        String[] columns = new String[fixed.length + keys.length];
+        System.arraycopy( fixed, 0, columns, 0, fixed.length );
+        for ( int i = 0; i < keys.length; i++ )
+        {
+            columns[fixed.length + i] = keys[i].name();
+        }
+        return columns;
+    }
+}
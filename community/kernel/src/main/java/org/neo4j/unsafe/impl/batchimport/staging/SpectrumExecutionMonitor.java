@@ -59,6 +59,7 @@ public class SpectrumExecutionMonitor extends ExecutionMonitor.Adapter
     private final int width;
     // For tracking delta
     private long lastProgress;
+    private String lastProcessorAssignment;
 
     public SpectrumExecutionMonitor( long interval, TimeUnit unit, PrintStream out, int width )
     {
@@ -72,6 +73,7 @@ public class SpectrumExecutionMonitor extends ExecutionMonitor.Adapter
     {
         out.println( execution.getStageName() + ", started " + date() );
         lastProgress = 0;
+        lastProcessorAssignment = null;
     }
 
     @Override
@@ -92,6 +94,14 @@ public class SpectrumExecutionMonitor extends ExecutionMonitor.Adapter
     @Override
     public void check( StageExecution execution )
     {
+        String processorAssignment = execution.lastProcessorAssignment();
+        if ( processorAssignment != null && !processorAssignment.equals( lastProcessorAssignment ) )
+        {
+            // Changes are printed on a line of their own, overwriting the spectrum which continues below it
+            String line = " Processors: " + processorAssignment;
+            out.println( "\r" + line + spaces( width + PROGRESS_WIDTH + 2 - line.length() ) );
+            lastProcessorAssignment = processorAssignment;
+        }
         StringBuilder builder = new StringBuilder();
         printSpectrum( builder, execution, width );
         out.print( "\r" + builder );
@@ -193,6 +203,16 @@ public class SpectrumExecutionMonitor extends ExecutionMonitor.Adapter
         return result;
     }
 
+    private static String spaces( int count )
+    {
+        StringBuilder builder = new StringBuilder();
+        for ( int i = 0; i < count; i++ )
+        {
+            builder.append( ' ' );
+        }
+        return builder.toString();
+    }
+
     private static int weight( long value )
     {
         int weight = 0;
@@ -46,6 +46,7 @@ public class StageExecution implements StageControl
     private long startTime;
     private final int orderingGuarantees;
     private volatile Throwable panic;
+    private volatile String processorAssignment;
 
     public StageExecution( String stageName, Configuration config, Collection<Step<?>> pipeline, int orderingGuarantees )
     {
@@ -149,6 +150,25 @@ public class StageExecution implements StageControl
         return pipeline.size();
     }
 
+    /**
+     * Called by whoever assigns processors to the steps of this execution, describing the latest change.
+     *
+     * @param description of the change in processor assignment.
+     */
+    public void processorAssignmentChanged( String description )
+    {
+        this.processorAssignment = description;
+    }
+
+    /**
+     * @return description of the latest {@link #processorAssignmentChanged(String) change} in processor
+     * assignment, or {@code null} if there has been none.
+     */
+    public String lastProcessorAssignment()
+    {
+        return processorAssignment;
+    }
+
     @Override
     public synchronized void panic( Throwable cause )
     {
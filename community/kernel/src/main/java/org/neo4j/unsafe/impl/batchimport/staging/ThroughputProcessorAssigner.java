@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.staging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.unsafe.impl.batchimport.Configuration;
+import org.neo4j.unsafe.impl.batchimport.stats.Keys;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Assigns processors to the {@link Step steps} of a {@link StageExecution} by modeling the throughput of each
+ * step, instead of moving one processor at a time based on which step is slowest like
+ * {@link DynamicProcessorAssigner} does.
+ * <p>
+ * The cost of a step is how long a single processor spends on one batch, i.e. {@link Keys#avg_processing_time}
+ * times its number of processors. Every batch passes through every step, so a stage processing {@code T} batches
+ * per time unit keeps {@code T * cost} processors busy in each step. The throughput of a stage is therefore
+ * bounded by both:
+ * <ul>
+ * <li>{@link Configuration#maxNumberOfProcessors()} spread over the total cost of all steps, and</li>
+ * <li>steps which cannot be given more processors, e.g. those which aren't parallelizable or don't scale.</li>
+ * </ul>
+ * The allocation reaching the highest throughput within those bounds is solved for, giving every step
+ * just enough processors to not be the bottleneck. It's applied only when it's predicted to be noticeably
+ * faster than the current allocation and only to steps which have processed enough batches since they
+ * were last changed, for their measurements to reflect that change.
+ * <p>
+ * Steps bound by I/O, or contended in some other way, don't get faster with more processors. The throughput
+ * of a step given more processors is therefore measured again once settled, and if less than half of the
+ * expected gain was seen it will not be given more processors than that. Had it not improved at all
+ * the added processors are taken back.
+ * <p>
+ * Decisions are {@link StageExecution#processorAssignmentChanged(String) published} on the execution,
+ * for monitors to show.
+ */
+public class ThroughputProcessorAssigner extends ExecutionMonitor.Adapter
+{
+    /**
+     * A new allocation must be predicted to have at least this much higher throughput to be applied.
+     */
+    static final double MINIMUM_GAIN = 0.1;
+
+    private final Configuration config;
+    private final int availableProcessors;
+    private final Map<Step<?>,Long/*done batches*/> lastChangedProcessors = new HashMap<>();
+    private final Map<Step<?>,Integer> maxProcessors = new HashMap<>();
+    private final Map<Step<?>,Probe> probes = new HashMap<>();
+
+    public ThroughputProcessorAssigner( Configuration config )
+    {
+        super( 100, MILLISECONDS );
+        this.config = config;
+        this.availableProcessors = config.maxNumberOfProcessors();
+    }
+
+    @Override
+    public void start( StageExecution execution )
+    {   // A new stage begins, any data that we had is irrelevant
+        lastChangedProcessors.clear();
+        maxProcessors.clear();
+        probes.clear();
+    }
+
+    @Override
+    public void check( StageExecution execution )
+    {
+        if ( !execution.stillExecuting() )
+        {
+            return;
+        }
+
+        List<Step<?>> steps = new ArrayList<>();
+        execution.steps().forEach( steps::add );
+        double[] costs = new double[steps.size()];
+        int[] current = new int[steps.size()];
+        int[] max = new int[steps.size()];
+        double totalCost = 0;
+        for ( int i = 0; i < costs.length; i++ )
+        {
+            Step<?> step = steps.get( i );
+            if ( batches( step ) == 0 )
+            {
+                // Not all steps have seen a batch yet, so there's no model to go by
+                return;
+            }
+            current[i] = step.processors( 0 );
+            costs[i] = (double) avg( step ) * current[i];
+            max[i] = maxProcessors.getOrDefault( step, Integer.MAX_VALUE );
+            totalCost += costs[i];
+        }
+        if ( totalCost == 0 )
+        {
+            return;
+        }
+
+        StringBuilder decision = new StringBuilder();
+        verifyProbes( steps, current, max, decision );
+        int[] target = assignment( costs, max, availableProcessors );
+        double currentThroughput = throughput( costs, current );
+        double targetThroughput = throughput( costs, target );
+        if ( targetThroughput >= currentThroughput * (1 + MINIMUM_GAIN) )
+        {
+            StringBuilder changes = new StringBuilder();
+            int[] after = current.clone();
+            // Take processors from steps first so that the total is kept within bounds while changing
+            for ( int i = 0; i < target.length; i++ )
+            {
+                if ( target[i] < current[i] )
+                {
+                    after[i] = change( steps.get( i ), current[i], target[i], changes );
+                }
+            }
+            for ( int i = 0; i < target.length; i++ )
+            {
+                if ( target[i] > current[i] )
+                {
+                    after[i] = change( steps.get( i ), current[i], target[i], changes );
+                }
+            }
+            if ( changes.length() > 0 )
+            {
+                append( decision, format( "%s, predicted %d%% faster",
+                        changes, Math.round( (throughput( costs, after ) / currentThroughput - 1) * 100 ) ) );
+            }
+        }
+        if ( decision.length() > 0 )
+        {
+            execution.processorAssignmentChanged( decision.toString() );
+        }
+    }
+
+    /**
+     * Looks at steps which have been given more processors and have since settled, limiting the processors
+     * of those which didn't get enough faster from it.
+     */
+    private void verifyProbes( List<Step<?>> steps, int[] current, int[] max, StringBuilder decision )
+    {
+        for ( int i = 0; i < current.length; i++ )
+        {
+            Step<?> step = steps.get( i );
+            Probe probe = probes.get( step );
+            if ( probe == null || !settled( step ) )
+            {
+                continue;
+            }
+
+            probes.remove( step );
+            double expectedGain = (double) current[i] / probe.processors - 1;
+            double gain = probe.avg / (double) Math.max( 1, avg( step ) ) - 1;
+            if ( gain < expectedGain / 2 )
+            {
+                if ( gain < MINIMUM_GAIN )
+                {
+                    current[i] = step.processors( probe.processors - current[i] );
+                    lastChangedProcessors.put( step, batches( step ) );
+                }
+                max[i] = current[i];
+                maxProcessors.put( step, current[i] );
+                append( decision, format( "%s doesn't scale beyond %d", step.name(), current[i] ) );
+            }
+        }
+    }
+
+    private int change( Step<?> step, int from, int to, StringBuilder changes )
+    {
+        if ( !settled( step ) )
+        {
+            return from;
+        }
+
+        int after = step.processors( to - from );
+        if ( after < to )
+        {
+            // This step won't accept more processors than this
+            maxProcessors.put( step, after );
+        }
+        if ( after != from )
+        {
+            if ( after > from )
+            {
+                probes.put( step, new Probe( from, avg( step ) ) );
+            }
+            lastChangedProcessors.put( step, batches( step ) );
+            append( changes, format( "%s %d->%d", step.name(), from, after ) );
+        }
+        return after;
+    }
+
+    /**
+     * Solves for the assignment of processors giving the highest throughput, where the steps can be given
+     * at most {@code max} processors each and all steps together can keep at most {@code availableProcessors}
+     * busy. Processors are handed out one at a time to the bottleneck until either the bottleneck cannot
+     * take more or the stage would need more processors than available to keep up.
+     *
+     * @param costs time a single processor spends on a batch, per step.
+     * @param max max number of processors per step.
+     * @param availableProcessors number of processors the stage may keep busy.
+     * @return number of processors per step.
+     */
+    static int[] assignment( double[] costs, int[] max, int availableProcessors )
+    {
+        double totalCost = 0;
+        for ( double cost : costs )
+        {
+            totalCost += cost;
+        }
+
+        int[] assignment = new int[costs.length];
+        Arrays.fill( assignment, 1 );
+        while ( totalCost > 0 )
+        {
+            int bottleneck = bottleneck( costs, assignment );
+            if ( assignment[bottleneck] >= max[bottleneck] )
+            {
+                break;
+            }
+            assignment[bottleneck]++;
+            if ( throughput( costs, assignment ) * totalCost > availableProcessors )
+            {
+                assignment[bottleneck]--;
+                break;
+            }
+        }
+
+        // Steps on par with the bottleneck may have been handed processors which didn't end up raising
+        // the throughput, only keep as many as needed to keep up with the bottleneck
+        double throughput = throughput( costs, assignment );
+        for ( int i = 0; i < assignment.length; i++ )
+        {
+            long needed = (long) Math.ceil( throughput * costs[i] - 1e-9 );
+            assignment[i] = (int) Math.max( 1, Math.min( assignment[i], needed ) );
+        }
+        return assignment;
+    }
+
+    /**
+     * @return the number of batches per time unit a stage with the given step costs and processors would do,
+     * i.e. that of its slowest step.
+     */
+    static double throughput( double[] costs, int[] processors )
+    {
+        int bottleneck = bottleneck( costs, processors );
+        return costs[bottleneck] == 0 ? Double.POSITIVE_INFINITY : processors[bottleneck] / costs[bottleneck];
+    }
+
+    private static int bottleneck( double[] costs, int[] processors )
+    {
+        int bottleneck = 0;
+        for ( int i = 1; i < costs.length; i++ )
+        {
+            // Compare cost/processors rather than processors/cost to not have to deal with division by zero
+            if ( costs[i] * processors[bottleneck] > costs[bottleneck] * processors[i] )
+            {
+                bottleneck = i;
+            }
+        }
+        return bottleneck;
+    }
+
+    private static void append( StringBuilder builder, String text )
+    {
+        builder.append( builder.length() > 0 ? ", " : "" ).append( text );
+    }
+
+    private boolean settled( Step<?> step )
+    {
+        Long doneBatches = lastChangedProcessors.get( step );
+        return doneBatches == null || batches( step ) - doneBatches >= config.movingAverageSize();
+    }
+
+    private static long avg( Step<?> step )
+    {
+        return step.stats().stat( Keys.avg_processing_time ).asLong();
+    }
+
+    private static long batches( Step<?> step )
+    {
+        return step.stats().stat( Keys.done_batches ).asLong();
+    }
+
+    /**
+     * Measurement of a step before it got more processors, to compare with once settled.
+     */
+    private static class Probe
+    {
+        private final int processors;
+        private final long avg;
+
+        Probe( int processors, long avg )
+        {
+            this.processors = processors;
+            this.avg = avg;
+        }
+    }
+}
@@ -46,6 +46,9 @@ import org.neo4j.kernel.impl.store.StoreFactory;
 import org.neo4j.kernel.impl.store.UnderlyingStorageException;
 import org.neo4j.kernel.impl.store.counts.CountsTracker;
 import org.neo4j.kernel.impl.store.format.RecordFormats;
+import org.neo4j.kernel.impl.store.id.IdGenerator;
+import org.neo4j.kernel.impl.store.id.IdGeneratorFactory;
+import org.neo4j.kernel.impl.store.id.IdType;
 import org.neo4j.kernel.impl.store.record.RelationshipGroupRecord;
 import org.neo4j.kernel.lifecycle.LifeSupport;
 import org.neo4j.kernel.monitoring.Monitors;
@@ -83,6 +86,7 @@ public class BatchingNeoStores implements AutoCloseable, MemoryStatsVisitor.Visi
     private final Configuration importConfiguration;
     private final PageCache pageCache;
     private final NeoStores neoStores;
+    private final BatchingIdGeneratorFactory idGeneratorFactory;
     private final LifeSupport life = new LifeSupport();
     private final LabelScanStore labelScanStore;
     private final IoTracer ioTracer;
@@ -107,8 +111,9 @@ public class BatchingNeoStores implements AutoCloseable, MemoryStatsVisitor.Visi
         this.pageCache = pageCache;
         this.ioTracer = ioTracer;
         this.externalPageCache = externalPageCache;
-        this.neoStores = newStoreFactory( DEFAULT_NAME ).openAllNeoStores( true );
-        if ( alreadyContainsData( neoStores ) )
+        this.idGeneratorFactory = new BatchingIdGeneratorFactory( fileSystem );
+        this.neoStores = newStoreFactory( DEFAULT_NAME, idGeneratorFactory ).openAllNeoStores( true );
+        if ( !importConfiguration.incremental() && !importConfiguration.resume() && alreadyContainsData( neoStores ) )
         {
             neoStores.close();
             IllegalStateException ise =
@@ -135,10 +140,14 @@ public class BatchingNeoStores implements AutoCloseable, MemoryStatsVisitor.Visi
         {
             throw new UnderlyingStorageException( e );
         }
-        neoStores.getMetaDataStore().setLastCommittedAndClosedTransactionId(
-                initialIds.lastCommittedTransactionId(), initialIds.lastCommittedTransactionChecksum(),
-                BASE_TX_COMMIT_TIMESTAMP, initialIds.lastCommittedTransactionLogByteOffset(),
-                initialIds.lastCommittedTransactionLogVersion() );
+        if ( !importConfiguration.incremental() )
+        {
+            // An existing store keeps its transaction history, there's no transaction log for the imported data
+            neoStores.getMetaDataStore().setLastCommittedAndClosedTransactionId(
+                    initialIds.lastCommittedTransactionId(), initialIds.lastCommittedTransactionChecksum(),
+                    BASE_TX_COMMIT_TIMESTAMP, initialIds.lastCommittedTransactionLogByteOffset(),
+                    initialIds.lastCommittedTransactionLogVersion() );
+        }
         this.propertyKeyRepository = new BatchingPropertyKeyTokenRepository(
                 neoStores.getPropertyKeyTokenStore() );
         this.labelRepository = new BatchingLabelTokenRepository(
@@ -147,8 +156,8 @@ public class BatchingNeoStores implements AutoCloseable, MemoryStatsVisitor.Visi
                 neoStores.getRelationshipTypeTokenStore() );
 
         // Instantiate the temporary stores
-        temporaryNeoStores = newStoreFactory(
-                "temp." + DEFAULT_NAME, DELETE_ON_CLOSE ).openNeoStores( true, RELATIONSHIP_GROUP );
+        temporaryNeoStores = newStoreFactory( "temp." + DEFAULT_NAME, new BatchingIdGeneratorFactory( fileSystem ),
+                DELETE_ON_CLOSE ).openNeoStores( true, RELATIONSHIP_GROUP );
 
         // Initialize kernel extensions
         life.start();
@@ -200,10 +209,11 @@ public class BatchingNeoStores implements AutoCloseable, MemoryStatsVisitor.Visi
         return neoStores.getNodeStore().getHighId() > 0 || neoStores.getRelationshipStore().getHighId() > 0;
     }
 
-        private StoreFactory newStoreFactory( String name, OpenOption... openOptions )
+        private StoreFactory newStoreFactory( String name, IdGeneratorFactory idGeneratorFactory,
+            OpenOption... openOptions )
     {
         return new StoreFactory( storeDir, name, neo4jConfig,
-                new BatchingIdGeneratorFactory( fileSystem ), pageCache, fileSystem, recordFormats, logProvider,
+                idGeneratorFactory, pageCache, fileSystem, recordFormats, logProvider,
                 openOptions );
     }
 
@@ -215,6 +225,25 @@ public class BatchingNeoStores implements AutoCloseable, MemoryStatsVisitor.Visi
         return temporaryNeoStores.getRelationshipGroupStore();
     }
 
+    /**
+     * @return high id of the store of the given id type, or {@code -1} if there's no such store.
+     */
+    public long getHighId( IdType idType )
+    {
+        IdGenerator idGenerator = idGeneratorFactory.get( idType );
+        return idGenerator != null ? idGenerator.getHighId() : -1;
+    }
+
+    /**
+     * Sets the high id of the store of the given id type, where unlike {@link RecordStore#setHighId(long)}
+     * the high id may also be lowered. Used when resuming an import, where records written after the
+     * point to resume from are to be overwritten.
+     */
+    public void setHighId( IdType idType, long highId )
+    {
+        idGeneratorFactory.get( idType ).setHighId( highId );
+    }
+
     public IoTracer getIoTracer()
     {
         return ioTracer;
@@ -288,6 +317,19 @@ public class BatchingNeoStores implements AutoCloseable, MemoryStatsVisitor.Visi
         }
     }
 
+    /**
+     * Writes created tokens and flushes all stores, including the label scan store, such that everything
+     * written so far is durable. The temporary stores are not flushed since they don't survive a restart anyway.
+     */
+    public void flush() throws IOException
+    {
+        propertyKeyRepository.flush();
+        labelRepository.flush();
+        relationshipTypeRepository.flush();
+        labelScanStore.force( IOLimiter.unlimited() );
+        neoStores.flush( IOLimiter.unlimited() );
+    }
+
     public long getLastCommittedTransactionId()
     {
         return neoStores.getMetaDataStore().getLastCommittedTransactionId();
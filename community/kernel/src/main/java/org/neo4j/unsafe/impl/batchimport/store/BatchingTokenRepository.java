@@ -50,12 +50,20 @@ public abstract class BatchingTokenRepository<RECORD extends TokenRecord, TOKEN
 {
     private final Map<String,Integer> tokens = new HashMap<>();
     private final TokenStore<RECORD, TOKEN> store;
+    // Tokens with ids from this one and upwards haven't been written to the store yet
+    private int persistedHighId;
     private int highId;
 
     public BatchingTokenRepository( TokenStore<RECORD,TOKEN> store )
     {
         this.store = store;
         this.highId = (int)store.getHighId();
+        this.persistedHighId = highId;
+        // Tokens already in the store, f.ex. when importing into an existing store, are looked up, not created
+        for ( TOKEN token : store.getTokens( Integer.MAX_VALUE ) )
+        {
+            tokens.put( token.name(), token.id() );
+        }
     }
 
     /**
@@ -164,6 +172,14 @@ public abstract class BatchingTokenRepository<RECORD extends TokenRecord, TOKEN
      * Closes this repository and writes all created tokens to the underlying store.
      */
     public void close()
+    {
+        flush();
+    }
+
+    /**
+     * Writes tokens created since last flush to the underlying store.
+     */
+    public void flush()
     {
         // Batch-friendly record access
         BatchingRecordAccess<RECORD, Void> recordAccess = new BatchingRecordAccess<RECORD, Void>()
@@ -178,7 +194,13 @@ public abstract class BatchingTokenRepository<RECORD extends TokenRecord, TOKEN
         // Create the tokens
         TokenCreator<RECORD, TOKEN> creator = new TokenCreator<>( store );
         int highest = 1;
-        for ( Map.Entry<Integer,String> tokenToCreate : sortCreatedTokensById() )
+        Iterable<Map.Entry<Integer,String>> tokensToCreate;
+        synchronized ( tokens )
+        {
+            tokensToCreate = sortCreatedTokensById();
+            persistedHighId = highId;
+        }
+        for ( Map.Entry<Integer,String> tokenToCreate : tokensToCreate )
         {
             creator.createToken( tokenToCreate.getValue(), tokenToCreate.getKey(), recordAccess );
             highest = Math.max( highest, tokenToCreate.getKey() );
@@ -199,7 +221,10 @@ public abstract class BatchingTokenRepository<RECORD extends TokenRecord, TOKEN
         Map<Integer,String> sorted = new TreeMap<>();
         for ( Map.Entry<String,Integer> entry : tokens.entrySet() )
         {
-            sorted.put( entry.getValue(), entry.getKey() );
+            if ( entry.getValue() >= persistedHighId )
+            {
+                sorted.put( entry.getValue(), entry.getKey() );
+            }
         }
         return sorted.entrySet();
     }
@@ -25,6 +25,7 @@ import org.mockito.InOrder;
 import java.util.Iterator;
 import java.util.Optional;
 
+import org.neo4j.cursor.Cursor;
 import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.io.pagecache.tracing.cursor.PageCursorTracer;
 import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
@@ -54,6 +55,7 @@ import org.neo4j.kernel.impl.locking.Locks;
 import org.neo4j.kernel.impl.locking.ResourceTypes;
 import org.neo4j.kernel.impl.locking.SimpleStatementLocks;
 import org.neo4j.kernel.impl.proc.Procedures;
+import org.neo4j.storageengine.api.NodeItem;
 import org.neo4j.storageengine.api.StorageStatement;
 import org.neo4j.values.storable.Value;
 import org.neo4j.values.storable.Values;
@@ -70,6 +72,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.neo4j.helpers.collection.Iterators.asList;
 import static org.neo4j.kernel.api.schema.constaints.ConstraintDescriptorFactory.existsForRelType;
@@ -377,6 +380,45 @@ public class LockingStatementOperationsTest
         }
     }
 
+    @Test
+    public void shouldOnlyAcquireSharedLockOnDenseNodeCreatingRelationshipWithRelationshipGroupLocking()
+            throws Exception
+    {
+        // given
+        LockingStatementOperations groupLockingOps = new LockingStatementOperations(
+                entityReadOps, entityWriteOps, schemaReadOps, schemaWriteOps, schemaStateOps, true );
+        givenNode( 2, true );
+        givenNode( 3, false );
+
+        // when
+        groupLockingOps.relationshipCreate( state, 1, 3, 2 );
+
+        // then
+        order.verify( locks ).acquireShared( LockTracer.NONE, ResourceTypes.NODE, 2 );
+        order.verify( locks ).acquireExclusive( LockTracer.NONE, ResourceTypes.NODE, 3 );
+        order.verify( entityWriteOps ).relationshipCreate( state, 1, 3, 2 );
+    }
+
+    @Test
+    public void shouldNotLockNodeCreatedInThisTransactionCreatingRelationshipWithRelationshipGroupLocking()
+            throws Exception
+    {
+        // given
+        LockingStatementOperations groupLockingOps = new LockingStatementOperations(
+                entityReadOps, entityWriteOps, schemaReadOps, schemaWriteOps, schemaStateOps, true );
+        txState.nodeDoCreate( 2 );
+        givenNode( 3, true );
+
+        // when
+        groupLockingOps.relationshipCreate( state, 1, 2, 3 );
+
+        // then
+        verify( entityReadOps, never() ).nodeCursorById( state, 2 );
+        verify( locks, never() ).acquireExclusive( LockTracer.NONE, ResourceTypes.NODE, 2 );
+        order.verify( locks ).acquireShared( LockTracer.NONE, ResourceTypes.NODE, 3 );
+        order.verify( entityWriteOps ).relationshipCreate( state, 1, 2, 3 );
+    }
+
     @SuppressWarnings( "unchecked" )
     @Test
     public void shouldAcquireNodeLocksWhenDeletingRelationshipInOrderOfAscendingId() throws Exception
@@ -492,6 +534,16 @@ public class LockingStatementOperationsTest
         order.verify( entityWriteOps ).nodeDetachDelete( state, nodeId );
     }
 
+    @SuppressWarnings( "unchecked" )
+    private void givenNode( long nodeId, boolean dense ) throws EntityNotFoundException
+    {
+        NodeItem node = mock( NodeItem.class );
+        when( node.isDense() ).thenReturn( dense );
+        Cursor<NodeItem> cursor = mock( Cursor.class );
+        when( cursor.get() ).thenReturn( node );
+        when( entityReadOps.nodeCursorById( state, nodeId ) ).thenReturn( cursor );
+    }
+
     private static class SimpleTxStateHolder implements TxStateHolder
     {
         private final TxState txState;
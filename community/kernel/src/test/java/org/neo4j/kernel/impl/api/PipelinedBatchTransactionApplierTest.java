@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.neo4j.kernel.impl.locking.LockGroup;
+import org.neo4j.storageengine.api.CommandsToApply;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PipelinedBatchTransactionApplierTest
+{
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldApplyTransactionsInOrderInEveryStage() throws Exception
+    {
+        // GIVEN
+        RecordingApplier primary = new RecordingApplier();
+        RecordingApplier stage1 = new RecordingApplier();
+        RecordingApplier stage2 = new RecordingApplier();
+        PipelinedBatchTransactionApplier applier =
+                new PipelinedBatchTransactionApplier( executor, primary, stage1, stage2 );
+        List<Long> expected = new ArrayList<>();
+
+        // WHEN
+        for ( long txId = 1; txId <= 100; txId++ )
+        {
+            try ( TransactionApplier txApplier = applier.startTx( transaction( txId ), new LockGroup() ) )
+            {
+                expected.add( txId );
+            }
+        }
+        applier.close();
+
+        // THEN
+        assertEquals( expected, primary.transactionIds );
+        assertEquals( expected, stage1.transactionIds );
+        assertEquals( expected, stage2.transactionIds );
+    }
+
+    @Test
+    public void shouldReturnTransactionApplierOfPrimary() throws Exception
+    {
+        // GIVEN
+        TransactionApplier txApplier = mock( TransactionApplier.class );
+        BatchTransactionApplier primary = mock( BatchTransactionApplier.class );
+        when( primary.startTx( any( CommandsToApply.class ), any( LockGroup.class ) ) ).thenReturn( txApplier );
+        PipelinedBatchTransactionApplier applier =
+                new PipelinedBatchTransactionApplier( executor, primary, new RecordingApplier() );
+
+        // WHEN
+        TransactionApplier result = applier.startTx( transaction( 1 ), new LockGroup() );
+
+        // THEN
+        assertSame( txApplier, result );
+        applier.close();
+    }
+
+    @Test
+    public void shouldCloseStagesAndPrimaryOnClose() throws Exception
+    {
+        // GIVEN
+        BatchTransactionApplier primary = mock( BatchTransactionApplier.class );
+        BatchTransactionApplier stage = mock( BatchTransactionApplier.class );
+        when( stage.startTx( any( CommandsToApply.class ) ) ).thenReturn( mock( TransactionApplier.class ) );
+        PipelinedBatchTransactionApplier applier = new PipelinedBatchTransactionApplier( executor, primary, stage );
+        applier.startTx( transaction( 1 ) );
+
+        // WHEN
+        applier.close();
+
+        // THEN
+        verify( stage ).startTx( any( CommandsToApply.class ) );
+        verify( stage ).close();
+        verify( primary ).close();
+    }
+
+    @Test
+    public void shouldThrowStageFailureOnCloseAndStillClosePrimary() throws Exception
+    {
+        // GIVEN
+        IOException failure = new IOException( "Failing stage" );
+        BatchTransactionApplier primary = mock( BatchTransactionApplier.class );
+        BatchTransactionApplier stage = mock( BatchTransactionApplier.class );
+        when( stage.startTx( any( CommandsToApply.class ) ) ).thenThrow( failure );
+        PipelinedBatchTransactionApplier applier = new PipelinedBatchTransactionApplier( executor, primary, stage );
+        applier.startTx( transaction( 1 ) );
+
+        // WHEN
+        try
+        {
+            applier.close();
+            fail( "Should have failed" );
+        }
+        catch ( IOException e )
+        {
+            // THEN
+            assertSame( failure, e );
+        }
+        verify( stage ).close();
+        verify( primary ).close();
+    }
+
+    private static CommandsToApply transaction( long txId )
+    {
+        CommandsToApply transaction = mock( CommandsToApply.class );
+        when( transaction.transactionId() ).thenReturn( txId );
+        return transaction;
+    }
+
+    private static class RecordingApplier extends BatchTransactionApplier.Adapter
+    {
+        private final List<Long> transactionIds = new CopyOnWriteArrayList<>();
+
+        @Override
+        public TransactionApplier startTx( CommandsToApply transaction )
+        {
+            transactionIds.add( transaction.transactionId() );
+            return new TransactionApplier.Adapter();
+        }
+    }
+}
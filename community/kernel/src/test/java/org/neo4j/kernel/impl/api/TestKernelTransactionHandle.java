@@ -109,6 +109,12 @@ public class TestKernelTransactionHandle implements KernelTransactionHandle
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public long transactionStateMemoryUsage()
+    {
+        return 0;
+    }
+
     @Override
     public boolean equals( Object o )
     {
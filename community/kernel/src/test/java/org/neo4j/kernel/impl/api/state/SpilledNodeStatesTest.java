@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.state;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.neo4j.storageengine.api.StorageProperty;
+import org.neo4j.storageengine.api.txstate.NodeState;
+import org.neo4j.test.rule.TestDirectory;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.Iterators.asSet;
+
+public class SpilledNodeStatesTest
+{
+    @Rule
+    public final TestDirectory directory = TestDirectory.testDirectory();
+
+    private final TxState txState = new TxState();
+    private SpilledNodeStates spilled;
+
+    @Before
+    public void createSpilledNodeStates()
+    {
+        spilled = new SpilledNodeStates( directory.directory( "spill" ) );
+    }
+
+    @After
+    public void close()
+    {
+        spilled.close();
+    }
+
+    @Test
+    public void shouldRestoreSpilledLabelAndPropertyChanges() throws Exception
+    {
+        // GIVEN
+        Value[] values = {Values.booleanValue( true ), Values.byteValue( (byte) 3 ), Values.shortValue( (short) 4 ),
+                Values.intValue( 5 ), Values.longValue( 6 ), Values.floatValue( 1.5f ), Values.doubleValue( 2.5 ),
+                Values.charValue( 'x' ), Values.stringValue( "räksmörgås" ),
+                Values.booleanArray( new boolean[]{true, false} ), Values.byteArray( new byte[]{1, 2} ),
+                Values.shortArray( new short[]{3} ), Values.intArray( new int[]{4, 5} ),
+                Values.longArray( new long[]{6} ), Values.floatArray( new float[]{7f} ),
+                Values.doubleArray( new double[]{8d} ), Values.charArray( new char[]{'a', 'b'} ),
+                Values.stringArray( "c", "d" )};
+        NodeStateImpl state = new NodeStateImpl( 42, txState );
+        state.getOrCreateLabelDiffSets().add( 1 );
+        state.getOrCreateLabelDiffSets().remove( 2 );
+        for ( int key = 0; key < values.length; key++ )
+        {
+            state.addProperty( key, values[key] );
+        }
+        state.changeProperty( 100, Values.stringValue( "changed" ) );
+        state.removeProperty( 101, Values.stringValue( "removed" ) );
+
+        // WHEN
+        spilled.spill( state );
+        NodeStateImpl restored = spilled.restore( 42, txState );
+
+        // THEN
+        assertEquals( 42, restored.getId() );
+        assertEquals( asSet( 1 ), restored.labelDiffSets().getAdded() );
+        assertEquals( asSet( 2 ), restored.labelDiffSets().getRemoved() );
+        Map<Integer,Value> added = properties( restored.addedProperties() );
+        assertEquals( values.length, added.size() );
+        for ( int key = 0; key < values.length; key++ )
+        {
+            assertEquals( values[key], added.get( key ) );
+        }
+        Map<Integer,Value> changed = properties( restored.changedProperties() );
+        assertEquals( 1, changed.size() );
+        assertEquals( Values.stringValue( "changed" ), changed.get( 100 ) );
+        assertEquals( asSet( 101 ), asSet( restored.removedProperties() ) );
+        assertFalse( spilled.contains( 42 ) );
+    }
+
+    @Test
+    public void shouldReturnNullWhenRestoringNodeStateThatIsNotSpilled() throws Exception
+    {
+        // GIVEN
+        spilled.spill( nodeStateWithProperty( 1, "one" ) );
+
+        // WHEN
+        NodeStateImpl restored = spilled.restore( 2, txState );
+
+        // THEN
+        assertNull( restored );
+        assertTrue( spilled.contains( 1 ) );
+    }
+
+    @Test
+    public void shouldStreamAllSpilledNodeStates() throws Exception
+    {
+        // GIVEN
+        for ( int id = 0; id < 100; id++ )
+        {
+            spilled.spill( nodeStateWithProperty( id, "node-" + id ) );
+        }
+        spilled.restore( 50, txState );
+
+        // WHEN
+        Set<Long> seen = new HashSet<>();
+        for ( Iterator<NodeState> states = spilled.states( txState ); states.hasNext(); )
+        {
+            NodeState state = states.next();
+            assertTrue( seen.add( state.getId() ) );
+            assertEquals( Values.stringValue( "node-" + state.getId() ),
+                    properties( state.addedProperties() ).get( 0 ) );
+        }
+
+        // THEN
+        assertEquals( 99, seen.size() );
+        assertFalse( seen.contains( 50L ) );
+        assertEquals( 99, spilled.size() );
+    }
+
+    private NodeStateImpl nodeStateWithProperty( long id, String value )
+    {
+        NodeStateImpl state = new NodeStateImpl( id, txState );
+        state.addProperty( 0, Values.stringValue( value ) );
+        return state;
+    }
+
+    private static Map<Integer,Value> properties( Iterator<StorageProperty> properties )
+    {
+        Map<Integer,Value> result = new HashMap<>();
+        while ( properties.hasNext() )
+        {
+            StorageProperty property = properties.next();
+            result.put( property.propertyKeyId(), property.value() );
+        }
+        return result;
+    }
+}
@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.junit.rules.RuleChain;
 import org.junit.rules.TestRule;
 
+import java.io.File;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -38,6 +39,9 @@ import java.util.Set;
 import org.neo4j.cursor.Cursor;
 import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.helpers.collection.Pair;
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.kernel.api.exceptions.Status;
+import org.neo4j.kernel.api.exceptions.TransactionStateMemoryLimitExceededException;
 import org.neo4j.kernel.api.schema.constaints.ConstraintDescriptor;
 import org.neo4j.kernel.api.schema.constaints.ConstraintDescriptorFactory;
 import org.neo4j.kernel.api.schema.constaints.UniquenessConstraintDescriptor;
@@ -46,10 +50,12 @@ import org.neo4j.kernel.api.schema.index.IndexDescriptorFactory;
 import org.neo4j.kernel.api.txstate.TransactionState;
 import org.neo4j.storageengine.api.Direction;
 import org.neo4j.storageengine.api.RelationshipItem;
+import org.neo4j.storageengine.api.txstate.NodeState;
 import org.neo4j.storageengine.api.txstate.ReadableDiffSets;
 import org.neo4j.storageengine.api.txstate.TxStateVisitor;
 import org.neo4j.test.rule.RandomRule;
 import org.neo4j.test.rule.RepeatRule;
+import org.neo4j.test.rule.TestDirectory;
 import org.neo4j.values.storable.Value;
 import org.neo4j.values.storable.ValueTuple;
 import org.neo4j.values.storable.Values;
@@ -74,6 +80,8 @@ import static org.neo4j.kernel.impl.api.state.StubCursors.relationship;
 public class TxStateTest
 {
     public final RandomRule random = new RandomRule();
+    @Rule
+    public final TestDirectory directory = TestDirectory.testDirectory();
 
     @Rule
     public final TestRule repeatWithDifferentRandomization()
@@ -1470,6 +1478,135 @@ public class TxStateTest
         }
     }
 
+    @Test
+    public void shouldGrowEstimatedMemoryUsageWithChanges() throws Exception
+    {
+        // GIVEN
+        TxState state = new TxState();
+        assertEquals( 0, state.estimatedMemoryUsage() );
+
+        // WHEN
+        state.nodeDoCreate( 0 );
+        long afterCreate = state.estimatedMemoryUsage();
+        state.nodeDoAddLabel( 1, 0 );
+        long afterLabel = state.estimatedMemoryUsage();
+        state.nodeDoAddProperty( 0, 1, Values.stringValue( "a short value" ) );
+        long afterShortProperty = state.estimatedMemoryUsage();
+        state.nodeDoAddProperty( 0, 2, Values.stringValue( "a considerably longer value than the short one" ) );
+        long afterLongProperty = state.estimatedMemoryUsage();
+
+        // THEN
+        assertTrue( afterCreate > 0 );
+        assertTrue( afterLabel > afterCreate );
+        // The label created the node state, so the properties only account for themselves
+        assertTrue( afterShortProperty > afterLabel );
+        assertTrue( afterLongProperty - afterShortProperty > afterShortProperty - afterLabel );
+    }
+
+    @Test
+    public void shouldFailChangesBeyondMemoryBudget() throws Exception
+    {
+        // GIVEN
+        TxState state = new TxState( 10_000, null );
+
+        // WHEN
+        int created = 0;
+        try
+        {
+            for ( ; created < 10_000; created++ )
+            {
+                state.nodeDoCreate( created );
+            }
+            fail( "Should have exceeded memory budget" );
+        }
+        catch ( TransactionStateMemoryLimitExceededException e )
+        {
+            // THEN
+            assertEquals( Status.Transaction.TransactionStateMemoryLimitReached, e.status() );
+        }
+        assertTrue( created > 0 );
+        long estimate = state.estimatedMemoryUsage();
+        assertTrue( estimate <= 10_000 );
+        try
+        {
+            state.nodeDoCreate( created );
+            fail( "Should have exceeded memory budget" );
+        }
+        catch ( TransactionStateMemoryLimitExceededException e )
+        {
+            // A refused change doesn't count towards the estimate
+            assertEquals( estimate, state.estimatedMemoryUsage() );
+        }
+    }
+
+    @Test
+    public void shouldNotLimitMemoryUsageWithoutBudget() throws Exception
+    {
+        // GIVEN
+        TxState state = new TxState( 0, null );
+
+        // WHEN
+        for ( int i = 0; i < 10_000; i++ )
+        {
+            state.nodeDoCreate( i );
+            state.nodeDoAddLabel( 1, i );
+        }
+
+        // THEN
+        assertEquals( 10_000, Iterables.count( state.modifiedNodes() ) );
+    }
+
+    @Test
+    public void shouldSpillNodeStatesToStayWithinMemoryBudget() throws Exception
+    {
+        // GIVEN
+        File spillDirectory = new File( directory.directory(), "spill" );
+        TxState state = new TxState( 1_000_000, spillDirectory );
+
+        // WHEN
+        for ( int i = 0; i < 5_000; i++ )
+        {
+            state.nodeDoCreate( i );
+            state.nodeDoAddLabel( 1, i );
+            state.nodeDoAddProperty( i, 1, Values.stringValue( "node-" + i ) );
+        }
+        state.nodeDoChangeProperty( 20, 1, Values.stringValue( "node-20" ), Values.stringValue( "changed" ) );
+        state.nodeDoDelete( 21 );
+
+        // THEN
+        assertTrue( state.estimatedMemoryUsage() <= 1_000_000 );
+        assertEquals( asSet( 1 ), state.nodeStateLabelDiffSets( 10 ).getAdded() );
+        assertEquals( Values.stringValue( "node-10" ), state.getNodeState( 10 ).getAddedProperty( 1 ).value() );
+        Map<Long,Value> names = new HashMap<>();
+        for ( NodeState node : state.modifiedNodes() )
+        {
+            assertEquals( null, names.put( node.getId(), node.getAddedProperty( 1 ).value() ) );
+        }
+        assertEquals( 4_999, names.size() );
+        assertEquals( Values.stringValue( "changed" ), names.get( 20L ) );
+        assertFalse( names.containsKey( 21L ) );
+        assertTrue( spillDirectory.isDirectory() );
+        state.close();
+    }
+
+    @Test
+    public void shouldDeleteLeftOverSpillFiles() throws Exception
+    {
+        // GIVEN
+        File spillDirectory = directory.directory( "spill" );
+        File leftOver = new File( spillDirectory, "neo4j-tx-state123.spill" );
+        File other = new File( spillDirectory, "other" );
+        assertTrue( leftOver.createNewFile() );
+        assertTrue( other.createNewFile() );
+
+        // WHEN
+        TxState.deleteSpillFiles( new DefaultFileSystemAbstraction(), spillDirectory );
+
+        // THEN
+        assertFalse( leftOver.exists() );
+        assertTrue( other.exists() );
+    }
+
     private Map<Long,RelationshipItem> relationshipsForNode( long nodeId, Map<Long,RelationshipItem> allRelationships,
             Direction direction, int[] relationshipTypes )
     {
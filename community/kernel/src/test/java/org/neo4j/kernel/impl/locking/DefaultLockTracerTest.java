@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.kernel.impl.locking.DefaultLockTracer.Monitor;
+import org.neo4j.time.Clocks;
+import org.neo4j.time.FakeClock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class DefaultLockTracerTest
+{
+    private final FakeClock clock = Clocks.fakeClock();
+    private final Monitor monitor = mock( Monitor.class );
+
+    @Test
+    public void shouldCountWaitsAndAccumulatedTotalTime() throws Exception
+    {
+        DefaultLockTracer tracer = new DefaultLockTracer( clock, monitor );
+
+        waitForLock( tracer, true, ResourceTypes.NODE, 20 );
+        waitForLock( tracer, false, ResourceTypes.RELATIONSHIP, 30 );
+
+        assertEquals( 2, tracer.numberOfLockWaits() );
+        assertEquals( 50, tracer.lockWaitAccumulatedTotalTimeMillis() );
+        verify( monitor ).lockWaited( ResourceTypes.NODE, true, TimeUnit.MILLISECONDS.toNanos( 20 ) );
+        verify( monitor ).lockWaited( ResourceTypes.RELATIONSHIP, false, TimeUnit.MILLISECONDS.toNanos( 30 ) );
+    }
+
+    @Test
+    public void shouldKeepHistogramOfWaitTimesPerResourceType() throws Exception
+    {
+        DefaultLockTracer tracer = new DefaultLockTracer( clock, monitor );
+
+        for ( int i = 0; i < 99; i++ )
+        {
+            waitForLock( tracer, true, ResourceTypes.NODE, 1 );
+        }
+        waitForLock( tracer, true, ResourceTypes.NODE, 100 );
+
+        LockWaitHistogram histogram = tracer.lockWaitHistogram( ResourceTypes.NODE );
+        assertEquals( 100, histogram.count() );
+        assertEquals( 1024, histogram.percentileMicros( 50 ) );
+        assertEquals( 1024, histogram.percentileMicros( 99 ) );
+        assertEquals( 131072, histogram.percentileMicros( 100 ) );
+        assertNull( tracer.lockWaitHistogram( ResourceTypes.RELATIONSHIP ) );
+    }
+
+    @Test
+    public void shouldReturnZeroIfNoDataIsAvailable() throws Exception
+    {
+        DefaultLockTracer tracer = new DefaultLockTracer( clock, monitor );
+
+        assertEquals( 0, tracer.numberOfLockWaits() );
+        assertEquals( 0, tracer.lockWaitAccumulatedTotalTimeMillis() );
+        assertEquals( 0, new LockWaitHistogram().percentileMicros( 99 ) );
+        verifyZeroInteractions( monitor );
+    }
+
+    private void waitForLock( DefaultLockTracer tracer, boolean exclusive, ResourceTypes type, long waitMillis )
+    {
+        try ( LockWaitEvent event = tracer.waitForLock( exclusive, type, 42 ) )
+        {
+            clock.forward( waitMillis, TimeUnit.MILLISECONDS );
+        }
+    }
+}
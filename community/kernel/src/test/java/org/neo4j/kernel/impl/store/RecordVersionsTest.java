@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.store;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.neo4j.kernel.api.exceptions.SnapshotTooOldException;
+import org.neo4j.kernel.impl.store.record.DynamicRecord;
+import org.neo4j.kernel.impl.store.record.NodeRecord;
+import org.neo4j.kernel.impl.store.record.PropertyBlock;
+import org.neo4j.kernel.impl.store.record.PropertyRecord;
+import org.neo4j.kernel.impl.store.record.RecordLoad;
+import org.neo4j.values.storable.Values;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.kernel.impl.store.record.RecordLoad.CHECK;
+import static org.neo4j.kernel.impl.store.record.RecordLoad.NORMAL;
+
+public class RecordVersionsTest
+{
+    private final RecordVersions versions = new RecordVersions( 10, () -> 0 );
+
+    @Test
+    public void shouldReadRecordAsOfSnapshot() throws Exception
+    {
+        // given
+        versions.nodes().keep( 5, node( 1, true, 10 ) );
+        versions.nodes().keep( 7, node( 1, true, 20 ) );
+        NodeRecord latest = node( 1, true, 30 );
+
+        // then
+        assertEquals( 10, readNextRel( latest, 4 ) );
+        assertEquals( 20, readNextRel( latest, 5 ) );
+        assertEquals( 20, readNextRel( latest, 6 ) );
+        assertEquals( 30, readNextRel( latest, 7 ) );
+        assertEquals( 30, readNextRel( node( 2, true, 30 ), 4 ) );
+    }
+
+    @Test
+    public void shouldSeeRecordsDeletedAfterSnapshotThroughCursor() throws Exception
+    {
+        // given
+        Map<Long,NodeRecord> store = new HashMap<>();
+        store.put( 1L, node( 1, false, 0 ) );
+        store.put( 2L, node( 2, true, 5 ) );
+        versions.nodes().keep( 3, node( 1, true, 10 ) );
+        versions.nodes().keep( 3, node( 2, false, 0 ) );
+        VersionedRecordCursor<NodeRecord> cursor = new VersionedRecordCursor<>( new MapCursor( store ), versions.nodes(),
+                NodeRecord::getNextRel );
+        NodeRecord record = new NodeRecord( -1 );
+
+        // when
+        cursor.readSnapshot( 2 );
+
+        // then
+        assertTrue( cursor.next( 1, record, NORMAL ) );
+        assertEquals( 10, record.getNextRel() );
+        assertFalse( cursor.next( 2, record, CHECK ) );
+
+        // when
+        cursor.readSnapshot( VersionedRecordCursor.LATEST );
+
+        // then
+        assertFalse( cursor.next( 1, record, CHECK ) );
+        assertTrue( cursor.next( 2, record, CHECK ) );
+        assertEquals( 5, record.getNextRel() );
+    }
+
+    @Test
+    public void shouldDropVersionsOutsideOfRetainedWindow() throws Exception
+    {
+        // given
+        for ( long txId = 1; txId <= 100; txId++ )
+        {
+            versions.nodes().keep( txId, node( txId % 7, true, txId ) );
+        }
+
+        // when
+        versions.prune( 101 );
+
+        // then
+        assertEquals( 9, versions.numberOfVersions() );
+        assertEquals( 98, readNextRel( node( 0, true, 0 ), 91 ) );
+        assertEquals( 92, readNextRel( node( 1, true, 0 ), 91 ) );
+    }
+
+    @Test
+    public void shouldFailReadsOfSnapshotsOlderThanRetainedWindow() throws Exception
+    {
+        // given
+        versions.nodes().keep( 15, node( 1, true, 10 ) );
+        versions.prune( 20 );
+
+        // when
+        assertEquals( 10, readNextRel( node( 1, true, 30 ), 10 ) );
+        try
+        {
+            readNextRel( node( 2, true, 30 ), 9 );
+            fail( "Should have failed" );
+        }
+        catch ( SnapshotTooOldException e )
+        {
+            // then good
+        }
+    }
+
+    @Test
+    public void shouldReadPropertyRecordAsOfSnapshot() throws Exception
+    {
+        // given
+        versions.properties().keep( 5, property( 1, 3, 10 ) );
+        PropertyRecord latest = property( 1, 4, 20 );
+
+        // when
+        PropertyRecord record = latest.clone();
+        versions.properties().read( record, 4 );
+
+        // then
+        assertEquals( 3, record.getNextProp() );
+        PropertyBlock block = record.iterator().next();
+        assertEquals( 0, block.getKeyIndexId() );
+        assertEquals( 10, block.getSingleValueInt() );
+    }
+
+    @Test
+    public void shouldFailReadingDynamicRecordChangedAfterSnapshot() throws Exception
+    {
+        // given
+        versions.propertyStrings().keepChange( 5, 1 );
+        DynamicRecord latest = new DynamicRecord( 1 );
+
+        // then
+        versions.propertyStrings().read( latest, 5 );
+        versions.propertyStrings().read( new DynamicRecord( 2 ), 4 );
+        try
+        {
+            versions.propertyStrings().read( latest, 4 );
+            fail( "Should have failed" );
+        }
+        catch ( SnapshotTooOldException e )
+        {
+            // then good
+        }
+    }
+
+    private long readNextRel( NodeRecord latest, long snapshot )
+    {
+        NodeRecord record = latest.clone();
+        versions.nodes().read( record, snapshot );
+        return record.getNextRel();
+    }
+
+    private static NodeRecord node( long id, boolean inUse, long nextRel )
+    {
+        NodeRecord record = new NodeRecord( id );
+        record.initialize( inUse, -1, false, nextRel, 0 );
+        return record;
+    }
+
+    private static PropertyRecord property( long id, long nextProp, int value )
+    {
+        PropertyRecord record = new PropertyRecord( id );
+        record.initialize( true, -1, nextProp );
+        PropertyBlock block = new PropertyBlock();
+        PropertyStore.encodeValue( block, 0, Values.of( value ), null, null );
+        record.addPropertyBlock( block );
+        return record;
+    }
+
+    private static class MapCursor implements RecordCursor<NodeRecord>
+    {
+        private final Map<Long,NodeRecord> store;
+        private final NodeRecord record = new NodeRecord( -1 );
+
+        MapCursor( Map<Long,NodeRecord> store )
+        {
+            this.store = store;
+        }
+
+        @Override
+        public RecordCursor<NodeRecord> acquire( long id, RecordLoad mode )
+        {
+            return this;
+        }
+
+        @Override
+        public void placeAt( long id, RecordLoad mode )
+        {
+        }
+
+        @Override
+        public boolean next()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean next( long id )
+        {
+            return next( id, record, NORMAL );
+        }
+
+        @Override
+        public boolean next( long id, NodeRecord target, RecordLoad mode )
+        {
+            NodeRecord stored = store.get( id );
+            target.setId( id );
+            target.initialize( stored.inUse(), stored.getNextProp(), stored.isDense(), stored.getNextRel(),
+                    stored.getLabelField() );
+            return mode.verify( target );
+        }
+
+        @Override
+        public NodeRecord get()
+        {
+            return record;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
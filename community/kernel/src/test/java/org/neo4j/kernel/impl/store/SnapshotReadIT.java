@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.helpers.Exceptions;
+import org.neo4j.kernel.api.exceptions.SnapshotTooOldException;
+import org.neo4j.kernel.impl.storageengine.impl.recordstorage.RecordStorageEngine;
+import org.neo4j.test.rule.DatabaseRule;
+import org.neo4j.test.rule.ImpermanentDatabaseRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.kernel.impl.store.record.RecordLoad.NORMAL;
+
+/**
+ * Property and dynamic record ids are reused as soon as they are freed, so a transaction reading a snapshot can
+ * follow a pointer of an old version of a node into a record which by now belongs to another entity.
+ */
+public class SnapshotReadIT
+{
+    @Rule
+    public final DatabaseRule db = new ImpermanentDatabaseRule()
+            .withSetting( GraphDatabaseSettings.snapshot_read_retained_transactions, "100" );
+
+    @Test
+    public void shouldReadPropertiesOfSnapshotWhenTheirRecordsAreReusedByAnotherNode() throws Exception
+    {
+        // GIVEN
+        Node node = createNode();
+        Node other = createNode();
+        executeTransactionInSeparateThread( () ->
+        {
+            node.setProperty( "name", "first" );
+            node.setProperty( "age", 10 );
+        } );
+        long propertyRecord = nextProp( node );
+
+        try ( Transaction tx = db.beginTx() )
+        {
+            // WHEN the properties are removed and their records reused for the properties of another node
+            executeTransactionInSeparateThread( () ->
+            {
+                node.removeProperty( "name" );
+                node.removeProperty( "age" );
+            } );
+            executeTransactionInSeparateThread( () ->
+            {
+                other.setProperty( "name", "second" );
+                other.setProperty( "age", 20 );
+            } );
+            assertEquals( propertyRecord, nextProp( other ) );
+
+            // THEN the snapshot still sees the properties of the node, not the ones of the other node
+            assertEquals( "first", node.getProperty( "name" ) );
+            assertEquals( 10, node.getProperty( "age" ) );
+            assertFalse( other.hasProperty( "name" ) );
+            tx.success();
+        }
+
+        // and a new transaction sees the latest properties
+        try ( Transaction tx = db.beginTx() )
+        {
+            assertFalse( node.hasProperty( "name" ) );
+            assertEquals( "second", other.getProperty( "name" ) );
+            assertEquals( 20, other.getProperty( "age" ) );
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldFailReadingPropertyValueWhoseDynamicRecordsChangedAfterSnapshot() throws Exception
+    {
+        // GIVEN
+        Node node = createNode();
+        executeTransactionInSeparateThread( () -> node.setProperty( "name", longString( 'a' ) ) );
+
+        try ( Transaction tx = db.beginTx() )
+        {
+            // WHEN the value is replaced, so that its dynamic records are deleted and may be reused
+            executeTransactionInSeparateThread( () -> node.setProperty( "name", longString( 'b' ) ) );
+
+            // THEN
+            try
+            {
+                node.getProperty( "name" );
+                fail( "Should have failed" );
+            }
+            catch ( Exception e )
+            {
+                assertTrue( Exceptions.contains( e, SnapshotTooOldException.class ) );
+            }
+        }
+
+        // and a new transaction sees the new value
+        try ( Transaction tx = db.beginTx() )
+        {
+            assertEquals( longString( 'b' ), node.getProperty( "name" ) );
+            tx.success();
+        }
+    }
+
+    private Node createNode()
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node node = db.createNode();
+            tx.success();
+            return node;
+        }
+    }
+
+    private long nextProp( Node node )
+    {
+        NodeStore nodeStore = db.getDependencyResolver().resolveDependency( RecordStorageEngine.class )
+                .testAccessNeoStores().getNodeStore();
+        return nodeStore.getRecord( node.getId(), nodeStore.newRecord(), NORMAL ).getNextProp();
+    }
+
+    private static String longString( char character )
+    {
+        StringBuilder builder = new StringBuilder();
+        for ( int i = 0; i < 200; i++ )
+        {
+            builder.append( character );
+        }
+        return builder.toString();
+    }
+
+    private void executeTransactionInSeparateThread( Runnable actionInsideTransaction ) throws InterruptedException
+    {
+        Thread thread = new Thread( () ->
+        {
+            try ( Transaction tx = db.beginTx() )
+            {
+                actionInsideTransaction.run();
+                tx.success();
+            }
+        } );
+        thread.start();
+        thread.join();
+    }
+}
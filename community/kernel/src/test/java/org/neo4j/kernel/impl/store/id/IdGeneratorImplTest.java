@@ -20,6 +20,9 @@
 package org.neo4j.kernel.impl.store.id;
 
 import java.io.File;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
 
 import org.junit.Rule;
@@ -27,13 +30,16 @@ import org.junit.Test;
 
 import org.neo4j.kernel.impl.store.id.validation.IdCapacityExceededException;
 import org.neo4j.kernel.impl.store.id.validation.NegativeIdException;
+import org.neo4j.test.Race;
 import org.neo4j.test.rule.TestDirectory;
 import org.neo4j.test.rule.fs.EphemeralFileSystemRule;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -206,4 +212,71 @@ public class IdGeneratorImplTest
         // The supplier must have remained untouched
         verifyZeroInteractions( highId );
     }
+
+    @Test
+    public void shouldHandOutUniqueIdsToConcurrentThreads() throws Throwable
+    {
+        // GIVEN
+        IdGeneratorImpl.createGenerator( fsr.get(), file, 0, false );
+        IdGenerator idGenerator = new IdGeneratorImpl( fsr.get(), file, 100, IdGeneratorImpl.INTEGER_MINUS_ONE * 2,
+                false, () -> 0L );
+        idGenerator.setHighId( IdGeneratorImpl.INTEGER_MINUS_ONE - 5_000 );
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int idsPerThread = 1_000;
+
+        // WHEN
+        Race race = new Race();
+        race.addContestants( threads, () ->
+        {
+            for ( int i = 0; i < idsPerThread; i++ )
+            {
+                assertTrue( ids.add( idGenerator.nextId() ) );
+            }
+        } );
+        race.go();
+
+        // THEN
+        assertEquals( threads * idsPerThread, ids.size() );
+        assertEquals( IdGeneratorImpl.INTEGER_MINUS_ONE - 5_000 + threads * idsPerThread + 1,
+                idGenerator.getHighId() );
+        assertFalse( ids.contains( IdGeneratorImpl.INTEGER_MINUS_ONE ) );
+        idGenerator.close();
+    }
+
+    @Test
+    public void shouldNeverHandOutIdInUseWhenConcurrentlyFreeingAndReusingIds() throws Throwable
+    {
+        // GIVEN
+        IdGeneratorImpl.createGenerator( fsr.get(), file, 0, false );
+        IdGenerator idGenerator = new IdGeneratorImpl( fsr.get(), file, 10, 1_000_000, true, () -> 0L );
+        Set<Long> idsInUse = ConcurrentHashMap.newKeySet();
+
+        // WHEN
+        Race race = new Race();
+        race.addContestants( 8, () ->
+        {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long[] held = new long[50];
+            for ( int round = 0; round < 200; round++ )
+            {
+                for ( int i = 0; i < held.length; i++ )
+                {
+                    held[i] = random.nextBoolean() ? idGenerator.nextId()
+                                                   : idGenerator.nextIdBatch( 1 ).iterator().nextId();
+                    assertTrue( "Id " + held[i] + " handed out while still in use", idsInUse.add( held[i] ) );
+                }
+                for ( long id : held )
+                {
+                    idsInUse.remove( id );
+                    idGenerator.freeId( id );
+                }
+            }
+        } );
+        race.go();
+
+        // THEN
+        assertEquals( idGenerator.getHighId(), idGenerator.getDefragCount() );
+        idGenerator.close();
+    }
 }
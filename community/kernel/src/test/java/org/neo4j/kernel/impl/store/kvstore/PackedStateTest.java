@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.store.kvstore;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.neo4j.test.Race;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.test.Race.throwing;
+
+public class PackedStateTest
+{
+    private final File file = new File( "store" );
+
+    @Test
+    public void shouldApplyUpdatesOnTopOfStoredValues() throws Exception
+    {
+        // given
+        Map<Long,Long> stored = new HashMap<>();
+        stored.put( 7L, 100L );
+        PackedState<Long> state = new PackedState<>( new Store( 42, stored ), file );
+
+        // when
+        try ( EntryUpdater<Long> updater = state.updater( 43, lock() ) )
+        {
+            updater.apply( 7L, increment( 5 ) );
+            updater.apply( 8L, increment( 3 ) );
+            updater.apply( 8L, increment( 3 ) );
+        }
+
+        // then
+        assertEquals( Long.valueOf( 105 ), valueOf( state, 7 ) );
+        assertEquals( Long.valueOf( 6 ), valueOf( state, 8 ) );
+        assertNull( valueOf( state, 9 ) );
+        assertTrue( state.hasChanges() );
+        assertEquals( 43, state.version() );
+        assertEquals( 1, state.applied() );
+    }
+
+    @Test
+    public void shouldNotLoseAnyConcurrentUpdates() throws Throwable
+    {
+        // given
+        PackedState<Long> state = new PackedState<>( new Store( 0, new HashMap<>() ), file );
+        int threads = 8;
+        int keys = 5_000;
+        int rounds = 10;
+
+        // when
+        Race race = new Race();
+        for ( int t = 0; t < threads; t++ )
+        {
+            long version = t + 1;
+            race.addContestant( throwing( () ->
+            {
+                try ( EntryUpdater<Long> updater = state.updater( version, lock() ) )
+                {
+                    for ( int round = 0; round < rounds; round++ )
+                    {
+                        for ( long key = 0; key < keys; key++ )
+                        {
+                            updater.apply( key, increment( 1 ) );
+                        }
+                    }
+                }
+            } ) );
+        }
+        race.go();
+
+        // then
+        for ( long key = 0; key < keys; key++ )
+        {
+            assertEquals( Long.valueOf( threads * rounds ), valueOf( state, key ) );
+        }
+        assertEquals( threads, state.applied() );
+    }
+
+    @Test
+    public void shouldProvideChangesMergedWithStoreInKeyOrder() throws Exception
+    {
+        // given
+        Map<Long,Long> stored = new HashMap<>();
+        stored.put( 3L, 30L );
+        PackedState<Long> state = new PackedState<>( new Store( 0, stored ), file );
+        int keys = 10_000;
+        try ( EntryUpdater<Long> updater = state.updater( 1, lock() ) )
+        {
+            for ( long key = keys - 1; key >= -keys; key-- )
+            {
+                updater.apply( key, increment( 1 ) );
+            }
+        }
+
+        // when
+        BigEndianByteArrayBuffer key = new BigEndianByteArrayBuffer( 16 );
+        BigEndianByteArrayBuffer value = new BigEndianByteArrayBuffer( 16 );
+        int count = 0;
+        try ( DataProvider provider = state.dataProvider() )
+        {
+            // then
+            long expected = 0;
+            while ( provider.visit( key, value ) )
+            {
+                assertEquals( expected, key.getLong( 0 ) );
+                assertEquals( expected == 3 ? 31 : 1, value.getLong( 8 ) );
+                count++;
+                expected = expected == keys - 1 ? -keys : expected + 1;
+            }
+        }
+        assertEquals( keys * 2, count );
+    }
+
+    @Test
+    public void shouldKeepUpdatesBeyondRotationThresholdOutOfRotatedState() throws Exception
+    {
+        // given
+        PackedState<Long> state = new PackedState<>( new Store( 0, new HashMap<>() ), file );
+        try ( EntryUpdater<Long> updater = state.updater( 1, lock() ) )
+        {
+            updater.apply( 1L, increment( 10 ) );
+        }
+
+        // when
+        PrototypeState<Long> prototype = state.prototype( 1 );
+        try ( EntryUpdater<Long> updater = prototype.updater( 2, lock() ) )
+        {
+            updater.apply( 1L, increment( 5 ) );
+            updater.apply( 2L, increment( 7 ) );
+        }
+
+        // then
+        assertEquals( Long.valueOf( 10 ), valueOf( state, 1 ) );
+        assertNull( valueOf( state, 2 ) );
+        ActiveState<Long> rotated = prototype.create( new Store( 1, new HashMap<>() ), file );
+        assertEquals( Long.valueOf( 15 ), valueOf( rotated, 1 ) );
+        assertEquals( Long.valueOf( 7 ), valueOf( rotated, 2 ) );
+        assertEquals( 2, rotated.version() );
+    }
+
+    @Test
+    public void shouldNotTrackChangesForAlreadyStoredVersions() throws Exception
+    {
+        // given
+        PackedState<Long> state = new PackedState<>( new Store( 5, new HashMap<>() ), file );
+
+        // when
+        try ( EntryUpdater<Long> updater = state.updater( 5, lock() ) )
+        {
+            updater.apply( 1L, increment( 1 ) );
+        }
+
+        // then
+        assertNull( valueOf( state, 1 ) );
+        assertFalse( state.hasChanges() );
+    }
+
+    private static Lock lock()
+    {
+        return new ReentrantLock();
+    }
+
+    private static ValueUpdate increment( long delta )
+    {
+        return target -> target.putLong( 8, target.getLong( 8 ) + delta );
+    }
+
+    private static Long valueOf( ReadableState<Long> state, long key ) throws IOException
+    {
+        long[] value = new long[1];
+        boolean found = state.lookup( key, new ValueSink()
+        {
+            @Override
+            protected void value( ReadableBuffer buffer )
+            {
+                value[0] = buffer.getLong( 8 );
+            }
+        } );
+        return found ? value[0] : null;
+    }
+
+    private static class Store extends ReadableState<Long> implements KeyFormat<Long>
+    {
+        private final long version;
+        private final Map<Long,Long> values;
+
+        Store( long version, Map<Long,Long> values )
+        {
+            this.version = version;
+            this.values = values;
+        }
+
+        @Override
+        protected KeyFormat<Long> keyFormat()
+        {
+            return this;
+        }
+
+        @Override
+        protected Headers headers()
+        {
+            return null;
+        }
+
+        @Override
+        protected long version()
+        {
+            return version;
+        }
+
+        @Override
+        protected boolean lookup( Long key, ValueSink sink ) throws IOException
+        {
+            Long value = values.get( key );
+            if ( value == null )
+            {
+                return false;
+            }
+            sink.value( new BigEndianByteArrayBuffer( 16 ).putLong( 8, value ) );
+            return true;
+        }
+
+        @Override
+        protected DataProvider dataProvider() throws IOException
+        {
+            Long[] keys = values.keySet().stream().sorted().toArray( Long[]::new );
+            return new DataProvider()
+            {
+                int i;
+
+                @Override
+                public boolean visit( WritableBuffer key, WritableBuffer value ) throws IOException
+                {
+                    if ( i < keys.length )
+                    {
+                        writeKey( keys[i], key );
+                        value.putLong( 0, 0 ).putLong( 8, values.get( keys[i++] ) );
+                        return true;
+                    }
+                    return false;
+                }
+
+                @Override
+                public void close() throws IOException
+                {
+                }
+            };
+        }
+
+        @Override
+        protected int storedEntryCount()
+        {
+            return values.size();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+
+        @Override
+        public void writeKey( Long key, WritableBuffer buffer )
+        {
+            buffer.putLong( 0, key ).putLong( 8, 0 );
+        }
+
+        @Override
+        public int keySize()
+        {
+            return 16;
+        }
+
+        @Override
+        public int valueSize()
+        {
+            return 16;
+        }
+
+        @Override
+        public long version( Headers headers )
+        {
+            return version;
+        }
+
+        @Override
+        public DataProvider filter( DataProvider provider )
+        {
+            return provider;
+        }
+    }
+}
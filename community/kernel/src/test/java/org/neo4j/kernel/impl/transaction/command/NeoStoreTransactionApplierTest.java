@@ -314,6 +314,36 @@ public class NeoStoreTransactionApplierTest
         verify( propertyStore, times( 1 ) ).updateRecord( after );
     }
 
+    @Test
+    public void shouldAcquireNodeLockOnlyOnceForNodeAndItsPropertyCommands() throws Exception
+    {
+        // given
+        final BatchTransactionApplier applier = newApplier( false );
+        final NodeRecord node = new NodeRecord( 42 );
+        node.setInUse( true );
+        final Command nodeCommand = new Command.NodeCommand( new NodeRecord( 42 ), node );
+        final PropertyRecord firstProperty = new PropertyRecord( 11 );
+        firstProperty.setNodeId( 42 );
+        final Command firstPropertyCommand = new Command.PropertyCommand( new PropertyRecord( 11 ), firstProperty );
+        final PropertyRecord secondProperty = new PropertyRecord( 12 );
+        secondProperty.setNodeId( 42 );
+        final Command secondPropertyCommand = new Command.PropertyCommand( new PropertyRecord( 12 ), secondProperty );
+
+        // when
+        boolean result = apply( applier, txApplier ->
+                nodeCommand.handle( txApplier ) |
+                firstPropertyCommand.handle( txApplier ) |
+                secondPropertyCommand.handle( txApplier ), transactionToApply );
+
+        // then
+        assertFalse( result );
+
+        verify( lockService, times( 1 ) ).acquireNodeLock( 42, LockService.LockType.WRITE_LOCK );
+        verify( nodeStore, times( 1 ) ).updateRecord( node );
+        verify( propertyStore, times( 1 ) ).updateRecord( firstProperty );
+        verify( propertyStore, times( 1 ) ).updateRecord( secondProperty );
+    }
+
     @Test
     public void shouldApplyNodePropertyCommandToTheStoreInRecovery() throws Exception
     {
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.command;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.neo4j.kernel.impl.store.PropertyStore;
+import org.neo4j.kernel.impl.store.record.PropertyBlock;
+import org.neo4j.kernel.impl.store.record.PropertyRecord;
+import org.neo4j.kernel.impl.transaction.log.InMemoryClosableChannel;
+import org.neo4j.values.storable.Values;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PhysicalLogCommandReaderV3_3Test
+{
+    @Test
+    public void shouldWritePropertyCommandWithUnchangedBlocksAsDelta() throws Exception
+    {
+        // Given
+        PropertyRecord before = propertyRecord( 5, 42 );
+        before.addPropertyBlock( property( 1, 10 ) );
+        before.addPropertyBlock( property( 2, 20 ) );
+        before.addPropertyBlock( property( 3, 30 ) );
+        PropertyRecord after = before.clone();
+        after.removePropertyBlock( 2 );
+        after.addPropertyBlock( property( 2, 21 ) );
+
+        // When
+        Command.PropertyCommand command = serializeAndRead( new Command.PropertyCommand( before, after ),
+                NeoCommandType.PROP_DELTA_COMMAND );
+
+        // Then
+        assertSameRecord( before, command.getBefore() );
+        assertSameRecord( after, command.getAfter() );
+    }
+
+    @Test
+    public void shouldWritePropertyCommandWithChangedHeaderAsDelta() throws Exception
+    {
+        // Given
+        PropertyRecord before = propertyRecord( 5, 42 );
+        before.addPropertyBlock( property( 1, 10 ) );
+        PropertyRecord after = before.clone();
+        after.setNextProp( 6 );
+        after.setPrevProp( 4 );
+        after.addPropertyBlock( property( 2, 20 ) );
+
+        // When
+        Command.PropertyCommand command = serializeAndRead( new Command.PropertyCommand( before, after ),
+                NeoCommandType.PROP_DELTA_COMMAND );
+
+        // Then
+        assertSameRecord( before, command.getBefore() );
+        assertSameRecord( after, command.getAfter() );
+    }
+
+    @Test
+    public void shouldWritePropertyCommandWithoutUnchangedBlocksInFull() throws Exception
+    {
+        // Given
+        PropertyRecord before = new PropertyRecord( 5 );
+        PropertyRecord after = propertyRecord( 5, 42 );
+        after.addPropertyBlock( property( 1, 10 ) );
+
+        // When
+        Command.PropertyCommand command = serializeAndRead( new Command.PropertyCommand( before, after ),
+                NeoCommandType.PROP_COMMAND );
+
+        // Then
+        assertSameRecord( before, command.getBefore() );
+        assertSameRecord( after, command.getAfter() );
+    }
+
+    private static Command.PropertyCommand serializeAndRead( Command.PropertyCommand command, byte expectedType )
+            throws IOException
+    {
+        InMemoryClosableChannel channel = new InMemoryClosableChannel();
+        command.serialize( channel );
+        assertEquals( expectedType, channel.get() );
+
+        channel = new InMemoryClosableChannel();
+        command.serialize( channel );
+        Command read = new PhysicalLogCommandReaderV3_3().read( channel );
+        assertTrue( read instanceof Command.PropertyCommand );
+        return (Command.PropertyCommand) read;
+    }
+
+    private static PropertyRecord propertyRecord( long id, long nodeId )
+    {
+        PropertyRecord record = new PropertyRecord( id );
+        record.setInUse( true );
+        record.setNodeId( nodeId );
+        return record;
+    }
+
+    private static PropertyBlock property( int key, int value )
+    {
+        PropertyBlock block = new PropertyBlock();
+        PropertyStore.encodeValue( block, key, Values.of( value ), null, null );
+        return block;
+    }
+
+    private static void assertSameRecord( PropertyRecord expected, PropertyRecord actual )
+    {
+        assertEquals( expected.getId(), actual.getId() );
+        assertEquals( expected.inUse(), actual.inUse() );
+        assertEquals( expected.getNodeId(), actual.getNodeId() );
+        assertEquals( expected.getNextProp(), actual.getNextProp() );
+        assertEquals( expected.getPrevProp(), actual.getPrevProp() );
+        List<long[]> expectedBlocks = valueBlocks( expected );
+        List<long[]> actualBlocks = valueBlocks( actual );
+        assertEquals( expectedBlocks.size(), actualBlocks.size() );
+        for ( int i = 0; i < expectedBlocks.size(); i++ )
+        {
+            assertArrayEquals( expectedBlocks.get( i ), actualBlocks.get( i ) );
+        }
+    }
+
+    private static List<long[]> valueBlocks( PropertyRecord record )
+    {
+        List<long[]> blocks = new ArrayList<>();
+        for ( PropertyBlock block : record )
+        {
+            blocks.add( block.getValueBlocks() );
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.kernel.impl.transaction.log.LastCheckPointFile.LastCheckPoint;
+import org.neo4j.test.rule.fs.EphemeralFileSystemRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LastCheckPointFileTest
+{
+    @Rule
+    public final EphemeralFileSystemRule fsRule = new EphemeralFileSystemRule();
+    private final File directory = new File( "/somewhere" );
+
+    private FileSystemAbstraction fs;
+    private PhysicalLogFiles logFiles;
+
+    @Before
+    public void setUp()
+    {
+        fs = fsRule.get();
+        fs.mkdirs( directory );
+        logFiles = new PhysicalLogFiles( directory, fs );
+    }
+
+    @Test
+    public void shouldReadNothingIfNoCheckPointRecorded() throws Exception
+    {
+        // WHEN
+        LastCheckPoint lastCheckPoint = new LastCheckPointFile( fs, logFiles ).read();
+
+        // THEN
+        assertNull( lastCheckPoint );
+    }
+
+    @Test
+    public void shouldReadLatestRecordedCheckPoint() throws Exception
+    {
+        // GIVEN
+        LastCheckPointFile file = new LastCheckPointFile( fs, logFiles );
+        file.write( new LogPosition( 3, 1234 ), 42 );
+        file.write( new LogPosition( 4, 567 ), 43 );
+
+        // WHEN
+        LastCheckPoint lastCheckPoint = new LastCheckPointFile( fs, logFiles ).read();
+
+        // THEN
+        assertEquals( new LogPosition( 4, 567 ), lastCheckPoint.checkPointedPosition );
+        assertEquals( 43, lastCheckPoint.lastTransactionId );
+    }
+
+    @Test
+    public void shouldReadNothingFromCorruptFile() throws Exception
+    {
+        // GIVEN
+        LastCheckPointFile file = new LastCheckPointFile( fs, logFiles );
+        file.write( new LogPosition( 3, 1234 ), 42 );
+        try ( StoreChannel channel = fs.open( logFiles.getLastCheckPointFile(), "rw" ) )
+        {
+            channel.writeAll( ByteBuffer.wrap( new byte[]{1, 2, 3} ), Long.BYTES );
+        }
+
+        // WHEN
+        LastCheckPoint lastCheckPoint = file.read();
+
+        // THEN
+        assertNull( lastCheckPoint );
+    }
+
+    @Test
+    public void shouldReadNothingFromPartiallyWrittenFile() throws Exception
+    {
+        // GIVEN
+        LastCheckPointFile file = new LastCheckPointFile( fs, logFiles );
+        file.write( new LogPosition( 3, 1234 ), 42 );
+        try ( StoreChannel channel = fs.open( logFiles.getLastCheckPointFile(), "rw" ) )
+        {
+            channel.truncate( LastCheckPointFile.RECORD_SIZE - 1 );
+        }
+
+        // WHEN
+        LastCheckPoint lastCheckPoint = file.read();
+
+        // THEN
+        assertNull( lastCheckPoint );
+    }
+}
@@ -383,9 +383,61 @@ public class LogTailScannerTest
         assertLatestCheckPoint( true, true, txId, startLogVersion, logTailInformation );
     }
 
+    @Test
+    public void recordedLastCheckPointWithCommitsAfter() throws Throwable
+    {
+        // given
+        long txId = 5;
+        StartEntry start = start();
+        Map<Entry,LogPosition> positions = setupLogFiles(
+                logFile( start(), commit( txId - 1 ) ),
+                logFile( start, commit( txId ), checkPoint( start ) ) );
+        new LastCheckPointFile( fsRule.get(), logFiles ).write( positions.get( start ), txId - 1 );
+
+        // when
+        LogTailInformation logTailInformation = tailScanner.getTailInformation();
+
+        // then
+        assertLatestCheckPoint( true, true, txId, endLogVersion, logTailInformation );
+    }
+
+    @Test
+    public void recordedLastCheckPointFollowedByNewerCheckPoint() throws Throwable
+    {
+        // given
+        StartEntry start = start();
+        Map<Entry,LogPosition> positions = setupLogFiles(
+                logFile( start, commit( 4 ), checkPoint( start ) ),
+                logFile( start(), commit( 5 ), checkPoint() ) );
+        new LastCheckPointFile( fsRule.get(), logFiles ).write( positions.get( start ), 3 );
+
+        // when
+        LogTailInformation logTailInformation = tailScanner.getTailInformation();
+
+        // then
+        assertLatestCheckPoint( true, false, NO_TRANSACTION_ID, endLogVersion, logTailInformation );
+    }
+
+    @Test
+    public void recordedLastCheckPointNotInLogsFallsBackToScanning() throws Throwable
+    {
+        // given
+        long txId = 7;
+        setupLogFiles( logFile( checkPoint(), start(), commit( txId ) ) );
+        LogPosition endOfLog = new LogPosition( endLogVersion,
+                fsRule.get().getFileSize( logFiles.getLogFileForVersion( endLogVersion ) ) );
+        new LastCheckPointFile( fsRule.get(), logFiles ).write( endOfLog, txId );
+
+        // when
+        LogTailInformation logTailInformation = tailScanner.getTailInformation();
+
+        // then
+        assertLatestCheckPoint( true, true, txId, endLogVersion, logTailInformation );
+    }
+
     // === Below is code for helping the tests above ===
 
-    private void setupLogFiles( LogCreator... logFiles ) throws IOException
+    private Map<Entry,LogPosition> setupLogFiles( LogCreator... logFiles ) throws IOException
     {
         Map<Entry,LogPosition> positions = new HashMap<>();
         long version = endLogVersion - logFiles.length;
@@ -393,6 +445,7 @@ public class LogTailScannerTest
         {
             logFile.create( ++version, positions );
         }
+        return positions;
     }
 
     private LogCreator logFile( Entry... entries )
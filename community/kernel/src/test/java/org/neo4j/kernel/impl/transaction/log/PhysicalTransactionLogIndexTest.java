@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.neo4j.graphdb.mockfs.LimitedFilesystemAbstraction;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.logging.AssertableLogProvider;
+import org.neo4j.logging.NullLogProvider;
+import org.neo4j.test.rule.fs.EphemeralFileSystemRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PhysicalTransactionLogIndexTest
+{
+    @Rule
+    public final EphemeralFileSystemRule fsRule = new EphemeralFileSystemRule();
+    private final File directory = new File( "/somewhere" );
+
+    private FileSystemAbstraction fs;
+    private PhysicalLogFiles logFiles;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        fs = fsRule.get();
+        fs.mkdirs( directory );
+        logFiles = new PhysicalLogFiles( directory, fs );
+    }
+
+    @Test
+    public void shouldReturnLogStartForUnindexedTransactions() throws Exception
+    {
+        // GIVEN
+        PhysicalTransactionLogIndex index = newIndex( 10 );
+        for ( long txId = 1; txId <= 5; txId++ )
+        {
+            index.indexTransaction( txId, position( 0, txId ) );
+        }
+
+        // WHEN
+        LogPosition position = index.lookup( 3, LogPosition.start( 0 ) );
+
+        // THEN
+        assertEquals( LogPosition.start( 0 ), position );
+    }
+
+    @Test
+    public void shouldFindClosestIndexedTransactionAtOrBefore() throws Exception
+    {
+        // GIVEN
+        PhysicalTransactionLogIndex index = newIndex( 10 );
+        for ( long txId = 1; txId <= 100; txId++ )
+        {
+            index.indexTransaction( txId, position( 0, txId ) );
+        }
+
+        // THEN
+        assertEquals( position( 0, 10 ), index.lookup( 10, LogPosition.start( 0 ) ) );
+        assertEquals( position( 0, 50 ), index.lookup( 57, LogPosition.start( 0 ) ) );
+        assertEquals( position( 0, 100 ), index.lookup( 105, LogPosition.start( 0 ) ) );
+    }
+
+    @Test
+    public void shouldReadIndexOfPreviousLogVersionsFromDisk() throws Exception
+    {
+        // GIVEN
+        PhysicalTransactionLogIndex index = newIndex( 10 );
+        for ( long txId = 1; txId <= 30; txId++ )
+        {
+            index.indexTransaction( txId, position( 0, txId ) );
+        }
+        for ( long txId = 31; txId <= 60; txId++ )
+        {
+            index.indexTransaction( txId, position( 1, txId ) );
+        }
+        index.shutdown();
+
+        // WHEN
+        PhysicalTransactionLogIndex reopened = newIndex( 10 );
+
+        // THEN
+        assertEquals( position( 0, 20 ), reopened.lookup( 25, LogPosition.start( 0 ) ) );
+        assertEquals( position( 1, 50 ), reopened.lookup( 55, LogPosition.start( 1 ) ) );
+        assertEquals( LogPosition.start( 1 ), reopened.lookup( 35, LogPosition.start( 1 ) ) );
+    }
+
+    @Test
+    public void shouldIgnoreTransactionsAlreadyCoveredByTheIndex() throws Exception
+    {
+        // GIVEN
+        PhysicalTransactionLogIndex index = newIndex( 1 );
+        for ( long txId = 1; txId <= 10; txId++ )
+        {
+            index.indexTransaction( txId, position( 0, txId ) );
+        }
+
+        // WHEN recovery offers some of the transactions again
+        for ( long txId = 5; txId <= 10; txId++ )
+        {
+            index.indexTransaction( txId, position( 0, txId ) );
+        }
+
+        // THEN
+        assertEquals( 10 * PhysicalTransactionLogIndex.ENTRY_SIZE,
+                fs.getFileSize( logFiles.getIndexFileForVersion( 0 ) ) );
+        assertEquals( position( 0, 7 ), index.lookup( 7, LogPosition.start( 0 ) ) );
+    }
+
+    @Test
+    public void shouldForgetEntriesAfterTruncatedPosition() throws Exception
+    {
+        // GIVEN
+        PhysicalTransactionLogIndex index = newIndex( 1 );
+        for ( long txId = 1; txId <= 10; txId++ )
+        {
+            index.indexTransaction( txId, position( 0, txId ) );
+        }
+
+        // WHEN
+        index.truncate( position( 0, 6 ) );
+
+        // THEN
+        assertEquals( position( 0, 5 ), index.lookup( 8, LogPosition.start( 0 ) ) );
+        assertEquals( 5 * PhysicalTransactionLogIndex.ENTRY_SIZE,
+                fs.getFileSize( logFiles.getIndexFileForVersion( 0 ) ) );
+    }
+
+    @Test
+    public void shouldDropEntriesBeyondEndOfLogOnStart() throws Exception
+    {
+        // GIVEN a log shorter than what the index knows about, i.e. the log tail never got forced before a crash
+        PhysicalTransactionLogIndex index = newIndex( 1 );
+        for ( long txId = 1; txId <= 10; txId++ )
+        {
+            index.indexTransaction( txId, position( 0, txId ) );
+        }
+        index.shutdown();
+        try ( StoreChannel log = fs.create( logFiles.getLogFileForVersion( 0 ) ) )
+        {
+            log.writeAll( ByteBuffer.allocate( (int) position( 0, 4 ).getByteOffset() ) );
+        }
+
+        // WHEN
+        PhysicalTransactionLogIndex reopened = newIndex( 1 );
+        reopened.start();
+
+        // THEN
+        assertEquals( position( 0, 3 ), reopened.lookup( 8, LogPosition.start( 0 ) ) );
+    }
+
+    @Test
+    public void shouldIgnoreTrailingPartialEntry() throws Exception
+    {
+        // GIVEN
+        PhysicalTransactionLogIndex index = newIndex( 1 );
+        for ( long txId = 1; txId <= 3; txId++ )
+        {
+            index.indexTransaction( txId, position( 0, txId ) );
+        }
+        index.shutdown();
+        File indexFile = logFiles.getIndexFileForVersion( 0 );
+        fs.truncate( indexFile, fs.getFileSize( indexFile ) - 3 );
+
+        // WHEN
+        PhysicalTransactionLogIndex reopened = newIndex( 1 );
+
+        // THEN
+        assertEquals( position( 0, 2 ), reopened.lookup( 3, LogPosition.start( 0 ) ) );
+    }
+
+    @Test
+    public void shouldDeleteIndexOfPrunedLog() throws Exception
+    {
+        // GIVEN
+        PhysicalTransactionLogIndex index = newIndex( 1 );
+        index.indexTransaction( 1, position( 0, 1 ) );
+        index.indexTransaction( 2, position( 1, 2 ) );
+        assertTrue( fs.fileExists( logFiles.getIndexFileForVersion( 0 ) ) );
+
+        // WHEN
+        index.delete( 0 );
+
+        // THEN
+        assertFalse( fs.fileExists( logFiles.getIndexFileForVersion( 0 ) ) );
+        assertEquals( LogPosition.start( 0 ), index.lookup( 1, LogPosition.start( 0 ) ) );
+    }
+
+    @Test
+    public void shouldKeepWrittenEntriesAndStopIndexingLogVersionWhenFailingToWrite() throws Exception
+    {
+        // GIVEN
+        LimitedFilesystemAbstraction limitedFs = new LimitedFilesystemAbstraction( fs );
+        AssertableLogProvider logProvider = new AssertableLogProvider();
+        PhysicalTransactionLogIndex index = new PhysicalTransactionLogIndex( limitedFs, logFiles, 1, logProvider );
+        index.indexTransaction( 1, position( 0, 1 ) );
+        index.indexTransaction( 2, position( 0, 2 ) );
+
+        // WHEN
+        limitedFs.runOutOfDiskSpace( true );
+        index.indexTransaction( 3, position( 0, 3 ) );
+        limitedFs.runOutOfDiskSpace( false );
+        index.indexTransaction( 4, position( 0, 4 ) );
+        index.indexTransaction( 5, position( 1, 5 ) );
+
+        // THEN
+        logProvider.assertContainsMessageContaining( "Failed to write transaction log index of log version 0" );
+        assertEquals( position( 0, 2 ), index.lookup( 4, LogPosition.start( 0 ) ) );
+        assertEquals( position( 1, 5 ), index.lookup( 5, LogPosition.start( 1 ) ) );
+    }
+
+    private PhysicalTransactionLogIndex newIndex( int transactionsPerEntry )
+    {
+        return new PhysicalTransactionLogIndex( fs, logFiles, transactionsPerEntry, NullLogProvider.getInstance() );
+    }
+
+    private static LogPosition position( long version, long txId )
+    {
+        return new LogPosition( version, LogPosition.start( version ).getByteOffset() + txId * 100 );
+    }
+}
@@ -27,9 +27,11 @@ import java.io.File;
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.kernel.impl.transaction.log.LogFileInformation;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFiles;
+import org.neo4j.kernel.impl.transaction.log.TransactionLogIndex;
 
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -41,6 +43,7 @@ public class ThresholdBasedPruneStrategyTest
     private final LogFileInformation logFileInfo = mock( LogFileInformation.class );
     private final PhysicalLogFiles files = mock( PhysicalLogFiles.class );
     private final Threshold threshold = mock( Threshold.class );
+    private final TransactionLogIndex transactionLogIndex = mock( TransactionLogIndex.class );
 
     @Test
     public void shouldNotDeleteAnythingIfThresholdDoesNotAllow() throws Exception
@@ -71,7 +74,8 @@ public class ThresholdBasedPruneStrategyTest
 
         when( threshold.reached( Matchers.any(), anyLong(), Matchers.any() ) ).thenReturn( false );
 
-        final ThresholdBasedPruneStrategy strategy = new ThresholdBasedPruneStrategy( fileSystem, logFileInfo, files, threshold );
+        final ThresholdBasedPruneStrategy strategy = new ThresholdBasedPruneStrategy( fileSystem, logFileInfo, files,
+                threshold, transactionLogIndex );
 
         // When
         strategy.prune( 7L );
@@ -79,6 +83,7 @@ public class ThresholdBasedPruneStrategyTest
         // Then
         verify( threshold, times( 1 ) ).init();
         verify( fileSystem, times( 0 ) ).deleteFile( Matchers.any() );
+        verify( transactionLogIndex, never() ).delete( anyLong() );
     }
 
     @Test
@@ -118,7 +123,7 @@ public class ThresholdBasedPruneStrategyTest
         when( fileSystem.getFileSize( Matchers.any() ) ).thenReturn( LOG_HEADER_SIZE + 1L );
 
         final ThresholdBasedPruneStrategy strategy = new ThresholdBasedPruneStrategy(
-                fileSystem, logFileInfo, files, threshold
+                fileSystem, logFileInfo, files, threshold, transactionLogIndex
         );
 
         // When
@@ -129,5 +134,9 @@ public class ThresholdBasedPruneStrategyTest
         verify( fileSystem, times( 1 ) ).deleteFile( fileName1 );
         verify( fileSystem, times( 1 ) ).deleteFile( fileName2 );
         verify( fileSystem, times( 1 ) ).deleteFile( fileName3 );
+        verify( transactionLogIndex, times( 1 ) ).delete( 1 );
+        verify( transactionLogIndex, times( 1 ) ).delete( 2 );
+        verify( transactionLogIndex, times( 1 ) ).delete( 3 );
+        verify( transactionLogIndex, never() ).delete( 4 );
     }
 }
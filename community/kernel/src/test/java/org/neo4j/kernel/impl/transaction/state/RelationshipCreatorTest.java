@@ -28,12 +28,14 @@ import java.util.Set;
 
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.kernel.impl.MyRelTypes;
 import org.neo4j.kernel.impl.locking.LockTracer;
 import org.neo4j.kernel.impl.locking.NoOpClient;
 import org.neo4j.kernel.impl.locking.ResourceTypes;
+import org.neo4j.kernel.impl.core.RelationshipTypeTokenHolder;
 import org.neo4j.kernel.impl.storageengine.impl.recordstorage.RecordStorageEngine;
 import org.neo4j.kernel.impl.store.NeoStores;
 import org.neo4j.kernel.impl.store.id.IdGeneratorFactory;
@@ -43,6 +45,7 @@ import org.neo4j.kernel.impl.store.record.NodeRecord;
 import org.neo4j.kernel.impl.store.record.PrimitiveRecord;
 import org.neo4j.kernel.impl.store.record.PropertyKeyTokenRecord;
 import org.neo4j.kernel.impl.store.record.PropertyRecord;
+import org.neo4j.kernel.impl.store.record.Record;
 import org.neo4j.kernel.impl.store.record.RelationshipGroupRecord;
 import org.neo4j.kernel.impl.store.record.RelationshipRecord;
 import org.neo4j.kernel.impl.store.record.RelationshipTypeTokenRecord;
@@ -56,7 +59,12 @@ import org.neo4j.unsafe.batchinsert.internal.DirectRecordAccessSet;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.Iterators.asSet;
+import static org.neo4j.kernel.impl.locking.ResourceTypes.RELATIONSHIP_GROUP_CHAIN_HEAD;
+import static org.neo4j.kernel.impl.locking.ResourceTypes.relationshipGroupResourceId;
 
 public class RelationshipCreatorTest
 {
@@ -94,6 +102,80 @@ public class RelationshipCreatorTest
         assertFalse( tracker.relationshipLocksAcquired.isEmpty() );
     }
 
+    @Test
+    public void shouldOnlyLockGroupOfTypeWhenAddingRelationshipOfExistingTypeToDenseNode() throws Exception
+    {
+        // GIVEN
+        long nodeId = createNodeWithRelationships( DENSE_NODE_THRESHOLD + 1, MyRelTypes.TEST );
+        int type = relationshipTypeId( MyRelTypes.TEST );
+        NeoStores neoStores = flipToNeoStores();
+
+        GroupLockTracker locks = new GroupLockTracker();
+        RecordAccessSet records = new DirectRecordAccessSet( neoStores );
+        RelationshipCreator relationshipCreator = new RelationshipCreator(
+                new RelationshipGroupGetter( neoStores.getRelationshipGroupStore() ), DENSE_NODE_THRESHOLD, true );
+
+        // WHEN
+        relationshipCreator.relationshipCreate( idGeneratorFactory.get( IdType.RELATIONSHIP ).nextId(), type,
+                nodeId, nodeId, records, locks );
+
+        // THEN
+        assertEquals( asSet( relationshipGroupResourceId( nodeId, type ) ), locks.groupLocksAcquired );
+        assertNull( records.getNodeRecords().getIfLoaded( nodeId ) );
+    }
+
+    @Test
+    public void shouldLockPreviousGroupWhenLinkingInNewGroupOfDenseNode() throws Exception
+    {
+        // GIVEN
+        long nodeId = createNodeWithRelationships( DENSE_NODE_THRESHOLD + 1, MyRelTypes.TEST );
+        int type = relationshipTypeId( MyRelTypes.TEST );
+        int newType = relationshipTypeId( MyRelTypes.TEST2 );
+        NeoStores neoStores = flipToNeoStores();
+
+        GroupLockTracker locks = new GroupLockTracker();
+        RecordAccessSet records = new DirectRecordAccessSet( neoStores );
+        RelationshipCreator relationshipCreator = new RelationshipCreator(
+                new RelationshipGroupGetter( neoStores.getRelationshipGroupStore() ), DENSE_NODE_THRESHOLD, true );
+
+        // WHEN
+        relationshipCreator.relationshipCreate( idGeneratorFactory.get( IdType.RELATIONSHIP ).nextId(), newType,
+                nodeId, nodeId, records, locks );
+
+        // THEN
+        assertEquals( asSet( relationshipGroupResourceId( nodeId, newType ), relationshipGroupResourceId( nodeId, type ) ),
+                locks.groupLocksAcquired );
+        assertNull( records.getNodeRecords().getIfLoaded( nodeId ) );
+    }
+
+    @Test
+    public void shouldLockChainHeadAndChangeDenseNodeWhenLinkingInNewFirstGroup() throws Exception
+    {
+        // GIVEN
+        int firstType = relationshipTypeId( MyRelTypes.TEST );
+        int type = relationshipTypeId( MyRelTypes.TEST2 );
+        long nodeId = createNodeWithRelationships( DENSE_NODE_THRESHOLD + 1, MyRelTypes.TEST2 );
+        NeoStores neoStores = flipToNeoStores();
+
+        GroupLockTracker locks = new GroupLockTracker();
+        RecordAccessSet records = new DirectRecordAccessSet( neoStores );
+        RelationshipCreator relationshipCreator = new RelationshipCreator(
+                new RelationshipGroupGetter( neoStores.getRelationshipGroupStore() ), DENSE_NODE_THRESHOLD, true );
+
+        // WHEN
+        relationshipCreator.relationshipCreate( idGeneratorFactory.get( IdType.RELATIONSHIP ).nextId(), firstType,
+                nodeId, nodeId, records, locks );
+
+        // THEN
+        assertEquals( asSet( relationshipGroupResourceId( nodeId, firstType ),
+                relationshipGroupResourceId( nodeId, RELATIONSHIP_GROUP_CHAIN_HEAD ) ), locks.groupLocksAcquired );
+        NodeRecord node = records.getNodeRecords().getIfLoaded( nodeId ).forReadingLinkage();
+        RelationshipGroupRecord firstGroup = records.getRelGroupRecords().getIfLoaded( node.getNextRel() )
+                .forReadingLinkage();
+        assertEquals( firstType, firstGroup.getType() );
+        assertNotEquals( Record.NO_NEXT_RELATIONSHIP.intValue(), firstGroup.getNext() );
+    }
+
     private NeoStores flipToNeoStores()
     {
         return dbRule.getGraphDatabaseAPI().getDependencyResolver().resolveDependency(
@@ -101,6 +183,11 @@ public class RelationshipCreatorTest
     }
 
     private long createNodeWithRelationships( int count )
+    {
+        return createNodeWithRelationships( count, MyRelTypes.TEST );
+    }
+
+    private long createNodeWithRelationships( int count, RelationshipType type )
     {
         GraphDatabaseService db = dbRule.getGraphDatabaseAPI();
         try ( Transaction tx = db.beginTx() )
@@ -108,13 +195,37 @@ public class RelationshipCreatorTest
             Node node = db.createNode();
             for ( int i = 0; i < count; i++ )
             {
-                node.createRelationshipTo( db.createNode(), MyRelTypes.TEST );
+                node.createRelationshipTo( db.createNode(), type );
             }
             tx.success();
             return node.getId();
         }
     }
 
+    private int relationshipTypeId( RelationshipType type )
+    {
+        return dbRule.getGraphDatabaseAPI().getDependencyResolver().resolveDependency( RelationshipTypeTokenHolder.class )
+                .getOrCreateId( type.name() );
+    }
+
+    static class GroupLockTracker extends NoOpClient
+    {
+        private final Set<Long> groupLocksAcquired = new HashSet<>();
+
+        @Override
+        public void acquireExclusive( LockTracer tracer, ResourceType resourceType, long... resourceIds )
+                throws AcquireLockTimeoutException
+        {
+            if ( resourceType == ResourceTypes.RELATIONSHIP_GROUP )
+            {
+                for ( long resourceId : resourceIds )
+                {
+                    groupLocksAcquired.add( resourceId );
+                }
+            }
+        }
+    }
+
     static class Tracker extends NoOpClient implements RecordAccessSet
     {
         private final RecordAccessSet delegate;
@@ -27,6 +27,8 @@ import org.neo4j.io.pagecache.tracing.PageCacheTracer;
 import org.neo4j.io.pagecache.tracing.cursor.DefaultPageCursorTracerSupplier;
 import org.neo4j.io.pagecache.tracing.cursor.PageCursorTracerSupplier;
 import org.neo4j.kernel.impl.api.DefaultTransactionTracer;
+import org.neo4j.kernel.impl.locking.DefaultLockTracer;
+import org.neo4j.kernel.impl.locking.LockTracer;
 import org.neo4j.kernel.impl.transaction.log.checkpoint.DefaultCheckPointerTracer;
 import org.neo4j.kernel.impl.transaction.tracing.TransactionTracer;
 import org.neo4j.scheduler.JobScheduler;
@@ -106,12 +108,29 @@ public class TracersTest
         assertWarning( "there's nothing like this" );
     }
 
+    @Test
+    public void mustProduceDefaultLockTracerWhenLockWaitTracingIsEnabled() throws Exception
+    {
+        Tracers tracers = new Tracers( "default", log, monitors, jobScheduler, true );
+        assertThat( tracers.lockTracer, instanceOf( DefaultLockTracer.class ) );
+        assertNoWarning();
+    }
+
+    @Test
+    public void mustProduceNullLockTracerForNullImplementationEvenWhenLockWaitTracingIsEnabled() throws Exception
+    {
+        Tracers tracers = new Tracers( "null", log, monitors, jobScheduler, true );
+        assertThat( tracers.lockTracer, is( LockTracer.NONE ) );
+        assertNoWarning();
+    }
+
     private void assertDefaultImplementation( Tracers tracers )
     {
         assertThat( tracers.pageCacheTracer, instanceOf( DefaultPageCacheTracer.class ) );
         assertThat( tracers.transactionTracer, instanceOf( DefaultTransactionTracer.class ) );
         assertThat( tracers.checkPointTracer, instanceOf( DefaultCheckPointerTracer.class ) );
         assertThat( tracers.pageCursorTracerSupplier, instanceOf( DefaultPageCursorTracerSupplier.class ) );
+        assertThat( tracers.lockTracer, is( LockTracer.NONE ) );
     }
 
     private void assertNoWarning()
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import org.apache.commons.lang3.mutable.MutableLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+
+import java.io.File;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.logging.NullLogService;
+import org.neo4j.kernel.impl.store.format.standard.Standard;
+import org.neo4j.kernel.impl.store.record.NodeRecord;
+import org.neo4j.kernel.impl.store.record.RelationshipRecord;
+import org.neo4j.test.rule.PageCacheRule;
+import org.neo4j.test.rule.fs.EphemeralFileSystemRule;
+import org.neo4j.unsafe.impl.batchimport.ImportCheckpoint.Progress;
+import org.neo4j.unsafe.impl.batchimport.store.BatchingNeoStores;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.unsafe.impl.batchimport.AdditionalInitialIds.EMPTY;
+import static org.neo4j.unsafe.impl.batchimport.Configuration.DEFAULT;
+
+public class ImportCheckpointTest
+{
+    private final EphemeralFileSystemRule fsr = new EphemeralFileSystemRule();
+    private final PageCacheRule pageCacheRule = new PageCacheRule();
+
+    @Rule
+    public final RuleChain ruleChain = RuleChain.outerRule( fsr ).around( pageCacheRule );
+
+    private final File storeDir = new File( "dir" ).getAbsoluteFile();
+
+    @Test
+    public void shouldRestoreSavedCheckpoint() throws Exception
+    {
+        // GIVEN
+        ImportCheckpoint checkpoint = new ImportCheckpoint( fsr.get(), storeDir );
+        try ( BatchingNeoStores stores = stores( DEFAULT ) )
+        {
+            stores.getNodeStore().setHighId( 10 );
+            stores.getRelationshipStore().setHighId( 20 );
+            int knows = stores.getRelationshipTypeRepository().getOrCreateId( "KNOWS" );
+            CountingStoreUpdateMonitor monitor = new CountingStoreUpdateMonitor();
+            monitor.entitiesWritten( NodeRecord.class, 10 );
+            monitor.entitiesWritten( RelationshipRecord.class, 20 );
+            monitor.propertiesWritten( 30 );
+
+            // WHEN
+            checkpoint.save( Progress.RELATIONSHIPS_IMPORTED, stores, distribution( "LIKES", 15, knows, 5 ),
+                    monitor );
+        }
+
+        // THEN
+        assertTrue( checkpoint.exists() );
+        try ( BatchingNeoStores stores = stores( resume() ) )
+        {
+            // Records written after the checkpoint are not to be considered
+            stores.getNodeStore().setHighId( 15 );
+            stores.getRelationshipStore().setHighId( 25 );
+            CountingStoreUpdateMonitor monitor = new CountingStoreUpdateMonitor();
+
+            assertEquals( Progress.RELATIONSHIPS_IMPORTED, checkpoint.restore( stores, monitor ) );
+            assertEquals( 10, stores.getNodeStore().getHighId() );
+            assertEquals( 20, stores.getRelationshipStore().getHighId() );
+            assertEquals( 10, monitor.nodesWritten() );
+            assertEquals( 20, monitor.relationshipsWritten() );
+            assertEquals( 30, monitor.propertiesWritten() );
+
+            // Types in the distribution are restored as token ids, in the same order
+            Iterator<Map.Entry<Object,MutableLong>> types = checkpoint.typeDistribution().iterator();
+            Map.Entry<Object,MutableLong> type = types.next();
+            assertEquals( stores.getRelationshipTypeRepository().getOrCreateId( "LIKES" ), type.getKey() );
+            assertEquals( 15, type.getValue().longValue() );
+            type = types.next();
+            assertEquals( stores.getRelationshipTypeRepository().getOrCreateId( "KNOWS" ), type.getKey() );
+            assertEquals( 5, type.getValue().longValue() );
+            assertFalse( types.hasNext() );
+        }
+    }
+
+    @Test
+    public void shouldReplacePreviousCheckpoint() throws Exception
+    {
+        // GIVEN
+        ImportCheckpoint checkpoint = new ImportCheckpoint( fsr.get(), storeDir );
+        CountingStoreUpdateMonitor monitor = new CountingStoreUpdateMonitor();
+        try ( BatchingNeoStores stores = stores( DEFAULT ) )
+        {
+            checkpoint.save( Progress.RELATIONSHIPS_IMPORTED, stores, distribution( "KNOWS", 5 ), monitor );
+
+            // WHEN
+            checkpoint.save( Progress.RELATIONSHIPS_LINKED, stores, null, monitor );
+        }
+
+        // THEN
+        try ( BatchingNeoStores stores = stores( resume() ) )
+        {
+            assertEquals( Progress.RELATIONSHIPS_LINKED, checkpoint.restore( stores, monitor ) );
+            assertEquals( 0, checkpoint.typeDistribution().getNumberOfRelationshipTypes() );
+        }
+    }
+
+    @Test
+    public void shouldHaveNoProgressWithoutCheckpoint() throws Exception
+    {
+        // GIVEN
+        ImportCheckpoint checkpoint = new ImportCheckpoint( fsr.get(), storeDir );
+        try ( BatchingNeoStores stores = stores( DEFAULT ) )
+        {
+            checkpoint.save( Progress.RELATIONSHIPS_IMPORTED, stores, null, new CountingStoreUpdateMonitor() );
+
+            // WHEN
+            checkpoint.delete();
+
+            // THEN
+            assertFalse( checkpoint.exists() );
+            assertEquals( Progress.NONE, checkpoint.restore( stores, new CountingStoreUpdateMonitor() ) );
+        }
+    }
+
+    private BatchingNeoStores stores( Configuration config )
+    {
+        return BatchingNeoStores.batchingNeoStoresWithExternalPageCache( fsr.get(),
+                pageCacheRule.getPageCache( fsr.get() ), PageCacheTracer.NULL,
+                storeDir, Standard.LATEST_RECORD_FORMATS, config, NullLogService.getInstance(), EMPTY,
+                Config.defaults() );
+    }
+
+    private static Configuration resume()
+    {
+        return new Configuration()
+        {
+            @Override
+            public boolean resume()
+            {
+                return true;
+            }
+        };
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static RelationshipTypeDistribution distribution( Object... typesAndCounts )
+    {
+        Map.Entry<Object,MutableLong>[] types = new Map.Entry[typesAndCounts.length / 2];
+        for ( int i = 0; i < types.length; i++ )
+        {
+            types[i] = new AbstractMap.SimpleEntry<>( typesAndCounts[i * 2],
+                    new MutableLong( ((Number) typesAndCounts[i * 2 + 1]).longValue() ) );
+        }
+        return new RelationshipTypeDistribution( types );
+    }
+}
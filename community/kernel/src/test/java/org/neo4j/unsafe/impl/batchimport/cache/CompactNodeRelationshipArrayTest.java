@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.COUNT_MASK;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.DENSE_NODE_CHANGED_MASK;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.SPARSE_COUNT_OFFSET;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.SPARSE_ID_OFFSET;
+import static org.neo4j.unsafe.impl.batchimport.cache.NodeRelationshipCache.SPARSE_NODE_CHANGED_MASK;
+
+public class CompactNodeRelationshipArrayTest
+{
+    @Test
+    public void shouldCalculateIdSize() throws Exception
+    {
+        assertEquals( 1, CompactNodeRelationshipArray.idSize( 0 ) );
+        assertEquals( 1, CompactNodeRelationshipArray.idSize( 254 ) );
+        assertEquals( 2, CompactNodeRelationshipArray.idSize( 255 ) );
+        assertEquals( 4, CompactNodeRelationshipArray.idSize( 100_000_000 ) );
+        assertEquals( 5, CompactNodeRelationshipArray.idSize( 1L << 32 ) );
+        assertEquals( 6, CompactNodeRelationshipArray.idSize( (1L << 48) - 1 ) );
+    }
+
+    @Test
+    public void shouldCalculateCountSize() throws Exception
+    {
+        assertEquals( 1, CompactNodeRelationshipArray.countSize( 1 ) );
+        assertEquals( 1, CompactNodeRelationshipArray.countSize( 50 ) );
+        assertEquals( 1, CompactNodeRelationshipArray.countSize( 62 ) );
+        assertEquals( 2, CompactNodeRelationshipArray.countSize( 63 ) );
+        assertEquals( 3, CompactNodeRelationshipArray.countSize( 100_000 ) );
+        assertEquals( 0, CompactNodeRelationshipArray.countSize( 1 << 23 ) );
+    }
+
+    @Test
+    public void shouldStoreIdsOfAllSizes() throws Exception
+    {
+        for ( int idSize = 1; idSize <= 6; idSize++ )
+        {
+            // GIVEN
+            long maxId = (1L << (idSize * Byte.SIZE)) - 2;
+            try ( CompactNodeRelationshipArray array = newArray( 3, idSize, 1 ) )
+            {
+                // WHEN
+                array.set6ByteLong( 1, SPARSE_ID_OFFSET, maxId );
+                array.set6ByteLong( 2, SPARSE_ID_OFFSET, 1 );
+
+                // THEN
+                assertEquals( -1, array.get6ByteLong( 0, SPARSE_ID_OFFSET ) );
+                assertEquals( maxId, array.get6ByteLong( 1, SPARSE_ID_OFFSET ) );
+                assertEquals( 1, array.get6ByteLong( 2, SPARSE_ID_OFFSET ) );
+                assertEquals( -1, array.getInt( 1, SPARSE_COUNT_OFFSET ) );
+                array.set6ByteLong( 1, SPARSE_ID_OFFSET, -1 );
+                assertEquals( -1, array.get6ByteLong( 1, SPARSE_ID_OFFSET ) );
+            }
+        }
+    }
+
+    @Test
+    public void shouldFailOnTooBigId() throws Exception
+    {
+        try ( CompactNodeRelationshipArray array = newArray( 1, 2, 1 ) )
+        {
+            array.set6ByteLong( 0, SPARSE_ID_OFFSET, 0xFFFE );
+            try
+            {
+                array.set6ByteLong( 0, SPARSE_ID_OFFSET, 0xFFFF );
+                fail( "Should fail" );
+            }
+            catch ( IllegalStateException e )
+            {
+                assertTrue( e.getMessage().contains( "max" ) );
+            }
+        }
+    }
+
+    @Test
+    public void shouldStoreCountsWithChangeBits() throws Exception
+    {
+        for ( int countSize = 1; countSize <= 3; countSize++ )
+        {
+            // GIVEN
+            int maxCount = (1 << (countSize * Byte.SIZE - 2)) - 2;
+            try ( CompactNodeRelationshipArray array = newArray( 2, 4, countSize ) )
+            {
+                // WHEN/THEN
+                assertCount( array, 0 );
+                assertCount( array, 12 );
+                assertCount( array, maxCount );
+                assertCount( array, maxCount | SPARSE_NODE_CHANGED_MASK );
+                assertCount( array, 1 | DENSE_NODE_CHANGED_MASK );
+                assertCount( array, DENSE_NODE_CHANGED_MASK | SPARSE_NODE_CHANGED_MASK );
+                assertEquals( -1, array.get6ByteLong( 1, SPARSE_ID_OFFSET ) );
+            }
+        }
+    }
+
+    @Test
+    public void shouldSaturateCountsAboveMax() throws Exception
+    {
+        try ( CompactNodeRelationshipArray array = newArray( 1, 4, 1 ) )
+        {
+            // WHEN
+            array.setInt( 0, SPARSE_COUNT_OFFSET, 1_000 | SPARSE_NODE_CHANGED_MASK );
+
+            // THEN
+            assertEquals( 62 | SPARSE_NODE_CHANGED_MASK, array.getInt( 0, SPARSE_COUNT_OFFSET ) );
+        }
+    }
+
+    @Test
+    public void shouldKeepUnsetCountWhenFlippingChangeBits() throws Exception
+    {
+        try ( CompactNodeRelationshipArray array = newArray( 1, 4, 1 ) )
+        {
+            // GIVEN
+            assertEquals( -1, array.getInt( 0, SPARSE_COUNT_OFFSET ) );
+
+            // WHEN
+            int flipped = -1 ^ DENSE_NODE_CHANGED_MASK;
+            array.setInt( 0, SPARSE_COUNT_OFFSET, flipped );
+
+            // THEN
+            assertEquals( flipped, array.getInt( 0, SPARSE_COUNT_OFFSET ) );
+            assertEquals( COUNT_MASK, array.getInt( 0, SPARSE_COUNT_OFFSET ) & COUNT_MASK );
+        }
+    }
+
+    @Test
+    public void shouldAccessCompactItemsAsStored() throws Exception
+    {
+        try ( CompactNodeRelationshipArray array = newArray( 2, 2, 1 ) )
+        {
+            // GIVEN
+            array.set6ByteLong( 1, SPARSE_ID_OFFSET, 0x1234 );
+            array.setInt( 1, SPARSE_COUNT_OFFSET, 5 );
+
+            // WHEN
+            byte[] item = new byte[array.itemSize()];
+            array.get( 1, item );
+
+            // THEN
+            assertEquals( (short) 0x1234, array.getShort( 1, 0 ) );
+            assertEquals( 5, array.getByte( 1, 2 ) );
+            assertEquals( array.getByte( 1, 2 ), item[2] );
+            array.set( 0, item );
+            assertEquals( 0x1234, array.get6ByteLong( 0, SPARSE_ID_OFFSET ) );
+            array.setByte( 0, 2, (byte) 7 );
+            assertEquals( 7, array.getInt( 0, SPARSE_COUNT_OFFSET ) );
+        }
+    }
+
+    private static void assertCount( CompactNodeRelationshipArray array, int value )
+    {
+        array.setInt( 0, SPARSE_COUNT_OFFSET, value );
+        assertEquals( value, array.getInt( 0, SPARSE_COUNT_OFFSET ) );
+    }
+
+    private static CompactNodeRelationshipArray newArray( long length, int idSize, int countSize )
+    {
+        return new CompactNodeRelationshipArray( NumberArrayFactory.HEAP, length, idSize, countSize );
+    }
+}
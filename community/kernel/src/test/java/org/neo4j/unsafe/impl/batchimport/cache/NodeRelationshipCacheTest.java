@@ -547,6 +547,133 @@ public class NodeRelationshipCacheTest
         assertEquals( highCount + 1, nextHighCount );
     }
 
+    @Test
+    public void shouldPutRandomStuffInCompactMode() throws Exception
+    {
+        // GIVEN
+        int typeId = 10;
+        int nodes = 10_000;
+        int highRelationshipId = 1_000_000;
+        PrimitiveLongObjectMap<long[]> key = Primitive.longObjectMap( nodes );
+        cache = new NodeRelationshipCache( NumberArrayFactory.HEAP, 3, 1000, base, true );
+        cache.setHighNodeId( nodes, highRelationshipId );
+        long[] counts = new long[nodes];
+        for ( int i = 0; i < nodes * 2; i++ )
+        {
+            int nodeId = random.nextInt( nodes );
+            counts[nodeId]++;
+            assertEquals( counts[nodeId], cache.incrementCount( nodeId ) );
+        }
+
+        // WHEN
+        for ( int i = 0; i < 100_000; i++ )
+        {
+            long nodeId = random.nextLong( nodes );
+            boolean dense = cache.isDense( nodeId );
+            assertEquals( counts[toIntExact( nodeId )] >= 3, dense );
+            Direction direction = random.among( Direction.values() );
+            long relationshipId = random.nextLong( highRelationshipId );
+            long previousHead = cache.getAndPutRelationship( nodeId, typeId, direction, relationshipId, false );
+            long[] keyIds = key.get( nodeId );
+            int keyIndex = dense ? direction.ordinal() : 0;
+            if ( keyIds == null )
+            {
+                key.put( nodeId, keyIds = minusOneLongs( Direction.values().length ) );
+            }
+            assertEquals( keyIds[keyIndex], previousHead );
+            keyIds[keyIndex] = relationshipId;
+        }
+
+        // THEN
+        for ( int nodeId = 0; nodeId < nodes; nodeId++ )
+        {
+            if ( counts[nodeId] < 3 )
+            {
+                assertEquals( counts[nodeId], cache.getCount( nodeId, typeId, OUTGOING ) );
+            }
+        }
+    }
+
+    @Test
+    public void shouldVisitChangedNodesInCompactMode() throws Exception
+    {
+        // GIVEN
+        int nodes = 10;
+        int typeId = 10;
+        cache = new NodeRelationshipCache( NumberArrayFactory.HEAP, 2, 100, base, true );
+        cache.setHighNodeId( nodes, 100 );
+        for ( long nodeId = 0; nodeId < nodes; nodeId++ )
+        {
+            increment( cache, nodeId, 1 + random.nextInt( 3 ) );
+        }
+        PrimitiveLongSet keySparseChanged = Primitive.longSet( nodes );
+        PrimitiveLongSet keyDenseChanged = Primitive.longSet( nodes );
+        for ( int i = 0; i < nodes / 2; i++ )
+        {
+            long nodeId = random.nextLong( nodes );
+            cache.getAndPutRelationship( nodeId, typeId, Direction.OUTGOING, random.nextLong( 100 ), false );
+            boolean dense = cache.isDense( nodeId );
+            (dense ? keyDenseChanged : keySparseChanged).add( nodeId );
+        }
+
+        // WHEN
+        cache.visitChangedNodes( ( nodeId, array ) ->
+                assertTrue( "Unexpected sparse change reported for " + nodeId, keySparseChanged.remove( nodeId ) ),
+                NodeType.NODE_TYPE_SPARSE );
+        cache.visitChangedNodes( ( nodeId, array ) ->
+                assertTrue( "Unexpected dense change reported for " + nodeId, keyDenseChanged.remove( nodeId ) ),
+                NodeType.NODE_TYPE_DENSE );
+
+        // THEN
+        assertTrue( keySparseChanged.isEmpty() );
+        assertTrue( keyDenseChanged.isEmpty() );
+    }
+
+    @Test
+    public void shouldUseLessMemoryInCompactMode() throws Exception
+    {
+        // GIVEN
+        int nodes = 1_000;
+        NodeRelationshipCache regular = new NodeRelationshipCache( NumberArrayFactory.HEAP, 50, 100, base );
+        cache = new NodeRelationshipCache( NumberArrayFactory.HEAP, 50, 100, base, true );
+
+        // WHEN
+        regular.setHighNodeId( nodes, 10_000 );
+        cache.setHighNodeId( nodes, 10_000 );
+
+        // THEN
+        GatheringMemoryStatsVisitor regularStats = new GatheringMemoryStatsVisitor();
+        regular.acceptMemoryStatsVisitor( regularStats );
+        GatheringMemoryStatsVisitor compactStats = new GatheringMemoryStatsVisitor();
+        cache.acceptMemoryStatsVisitor( compactStats );
+        regular.close();
+        // 10 bytes per node in the regular cache, 1 count byte and 2 id bytes, or 5 with the high base, in the compact
+        int compactItemSize = base == 0 ? 3 : 6;
+        assertEquals( nodes * (10 - compactItemSize), regularStats.getHeapUsage() - compactStats.getHeapUsage() );
+    }
+
+    @Test
+    public void shouldFailOnTooBigRelationshipIdInCompactMode() throws Exception
+    {
+        // GIVEN
+        int typeId = 10;
+        cache = new NodeRelationshipCache( NumberArrayFactory.HEAP, 1, 100, 0, true );
+        cache.setHighNodeId( 1, 100 );
+
+        // WHEN
+        cache.getAndPutRelationship( 0, typeId, OUTGOING, 254, false );
+        try
+        {
+            cache.getAndPutRelationship( 0, typeId, OUTGOING, 255, false );
+            fail( "Should fail" );
+        }
+        catch ( IllegalStateException e )
+        {
+            // THEN Good
+            assertTrue( e.getMessage().contains( "max" ) );
+        }
+    }
+
     private void testNode( NodeRelationshipCache link, long node, Direction direction )
     {
         int typeId = 0; // doesn't matter here because it's all sparse
@@ -23,8 +23,10 @@ import org.junit.Test;
 
 import org.neo4j.kernel.impl.store.id.IdGeneratorImpl;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class IdGeneratorsTest
 {
@@ -45,4 +47,34 @@ public class IdGeneratorsTest
             previous = current;
         }
     }
+
+    @Test
+    public void shouldGenerateIdsAboveExistingNodes() throws Exception
+    {
+        // GIVEN
+        IdGenerator generator = IdGenerators.above( IdGenerators.startingFromTheBeginning(), 10 );
+
+        // WHEN/THEN
+        assertEquals( 10, generator.generate( null ) );
+        assertEquals( 11, generator.generate( null ) );
+    }
+
+    @Test
+    public void shouldNotAllowActualIdsOfExistingNodes() throws Exception
+    {
+        // GIVEN
+        IdGenerator generator = IdGenerators.above( IdGenerators.fromInput(), 10 );
+        assertEquals( 10, generator.generate( 10L ) );
+
+        // WHEN
+        try
+        {
+            generator.generate( 9L );
+            fail( "Should have failed" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // THEN good
+        }
+    }
 }
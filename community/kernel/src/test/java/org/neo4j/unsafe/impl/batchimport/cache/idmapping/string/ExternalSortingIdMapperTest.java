@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.cache.idmapping.string;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.test.rule.TestDirectory;
+import org.neo4j.unsafe.impl.batchimport.InputIterable;
+import org.neo4j.unsafe.impl.batchimport.cache.GatheringMemoryStatsVisitor;
+import org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper;
+import org.neo4j.unsafe.impl.batchimport.input.Collector;
+import org.neo4j.unsafe.impl.batchimport.input.Group;
+import org.neo4j.unsafe.impl.batchimport.input.Groups;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.neo4j.helpers.progress.ProgressListener.NONE;
+import static org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMapper.ID_NOT_FOUND;
+import static org.neo4j.unsafe.impl.batchimport.input.Group.GLOBAL;
+import static org.neo4j.unsafe.impl.batchimport.input.SimpleInputIteratorWrapper.wrap;
+
+public class ExternalSortingIdMapperTest
+{
+    @Rule
+    public final TestDirectory directory = TestDirectory.testDirectory();
+
+    @Test
+    public void shouldFindIdsSortedInManyRunsAndMergedInMultiplePasses() throws Exception
+    {
+        // GIVEN
+        IdMapper mapper = mapper( new StringEncoder() );
+        List<Object> idList = new ArrayList<>();
+        for ( int i = 0; i < 10_000; i++ )
+        {
+            idList.add( "id" + (i * 7 % 10_000) );
+        }
+        InputIterable<Object> ids = wrap( "source", idList );
+        putAll( mapper, ids, GLOBAL );
+
+        // WHEN
+        Collector collector = mock( Collector.class );
+        mapper.prepare( ids, collector, NONE );
+
+        // THEN
+        for ( int i = 0; i < idList.size(); i++ )
+        {
+            assertEquals( i, mapper.get( idList.get( i ), GLOBAL ) );
+        }
+        assertEquals( ID_NOT_FOUND, mapper.get( "id10000", GLOBAL ) );
+        verifyNoMoreInteractions( collector );
+        mapper.close();
+    }
+
+    @Test
+    public void shouldReportCollisionsForSameInputId() throws Exception
+    {
+        // GIVEN
+        IdMapper mapper = mapper( new StringEncoder() );
+        InputIterable<Object> ids = wrap( "source", Arrays.<Object>asList( "10", "9", "10" ) );
+        putAll( mapper, ids, GLOBAL );
+
+        // WHEN
+        Collector collector = mock( Collector.class );
+        mapper.prepare( ids, collector, NONE );
+
+        // THEN
+        verify( collector, times( 1 ) ).collectDuplicateNode( "10", 2, GLOBAL.name(), "source:1", "source:3" );
+        verifyNoMoreInteractions( collector );
+        assertEquals( 0L, mapper.get( "10", GLOBAL ) );
+        mapper.close();
+    }
+
+    @Test
+    public void shouldCopeWithCollisionsBasedOnDifferentInputIds() throws Exception
+    {
+        // GIVEN
+        IdMapper mapper = mapper( value -> 12345L );
+        InputIterable<Object> ids = wrap( "source", Arrays.<Object>asList( "10", "9", "8" ) );
+        putAll( mapper, ids, GLOBAL );
+
+        // WHEN
+        Collector collector = mock( Collector.class );
+        mapper.prepare( ids, collector, NONE );
+
+        // THEN
+        verifyNoMoreInteractions( collector );
+        assertEquals( 0L, mapper.get( "10", GLOBAL ) );
+        assertEquals( 1L, mapper.get( "9", GLOBAL ) );
+        assertEquals( 2L, mapper.get( "8", GLOBAL ) );
+        assertEquals( ID_NOT_FOUND, mapper.get( "7", GLOBAL ) );
+        mapper.close();
+    }
+
+    @Test
+    public void shouldOnlyFindInputIdsInSpecificGroup() throws Exception
+    {
+        // GIVEN
+        IdMapper mapper = mapper( new StringEncoder() );
+        InputIterable<Object> ids = wrap( "source", Arrays.<Object>asList( "8", "9", "8" ) );
+        Groups groups = new Groups();
+        Group firstGroup = groups.getOrCreate( "first" );
+        Group secondGroup = groups.getOrCreate( "second" );
+        try ( ResourceIterator<Object> iterator = ids.iterator() )
+        {
+            mapper.put( iterator.next(), 0, firstGroup );
+            mapper.put( iterator.next(), 1, firstGroup );
+            mapper.put( iterator.next(), 2, secondGroup );
+        }
+
+        // WHEN
+        Collector collector = mock( Collector.class );
+        mapper.prepare( ids, collector, NONE );
+
+        // THEN
+        verifyNoMoreInteractions( collector );
+        assertEquals( 0L, mapper.get( "8", firstGroup ) );
+        assertEquals( 1L, mapper.get( "9", firstGroup ) );
+        assertEquals( 2L, mapper.get( "8", secondGroup ) );
+        assertEquals( ID_NOT_FOUND, mapper.get( "9", secondGroup ) );
+        mapper.close();
+    }
+
+    @Test
+    public void shouldAllocateRunsWhenNeededAndReportTheirMemory() throws Exception
+    {
+        // GIVEN
+        IdMapper mapper = new ExternalSortingIdMapper( directory.directory( "id-mapping" ), new StringEncoder() );
+        long emptyHeapUsage = heapUsage( mapper );
+
+        // WHEN
+        InputIterable<Object> ids = wrap( "source", Arrays.<Object>asList( "a", "b", "c" ) );
+        putAll( mapper, ids, GLOBAL );
+
+        // THEN a few entries don't allocate full runs
+        long heapUsage = heapUsage( mapper );
+        assertTrue( heapUsage > emptyHeapUsage );
+        assertTrue( heapUsage < 1_000_000 );
+        mapper.prepare( ids, mock( Collector.class ), NONE );
+        assertEquals( 1L, mapper.get( "b", GLOBAL ) );
+        assertTrue( heapUsage( mapper ) < heapUsage );
+        mapper.close();
+        assertFalse( new File( directory.directory(), "id-mapping" ).exists() );
+    }
+
+    private static long heapUsage( IdMapper mapper )
+    {
+        GatheringMemoryStatsVisitor visitor = new GatheringMemoryStatsVisitor();
+        mapper.acceptMemoryStatsVisitor( visitor );
+        return visitor.getHeapUsage();
+    }
+
+    private IdMapper mapper( Encoder encoder )
+    {
+        // Small runs, blocks and merge factor to exercise multiple runs, blocks and merge passes
+        return new ExternalSortingIdMapper( directory.directory( "id-mapping" ), encoder, 100, 16, 4 );
+    }
+
+    private static void putAll( IdMapper mapper, InputIterable<Object> ids, Group group )
+    {
+        try ( ResourceIterator<Object> iterator = ids.iterator() )
+        {
+            for ( int i = 0; iterator.hasNext(); i++ )
+            {
+                mapper.put( iterator.next(), i, group );
+            }
+        }
+    }
+}
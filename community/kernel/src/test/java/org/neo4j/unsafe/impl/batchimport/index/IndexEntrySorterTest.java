@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.kernel.api.exceptions.index.IndexEntryConflictException;
+import org.neo4j.test.rule.fs.EphemeralFileSystemRule;
+import org.neo4j.unsafe.impl.batchimport.cache.GatheringMemoryStatsVisitor;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IndexEntrySorterTest
+{
+    @Rule
+    public final EphemeralFileSystemRule fs = new EphemeralFileSystemRule();
+
+    private final File directory = new File( "entries" ).getAbsoluteFile();
+
+    @Test
+    public void shouldVisitEntriesInOrderAcrossRuns() throws Exception
+    {
+        // GIVEN
+        try ( IndexEntrySorter sorter = new IndexEntrySorter( fs.get(), directory, "index", false, 3,
+                Long.MAX_VALUE ) )
+        {
+            add( sorter, new Object[] {"d", "a", "c", "b"}, 0, 1, 2, 3 );
+            add( sorter, new Object[] {"a", "e", "c"}, 4, 5, 6 );
+            add( sorter, new Object[] {"b", "a"}, 7, 8 );
+
+            // WHEN
+            List<Long> nodeIds = new ArrayList<>();
+            List<Object> values = new ArrayList<>();
+            sorter.sort( nodeId -> false, ( entryValues, nodeId ) ->
+            {
+                values.add( entryValues[0].asObject() );
+                nodeIds.add( nodeId );
+            } );
+
+            // THEN
+            assertArrayEquals( new Object[] {"a", "a", "a", "b", "b", "c", "c", "d", "e"}, values.toArray() );
+            assertArrayEquals( new Object[] {1L, 4L, 8L, 3L, 7L, 2L, 6L, 0L, 5L}, nodeIds.toArray() );
+            assertEquals( 9, sorter.numberOfEntries() );
+            assertEquals( 5, sorter.numberOfDistinctValues() );
+        }
+    }
+
+    @Test
+    public void shouldOrderByAllValuesOfCompositeEntries() throws Exception
+    {
+        // GIVEN
+        try ( IndexEntrySorter sorter = new IndexEntrySorter( fs.get(), directory, "index", false, 2,
+                Long.MAX_VALUE ) )
+        {
+            sorter.add( new Value[][] {
+                    {Values.of( "b" ), Values.of( 1 )},
+                    {Values.of( "a" ), Values.of( 2 )},
+                    {Values.of( "a" ), Values.of( 1 )},
+                    {Values.of( "b" ), Values.of( 1 )}}, new long[] {0, 1, 2, 3}, 4 );
+
+            // WHEN
+            List<Long> nodeIds = new ArrayList<>();
+            sorter.sort( nodeId -> false, ( values, nodeId ) -> nodeIds.add( nodeId ) );
+
+            // THEN
+            assertArrayEquals( new Object[] {2L, 1L, 0L, 3L}, nodeIds.toArray() );
+            assertEquals( 3, sorter.numberOfDistinctValues() );
+        }
+    }
+
+    @Test
+    public void shouldLeaveOutExcludedNodes() throws Exception
+    {
+        // GIVEN
+        try ( IndexEntrySorter sorter = new IndexEntrySorter( fs.get(), directory, "index", true, 2,
+                Long.MAX_VALUE ) )
+        {
+            add( sorter, new Object[] {10, 20, 10, 30}, 0, 1, 2, 3 );
+
+            // WHEN
+            List<Long> nodeIds = new ArrayList<>();
+            sorter.sort( nodeId -> nodeId == 2, ( values, nodeId ) -> nodeIds.add( nodeId ) );
+
+            // THEN the excluded node doesn't conflict with the other one having the same value
+            assertArrayEquals( new Object[] {0L, 1L, 3L}, nodeIds.toArray() );
+            assertEquals( 3, sorter.numberOfEntries() );
+            assertEquals( 3, sorter.numberOfDistinctValues() );
+        }
+    }
+
+    @Test
+    public void shouldFailOnEqualValuesWhenUnique() throws Exception
+    {
+        // GIVEN
+        try ( IndexEntrySorter sorter = new IndexEntrySorter( fs.get(), directory, "index", true, 2,
+                Long.MAX_VALUE ) )
+        {
+            add( sorter, new Object[] {"x", "y"}, 0, 1 );
+            add( sorter, new Object[] {"z", "y"}, 2, 3 );
+
+            // WHEN
+            try
+            {
+                sorter.sort( nodeId -> false, ( values, nodeId ) -> {} );
+                fail( "Should have failed" );
+            }
+            catch ( IndexEntryConflictException e )
+            {
+                // THEN
+                assertEquals( 1, e.getExistingNodeId() );
+                assertEquals( 3, e.getAddedNodeId() );
+            }
+        }
+    }
+
+    @Test
+    public void shouldDeleteRunsOnClose() throws Exception
+    {
+        // GIVEN
+        IndexEntrySorter sorter = new IndexEntrySorter( fs.get(), directory, "index", false, 2, Long.MAX_VALUE );
+        add( sorter, new Object[] {1L, 2L, 3L, 4L, 5L}, 0, 1, 2, 3, 4 );
+
+        // WHEN
+        sorter.close();
+
+        // THEN
+        File[] files = fs.get().listFiles( directory );
+        assertFalse( files != null && files.length > 0 );
+    }
+
+    @Test
+    public void shouldWriteRunsWhenReachingMaxMemory() throws Exception
+    {
+        // GIVEN
+        int count = 5_000;
+        try ( IndexEntrySorter sorter = new IndexEntrySorter( fs.get(), directory, "index", false, count, 1 ) )
+        {
+            // WHEN
+            for ( int i = 0; i < count; i++ )
+            {
+                add( sorter, new Object[] {count - i}, i );
+            }
+
+            // THEN runs are written long before reaching the max number of entries
+            File[] files = fs.get().listFiles( directory );
+            assertTrue( files != null && files.length > 1 );
+            List<Long> nodeIds = new ArrayList<>();
+            sorter.sort( nodeId -> false, ( values, nodeId ) -> nodeIds.add( nodeId ) );
+            assertEquals( count, nodeIds.size() );
+            for ( int i = 0; i < count; i++ )
+            {
+                assertEquals( count - 1 - i, nodeIds.get( i ).longValue() );
+            }
+        }
+    }
+
+    @Test
+    public void shouldReportHeapUsageOfEntriesInMemory() throws Exception
+    {
+        // GIVEN
+        try ( IndexEntrySorter sorter = new IndexEntrySorter( fs.get(), directory, "index", false, 100,
+                Long.MAX_VALUE ) )
+        {
+            assertEquals( 0, heapUsage( sorter ) );
+
+            // WHEN
+            add( sorter, new Object[] {"a", "b"}, 0, 1 );
+
+            // THEN
+            long heapUsage = heapUsage( sorter );
+            assertTrue( heapUsage > 0 );
+            add( sorter, new Object[] {"c"}, 2 );
+            assertTrue( heapUsage( sorter ) > heapUsage );
+            sorter.sort( nodeId -> false, ( values, nodeId ) -> {} );
+            assertEquals( 0, heapUsage( sorter ) );
+        }
+    }
+
+    @Test
+    public void shouldSortEntriesAddedConcurrently() throws Exception
+    {
+        // GIVEN
+        int threads = 4;
+        int batches = 50;
+        int batchSize = 100;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try ( IndexEntrySorter sorter = new IndexEntrySorter( fs.get(), directory, "index", true, 1_000,
+                Long.MAX_VALUE ) )
+        {
+            // WHEN
+            List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < threads; t++ )
+            {
+                int thread = t;
+                futures.add( executor.submit( () ->
+                {
+                    for ( int b = 0; b < batches; b++ )
+                    {
+                        Object[] values = new Object[batchSize];
+                        long[] nodeIds = new long[batchSize];
+                        for ( int i = 0; i < batchSize; i++ )
+                        {
+                            nodeIds[i] = ((long) b * threads + thread) * batchSize + i;
+                            values[i] = -nodeIds[i];
+                        }
+                        add( sorter, values, nodeIds );
+                    }
+                    return null;
+                } ) );
+            }
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+
+            // THEN
+            int count = threads * batches * batchSize;
+            List<Long> nodeIds = new ArrayList<>();
+            sorter.sort( nodeId -> false, ( values, nodeId ) -> nodeIds.add( nodeId ) );
+            assertEquals( count, nodeIds.size() );
+            for ( int i = 0; i < count; i++ )
+            {
+                assertEquals( count - 1 - i, nodeIds.get( i ).longValue() );
+            }
+            assertEquals( count, sorter.numberOfDistinctValues() );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static long heapUsage( IndexEntrySorter sorter )
+    {
+        GatheringMemoryStatsVisitor visitor = new GatheringMemoryStatsVisitor();
+        sorter.acceptMemoryStatsVisitor( visitor );
+        return visitor.getHeapUsage();
+    }
+
+    private static void add( IndexEntrySorter sorter, Object[] values, long... nodeIds ) throws Exception
+    {
+        Value[][] entries = new Value[values.length][];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            entries[i] = new Value[] {Values.of( values[i] )};
+        }
+        sorter.add( entries, nodeIds, values.length );
+    }
+}
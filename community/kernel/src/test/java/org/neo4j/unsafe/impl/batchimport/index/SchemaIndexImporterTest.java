@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.neo4j.collection.primitive.PrimitiveLongCollections;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+import org.neo4j.kernel.api.index.IndexAccessor;
+import org.neo4j.kernel.api.index.InternalIndexState;
+import org.neo4j.kernel.api.schema.IndexQuery;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.extension.KernelExtensionFactory;
+import org.neo4j.kernel.impl.api.index.inmemory.InMemoryIndexProvider;
+import org.neo4j.kernel.impl.api.index.inmemory.InMemoryIndexProviderFactory;
+import org.neo4j.kernel.impl.api.index.sampling.IndexSamplingConfig;
+import org.neo4j.kernel.impl.logging.NullLogService;
+import org.neo4j.kernel.impl.store.SchemaStorage;
+import org.neo4j.kernel.impl.store.format.standard.Standard;
+import org.neo4j.kernel.impl.store.record.ConstraintRule;
+import org.neo4j.kernel.impl.store.record.IndexRule;
+import org.neo4j.storageengine.api.schema.IndexReader;
+import org.neo4j.test.rule.PageCacheRule;
+import org.neo4j.test.rule.fs.EphemeralFileSystemRule;
+import org.neo4j.unsafe.impl.batchimport.input.InputException;
+import org.neo4j.unsafe.impl.batchimport.store.BatchingNeoStores;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.helpers.collection.Iterators.asList;
+import static org.neo4j.unsafe.impl.batchimport.AdditionalInitialIds.EMPTY;
+import static org.neo4j.unsafe.impl.batchimport.Configuration.DEFAULT;
+import static org.neo4j.unsafe.impl.batchimport.index.SchemaIndexDefinition.index;
+import static org.neo4j.unsafe.impl.batchimport.index.SchemaIndexDefinition.uniquenessConstraint;
+
+public class SchemaIndexImporterTest
+{
+    private final EphemeralFileSystemRule fsr = new EphemeralFileSystemRule();
+    private final PageCacheRule pageCacheRule = new PageCacheRule();
+
+    @Rule
+    public final RuleChain ruleChain = RuleChain.outerRule( fsr ).around( pageCacheRule );
+
+    private final File storeDir = new File( "dir" ).getAbsoluteFile();
+    private final InMemoryIndexProvider provider = new InMemoryIndexProvider();
+
+    @Test
+    public void shouldPopulateIndexesAndWriteSchemaRules() throws Exception
+    {
+        try ( BatchingNeoStores stores = stores();
+              SchemaIndexImporter importer = importer( stores,
+                      index( "Person", "name" ), uniquenessConstraint( "Person", "id" ) ) )
+        {
+            // GIVEN
+            SchemaIndexImporter.Index names = importer.indexes()[0];
+            SchemaIndexImporter.Index ids = importer.indexes()[1];
+            add( names, new Object[] {"Bob", "Alice", "Bob", "Carol"}, 0, 1, 2, 3 );
+            add( ids, new Object[] {1, 2, 3, 4, 5}, 0, 1, 2, 3, 4 );
+
+            // WHEN node 4 has been deleted
+            importer.populate( nodeId -> nodeId == 4 );
+
+            // THEN
+            SchemaStorage schemaStorage = new SchemaStorage( stores.getNeoStores().getSchemaStore() );
+            List<IndexRule> indexRules = asList( schemaStorage.indexesGetAll() );
+            assertEquals( 2, indexRules.size() );
+            IndexRule nameRule = indexRules.get( 0 );
+            IndexRule idRule = indexRules.get( 1 );
+            assertFalse( nameRule.canSupportUniqueConstraint() );
+            assertTrue( idRule.canSupportUniqueConstraint() );
+            Iterator<ConstraintRule> constraints = schemaStorage.constraintsGetAll();
+            assertEquals( idRule.getId(), constraints.next().getOwnedIndex() );
+            assertFalse( constraints.hasNext() );
+
+            assertEquals( InternalIndexState.ONLINE,
+                    provider.getInitialState( nameRule.getId(), nameRule.getIndexDescriptor() ) );
+            assertArrayEquals( new long[] {0, 2}, query( nameRule, names.propertyKeyIds()[0], "Bob" ) );
+            assertArrayEquals( new long[] {1}, query( nameRule, names.propertyKeyIds()[0], "Alice" ) );
+            assertArrayEquals( new long[] {3}, query( idRule, ids.propertyKeyIds()[0], 4 ) );
+            assertArrayEquals( new long[0], query( idRule, ids.propertyKeyIds()[0], 5 ) );
+        }
+    }
+
+    @Test
+    public void shouldFailOnUniquenessConstraintViolation() throws Exception
+    {
+        try ( BatchingNeoStores stores = stores();
+              SchemaIndexImporter importer = importer( stores, uniquenessConstraint( "Person", "id" ) ) )
+        {
+            // GIVEN
+            add( importer.indexes()[0], new Object[] {"a", "b", "a"}, 0, 1, 2 );
+
+            // WHEN
+            try
+            {
+                importer.populate( nodeId -> false );
+                fail( "Should have failed" );
+            }
+            catch ( InputException e )
+            {
+                // THEN
+                assertTrue( e.getMessage().contains( ":Person(id)" ) );
+            }
+        }
+    }
+
+    @Test
+    public void shouldDeleteEntriesOnClose() throws Exception
+    {
+        // GIVEN
+        try ( BatchingNeoStores stores = stores() )
+        {
+            SchemaIndexImporter importer = importer( stores, index( "Person", "name" ) );
+            add( importer.indexes()[0], new Object[] {"a", "b", "c"}, 0, 1, 2 );
+            importer.populate( nodeId -> false );
+
+            // WHEN
+            importer.close();
+
+            // THEN
+            assertFalse( fsr.get().fileExists( new File( storeDir, "index-entries" ) ) );
+        }
+    }
+
+    private long[] query( IndexRule rule, int propertyKeyId, Object value ) throws Exception
+    {
+        try ( IndexAccessor accessor = provider.getOnlineAccessor( rule.getId(), rule.getIndexDescriptor(),
+                new IndexSamplingConfig( Config.defaults() ) );
+              IndexReader reader = accessor.newReader() )
+        {
+            long[] nodeIds = PrimitiveLongCollections.asArray(
+                    reader.query( IndexQuery.exact( propertyKeyId, value ) ) );
+            Arrays.sort( nodeIds );
+            return nodeIds;
+        }
+    }
+
+    private static void add( SchemaIndexImporter.Index index, Object[] values, long... nodeIds ) throws Exception
+    {
+        Value[][] entries = new Value[values.length][];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            entries[i] = new Value[] {Values.of( values[i] )};
+        }
+        index.add( entries, nodeIds, values.length );
+    }
+
+    private SchemaIndexImporter importer( BatchingNeoStores stores, SchemaIndexDefinition... definitions )
+    {
+        Iterable<KernelExtensionFactory<?>> extensions =
+                Collections.singletonList( new InMemoryIndexProviderFactory( provider ) );
+        return new SchemaIndexImporter( Arrays.asList( definitions ), stores, fsr.get(), storeDir,
+                Config.defaults(), NullLogService.getInstance(), extensions, Long.MAX_VALUE, 2 );
+    }
+
+    private BatchingNeoStores stores()
+    {
+        return BatchingNeoStores.batchingNeoStoresWithExternalPageCache( fsr.get(),
+                pageCacheRule.getPageCache( fsr.get() ), PageCacheTracer.NULL,
+                storeDir, Standard.LATEST_RECORD_FORMATS, DEFAULT, NullLogService.getInstance(), EMPTY,
+                Config.defaults() );
+    }
+}
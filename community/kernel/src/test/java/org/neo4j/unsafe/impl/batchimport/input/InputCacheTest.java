@@ -107,6 +107,51 @@ public class InputCacheTest
         assertNoFilesLeftBehind();
     }
 
+    @Test
+    public void shouldCacheAndRetrieveOnlyNodeIds() throws Exception
+    {
+        // GIVEN
+        try ( InputCache cache = new InputCache( fileSystemRule.get(), dir.directory(), Standard.LATEST_RECORD_FORMATS,
+                withMaxProcessors( 50 ), (int) ByteUnit.kibiBytes( 8 ), BATCH_SIZE ) )
+        {
+            List<InputNode> nodes = new ArrayList<>();
+            Randoms random = getRandoms();
+            try ( Receiver<InputNode[],IOException> cacher = cache.cacheNodeIds( MAIN ) )
+            {
+                InputNode[] batch = new InputNode[BATCH_SIZE];
+                for ( int b = 0; b < BATCHES; b++ )
+                {
+                    for ( int i = 0; i < BATCH_SIZE; i++ )
+                    {
+                        InputNode node = randomNode( random );
+                        batch[i] = node;
+                        nodes.add( node );
+                    }
+                    cacher.receive( batch );
+                }
+            }
+
+            // WHEN/THEN
+            try ( InputIterator<InputNode> reader = cache.nodes( MAIN, true ).iterator() )
+            {
+                reader.processors( 50 - reader.processors( 0 ) );
+                Iterator<InputNode> expected = nodes.iterator();
+                while ( expected.hasNext() )
+                {
+                    assertTrue( reader.hasNext() );
+                    InputNode expectedNode = expected.next();
+                    InputNode node = reader.next();
+                    assertEquals( expectedNode.group(), node.group() );
+                    assertEquals( expectedNode.id(), node.id() );
+                    assertArrayEquals( NO_PROPERTIES, node.properties() );
+                    assertArrayEquals( NO_LABELS, node.labels() );
+                }
+                assertFalse( reader.hasNext() );
+            }
+        }
+        assertNoFilesLeftBehind();
+    }
+
     @Test
     public void shouldCacheAndRetrieveRelationships() throws Exception
     {
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.input.binary;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.neo4j.test.rule.TestDirectory;
+import org.neo4j.unsafe.impl.batchimport.InputIterator;
+import org.neo4j.unsafe.impl.batchimport.input.Collector;
+import org.neo4j.unsafe.impl.batchimport.input.Group;
+import org.neo4j.unsafe.impl.batchimport.input.Input;
+import org.neo4j.unsafe.impl.batchimport.input.InputException;
+import org.neo4j.unsafe.impl.batchimport.input.InputNode;
+import org.neo4j.unsafe.impl.batchimport.input.InputRelationship;
+import org.neo4j.unsafe.impl.batchimport.input.csv.IdType;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.neo4j.unsafe.impl.batchimport.input.InputEntity.NO_PROPERTIES;
+import static org.neo4j.unsafe.impl.batchimport.input.InputEntityDecorators.NO_NODE_DECORATOR;
+import static org.neo4j.unsafe.impl.batchimport.input.InputEntityDecorators.NO_RELATIONSHIP_DECORATOR;
+import static org.neo4j.unsafe.impl.batchimport.input.InputEntityDecorators.additiveLabels;
+import static org.neo4j.unsafe.impl.batchimport.input.binary.BinaryFormat.NODES;
+
+public class BinaryInputTest
+{
+    @Rule
+    public final TestDirectory directory = TestDirectory.testDirectory();
+
+    @Test
+    public void shouldReadNodesInManyBlocksFromMultipleFiles() throws Exception
+    {
+        // GIVEN
+        File first = writeNodes( "first", 0, 1_000 );
+        File second = writeNodes( "second", 1_000, 500 );
+        Input input = input( singletonList( new BinaryData<>( NO_NODE_DECORATOR, first, second ) ),
+                IdType.STRING, 4 );
+
+        // WHEN/THEN
+        try ( InputIterator<InputNode> nodes = input.nodes().iterator() )
+        {
+            for ( int i = 0; i < 1_500; i++ )
+            {
+                assertTrue( nodes.hasNext() );
+                InputNode node = nodes.next();
+                assertEquals( "id" + i, node.id() );
+                assertArrayEquals( new String[] {"Person"}, node.labels() );
+                assertArrayEquals( new Object[] {"name", "name" + i, "age", i}, node.properties() );
+                assertEquals( i < 1_000 ? first.getPath() : second.getPath(), node.sourceDescription() );
+                assertEquals( i < 1_000 ? i + 1 : i - 999, node.lineNumber() );
+            }
+            assertFalse( nodes.hasNext() );
+        }
+    }
+
+    @Test
+    public void shouldReadRelationshipsWithGroupsAndTypedValues() throws Exception
+    {
+        // GIVEN
+        File file = directory.file( "rels" );
+        try ( BinaryInputWriter writer = BinaryInputWriter.relationships( new FileOutputStream( file ) ) )
+        {
+            writer.writeRelationship( "Person", 1, "Movie", 2L, "ACTED_IN",
+                    new Object[] {"roles", new String[] {"Neo", "Thomas"}, "year", (short) 1999} );
+            writer.writeRelationship( "Person", 3L, "Person", 4, "KNOWS", NO_PROPERTIES );
+        }
+        Input input = new BinaryInput( singletonList( new BinaryData<>( NO_NODE_DECORATOR ) ),
+                singletonList( new BinaryData<>( NO_RELATIONSHIP_DECORATOR, file ) ), IdType.INTEGER,
+                mock( Collector.class ), 1, true );
+
+        // WHEN/THEN
+        try ( InputIterator<InputRelationship> relationships = input.relationships().iterator() )
+        {
+            InputRelationship relationship = relationships.next();
+            Group person = relationship.startNodeGroup();
+            assertEquals( "Person", person.name() );
+            assertEquals( 1L, relationship.startNode() );
+            assertEquals( "Movie", relationship.endNodeGroup().name() );
+            assertEquals( 2L, relationship.endNode() );
+            assertEquals( "ACTED_IN", relationship.type() );
+            assertArrayEquals( new String[] {"Neo", "Thomas"}, (String[]) relationship.properties()[1] );
+            assertEquals( (short) 1999, relationship.properties()[3] );
+
+            relationship = relationships.next();
+            assertSame( person, relationship.startNodeGroup() );
+            assertSame( person, relationship.endNodeGroup() );
+            assertEquals( 3L, relationship.startNode() );
+            assertEquals( 4L, relationship.endNode() );
+            assertEquals( "KNOWS", relationship.type() );
+            assertSame( NO_PROPERTIES, relationship.properties() );
+            assertFalse( relationships.hasNext() );
+        }
+    }
+
+    @Test
+    public void shouldDecorateNodes() throws Exception
+    {
+        // GIVEN
+        File file = writeNodes( "nodes", 0, 10 );
+        Input input = input( singletonList( new BinaryData<>( additiveLabels( new String[] {"Actor"} ), file ) ),
+                IdType.STRING, 2 );
+
+        // WHEN/THEN
+        try ( InputIterator<InputNode> nodes = input.nodes().iterator() )
+        {
+            while ( nodes.hasNext() )
+            {
+                assertEquals( asList( "Person", "Actor" ), asList( nodes.next().labels() ) );
+            }
+        }
+    }
+
+    @Test
+    public void shouldFailOnRelationshipFileWhenReadingNodes() throws Exception
+    {
+        // GIVEN
+        File file = directory.file( "rels" );
+        try ( BinaryInputWriter writer = BinaryInputWriter.relationships( new FileOutputStream( file ) ) )
+        {
+            writer.writeRelationship( null, "a", null, "b", "KNOWS", NO_PROPERTIES );
+        }
+        Input input = input( singletonList( new BinaryData<>( NO_NODE_DECORATOR, file ) ), IdType.STRING, 1 );
+
+        // WHEN
+        try ( InputIterator<InputNode> nodes = input.nodes().iterator() )
+        {
+            nodes.next();
+            fail( "Should have failed" );
+        }
+        catch ( InputException e )
+        {
+            // THEN
+            assertTrue( e.getMessage().contains( "expected nodes" ) );
+        }
+    }
+
+    private Input input( Iterable<BinaryData<InputNode>> nodeData, IdType idType, int processors )
+    {
+        return new BinaryInput( nodeData, singletonList( new BinaryData<>( NO_RELATIONSHIP_DECORATOR ) ), idType,
+                mock( Collector.class ), processors, true );
+    }
+
+    private File writeNodes( String name, int firstId, int count ) throws IOException
+    {
+        File file = directory.file( name );
+        // Small blocks to have the nodes spread out over many of them
+        try ( BinaryInputWriter writer = new BinaryInputWriter( new FileOutputStream( file ), NODES, 100 ) )
+        {
+            for ( int i = firstId; i < firstId + count; i++ )
+            {
+                writer.writeNode( null, "id" + i, new String[] {"Person"}, new Object[] {"name", "name" + i, "age", i} );
+            }
+        }
+        return file;
+    }
+}
@@ -26,6 +26,7 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.Collection;
@@ -50,6 +51,7 @@ import org.neo4j.unsafe.impl.batchimport.input.InputNode;
 import org.neo4j.unsafe.impl.batchimport.input.InputRelationship;
 
 import static java.lang.Runtime.getRuntime;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.junit.Assert.assertArrayEquals;
@@ -114,6 +116,26 @@ public class CsvInputTest
         }
     }
 
+    @Test
+    public void shouldProvideNodesFromStreamInSinglePass() throws Exception
+    {
+        // GIVEN
+        Iterable<DataFactory<InputNode>> data = dataIterable( data( ":ID,name,:LABEL\n123,Mattias Persson,HACKER" ),
+                DataFactories.stream( value -> value, UTF_8, "stream",
+                        () -> new ByteArrayInputStream( ":ID,name\n456,Johan".getBytes( UTF_8 ) ) ) );
+        Input input = new CsvInput( data, defaultFormatNodeFileHeader(), null, null, IdType.ACTUAL, config( COMMAS ),
+                silentBadCollector( 0 ), getRuntime().availableProcessors(), true );
+
+        // WHEN/THEN
+        assertFalse( input.nodes().supportsMultiplePasses() );
+        try ( InputIterator<InputNode> nodes = input.nodes().iterator() )
+        {
+            assertNode( nodes.next(), 123L, properties( "name", "Mattias Persson" ), labels( "HACKER" ) );
+            assertNode( nodes.next(), 456L, properties( "name", "Johan" ), labels() );
+            assertFalse( nodes.hasNext() );
+        }
+    }
+
     @Test
     public void shouldProvideRelationshipsFromCsvInput() throws Exception
     {
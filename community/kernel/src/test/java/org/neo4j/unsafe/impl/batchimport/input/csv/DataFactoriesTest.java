@@ -21,6 +21,7 @@ package org.neo4j.unsafe.impl.batchimport.input.csv;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
@@ -30,12 +31,15 @@ import org.neo4j.csv.reader.CharSeekers;
 import org.neo4j.csv.reader.Extractor;
 import org.neo4j.csv.reader.Extractors;
 import org.neo4j.unsafe.impl.batchimport.input.DuplicateHeaderException;
+import org.neo4j.unsafe.impl.batchimport.input.InputEntityDecorators;
 import org.neo4j.unsafe.impl.batchimport.input.InputException;
 import org.neo4j.unsafe.impl.batchimport.input.InputNode;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.neo4j.csv.reader.Readables.sources;
@@ -43,6 +47,7 @@ import static org.neo4j.csv.reader.Readables.wrap;
 import static org.neo4j.helpers.ArrayUtil.array;
 import static org.neo4j.unsafe.impl.batchimport.input.csv.DataFactories.data;
 import static org.neo4j.unsafe.impl.batchimport.input.csv.DataFactories.defaultFormatNodeFileHeader;
+import static org.neo4j.unsafe.impl.batchimport.input.csv.DataFactories.stream;
 
 public class DataFactoriesTest
 {
@@ -266,6 +271,33 @@ public class DataFactoriesTest
         }
     }
 
+    @Test
+    public void shouldReadStreamDataOnlyOnce() throws Exception
+    {
+        // GIVEN
+        DataFactory<InputNode> dataFactory = stream( InputEntityDecorators.NO_NODE_DECORATOR, UTF_8, "test stream",
+                () -> new ByteArrayInputStream( "id:ID,name".getBytes( UTF_8 ) ) );
+        Data<InputNode> data = dataFactory.create( COMMAS );
+
+        // WHEN
+        CharSeeker seeker = CharSeekers.charSeeker( data.stream(), SEEKER_CONFIG, false );
+        Header header = DataFactories.defaultFormatNodeFileHeader().create( seeker, COMMAS, IdType.ACTUAL );
+        seeker.close();
+
+        // THEN
+        assertEquals( 2, header.entries().length );
+        assertFalse( dataFactory.supportsMultiplePasses() );
+        try
+        {
+            dataFactory.create( COMMAS ).stream();
+            fail( "Should have failed" );
+        }
+        catch ( InputException e )
+        {
+            assertThat( e.getMessage(), containsString( "test stream" ) );
+        }
+    }
+
     private static final org.neo4j.csv.reader.Configuration SEEKER_CONFIG =
             new org.neo4j.csv.reader.Configuration.Overridden( new org.neo4j.csv.reader.Configuration.Default() )
     {
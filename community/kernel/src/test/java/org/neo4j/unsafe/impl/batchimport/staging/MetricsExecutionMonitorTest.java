@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.staging;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.neo4j.time.FakeClock;
+import org.neo4j.unsafe.impl.batchimport.stats.Keys;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.unsafe.impl.batchimport.Configuration.DEFAULT;
+import static org.neo4j.unsafe.impl.batchimport.staging.ControlledStep.stepWithStats;
+import static org.neo4j.unsafe.impl.batchimport.staging.MetricsExecutionMonitor.COLUMNS;
+import static org.neo4j.unsafe.impl.batchimport.staging.MetricsExecutionMonitor.Format.CSV;
+import static org.neo4j.unsafe.impl.batchimport.staging.MetricsExecutionMonitor.Format.JSON_LINES;
+import static org.neo4j.unsafe.impl.batchimport.staging.Step.ORDER_SEND_DOWNSTREAM;
+
+public class MetricsExecutionMonitorTest
+{
+    private final FakeClock clock = new FakeClock( 1_000, SECONDS );
+
+    @Test
+    public void shouldWriteStepsAsJsonLines() throws Exception
+    {
+        // GIVEN
+        StringWriter out = new StringWriter();
+        MetricsExecutionMonitor monitor = new MetricsExecutionMonitor( clock, out, JSON_LINES, 1, SECONDS );
+        StageExecution execution = execution( "Nodes",
+                stepWithStats( "read", 0, Keys.avg_processing_time, 5L, Keys.received_batches, 10L,
+                        Keys.done_batches, 10L, Keys.io_throughput, 1_024L ),
+                stepWithStats( "write", 4, Keys.avg_processing_time, 20L, Keys.received_batches, 10L,
+                        Keys.done_batches, 7L, Keys.memory_usage, 2_048L ).setProcessors( 3 ) );
+
+        // WHEN
+        monitor.start( execution );
+        clock.forward( 2, SECONDS );
+        monitor.check( execution );
+        monitor.end( execution, 2_500 );
+        monitor.done( 3_000, "" );
+
+        // THEN
+        assertArrayEquals( new String[] {
+                "{\"time\":1000000,\"event\":\"start\",\"stage\":\"Nodes\",\"stage_time\":0}",
+                "{\"time\":1002000,\"event\":\"check\",\"stage\":\"Nodes\",\"stage_time\":2000," +
+                        "\"step\":\"read\",\"completed\":false,\"bottle_neck\":false,\"processors\":1," +
+                        "\"queued_batches\":0,\"batches_per_second\":5,\"received_batches\":10," +
+                        "\"done_batches\":10,\"avg_processing_time\":5,\"io_throughput\":1024}",
+                "{\"time\":1002000,\"event\":\"check\",\"stage\":\"Nodes\",\"stage_time\":2000," +
+                        "\"step\":\"write\",\"completed\":false,\"bottle_neck\":true,\"processors\":3," +
+                        "\"queued_batches\":3,\"batches_per_second\":3,\"received_batches\":10," +
+                        "\"done_batches\":7,\"avg_processing_time\":20,\"memory_usage\":2048}",
+                "{\"time\":1002000,\"event\":\"end\",\"stage\":\"Nodes\",\"stage_time\":2500}",
+                "{\"time\":1002000,\"event\":\"done\",\"stage_time\":3000}"}, out.toString().split( "\n" ) );
+    }
+
+    @Test
+    public void shouldWriteStepsAsCsvWithHeader() throws Exception
+    {
+        // GIVEN
+        StringWriter out = new StringWriter();
+        MetricsExecutionMonitor monitor = new MetricsExecutionMonitor( clock, out, CSV, 1, SECONDS );
+        ControlledStep<?> step = stepWithStats( "a \"quoted\", step", 0, Keys.avg_processing_time, 5L );
+        step.complete();
+        StageExecution execution = execution( "Relationships", step );
+
+        // WHEN
+        monitor.start( execution );
+        clock.forward( 2, SECONDS );
+        monitor.check( execution );
+
+        // THEN
+        String[] lines = out.toString().split( "\n" );
+        assertEquals( 3, lines.length );
+        assertEquals( String.join( ",", COLUMNS ), lines[0] );
+        assertEquals( "1000000,start,Relationships,0,,,,,,,,,,,,,,", lines[1] );
+        String[] check = lines[2].split( ",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1 );
+        assertEquals( COLUMNS.length, check.length );
+        assertEquals( "1002000", check[0] );
+        assertEquals( "check", check[1] );
+        assertEquals( "\"a \"\"quoted\"\", step\"", check[4] );
+        assertEquals( "true", check[5] );
+        assertEquals( "true", check[6] );
+        assertEquals( "1", check[7] );
+        assertEquals( "", check[8] );
+        assertEquals( "5", check[COLUMNS.length - 3] );
+    }
+
+    @Test
+    public void shouldPickFormatFromFileName() throws Exception
+    {
+        assertEquals( CSV, MetricsExecutionMonitor.Format.forFile( new File( "import-metrics.CSV" ) ) );
+        assertEquals( JSON_LINES, MetricsExecutionMonitor.Format.forFile( new File( "import-metrics.jsonl" ) ) );
+        assertEquals( JSON_LINES, MetricsExecutionMonitor.Format.forFile( new File( "import-metrics" ) ) );
+    }
+
+    private static StageExecution execution( String name, Step<?>... steps )
+    {
+        return new StageExecution( name, DEFAULT, Arrays.asList( steps ), ORDER_SEND_DOWNSTREAM );
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport.staging;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import org.neo4j.unsafe.impl.batchimport.Configuration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.neo4j.unsafe.impl.batchimport.staging.ControlledStep.stepWithStats;
+import static org.neo4j.unsafe.impl.batchimport.staging.Step.ORDER_SEND_DOWNSTREAM;
+import static org.neo4j.unsafe.impl.batchimport.stats.Keys.avg_processing_time;
+import static org.neo4j.unsafe.impl.batchimport.stats.Keys.done_batches;
+
+public class ThroughputProcessorAssignerTest
+{
+    @Test
+    public void shouldGiveStepsJustEnoughProcessorsToKeepUpWithBottleneck() throws Exception
+    {
+        // GIVEN a total cost of 16 and 8 processors, i.e. at most half a batch per time unit
+        double[] costs = {10, 2, 4};
+
+        // WHEN
+        int[] assignment = ThroughputProcessorAssigner.assignment( costs, unlimited( 3 ), 8 );
+
+        // THEN
+        assertArrayEquals( new int[] {5, 1, 2}, assignment );
+        assertEquals( 0.5, ThroughputProcessorAssigner.throughput( costs, assignment ), 0.0001 );
+    }
+
+    @Test
+    public void shouldNotAssignMoreProcessorsThanStepCanTake() throws Exception
+    {
+        // WHEN
+        int[] assignment = ThroughputProcessorAssigner.assignment( new double[] {10, 1}, new int[] {2, 10}, 100 );
+
+        // THEN
+        assertArrayEquals( new int[] {2, 1}, assignment );
+    }
+
+    @Test
+    public void shouldAssignProcessorsToStepsByTheirThroughput() throws Exception
+    {
+        // GIVEN
+        Configuration config = config( 10, 8 );
+        ThroughputProcessorAssigner assigner = new ThroughputProcessorAssigner( config );
+        ControlledStep<?> slowStep = stepWithStats( "slow", 0, avg_processing_time, 10L, done_batches, 10L );
+        ControlledStep<?> fastStep = stepWithStats( "fast", 0, avg_processing_time, 2L, done_batches, 10L );
+        StageExecution execution = executionOf( config, slowStep, fastStep );
+        assigner.start( execution );
+
+        // WHEN
+        assigner.check( execution );
+
+        // THEN
+        assertEquals( 6, slowStep.processors( 0 ) );
+        assertEquals( 2, fastStep.processors( 0 ) );
+        assertEquals( "slow 1->6, fast 1->2, predicted 500% faster", execution.lastProcessorAssignment() );
+    }
+
+    @Test
+    public void shouldMoveProcessorsFromTooFastStepToBottleneck() throws Exception
+    {
+        // GIVEN
+        Configuration config = config( 10, 4 );
+        ThroughputProcessorAssigner assigner = new ThroughputProcessorAssigner( config );
+        ControlledStep<?> slowStep = stepWithStats( "slow", 0, avg_processing_time, 6L, done_batches, 10L );
+        ControlledStep<?> fastStep = stepWithStats( "fast", 0, avg_processing_time, 1L, done_batches, 10L )
+                .setProcessors( 3 );
+        StageExecution execution = executionOf( config, slowStep, fastStep );
+        assigner.start( execution );
+
+        // WHEN
+        assigner.check( execution );
+
+        // THEN
+        assertEquals( 2, slowStep.processors( 0 ) );
+        assertEquals( 1, fastStep.processors( 0 ) );
+    }
+
+    @Test
+    public void shouldNotChangeAssignmentForInsignificantGain() throws Exception
+    {
+        // GIVEN one more processor for the slow step, which is all there's room for, makes it less than 10% faster
+        Configuration config = config( 10, 14 );
+        ThroughputProcessorAssigner assigner = new ThroughputProcessorAssigner( config );
+        ControlledStep<?> slowStep = stepWithStats( "slow", 0, avg_processing_time, 10L, done_batches, 10L )
+                .setProcessors( 12 );
+        ControlledStep<?> fastStep = stepWithStats( "fast", 0, avg_processing_time, 1L, done_batches, 10L );
+        StageExecution execution = executionOf( config, slowStep, fastStep );
+        assigner.start( execution );
+
+        // WHEN
+        assigner.check( execution );
+
+        // THEN
+        assertEquals( 12, slowStep.processors( 0 ) );
+        assertEquals( 1, fastStep.processors( 0 ) );
+        assertNull( execution.lastProcessorAssignment() );
+    }
+
+    @Test
+    public void shouldTakeBackProcessorsFromStepNotGettingFasterFromThem() throws Exception
+    {
+        // GIVEN
+        Configuration config = config( 10, 8 );
+        ThroughputProcessorAssigner assigner = new ThroughputProcessorAssigner( config );
+        ControlledStep<?> ioStep = stepWithStats( "io", 0, avg_processing_time, 10L, done_batches, 10L );
+        ControlledStep<?> cpuStep = stepWithStats( "cpu", 0, avg_processing_time, 1L, done_batches, 10L );
+        StageExecution execution = executionOf( config, ioStep, cpuStep );
+        assigner.start( execution );
+        assigner.check( execution );
+        int assigned = ioStep.processors( 0 );
+
+        // WHEN the time per batch stays the same with more processors, checking before and after it settled
+        ioStep.setStat( done_batches, 15L );
+        assigner.check( execution );
+        assertEquals( assigned, ioStep.processors( 0 ) );
+        ioStep.setStat( done_batches, 20L );
+        assigner.check( execution );
+
+        // THEN
+        assertEquals( 1, ioStep.processors( 0 ) );
+        assertEquals( "io doesn't scale beyond 1", execution.lastProcessorAssignment() );
+
+        // and WHEN settled again
+        ioStep.setStat( done_batches, 40L );
+        assigner.check( execution );
+
+        // THEN it doesn't get any more processors
+        assertEquals( 1, ioStep.processors( 0 ) );
+    }
+
+    @Test
+    public void shouldLimitProcessorsOfStepScalingPoorly() throws Exception
+    {
+        // GIVEN
+        Configuration config = config( 10, 8 );
+        ThroughputProcessorAssigner assigner = new ThroughputProcessorAssigner( config );
+        ControlledStep<?> step = stepWithStats( "step", 0, avg_processing_time, 10L, done_batches, 10L );
+        ControlledStep<?> other = stepWithStats( "other", 0, avg_processing_time, 1L, done_batches, 10L );
+        StageExecution execution = executionOf( config, step, other );
+        assigner.start( execution );
+        assigner.check( execution );
+        int assigned = step.processors( 0 );
+
+        // WHEN it only got 25% faster from the additional processors
+        step.setStat( avg_processing_time, 8L );
+        step.setStat( done_batches, 20L );
+        assigner.check( execution );
+
+        // THEN
+        assertEquals( assigned, step.processors( 0 ) );
+        assertEquals( "step doesn't scale beyond " + assigned, execution.lastProcessorAssignment() );
+    }
+
+    @Test
+    public void shouldLearnMaxProcessorsOfStep() throws Exception
+    {
+        // GIVEN
+        Configuration config = config( 10, 8 );
+        ThroughputProcessorAssigner assigner = new ThroughputProcessorAssigner( config );
+        ControlledStep<?> limitedStep = stepWithStats( "limited", 2, avg_processing_time, 10L, done_batches, 10L );
+        ControlledStep<?> otherStep = stepWithStats( "other", 0, avg_processing_time, 2L, done_batches, 10L );
+        StageExecution execution = executionOf( config, limitedStep, otherStep );
+        assigner.start( execution );
+
+        // WHEN
+        assigner.check( execution );
+
+        // THEN
+        assertEquals( 2, limitedStep.processors( 0 ) );
+        assertEquals( "limited 1->2, other 1->2, predicted 100% faster", execution.lastProcessorAssignment() );
+    }
+
+    @Test
+    public void shouldNotAssignBeforeAllStepsHaveProcessedBatches() throws Exception
+    {
+        // GIVEN
+        Configuration config = config( 10, 5 );
+        ThroughputProcessorAssigner assigner = new ThroughputProcessorAssigner( config );
+        ControlledStep<?> aStep = stepWithStats( "a", 0, avg_processing_time, 10L, done_batches, 10L );
+        ControlledStep<?> anotherStep = stepWithStats( "another", 0, avg_processing_time, 0L, done_batches, 0L );
+        StageExecution execution = executionOf( config, aStep, anotherStep );
+        assigner.start( execution );
+
+        // WHEN
+        assigner.check( execution );
+
+        // THEN
+        assertEquals( 1, aStep.processors( 0 ) );
+        assertEquals( 1, anotherStep.processors( 0 ) );
+    }
+
+    private static int[] unlimited( int steps )
+    {
+        int[] max = new int[steps];
+        Arrays.fill( max, Integer.MAX_VALUE );
+        return max;
+    }
+
+    private Configuration config( final int movingAverage, int processors )
+    {
+        return new Configuration()
+        {
+            @Override
+            public int movingAverageSize()
+            {
+                return movingAverage;
+            }
+
+            @Override
+            public int maxNumberOfProcessors()
+            {
+                return processors;
+            }
+        };
+    }
+
+    private StageExecution executionOf( Configuration config, Step<?>... steps )
+    {
+        return new StageExecution( "Test", config, Arrays.asList( steps ), ORDER_SEND_DOWNSTREAM );
+    }
+}
@@ -23,11 +23,17 @@ import org.junit.Test;
 
 import org.neo4j.kernel.impl.store.NodeLabelsField;
 import org.neo4j.kernel.impl.store.TokenStore;
+import org.neo4j.kernel.impl.store.record.LabelTokenRecord;
+import org.neo4j.storageengine.api.Token;
 import org.neo4j.unsafe.impl.batchimport.store.BatchingTokenRepository.BatchingLabelTokenRepository;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class BatchingTokenRepositoryTest
 {
@@ -64,4 +70,24 @@ public class BatchingTokenRepositoryTest
         assertArrayEquals( expected, ids );
         assertTrue( NodeLabelsField.isSane( ids ) );
     }
+
+    @Test
+    public void shouldReuseTokensAlreadyInStore() throws Exception
+    {
+        // GIVEN
+        @SuppressWarnings( "unchecked" )
+        TokenStore<LabelTokenRecord,Token> store = mock( TokenStore.class );
+        when( store.getHighId() ).thenReturn( 2L );
+        when( store.getTokens( anyInt() ) ).thenReturn( asList( new Token( "One", 0 ), new Token( "Two", 1 ) ) );
+        BatchingLabelTokenRepository repo = new BatchingLabelTokenRepository( store );
+
+        // WHEN
+        int existing = repo.getOrCreateId( "Two" );
+        int created = repo.getOrCreateId( "Three" );
+
+        // THEN
+        assertEquals( 1, existing );
+        assertEquals( 2, created );
+        assertEquals( 3, repo.getHighId() );
+    }
 }
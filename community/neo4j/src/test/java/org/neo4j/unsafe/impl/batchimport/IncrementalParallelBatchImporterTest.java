@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.consistency.ConsistencyCheckService;
+import org.neo4j.consistency.ConsistencyCheckService.Result;
+import org.neo4j.consistency.checking.full.ConsistencyCheckIncompleteException;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.helpers.collection.Iterators;
+import org.neo4j.helpers.progress.ProgressMonitorFactory;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.logging.NullLogService;
+import org.neo4j.kernel.impl.store.format.standard.Standard;
+import org.neo4j.logging.NullLogProvider;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.neo4j.test.rule.TestDirectory;
+import org.neo4j.test.rule.fs.DefaultFileSystemRule;
+import org.neo4j.unsafe.impl.batchimport.input.Input;
+import org.neo4j.unsafe.impl.batchimport.input.InputNode;
+import org.neo4j.unsafe.impl.batchimport.input.InputRelationship;
+import org.neo4j.unsafe.impl.batchimport.input.Inputs;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.helpers.collection.Iterables.count;
+import static org.neo4j.unsafe.impl.batchimport.AdditionalInitialIds.EMPTY;
+import static org.neo4j.unsafe.impl.batchimport.cache.NumberArrayFactory.AUTO_WITHOUT_PAGECACHE;
+import static org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdGenerators.startingFromTheBeginning;
+import static org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMappers.strings;
+import static org.neo4j.unsafe.impl.batchimport.input.Collectors.silentBadCollector;
+import static org.neo4j.unsafe.impl.batchimport.input.SimpleInputIteratorWrapper.wrap;
+import static org.neo4j.unsafe.impl.batchimport.staging.ExecutionMonitors.invisible;
+
+/**
+ * Imports into a store which already contains data, created the way a user would, and verifies that imported
+ * relationships end up in the chains and relationship groups of the existing nodes they refer to, that counts
+ * are kept and that the resulting store is consistent.
+ */
+public class IncrementalParallelBatchImporterTest
+{
+    private static final int DENSE_NODE_THRESHOLD = 10;
+    private static final int EXISTING_NODES = 100;
+    private static final int IMPORTED_NODES = 50;
+    private static final Label PERSON = Label.label( "Person" );
+    private static final Label IMPORTED = Label.label( "Imported" );
+    private static final RelationshipType KNOWS = RelationshipType.withName( "KNOWS" );
+    private static final RelationshipType LIKES = RelationshipType.withName( "LIKES" );
+
+    private final TestDirectory directory = TestDirectory.testDirectory();
+    private final DefaultFileSystemRule fileSystemRule = new DefaultFileSystemRule();
+
+    @Rule
+    public RuleChain ruleChain = RuleChain.outerRule( directory ).around( fileSystemRule );
+
+    private boolean rebuildSchemaIndexes;
+
+    private final Configuration config = new Configuration()
+    {
+        @Override
+        public int batchSize()
+        {
+            // Set to extra low to have the imported relationships merged in multiple batches
+            return 10;
+        }
+
+        @Override
+        public int denseNodeThreshold()
+        {
+            return DENSE_NODE_THRESHOLD;
+        }
+
+        @Override
+        public boolean incremental()
+        {
+            return true;
+        }
+
+        @Override
+        public String existingNodeIdPropertyKey()
+        {
+            return "id";
+        }
+
+        @Override
+        public boolean rebuildSchemaIndexes()
+        {
+            return rebuildSchemaIndexes;
+        }
+    };
+
+    // "start-TYPE->end:since" of all relationships expected to be in the store
+    private final List<String> expectedRelationships = new ArrayList<>();
+
+    @Test
+    public void shouldImportIntoExistingChainsAndGroups() throws Exception
+    {
+        // GIVEN
+        File storeDir = directory.directory( "graph" );
+        createExistingData( storeDir, false );
+        List<InputNode> nodes = new ArrayList<>();
+        List<InputRelationship> relationships = new ArrayList<>();
+        for ( int i = 0; i < IMPORTED_NODES; i++ )
+        {
+            nodes.add( new InputNode( "nodes", i, i, "q" + i, new Object[] {"id", "q" + i}, null,
+                    new String[] {PERSON.name(), IMPORTED.name()}, null ) );
+            // p0 is already dense and gets more relationships of a type it already has
+            addRelationship( relationships, "q" + i, KNOWS, "p0" );
+            // p30 is sparse and turns dense, with a type new to it
+            addRelationship( relationships, "p30", LIKES, "q" + i );
+            if ( i > 0 )
+            {
+                addRelationship( relationships, "q" + (i - 1), KNOWS, "q" + i );
+            }
+        }
+        // Between existing nodes, where p50 is sparse and stays that way
+        addRelationship( relationships, "p50", LIKES, "p51" );
+
+        // WHEN
+        importIncrementally( storeDir, nodes, relationships );
+
+        // THEN
+        GraphDatabaseService db = new TestGraphDatabaseFactory().newEmbeddedDatabase( storeDir );
+        try ( Transaction tx = db.beginTx() )
+        {
+            assertRelationshipChains( db );
+            assertEquals( EXISTING_NODES + IMPORTED_NODES, countOf( db, "MATCH (n:Person)" ) );
+            assertEquals( IMPORTED_NODES, countOf( db, "MATCH (n:Imported)" ) );
+            assertEquals( IMPORTED_NODES, Iterators.count( db.findNodes( IMPORTED ) ) );
+            assertEquals( expectedCountOf( KNOWS ), countOf( db, "MATCH ()-[n:KNOWS]->()" ) );
+            assertEquals( expectedCountOf( LIKES ), countOf( db, "MATCH ()-[n:LIKES]->()" ) );
+            assertEquals( IMPORTED_NODES, countOf( db, "MATCH (:Person)-[n:LIKES]->(:Imported)" ) );
+            tx.success();
+        }
+        finally
+        {
+            db.shutdown();
+        }
+        assertConsistent( storeDir );
+    }
+
+    @Test
+    public void shouldRefuseIncrementalImportIntoStoreWithUniquenessConstraint() throws Exception
+    {
+        // GIVEN
+        File storeDir = directory.directory( "graph" );
+        createExistingData( storeDir, true );
+        InputNode duplicate = new InputNode( "nodes", 0, 0, "p1", new Object[] {"id", "p1"}, null,
+                new String[] {PERSON.name()}, null );
+        InputRelationship relationship = new InputRelationship( "relationships", 0, 0, new Object[0], null,
+                "p1", "p2", KNOWS.name(), null );
+
+        // WHEN
+        try
+        {
+            importIncrementally( storeDir, asList( duplicate ), asList( relationship ) );
+            fail( "Should have failed" );
+        }
+        catch ( IllegalStateException e )
+        {
+            // THEN
+            assertTrue( e.getMessage(), e.getMessage().contains( "uniqueness constraints" ) );
+        }
+        GraphDatabaseService db = new TestGraphDatabaseFactory().newEmbeddedDatabase( storeDir );
+        try ( Transaction tx = db.beginTx() )
+        {
+            assertRelationshipChains( db );
+            assertEquals( EXISTING_NODES, count( db.getAllNodes() ) );
+            tx.success();
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldRefuseIncrementalImportIntoStoreWithSchemaIndexes() throws Exception
+    {
+        // GIVEN
+        File storeDir = directory.directory( "graph" );
+        createExistingData( storeDir, false );
+        createIndex( storeDir );
+        InputNode node = new InputNode( "nodes", 0, 0, "q0", new Object[] {"id", "q0"}, null,
+                new String[] {PERSON.name()}, null );
+
+        // WHEN
+        try
+        {
+            importIncrementally( storeDir, asList( node ), new ArrayList<>() );
+            fail( "Should have failed" );
+        }
+        catch ( IllegalStateException e )
+        {
+            // THEN
+            assertTrue( e.getMessage(), e.getMessage().contains( "schema indexes" ) );
+        }
+        GraphDatabaseService db = new TestGraphDatabaseFactory().newEmbeddedDatabase( storeDir );
+        try ( Transaction tx = db.beginTx() )
+        {
+            db.schema().awaitIndexesOnline( 1, TimeUnit.MINUTES );
+            assertEquals( EXISTING_NODES, count( db.getAllNodes() ) );
+            assertNotNull( db.findNode( PERSON, "id", "p1" ) );
+            tx.success();
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldDropSchemaIndexesToBeRebuiltWhenAllowed() throws Exception
+    {
+        // GIVEN
+        File storeDir = directory.directory( "graph" );
+        createExistingData( storeDir, false );
+        createIndex( storeDir );
+        InputNode node = new InputNode( "nodes", 0, 0, "q0", new Object[] {"id", "q0"}, null,
+                new String[] {PERSON.name()}, null );
+        rebuildSchemaIndexes = true;
+
+        // WHEN
+        importIncrementally( storeDir, asList( node ), new ArrayList<>() );
+
+        // THEN the rebuilt index contains both existing and imported nodes
+        GraphDatabaseService db = new TestGraphDatabaseFactory().newEmbeddedDatabase( storeDir );
+        try ( Transaction tx = db.beginTx() )
+        {
+            db.schema().awaitIndexesOnline( 1, TimeUnit.MINUTES );
+            assertNotNull( db.findNode( PERSON, "id", "p1" ) );
+            assertNotNull( db.findNode( PERSON, "id", "q0" ) );
+            tx.success();
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    /**
+     * Nodes p0..p99 where p0 is dense, with {@link #DENSE_NODE_THRESHOLD} times two outgoing relationships,
+     * and the rest are in a sparse chain.
+     */
+    private void createExistingData( File storeDir, boolean uniquenessConstraint )
+    {
+        GraphDatabaseService db = new TestGraphDatabaseFactory().newEmbeddedDatabaseBuilder( storeDir )
+                .setConfig( GraphDatabaseSettings.dense_node_threshold, String.valueOf( DENSE_NODE_THRESHOLD ) )
+                .newGraphDatabase();
+        try
+        {
+            if ( uniquenessConstraint )
+            {
+                try ( Transaction tx = db.beginTx() )
+                {
+                    db.schema().constraintFor( PERSON ).assertPropertyIsUnique( "id" ).create();
+                    tx.success();
+                }
+            }
+            try ( Transaction tx = db.beginTx() )
+            {
+                Node[] nodes = new Node[EXISTING_NODES];
+                for ( int i = 0; i < EXISTING_NODES; i++ )
+                {
+                    nodes[i] = db.createNode( PERSON );
+                    nodes[i].setProperty( "id", "p" + i );
+                }
+                for ( int i = 1; i <= DENSE_NODE_THRESHOLD * 2; i++ )
+                {
+                    createRelationship( nodes[0], KNOWS, nodes[i] );
+                }
+                for ( int i = DENSE_NODE_THRESHOLD * 2 + 1; i < EXISTING_NODES - 1; i++ )
+                {
+                    createRelationship( nodes[i], KNOWS, nodes[i + 1] );
+                }
+                tx.success();
+            }
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    private void createIndex( File storeDir )
+    {
+        GraphDatabaseService db = new TestGraphDatabaseFactory().newEmbeddedDatabase( storeDir );
+        try
+        {
+            try ( Transaction tx = db.beginTx() )
+            {
+                db.schema().indexFor( PERSON ).on( "id" ).create();
+                tx.success();
+            }
+            try ( Transaction tx = db.beginTx() )
+            {
+                db.schema().awaitIndexesOnline( 1, TimeUnit.MINUTES );
+                tx.success();
+            }
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    private void createRelationship( Node start, RelationshipType type, Node end )
+    {
+        String since = String.valueOf( expectedRelationships.size() );
+        start.createRelationshipTo( end, type ).setProperty( "since", since );
+        expectedRelationships.add( start.getProperty( "id" ) + "-" + type.name() + "->" + end.getProperty( "id" ) +
+                ":" + since );
+    }
+
+    private void addRelationship( List<InputRelationship> relationships, String start, RelationshipType type,
+            String end )
+    {
+        String since = String.valueOf( expectedRelationships.size() );
+        relationships.add( new InputRelationship( "relationships", relationships.size(), relationships.size(),
+                new Object[] {"since", since}, null, start, end, type.name(), null ) );
+        expectedRelationships.add( start + "-" + type.name() + "->" + end + ":" + since );
+    }
+
+    private void importIncrementally( File storeDir, List<InputNode> nodes, List<InputRelationship> relationships )
+            throws IOException
+    {
+        Input input = Inputs.input( wrap( "nodes", nodes ), wrap( "relationships", relationships ),
+                strings( AUTO_WITHOUT_PAGECACHE ), startingFromTheBeginning(), silentBadCollector( 0 ) );
+        new ParallelBatchImporter( storeDir, fileSystemRule.get(), null, config, NullLogService.getInstance(),
+                invisible(), EMPTY, Config.defaults(), Standard.LATEST_RECORD_FORMATS ).doImport( input );
+    }
+
+    /**
+     * Walks the relationship chains of all nodes, from both sides of every relationship, and compares them,
+     * as well as the degrees kept for them, with what they're expected to be.
+     */
+    private void assertRelationshipChains( GraphDatabaseService db )
+    {
+        Map<String,List<String>> expected = new HashMap<>();
+        for ( String relationship : expectedRelationships )
+        {
+            String start = relationship.substring( 0, relationship.indexOf( '-' ) );
+            String end = relationship.substring( relationship.indexOf( '>' ) + 1, relationship.indexOf( ':' ) );
+            expected.computeIfAbsent( start, id -> new ArrayList<>() ).add( relationship );
+            if ( !start.equals( end ) )
+            {
+                expected.computeIfAbsent( end, id -> new ArrayList<>() ).add( relationship );
+            }
+        }
+
+        for ( Node node : db.getAllNodes() )
+        {
+            String id = (String) node.getProperty( "id" );
+            List<String> actual = new ArrayList<>();
+            for ( Relationship relationship : node.getRelationships() )
+            {
+                actual.add( relationship.getStartNode().getProperty( "id" ) + "-" + relationship.getType().name() +
+                        "->" + relationship.getEndNode().getProperty( "id" ) + ":" +
+                        relationship.getProperty( "since" ) );
+            }
+            List<String> expectedOfNode = expected.getOrDefault( id, new ArrayList<>() );
+            actual.sort( null );
+            expectedOfNode.sort( null );
+            assertEquals( "Relationships of " + id, expectedOfNode, actual );
+            assertEquals( expectedOfNode.size(), node.getDegree() );
+            for ( RelationshipType type : node.getRelationshipTypes() )
+            {
+                for ( Direction direction : Direction.values() )
+                {
+                    assertEquals( count( node.getRelationships( type, direction ) ),
+                            node.getDegree( type, direction ) );
+                }
+            }
+        }
+    }
+
+    private long expectedCountOf( RelationshipType type )
+    {
+        return expectedRelationships.stream().filter( r -> r.contains( "-" + type.name() + "->" ) ).count();
+    }
+
+    /**
+     * Counts {@code n} of the given match, answered from the counts store.
+     */
+    private static long countOf( GraphDatabaseService db, String match )
+    {
+        return (Long) Iterators.single( db.execute( match + " RETURN count(n) AS count" ).columnAs( "count" ) );
+    }
+
+    private static void assertConsistent( File storeDir ) throws ConsistencyCheckIncompleteException, IOException
+    {
+        ConsistencyCheckService consistencyChecker = new ConsistencyCheckService();
+        Result result = consistencyChecker.runFullConsistencyCheck( storeDir,
+                Config.defaults( GraphDatabaseSettings.pagecache_memory, "8m" ),
+                ProgressMonitorFactory.NONE, NullLogProvider.getInstance(), false );
+        assertTrue( "Database contains inconsistencies, there should be a report in " + storeDir,
+                result.isSuccessful() );
+    }
+}
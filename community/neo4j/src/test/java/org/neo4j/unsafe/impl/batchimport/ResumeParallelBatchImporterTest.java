@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.batchimport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.logging.NullLogService;
+import org.neo4j.kernel.impl.store.NeoStores;
+import org.neo4j.kernel.impl.store.RecordStore;
+import org.neo4j.kernel.impl.store.StoreFactory;
+import org.neo4j.kernel.impl.store.counts.CountsTracker;
+import org.neo4j.kernel.impl.store.format.standard.Standard;
+import org.neo4j.kernel.impl.store.id.DefaultIdGeneratorFactory;
+import org.neo4j.kernel.impl.store.record.AbstractBaseRecord;
+import org.neo4j.kernel.impl.store.record.RecordLoad;
+import org.neo4j.logging.NullLogProvider;
+import org.neo4j.test.rule.PageCacheRule;
+import org.neo4j.test.rule.TestDirectory;
+import org.neo4j.test.rule.fs.DefaultFileSystemRule;
+import org.neo4j.unsafe.impl.batchimport.input.Input;
+import org.neo4j.unsafe.impl.batchimport.input.InputNode;
+import org.neo4j.unsafe.impl.batchimport.input.InputRelationship;
+import org.neo4j.unsafe.impl.batchimport.input.Inputs;
+import org.neo4j.unsafe.impl.batchimport.staging.ExecutionMonitor;
+import org.neo4j.unsafe.impl.batchimport.staging.StageExecution;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.register.Registers.newDoubleLongRegister;
+import static org.neo4j.unsafe.impl.batchimport.AdditionalInitialIds.EMPTY;
+import static org.neo4j.unsafe.impl.batchimport.ImportCheckpoint.CHECKPOINT_FILE_NAME;
+import static org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdGenerators.fromInput;
+import static org.neo4j.unsafe.impl.batchimport.cache.idmapping.IdMappers.actual;
+import static org.neo4j.unsafe.impl.batchimport.input.Collectors.silentBadCollector;
+import static org.neo4j.unsafe.impl.batchimport.input.SimpleInputIteratorWrapper.wrap;
+
+/**
+ * Fails imports in the middle of linking relationships, resumes them from their checkpoint and verifies that
+ * the resulting store is, record by record, the same as that of an import which wasn't interrupted.
+ */
+public class ResumeParallelBatchImporterTest
+{
+    private static final int NODE_COUNT = 1_000;
+    private static final int RELATIONSHIP_COUNT = 8_000;
+    private static final int LABEL_COUNT = 3;
+    private static final int TYPE_COUNT = 4;
+
+    private final TestDirectory directory = TestDirectory.testDirectory();
+    private final DefaultFileSystemRule fileSystemRule = new DefaultFileSystemRule();
+    private final PageCacheRule pageCacheRule = new PageCacheRule();
+
+    @Rule
+    public RuleChain ruleChain = RuleChain.outerRule( directory ).around( fileSystemRule ).around( pageCacheRule );
+
+    private final List<InputNode> nodes = new ArrayList<>();
+    private final List<InputRelationship> relationships = new ArrayList<>();
+
+    @Test
+    public void shouldResumeImportFailingWhileLinkingRelationships() throws Exception
+    {
+        shouldResumeImportFailingIn( "Relationship --> Relationship" );
+    }
+
+    @Test
+    public void shouldResumeImportFailingWhileLinkingRelationshipGroups() throws Exception
+    {
+        shouldResumeImportFailingIn( "Node --> Group" );
+    }
+
+    @Test
+    public void shouldResumeImportFailingWhileCountingNodes() throws Exception
+    {
+        shouldResumeImportFailingIn( "Node counts" );
+    }
+
+    private void shouldResumeImportFailingIn( String failingStage ) throws Exception
+    {
+        // GIVEN
+        createInput( new Random( 1234 ) );
+        File uninterrupted = directory.directory( "uninterrupted" );
+        importInto( uninterrupted, false, null );
+        File resumed = directory.directory( "resumed" );
+        try
+        {
+            importInto( resumed, false, failingStage );
+            fail( "Should have failed" );
+        }
+        catch ( Exception e )
+        {
+            // Good, left the checkpoint of the stages completed before the failure behind
+            assertTrue( new File( resumed, CHECKPOINT_FILE_NAME ).exists() );
+        }
+
+        // WHEN
+        importInto( resumed, true, null );
+
+        // THEN
+        assertFalse( new File( resumed, CHECKPOINT_FILE_NAME ).exists() );
+        FileSystemAbstraction fs = fileSystemRule.get();
+        PageCache pageCache = pageCacheRule.getPageCache( fs );
+        try ( NeoStores expected = openStores( fs, pageCache, uninterrupted );
+              NeoStores actual = openStores( fs, pageCache, resumed ) )
+        {
+            assertSameRecords( expected.getNodeStore(), actual.getNodeStore() );
+            assertSameRecords( expected.getRelationshipStore(), actual.getRelationshipStore() );
+            assertSameRecords( expected.getRelationshipGroupStore(), actual.getRelationshipGroupStore() );
+            assertSameRecords( expected.getPropertyStore(), actual.getPropertyStore() );
+            assertSameCounts( expected.getCounts(), actual.getCounts() );
+        }
+    }
+
+    private void createInput( Random random )
+    {
+        for ( long id = 0; id < NODE_COUNT; id++ )
+        {
+            nodes.add( new InputNode( "nodes", id, id, id, new Object[] {"id", id}, null,
+                    new String[] {"Label" + (id % LABEL_COUNT)}, null ) );
+        }
+        for ( long id = 0; id < RELATIONSHIP_COUNT; id++ )
+        {
+            // A few nodes get many relationships, so that they become dense and get relationship groups
+            long startNode = random.nextInt( 10 ) == 0 ? random.nextInt( 5 ) : random.nextInt( NODE_COUNT );
+            long endNode = random.nextInt( NODE_COUNT );
+            relationships.add( new InputRelationship( "relationships", id, id, new Object[] {"id", id}, null,
+                    startNode, endNode, "TYPE" + type( id, random ), null ) );
+        }
+    }
+
+    /**
+     * Type ids are created either in order of first appearance or in order of ascending frequency, depending on
+     * timing, so types first appear in order of ascending frequency to get the same type ids in every import.
+     */
+    private static int type( long relationship, Random random )
+    {
+        if ( relationship < TYPE_COUNT )
+        {
+            return (int) relationship;
+        }
+        int dice = random.nextInt( 10 );
+        return dice < 1 ? 0 : dice < 3 ? 1 : dice < 6 ? 2 : 3;
+    }
+
+    private void importInto( File storeDir, boolean resume, String failingStage ) throws Exception
+    {
+        Configuration config = new Configuration()
+        {
+            @Override
+            public int denseNodeThreshold()
+            {
+                return 10;
+            }
+
+            @Override
+            public int maxNumberOfProcessors()
+            {
+                return 4;
+            }
+
+            @Override
+            public boolean resume()
+            {
+                return resume;
+            }
+        };
+        Input input = Inputs.input( wrap( "nodes", nodes ), wrap( "relationships", relationships ), actual(),
+                fromInput(), silentBadCollector( 0 ) );
+        new ParallelBatchImporter( storeDir, fileSystemRule.get(), null, config, NullLogService.getInstance(),
+                new FailingMonitor( failingStage ), EMPTY, Config.defaults(), Standard.LATEST_RECORD_FORMATS )
+                .doImport( input );
+    }
+
+    private static NeoStores openStores( FileSystemAbstraction fs, PageCache pageCache, File storeDir )
+    {
+        return new StoreFactory( storeDir, Config.defaults(), new DefaultIdGeneratorFactory( fs ), pageCache, fs,
+                NullLogProvider.getInstance() ).openAllNeoStores();
+    }
+
+    private static <RECORD extends AbstractBaseRecord> void assertSameRecords( RecordStore<RECORD> expected,
+            RecordStore<RECORD> actual )
+    {
+        assertEquals( expected.getHighId(), actual.getHighId() );
+        for ( long id = expected.getNumberOfReservedLowIds(); id < expected.getHighId(); id++ )
+        {
+            RECORD expectedRecord = expected.getRecord( id, expected.newRecord(), RecordLoad.FORCE );
+            RECORD actualRecord = actual.getRecord( id, actual.newRecord(), RecordLoad.FORCE );
+            assertEquals( expectedRecord.toString(), actualRecord.toString() );
+        }
+    }
+
+    private static void assertSameCounts( CountsTracker expected, CountsTracker actual ) throws IOException
+    {
+        expected.start();
+        actual.start();
+        for ( int label = -1; label < LABEL_COUNT; label++ )
+        {
+            assertEquals( expected.nodeCount( label, newDoubleLongRegister() ).readSecond(),
+                    actual.nodeCount( label, newDoubleLongRegister() ).readSecond() );
+        }
+        for ( int type = -1; type < TYPE_COUNT; type++ )
+        {
+            assertEquals( expected.relationshipCount( -1, type, -1, newDoubleLongRegister() ).readSecond(),
+                    actual.relationshipCount( -1, type, -1, newDoubleLongRegister() ).readSecond() );
+        }
+    }
+
+    /**
+     * Fails the import, like a crash would, as soon as the stage with the given name starts executing.
+     */
+    private static class FailingMonitor extends ExecutionMonitor.Adapter
+    {
+        private final String failingStage;
+
+        FailingMonitor( String failingStage )
+        {
+            super( 10, MILLISECONDS );
+            this.failingStage = failingStage;
+        }
+
+        @Override
+        public void start( StageExecution execution )
+        {
+            check( execution );
+        }
+
+        @Override
+        public void check( StageExecution execution )
+        {
+            if ( failingStage != null && execution.getStageName().startsWith( failingStage ) )
+            {
+                execution.panic( new RuntimeException( "Failing import in " + execution.getStageName() ) );
+            }
+        }
+    }
+}
@@ -23,8 +23,10 @@ import sun.misc.Unsafe;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -64,6 +66,7 @@ public final class UnsafeUtil
 
     private static final Unsafe unsafe;
     private static final MethodHandle sharedStringConstructor;
+    private static final MethodHandle bufferCleaner;
     private static final String allowUnalignedMemoryAccessProperty =
             "org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil.allowUnalignedMemoryAccess";
 
@@ -86,6 +89,7 @@ public final class UnsafeUtil
 
         MethodHandles.Lookup lookup = MethodHandles.lookup();
         sharedStringConstructor = getSharedStringConstructorMethodHandle( lookup );
+        bufferCleaner = getBufferCleanerMethodHandle( lookup );
 
         Class<?> dbbClass = null;
         Constructor<?> ctor = null;
@@ -229,6 +233,32 @@ public final class UnsafeUtil
         }
     }
 
+    private static MethodHandle getBufferCleanerMethodHandle( MethodHandles.Lookup lookup )
+    {
+        MethodType type = MethodType.methodType( void.class, ByteBuffer.class );
+        try
+        {
+            // Java 9 and later
+            Method invokeCleaner = Unsafe.class.getMethod( "invokeCleaner", ByteBuffer.class );
+            return lookup.unreflect( invokeCleaner ).bindTo( unsafe ).asType( type );
+        }
+        catch ( Exception e )
+        {
+            try
+            {
+                // Java 8, ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()
+                Method cleaner = Class.forName( "sun.nio.ch.DirectBuffer" ).getMethod( "cleaner" );
+                Method clean = Class.forName( "sun.misc.Cleaner" ).getMethod( "clean" );
+                return MethodHandles.filterReturnValue( lookup.unreflect( cleaner ), lookup.unreflect( clean ) )
+                        .asType( type );
+            }
+            catch ( Exception e1 )
+            {
+                return null;
+            }
+        }
+    }
+
     /**
      * Get the object-relative field offset.
      */
@@ -344,6 +374,26 @@ public final class UnsafeUtil
         }
     }
 
+    /**
+     * Releases the memory of the given direct, or memory mapped, buffer right away, instead of whenever the buffer
+     * is garbage collected. The buffer must not be accessed afterwards. Does nothing for heap buffers, or if
+     * this isn't supported by this JVM.
+     */
+    public static void invokeCleaner( ByteBuffer buffer )
+    {
+        if ( bufferCleaner != null && buffer.isDirect() )
+        {
+            try
+            {
+                bufferCleaner.invokeExact( buffer );
+            }
+            catch ( Throwable throwable )
+            {
+                throw new LinkageError( "Unexpected 'buffer cleaner' intrinsic failure", throwable );
+            }
+        }
+    }
+
     /**
      * Allocate a slab of memory of the given size in bytes, and return a pointer to that memory.
      * <p>
@@ -591,4 +591,20 @@ public class UnsafeUtilTest
         free( p );
         assertEquals( value, readValue );
     }
+
+    @Test
+    public void shouldCleanDirectBuffersAndIgnoreHeapBuffers() throws Exception
+    {
+        // GIVEN
+        ByteBuffer direct = ByteBuffer.allocateDirect( 1024 );
+        ByteBuffer heap = ByteBuffer.allocate( 1024 );
+        heap.putLong( 0, 42 );
+
+        // WHEN
+        UnsafeUtil.invokeCleaner( direct );
+        UnsafeUtil.invokeCleaner( heap );
+
+        // THEN the heap buffer is still usable
+        assertEquals( 42, heap.getLong( 0 ) );
+    }
 }
@@ -70,6 +70,7 @@ import org.neo4j.kernel.impl.store.stats.IdBasedStoreEntityCounters;
 import org.neo4j.kernel.impl.util.Dependencies;
 import org.neo4j.kernel.lifecycle.LifeSupport;
 import org.neo4j.logging.LogProvider;
+import org.neo4j.scheduler.JobScheduler;
 import org.neo4j.storageengine.api.Token;
 
 import static org.neo4j.causalclustering.core.CausalClusteringSettings.array_block_id_allocation_size;
@@ -178,8 +179,8 @@ public class CoreStateMachinesModule
 
         dependencies.satisfyDependencies( replicatedTxStateMachine );
 
-        lockManager = createLockManager( config, platformModule.clock, logging, replicator, myself, raftMachine,
-                replicatedLockTokenStateMachine );
+        lockManager = createLockManager( config, platformModule.clock, platformModule.jobScheduler, logging, replicator,
+                myself, raftMachine, replicatedLockTokenStateMachine );
 
         RecoverConsensusLogIndex consensusLogIndexRecovery = new RecoverConsensusLogIndex( dependencies, logProvider );
 
@@ -227,11 +228,12 @@ public class CoreStateMachinesModule
                 logProvider, idTypeConfigurationProvider );
     }
 
-    private Locks createLockManager( final Config config, Clock clock, final LogService logging,
-                                     final Replicator replicator, MemberId myself, LeaderLocator leaderLocator,
+    private Locks createLockManager( final Config config, Clock clock, final JobScheduler jobScheduler,
+                                     final LogService logging, final Replicator replicator,
+                                     MemberId myself, LeaderLocator leaderLocator,
                                      ReplicatedLockTokenStateMachine lockTokenStateMachine )
     {
-        Locks localLocks = CommunityEditionModule.createLockManager( config, clock, logging );
+        Locks localLocks = CommunityEditionModule.createLockManager( config, clock, jobScheduler, logging );
         return new LeaderOnlyLockManager( myself, replicator, leaderLocator, localLocks, lockTokenStateMachine );
     }
 }
@@ -492,7 +492,8 @@ public class HighlyAvailableEditionModule
         // Create HA services
         lockManager = dependencies.satisfyDependency(
                 createLockManager( componentSwitcherContainer, config, masterDelegateInvocationHandler,
-                        requestContextFactory, platformModule.availabilityGuard, platformModule.clock, logging ) );
+                        requestContextFactory, platformModule.availabilityGuard, platformModule.clock,
+                        platformModule.jobScheduler, logging ) );
 
         statementLocksFactory = createStatementLocksFactory( componentSwitcherContainer, config, logging );
 
@@ -683,13 +684,15 @@ public class HighlyAvailableEditionModule
 
     private Locks createLockManager( ComponentSwitcherContainer componentSwitcherContainer, Config config,
             DelegateInvocationHandler<Master> masterDelegateInvocationHandler,
-            RequestContextFactory requestContextFactory, AvailabilityGuard availabilityGuard, Clock clock, LogService logService )
+            RequestContextFactory requestContextFactory, AvailabilityGuard availabilityGuard, Clock clock,
+            JobScheduler jobScheduler, LogService logService )
     {
         DelegateInvocationHandler<Locks> lockManagerDelegate = new DelegateInvocationHandler<>( Locks.class );
         Locks lockManager = (Locks) newProxyInstance( Locks.class.getClassLoader(), new Class[]{Locks.class},
                 lockManagerDelegate );
 
-        Factory<Locks> locksFactory = () -> CommunityEditionModule.createLockManager( config, clock, logService );
+        Factory<Locks> locksFactory = () -> CommunityEditionModule.createLockManager( config, clock, jobScheduler,
+                logService );
 
         LockManagerSwitcher lockManagerModeSwitcher = new LockManagerSwitcher(
                 lockManagerDelegate, masterDelegateInvocationHandler, requestContextFactory, availabilityGuard,
@@ -298,10 +298,11 @@ public class EnterpriseBuiltInDbmsProcedures
         try
         {
             return getKernelTransactions().activeTransactions().stream()
-                .flatMap( KernelTransactionHandle::executingQueries )
+                .flatMap( tx -> tx.executingQueries()
                     .filter( query -> isAdminOrSelf( query.username() ) )
                     .map( catchThrown( InvalidArgumentsException.class,
-                            query -> new QueryStatusResult( query, nodeManager ) ) );
+                            query -> new QueryStatusResult( query, nodeManager,
+                                    tx.transactionStateMemoryUsage() ) ) ) );
         }
         catch ( UncaughtCheckedException uncaught )
         {
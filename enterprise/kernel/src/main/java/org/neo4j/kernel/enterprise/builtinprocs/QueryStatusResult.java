@@ -96,13 +96,17 @@ public class QueryStatusResult
     public final long pageHits;
     /** @since Neo4j 3.2 */
     public final long pageFaults;
+    /** @since Neo4j 3.3, estimated bytes used by the state of the transaction executing the query. */
+    public final long transactionStateMemory;
 
-    QueryStatusResult( ExecutingQuery query, NodeManager manager ) throws InvalidArgumentsException
+    QueryStatusResult( ExecutingQuery query, NodeManager manager, long transactionStateMemory )
+            throws InvalidArgumentsException
     {
-        this( query.snapshot(), manager );
+        this( query.snapshot(), manager, transactionStateMemory );
     }
 
-    private QueryStatusResult( QuerySnapshot query, NodeManager manager ) throws InvalidArgumentsException
+    private QueryStatusResult( QuerySnapshot query, NodeManager manager, long transactionStateMemory )
+            throws InvalidArgumentsException
     {
         this.queryId = ofInternalId( query.internalQueryId() ).toString();
         this.username = query.username();
@@ -129,6 +133,7 @@ public class QueryStatusResult
         this.allocatedBytes = query.allocatedBytes();
         this.pageHits = query.pageHits();
         this.pageFaults = query.pageFaults();
+        this.transactionStateMemory = transactionStateMemory;
     }
 
     private Map<String,Object> asRawMap( MapValue mapValue, ParameterWriter writer )
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.enterprise.lock.forseti;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how a client waits for a lock of one resource type, based on how long clients recently had to wait for
+ * locks of that type.
+ * <p>
+ * Parking a thread and waking it up again costs in the order of tens of microseconds, which is a waste when the lock
+ * is about to be released anyway, while spinning through a long wait burns a core that the lock holder might need.
+ * So waits that are expected to be short are spun, for up to twice the expected wait, and waits that are expected to
+ * be long, or that turn out to take longer than expected, are parked. Parked clients are woken up by the release of
+ * the lock, see {@link LockTable#parkWhileHeld(long, ForsetiLockManager.Lock, long)}, and the park timeout only
+ * bounds how long it takes to notice a missed wake-up, a timeout or a stopped client.
+ * <p>
+ * The expected wait is a moving average over waits that ended with the lock being acquired. Under contention, that
+ * is how long the lock is still held for once someone starts waiting for it. Updates are racy, since losing a sample
+ * now and then makes no difference to the estimate.
+ */
+final class AdaptiveWaitStrategy
+{
+    /** Waits expected to be longer than this are parked right away. */
+    static final long MAX_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos( 50 );
+    /** Even when nothing is known about the wait, spin this long before parking. */
+    static final long MIN_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos( 2 );
+    static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+    /** New samples weigh in with 1/2^SAMPLE_WEIGHT_SHIFT. */
+    private static final int SAMPLE_WEIGHT_SHIFT = 3;
+
+    private volatile long expectedWaitNanos;
+
+    /**
+     * Records that a client acquired a lock after having waited for the given number of nanoseconds.
+     */
+    void waited( long waitNanos )
+    {
+        long expected = expectedWaitNanos;
+        expectedWaitNanos = expected + ((waitNanos - expected) >> SAMPLE_WEIGHT_SHIFT);
+    }
+
+    long expectedWaitNanos()
+    {
+        return expectedWaitNanos;
+    }
+
+    /**
+     * @param waitedNanos how long the client has been waiting for the lock so far.
+     * @return the number of nanoseconds to park for, or zero if the client should keep spinning.
+     */
+    long parkNanos( long waitedNanos )
+    {
+        long expected = expectedWaitNanos;
+        if ( expected <= MAX_SPIN_NANOS && waitedNanos < Math.max( expected << 1, MIN_SPIN_NANOS ) )
+        {
+            return 0;
+        }
+        return MAX_PARK_NANOS;
+    }
+}
@@ -24,7 +24,6 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.LockSupport;
 import java.util.function.IntFunction;
@@ -54,6 +53,7 @@ import org.neo4j.storageengine.api.lock.WaitStrategy;
 import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
 
 import static java.lang.String.format;
+import static org.neo4j.kernel.api.exceptions.Status.Transaction.Interrupted;
 
 // Please note. Except separate test cases for particular classes related to community locking
 // see also LockingCompatibilityTestSuite test suite
@@ -73,11 +73,18 @@ public class ForsetiClient implements Locks.Client
     private final int clientId;
 
     /** resourceType -> lock map. These are the global lock maps, shared across all clients. */
-    private final ConcurrentMap<Long,ForsetiLockManager.Lock>[] lockMaps;
+    private final LockTable[] lockMaps;
 
     /** resourceType -> wait strategy */
     private final WaitStrategy<AcquireLockTimeoutException>[] waitStrategies;
 
+    /**
+     * resourceType -> adaptive wait strategy, used instead of {@link #waitStrategies} unless {@code null}.
+     *
+     * @see GraphDatabaseSettings#lock_adaptive_wait
+     */
+    private final AdaptiveWaitStrategy[] adaptiveWaitStrategies;
+
     /** How to resolve deadlocks. */
     private final DeadlockResolutionStrategy deadlockResolutionStrategy;
 
@@ -138,14 +145,71 @@ public class ForsetiClient implements Locks.Client
      */
     private volatile ForsetiLockManager.Lock waitingForLock;
 
-    public ForsetiClient( int id, ConcurrentMap<Long,ForsetiLockManager.Lock>[] lockMaps,
+    /**
+     * Global intent locks, one shared lock per resource type, or {@code null} if lock escalation is disabled.
+     *
+     * @see ForsetiLockManager
+     */
+    private final LockTable intentLocks;
+
+    /** Number of exclusive locks of one resource type after which we try to escalate, zero if disabled. */
+    private final int escalationThreshold;
+
+    /** resourceType -> whether we hold the intent lock of that type. */
+    private final boolean[] heldIntentLocks;
+
+    /** resourceType -> whether we hold an exclusive lock on the whole resource type. */
+    private final boolean[] escalatedLocks;
+
+    /** resourceType -> number of held exclusive locks at which to make the next attempt at escalating. */
+    private final int[] nextEscalationAttempt;
+
+    /**
+     * Detector of deadlocks among all clients, or {@code null} if each client should look for deadlocks itself
+     * while waiting.
+     */
+    private final ForsetiDeadlockDetector deadlockDetector;
+
+    /**
+     * Set by the {@link #deadlockDetector} to the lock we were waiting for, when it finds us to be part of a deadlock
+     * and chooses us to abort.
+     */
+    private volatile ForsetiLockManager.Lock deadlockedOn;
+    private volatile String deadlockDescription;
+
+    /** When we started waiting for the lock we are currently waiting for, if waiting adaptively. */
+    private long waitStartNanos;
+
+    public ForsetiClient( int id, LockTable[] lockMaps,
                           WaitStrategy<AcquireLockTimeoutException>[] waitStrategies, Pool<ForsetiClient> clientPool,
                           DeadlockResolutionStrategy deadlockResolutionStrategy, IntFunction<ForsetiClient> clientById,
                           long lockAcquisitionTimeoutMillis, Clock clock )
+    {
+        this( id, lockMaps, waitStrategies, clientPool, deadlockResolutionStrategy, clientById,
+                lockAcquisitionTimeoutMillis, clock, null, 0, null );
+    }
+
+    public ForsetiClient( int id, LockTable[] lockMaps,
+                          WaitStrategy<AcquireLockTimeoutException>[] waitStrategies, Pool<ForsetiClient> clientPool,
+                          DeadlockResolutionStrategy deadlockResolutionStrategy, IntFunction<ForsetiClient> clientById,
+                          long lockAcquisitionTimeoutMillis, Clock clock, LockTable intentLocks,
+                          int escalationThreshold, ForsetiDeadlockDetector deadlockDetector )
+    {
+        this( id, lockMaps, waitStrategies, clientPool, deadlockResolutionStrategy, clientById,
+                lockAcquisitionTimeoutMillis, clock, intentLocks, escalationThreshold, deadlockDetector, null );
+    }
+
+    public ForsetiClient( int id, LockTable[] lockMaps,
+                          WaitStrategy<AcquireLockTimeoutException>[] waitStrategies, Pool<ForsetiClient> clientPool,
+                          DeadlockResolutionStrategy deadlockResolutionStrategy, IntFunction<ForsetiClient> clientById,
+                          long lockAcquisitionTimeoutMillis, Clock clock, LockTable intentLocks,
+                          int escalationThreshold, ForsetiDeadlockDetector deadlockDetector,
+                          AdaptiveWaitStrategy[] adaptiveWaitStrategies )
     {
         this.clientId = id;
         this.lockMaps = lockMaps;
         this.waitStrategies = waitStrategies;
+        this.adaptiveWaitStrategies = adaptiveWaitStrategies;
         this.deadlockResolutionStrategy = deadlockResolutionStrategy;
         this.clientPool = clientPool;
         this.clientById = clientById;
@@ -153,11 +217,18 @@ public class ForsetiClient implements Locks.Client
         this.exclusiveLockCounts = new PrimitiveLongIntMap[lockMaps.length];
         this.lockAcquisitionTimeoutMillis = lockAcquisitionTimeoutMillis;
         this.clock = clock;
+        this.intentLocks = intentLocks;
+        this.escalationThreshold = intentLocks != null ? escalationThreshold : 0;
+        this.heldIntentLocks = new boolean[lockMaps.length];
+        this.escalatedLocks = new boolean[lockMaps.length];
+        this.nextEscalationAttempt = new int[lockMaps.length];
+        this.deadlockDetector = deadlockDetector;
 
         for ( int i = 0; i < sharedLockCounts.length; i++ )
         {
             sharedLockCounts[i] = Primitive.longIntMap();
             exclusiveLockCounts[i] = Primitive.longIntMap();
+            nextEscalationAttempt[i] = this.escalationThreshold;
         }
     }
 
@@ -180,8 +251,15 @@ public class ForsetiClient implements Locks.Client
 
         try
         {
+            if ( escalatedLocks[resourceType.typeId()] )
+            {
+                // We hold an exclusive lock on all resources of this type already
+                return;
+            }
+            acquireIntentLock( tracer, resourceType );
+
             // Grab the global lock map we will be using
-            ConcurrentMap<Long,ForsetiLockManager.Lock> lockMap = lockMaps[resourceType.typeId()];
+            LockTable lockMap = lockMaps[resourceType.typeId()];
 
             // And grab our local lock maps
             PrimitiveLongIntMap heldShareLocks = sharedLockCounts[resourceType.typeId()];
@@ -269,6 +347,10 @@ public class ForsetiClient implements Locks.Client
                     waitFor( existingLock, resourceType, resourceId, tries++ );
                 }
 
+                if ( tries > 0 )
+                {
+                    waited( resourceType );
+                }
                 // Make a local note about the fact that we now hold this lock
                 heldShareLocks.put( resourceId, 1 );
             }
@@ -295,7 +377,14 @@ public class ForsetiClient implements Locks.Client
 
         try
         {
-            ConcurrentMap<Long,ForsetiLockManager.Lock> lockMap = lockMaps[resourceType.typeId()];
+            if ( escalatedLocks[resourceType.typeId()] )
+            {
+                // We hold an exclusive lock on all resources of this type already
+                return;
+            }
+            acquireIntentLock( tracer, resourceType );
+
+            LockTable lockMap = lockMaps[resourceType.typeId()];
             PrimitiveLongIntMap heldLocks = exclusiveLockCounts[resourceType.typeId()];
 
             for ( long resourceId : resourceIds )
@@ -338,8 +427,17 @@ public class ForsetiClient implements Locks.Client
                     waitFor( existingLock, resourceType, resourceId, tries++ );
                 }
 
+                if ( tries > 0 )
+                {
+                    waited( resourceType );
+                }
                 heldLocks.put( resourceId, 1 );
             }
+
+            if ( escalationThreshold > 0 && heldLocks.size() >= nextEscalationAttempt[resourceType.typeId()] )
+            {
+                tryEscalate( resourceType );
+            }
         }
         finally
         {
@@ -361,7 +459,16 @@ public class ForsetiClient implements Locks.Client
 
         try
         {
-            ConcurrentMap<Long,ForsetiLockManager.Lock> lockMap = lockMaps[resourceType.typeId()];
+            if ( escalatedLocks[resourceType.typeId()] )
+            {
+                return true;
+            }
+            if ( !tryIntentLock( resourceType ) )
+            {
+                return false;
+            }
+
+            LockTable lockMap = lockMaps[resourceType.typeId()];
             PrimitiveLongIntMap heldLocks = exclusiveLockCounts[resourceType.typeId()];
 
             int heldCount = heldLocks.get( resourceId );
@@ -389,6 +496,7 @@ public class ForsetiClient implements Locks.Client
                         else
                         {
                             sharedLock.releaseUpdateLock();
+                            lockMap.signal( resourceId );
                             return false;
                         }
                     }
@@ -413,7 +521,16 @@ public class ForsetiClient implements Locks.Client
 
         try
         {
-            ConcurrentMap<Long,ForsetiLockManager.Lock> lockMap = lockMaps[resourceType.typeId()];
+            if ( escalatedLocks[resourceType.typeId()] )
+            {
+                return true;
+            }
+            if ( !tryIntentLock( resourceType ) )
+            {
+                return false;
+            }
+
+            LockTable lockMap = lockMaps[resourceType.typeId()];
             PrimitiveLongIntMap heldShareLocks = sharedLockCounts[resourceType.typeId()];
             PrimitiveLongIntMap heldExclusiveLocks = exclusiveLockCounts[resourceType.typeId()];
 
@@ -487,6 +604,11 @@ public class ForsetiClient implements Locks.Client
         stateHolder.incrementActiveClients( this );
         try
         {
+            if ( escalatedLocks[resourceType.typeId()] )
+            {
+                return true;
+            }
+
             PrimitiveLongIntMap heldShareLocks = sharedLockCounts[resourceType.typeId()];
             PrimitiveLongIntMap heldExclusiveLocks = exclusiveLockCounts[resourceType.typeId()];
 
@@ -521,6 +643,11 @@ public class ForsetiClient implements Locks.Client
         stateHolder.incrementActiveClients( this );
         try
         {
+            if ( escalatedLocks[resourceType.typeId()] )
+            {
+                return true;
+            }
+
             PrimitiveLongIntMap heldLocks = exclusiveLockCounts[resourceType.typeId()];
 
             int heldCount = heldLocks.get( resourceId );
@@ -549,9 +676,15 @@ public class ForsetiClient implements Locks.Client
         {
             PrimitiveLongIntMap sharedLocks = sharedLockCounts[resourceType.typeId()];
             PrimitiveLongIntMap exclusiveLocks = exclusiveLockCounts[resourceType.typeId()];
-            ConcurrentMap<Long,ForsetiLockManager.Lock> resourceTypeLocks = lockMaps[resourceType.typeId()];
+            LockTable resourceTypeLocks = lockMaps[resourceType.typeId()];
+            boolean escalated = escalatedLocks[resourceType.typeId()];
             for ( long resourceId : resourceIds )
             {
+                if ( escalated && !sharedLocks.containsKey( resourceId ) )
+                {
+                    // Covered by the escalated lock, which is only released along with all other locks
+                    continue;
+                }
                 if ( releaseLocalLock( resourceType, resourceId, sharedLocks ) )
                 {
                     continue;
@@ -577,10 +710,16 @@ public class ForsetiClient implements Locks.Client
         try
         {
             PrimitiveLongIntMap exclusiveLocks = exclusiveLockCounts[resourceType.typeId()];
-            ConcurrentMap<Long,ForsetiLockManager.Lock> resourceTypeLocks = lockMaps[resourceType.typeId()];
+            LockTable resourceTypeLocks = lockMaps[resourceType.typeId()];
             PrimitiveLongIntMap sharedLocks = sharedLockCounts[resourceType.typeId()];
+            boolean escalated = escalatedLocks[resourceType.typeId()];
             for ( long resourceId : resourceIds )
             {
+                if ( escalated && !exclusiveLocks.containsKey( resourceId ) )
+                {
+                    // Covered by the escalated lock, which is only released along with all other locks
+                    continue;
+                }
                 if ( releaseLocalLock( resourceType, resourceId, exclusiveLocks ) )
                 {
                     continue;
@@ -596,6 +735,7 @@ public class ForsetiClient implements Locks.Client
                         if ( sharedLock.isUpdateLock() )
                         {
                             sharedLock.releaseUpdateLock();
+                            resourceTypeLocks.signal( resourceId );
                         }
                         else
                         {
@@ -676,6 +816,11 @@ public class ForsetiClient implements Locks.Client
                 }
             }
         }
+
+        if ( intentLocks != null )
+        {
+            releaseIntentLocks();
+        }
     }
 
     @Override
@@ -722,13 +867,29 @@ public class ForsetiClient implements Locks.Client
         List<ActiveLock> locks = new ArrayList<>();
         collectActiveLocks( exclusiveLockCounts, locks, ActiveLock.Factory.EXCLUSIVE_LOCK );
         collectActiveLocks( sharedLockCounts, locks, ActiveLock.Factory.SHARED_LOCK );
+        for ( int typeId = 0; typeId < escalatedLocks.length; typeId++ )
+        {
+            if ( escalatedLocks[typeId] )
+            {
+                locks.add( ActiveLock.Factory.EXCLUSIVE_LOCK.create( ResourceTypes.fromId( typeId ),
+                        ForsetiLockManager.WHOLE_RESOURCE_TYPE ) );
+            }
+        }
         return locks.stream();
     }
 
     @Override
     public long activeLockCount()
     {
-        return countLocks( exclusiveLockCounts ) + countLocks( sharedLockCounts );
+        long count = countLocks( exclusiveLockCounts ) + countLocks( sharedLockCounts );
+        for ( boolean escalated : escalatedLocks )
+        {
+            if ( escalated )
+            {
+                count++;
+            }
+        }
+        return count;
     }
 
     private static void collectActiveLocks(
@@ -809,7 +970,7 @@ public class ForsetiClient implements Locks.Client
     }
 
     /** Release a lock from the global pool. */
-    private void releaseGlobalLock( ConcurrentMap<Long,ForsetiLockManager.Lock> lockMap, long resourceId )
+    private void releaseGlobalLock( LockTable lockMap, long resourceId )
     {
         ForsetiLockManager.Lock lock = lockMap.get( resourceId );
         if ( lock instanceof ExclusiveLock )
@@ -823,6 +984,11 @@ public class ForsetiClient implements Locks.Client
             ((SharedLock) lock).cleanUpdateHolder();
             lockMap.remove( resourceId );
         }
+        else if ( lock instanceof SharedLock )
+        {
+            // Others still hold it, but one of them may be waiting for us to leave so that it can upgrade
+            lockMap.signal( resourceId );
+        }
     }
 
     /** Release a lock locally, and return true if we still hold more references to that lock. */
@@ -843,6 +1009,136 @@ public class ForsetiClient implements Locks.Client
         return false;
     }
 
+    /**
+     * Grab the intent lock of the given resource type, unless lock escalation is disabled or we hold it already.
+     * This waits for any client that has escalated its locks of this type to be done.
+     */
+    private void acquireIntentLock( LockTracer tracer, ResourceType resourceType )
+            throws AcquireLockTimeoutException
+    {
+        int typeId = resourceType.typeId();
+        if ( intentLocks == null || heldIntentLocks[typeId] )
+        {
+            return;
+        }
+
+        LockWaitEvent waitEvent = null;
+        try
+        {
+            int tries = 0;
+            long waitStartMillis = clock.millis();
+            while ( !tryAcquireIntentLock( typeId ) )
+            {
+                assertValid( waitStartMillis, resourceType, ForsetiLockManager.WHOLE_RESOURCE_TYPE );
+                ForsetiLockManager.Lock escalatedLock = intentLocks.get( typeId );
+                if ( escalatedLock != null )
+                {
+                    if ( waitEvent == null )
+                    {
+                        waitEvent = tracer.waitForLock( false, resourceType, ForsetiLockManager.WHOLE_RESOURCE_TYPE );
+                    }
+                    waitFor( escalatedLock, resourceType, ForsetiLockManager.WHOLE_RESOURCE_TYPE, tries++ );
+                }
+            }
+        }
+        finally
+        {
+            if ( waitEvent != null )
+            {
+                waitEvent.close();
+            }
+        }
+        heldIntentLocks[typeId] = true;
+    }
+
+    /** Like {@link #acquireIntentLock(LockTracer, ResourceType)}, but give up instead of waiting. */
+    private boolean tryIntentLock( ResourceType resourceType )
+    {
+        int typeId = resourceType.typeId();
+        if ( intentLocks == null || heldIntentLocks[typeId] )
+        {
+            return true;
+        }
+        if ( tryAcquireIntentLock( typeId ) )
+        {
+            heldIntentLocks[typeId] = true;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean tryAcquireIntentLock( int typeId )
+    {
+        while ( true )
+        {
+            ForsetiLockManager.Lock existingLock = intentLocks.get( typeId );
+            if ( existingLock == null )
+            {
+                if ( intentLocks.putIfAbsent( typeId, new SharedLock( this ) ) == null )
+                {
+                    return true;
+                }
+            }
+            else if ( ((SharedLock) existingLock).acquire( this ) )
+            {
+                return true;
+            }
+            else if ( ((SharedLock) existingLock).numberOfHolders() > 0 )
+            {
+                // Escalated by another client, or simply full
+                return false;
+            }
+            // Otherwise the last holder released the lock just now, so there'll soon be room for a new one
+        }
+    }
+
+    /**
+     * Try to swap all our locks of the given resource type for one exclusive lock on the whole resource type, by
+     * upgrading our intent lock. This only succeeds if no other client holds the intent lock, i.e. no other client
+     * holds, or waits for, any lock of this type. We don't wait for that to become true, since other clients may
+     * well be waiting for locks that we hold.
+     */
+    private void tryEscalate( ResourceType resourceType )
+    {
+        int typeId = resourceType.typeId();
+        SharedLock intentLock = (SharedLock) intentLocks.get( typeId );
+        if ( intentLock.tryAcquireUpdateLock( this ) )
+        {
+            if ( intentLock.numberOfHolders() == 1 )
+            {
+                escalatedLocks[typeId] = true;
+                LockTable lockMap = lockMaps[typeId];
+                exclusiveLockCounts[typeId].visitKeys(
+                        releaseExclusiveAndClearSharedVisitor.initialize( sharedLockCounts[typeId], lockMap ) );
+                sharedLockCounts[typeId].visitKeys( releaseSharedDontCheckExclusiveVisitor.initialize( lockMap ) );
+                exclusiveLockCounts[typeId] = Primitive.longIntMap();
+                sharedLockCounts[typeId] = Primitive.longIntMap();
+                return;
+            }
+            intentLock.releaseUpdateLock();
+            intentLocks.signal( typeId );
+        }
+        nextEscalationAttempt[typeId] += escalationThreshold;
+    }
+
+    private void releaseIntentLocks()
+    {
+        for ( int typeId = 0; typeId < heldIntentLocks.length; typeId++ )
+        {
+            if ( heldIntentLocks[typeId] )
+            {
+                if ( escalatedLocks[typeId] )
+                {
+                    ((SharedLock) intentLocks.get( typeId )).releaseUpdateLock();
+                    escalatedLocks[typeId] = false;
+                }
+                releaseGlobalLock( intentLocks, typeId );
+                heldIntentLocks[typeId] = false;
+            }
+            nextEscalationAttempt[typeId] = escalationThreshold;
+        }
+    }
+
     /**
      * Attempt to upgrade a share lock to an exclusive lock, grabbing the share lock if we don't hold it.
      **/
@@ -850,7 +1146,7 @@ public class ForsetiClient implements Locks.Client
             LockTracer tracer,
             LockWaitEvent waitEvent,
             ResourceType resourceType,
-            ConcurrentMap<Long,ForsetiLockManager.Lock> lockMap,
+            LockTable lockMap,
             long resourceId,
             SharedLock sharedLock,
             long waitStartMillis )
@@ -919,6 +1215,7 @@ public class ForsetiClient implements Locks.Client
             catch ( Throwable e )
             {
                 sharedLock.releaseUpdateLock();
+                lockMaps[resourceType.typeId()].signal( resourceId );
                 if ( e instanceof DeadlockDetectedException || e instanceof LockClientStoppedException )
                 {
                     throw (RuntimeException) e;
@@ -945,10 +1242,16 @@ public class ForsetiClient implements Locks.Client
 
     private void waitFor( ForsetiLockManager.Lock lock, ResourceType type, long resourceId, int tries )
     {
+        if ( deadlockDetector != null )
+        {
+            waitForDetectingDeadlocksElsewhere( lock, type, resourceId, tries );
+            return;
+        }
+
         waitingForLock = lock;
         clearWaitList();
         lock.copyHolderWaitListsInto( waitList );
-        applyWaitStrategy( type, tries );
+        applyWaitStrategy( lock, type, resourceId, tries );
 
         int b = lock.detectDeadlock( id() );
         if ( b != -1 && deadlockResolutionStrategy.shouldAbort( this, clientById.apply( b ) ) )
@@ -981,6 +1284,48 @@ public class ForsetiClient implements Locks.Client
         }
     }
 
+    /**
+     * Wait for the given lock, leaving it to the {@link #deadlockDetector} to find out whether or not we are waiting
+     * in vain, and only checking whether it has told us so.
+     */
+    private void waitForDetectingDeadlocksElsewhere( ForsetiLockManager.Lock lock, ResourceType type, long resourceId,
+            int tries )
+    {
+        if ( tries == 0 )
+        {
+            deadlockedOn = null;
+            waitingForLock = lock;
+            deadlockDetector.clientStartedWaiting();
+        }
+        else
+        {
+            waitingForLock = lock;
+        }
+
+        if ( deadlockedOn == lock )
+        {
+            deadlockedOn = null;
+            throw new DeadlockDetectedException( this + " can't acquire " + lock + " on " + type + "(" + resourceId +
+                    "), because it was chosen to abort in order to break this wait cycle:" + deadlockDescription );
+        }
+        applyWaitStrategy( lock, type, resourceId, tries );
+    }
+
+    /**
+     * Called by the {@link ForsetiDeadlockDetector} when it has chosen this client to abort, while waiting for the
+     * given lock, so that the rest of the clients in the wait cycle can make progress.
+     */
+    void deadlockDetected( ForsetiLockManager.Lock lock, String description )
+    {
+        deadlockDescription = description;
+        deadlockedOn = lock;
+    }
+
+    ForsetiLockManager.Lock waitingForLock()
+    {
+        return waitingForLock;
+    }
+
     private boolean isDeadlockReal( ForsetiLockManager.Lock lock, int tries )
     {
         Set<ForsetiLockManager.Lock> waitedUpon = new HashSet<>();
@@ -1076,10 +1421,47 @@ public class ForsetiClient implements Locks.Client
         return clientId;
     }
 
-    private void applyWaitStrategy( ResourceType resourceType, int tries )
+    private void applyWaitStrategy( ForsetiLockManager.Lock lock, ResourceType resourceType, long resourceId,
+            int tries )
+    {
+        if ( adaptiveWaitStrategies == null )
+        {
+            WaitStrategy<AcquireLockTimeoutException> waitStrategy = waitStrategies[resourceType.typeId()];
+            waitStrategy.apply( tries );
+            return;
+        }
+
+        long now = System.nanoTime();
+        if ( tries == 0 )
+        {
+            waitStartNanos = now;
+        }
+        long parkNanos = adaptiveWaitStrategies[resourceType.typeId()].parkNanos( now - waitStartNanos );
+        if ( parkNanos > 0 )
+        {
+            if ( resourceId == ForsetiLockManager.WHOLE_RESOURCE_TYPE )
+            {
+                intentLocks.parkWhileHeld( resourceType.typeId(), lock, parkNanos );
+            }
+            else
+            {
+                lockMaps[resourceType.typeId()].parkWhileHeld( resourceId, lock, parkNanos );
+            }
+            if ( Thread.interrupted() )
+            {
+                throw new AcquireLockTimeoutException( new InterruptedException(), "Interrupted while waiting.",
+                        Interrupted );
+            }
+        }
+    }
+
+    /** Feed how long we waited for the lock we just got, into the adaptive wait strategy of its resource type. */
+    private void waited( ResourceType resourceType )
     {
-        WaitStrategy<AcquireLockTimeoutException> waitStrategy = waitStrategies[resourceType.typeId()];
-        waitStrategy.apply( tries );
+        if ( adaptiveWaitStrategies != null )
+        {
+            adaptiveWaitStrategies[resourceType.typeId()].waited( System.nanoTime() - waitStartNanos );
+        }
     }
 
     private void assertValid( long waitStartMillis, ResourceType resourceType, long resourceId )
@@ -1115,9 +1497,9 @@ public class ForsetiClient implements Locks.Client
      */
     private class ReleaseSharedDontCheckExclusiveVisitor implements PrimitiveLongVisitor<RuntimeException>
     {
-        private ConcurrentMap<Long,ForsetiLockManager.Lock> lockMap;
+        private LockTable lockMap;
 
-        private PrimitiveLongVisitor<RuntimeException> initialize( ConcurrentMap<Long,ForsetiLockManager.Lock> lockMap )
+        private PrimitiveLongVisitor<RuntimeException> initialize( LockTable lockMap )
         {
             this.lockMap = lockMap;
             return this;
@@ -1138,10 +1520,10 @@ public class ForsetiClient implements Locks.Client
     private class ReleaseExclusiveLocksAndClearSharedVisitor implements PrimitiveLongVisitor<RuntimeException>
     {
         private PrimitiveLongIntMap sharedLockCounts;
-        private ConcurrentMap<Long,ForsetiLockManager.Lock> lockMap;
+        private LockTable lockMap;
 
         private PrimitiveLongVisitor<RuntimeException> initialize( PrimitiveLongIntMap sharedLockCounts,
-                                                                   ConcurrentMap<Long,ForsetiLockManager.Lock> lockMap )
+                                                                   LockTable lockMap )
         {
             this.sharedLockCounts = sharedLockCounts;
             this.lockMap = lockMap;
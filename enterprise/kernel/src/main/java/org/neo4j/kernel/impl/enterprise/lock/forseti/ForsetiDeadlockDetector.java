@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.enterprise.lock.forseti;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.scheduler.JobScheduler;
+
+/**
+ * Finds deadlocks between Forseti clients by periodically looking for cycles in a wait-for graph, as an alternative to
+ * having every waiting client probe for deadlocks on every iteration of its wait loop.
+ * <p>
+ * The graph has an edge from each waiting client to each of the owners of the lock it waits for. Lock ownership is
+ * read without any coordination with the clients, so a single pass may see a cycle that was never really there. To
+ * avoid aborting anyone on such grounds, the graph is maintained incrementally across passes, and a waiting client
+ * only contributes edges once it has been seen waiting for the same lock in two consecutive passes.
+ * <p>
+ * For every cycle found, one client in it is chosen as victim by the
+ * {@link ForsetiLockManager.DeadlockResolutionStrategy} in use, by default the client holding the fewest locks, and
+ * told to abort. The victim throws a
+ * {@link org.neo4j.kernel.DeadlockDetectedException} from its wait loop the next time it wakes up.
+ * <p>
+ * Detection runs as a recurring job in the {@link JobScheduler.Groups#deadlockDetection} group, which is scheduled
+ * when a client first has to wait for a lock, and cancelled when the lock manager is closed.
+ */
+class ForsetiDeadlockDetector
+{
+    private final Collection<ForsetiClient> clients;
+    private final ForsetiLockManager.DeadlockResolutionStrategy resolutionStrategy;
+    private final JobScheduler scheduler;
+    private final long intervalMillis;
+    private volatile JobScheduler.JobHandle job;
+    private boolean closed;
+
+    /** Clients seen waiting in the previous pass, and the lock they were waiting for. */
+    private Map<ForsetiClient,ForsetiLockManager.Lock> previousWaits = new HashMap<>();
+
+    ForsetiDeadlockDetector( Collection<ForsetiClient> clients,
+            ForsetiLockManager.DeadlockResolutionStrategy resolutionStrategy, JobScheduler scheduler,
+            long intervalMillis )
+    {
+        this.clients = clients;
+        this.resolutionStrategy = resolutionStrategy;
+        this.scheduler = scheduler;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Called by clients that start waiting for a lock, to make sure that detection is scheduled.
+     */
+    void clientStartedWaiting()
+    {
+        if ( job == null )
+        {
+            scheduleDetection();
+        }
+    }
+
+    private synchronized void scheduleDetection()
+    {
+        if ( job == null && !closed )
+        {
+            job = scheduler.scheduleRecurring( JobScheduler.Groups.deadlockDetection, this::detectDeadlocks,
+                    intervalMillis, intervalMillis, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    synchronized void close()
+    {
+        closed = true;
+        if ( job != null )
+        {
+            job.cancel( false );
+        }
+    }
+
+    /**
+     * Runs one pass of deadlock detection, picking a victim for every wait cycle among clients that have been waiting
+     * for the same lock since the previous pass.
+     */
+    synchronized void detectDeadlocks()
+    {
+        Map<ForsetiClient,ForsetiLockManager.Lock> waits = new HashMap<>();
+        Map<ForsetiClient,Set<ForsetiClient>> waitsFor = new HashMap<>();
+        for ( ForsetiClient client : clients )
+        {
+            ForsetiLockManager.Lock lock = client.waitingForLock();
+            if ( lock == null )
+            {
+                continue;
+            }
+            waits.put( client, lock );
+            if ( previousWaits.get( client ) == lock )
+            {
+                Set<ForsetiClient> owners = new HashSet<>();
+                lock.collectOwners( owners );
+                // Clients upgrading a shared lock are among its owners, but they're only waiting for the others
+                owners.remove( client );
+                waitsFor.put( client, owners );
+            }
+        }
+        previousWaits = waits;
+
+        Set<ForsetiClient> visited = new HashSet<>();
+        for ( ForsetiClient client : new ArrayList<>( waitsFor.keySet() ) )
+        {
+            if ( !visited.contains( client ) && waitsFor.containsKey( client ) )
+            {
+                findCycles( client, waitsFor, waits, visited );
+            }
+        }
+    }
+
+    /**
+     * Depth first search from the given client, aborting a victim of every cycle found. Victims are removed from the
+     * graph, since they will release their locks, so that they don't make other cycles appear to be unresolved.
+     */
+    private void findCycles( ForsetiClient start, Map<ForsetiClient,Set<ForsetiClient>> waitsFor,
+            Map<ForsetiClient,ForsetiLockManager.Lock> waits, Set<ForsetiClient> visited )
+    {
+        List<ForsetiClient> path = new ArrayList<>();
+        List<Iterator<ForsetiClient>> pathEdges = new ArrayList<>();
+        Set<ForsetiClient> onPath = new HashSet<>();
+        path.add( start );
+        pathEdges.add( waitsFor.get( start ).iterator() );
+        onPath.add( start );
+        visited.add( start );
+
+        while ( !path.isEmpty() )
+        {
+            int top = path.size() - 1;
+            Iterator<ForsetiClient> edges = pathEdges.get( top );
+            if ( !edges.hasNext() || !waitsFor.containsKey( path.get( top ) ) )
+            {
+                onPath.remove( path.remove( top ) );
+                pathEdges.remove( top );
+                continue;
+            }
+
+            ForsetiClient next = edges.next();
+            if ( !waitsFor.containsKey( next ) )
+            {
+                // Either not waiting long enough to be part of the graph, or already chosen as a victim
+                continue;
+            }
+            if ( onPath.contains( next ) )
+            {
+                List<ForsetiClient> cycle = path.subList( path.indexOf( next ), path.size() );
+                ForsetiClient victim = chooseVictim( cycle );
+                victim.deadlockDetected( waits.get( victim ), describe( cycle, waits ) );
+                waitsFor.remove( victim );
+            }
+            else if ( !visited.contains( next ) )
+            {
+                path.add( next );
+                pathEdges.add( waitsFor.get( next ).iterator() );
+                onPath.add( next );
+                visited.add( next );
+            }
+        }
+    }
+
+    private ForsetiClient chooseVictim( List<ForsetiClient> cycle )
+    {
+        ForsetiClient victim = cycle.get( 0 );
+        for ( int i = 1; i < cycle.size(); i++ )
+        {
+            ForsetiClient candidate = cycle.get( i );
+            if ( resolutionStrategy.shouldAbort( candidate, victim ) )
+            {
+                victim = candidate;
+            }
+        }
+        return victim;
+    }
+
+    private static String describe( List<ForsetiClient> cycle, Map<ForsetiClient,ForsetiLockManager.Lock> waits )
+    {
+        StringBuilder description = new StringBuilder();
+        for ( ForsetiClient client : cycle )
+        {
+            description.append( "\n  " ).append( client ).append( " waits for " ).append( waits.get( client ) );
+        }
+        return description.toString();
+    }
+}
@@ -20,7 +20,6 @@
 package org.neo4j.kernel.impl.enterprise.lock.forseti;
 
 import java.time.Clock;
-import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -34,6 +33,7 @@ import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.impl.locking.Locks;
 import org.neo4j.kernel.impl.util.collection.SimpleBitSet;
+import org.neo4j.scheduler.JobScheduler;
 import org.neo4j.storageengine.api.lock.AcquireLockTimeoutException;
 import org.neo4j.storageengine.api.lock.ResourceType;
 import org.neo4j.storageengine.api.lock.WaitStrategy;
@@ -106,9 +106,37 @@ import org.neo4j.storageengine.api.lock.WaitStrategy;
  * traversing the graph like this until we either find ourselves amongst the owners - a deadlock - or we run out of
  * locks that are being waited upon - no deadlock.
  * <p/>
+ * Alternatively, when {@link GraphDatabaseSettings#lock_deadlock_detection_interval} is set, waiting clients do none of
+ * the above. A {@link ForsetiDeadlockDetector} instead periodically looks for cycles among all waiting clients, and
+ * tells one client in each cycle to abort.
+ * <p/>
+ * <h2>Lock escalation</h2>
+ * <p/>
+ * Transactions that write large parts of the graph would otherwise take one lock per entity, each one costing an entry
+ * in the global lock map as well as in the local lock counts of the client. When
+ * {@link GraphDatabaseSettings#lock_escalation_threshold} is set, every client first takes an intent lock on a
+ * resource type before taking any lock of that type. Intent locks are shared locks, one per resource type, kept in a
+ * separate lock map. A client that holds more exclusive locks of a type than the threshold tries to escalate by
+ * upgrading its intent lock to an update lock. If it turns out to be the only holder of the intent lock, no other
+ * client holds or waits for any lock of that type, so the client now effectively holds an exclusive lock on the whole
+ * resource type and releases its individual locks of that type. Other clients block on their intent lock until the
+ * escalated transaction is done. If there are other holders of the intent lock, the escalation is abandoned instead
+ * of waited for, and tried again after as many locks again.
+ * <p/>
+ * <h2>Waiting</h2>
+ * <p/>
+ * By default, a client that can't get a lock polls it according to the {@link ResourceType#waitStrategy() wait
+ * strategy} of its resource type. When {@link GraphDatabaseSettings#lock_adaptive_wait} is set, an
+ * {@link AdaptiveWaitStrategy} per resource type instead learns how long clients usually wait for locks of that
+ * type, and lets clients spin through waits that are expected to be short, and park for the longer ones. Parked
+ * clients are woken up by the lock table when the lock they are waiting for is released.
+ * <p/>
  */
 public class ForsetiLockManager implements Locks
 {
+    /** Resource id used for describing locks covering a whole resource type, i.e. intent and escalated locks. */
+    static final long WHOLE_RESOURCE_TYPE = -1;
+
     /** This is Forsetis internal lock API, which it uses to do deadlock detection. */
     interface Lock
     {
@@ -186,7 +214,13 @@ public class ForsetiLockManager implements Locks
     }
 
     /** Pointers to lock maps, one array per resource type. */
-    private final ConcurrentMap<Long,ForsetiLockManager.Lock>[] lockMaps;
+    private final LockTable[] lockMaps;
+
+    /** Intent locks, keyed by resource type id, or {@code null} if lock escalation is disabled. */
+    private final LockTable intentLocks;
+
+    /** Background deadlock detector, or {@code null} if clients look for deadlocks themselves while waiting. */
+    private final ForsetiDeadlockDetector deadlockDetector;
 
     /** Reverse lookup resource types by id, used for introspection */
     private final ResourceType[] resourceTypes;
@@ -196,20 +230,35 @@ public class ForsetiLockManager implements Locks
 
     private volatile boolean closed;
 
-    @SuppressWarnings( "unchecked" )
     public ForsetiLockManager( Config config, Clock clock, ResourceType... resourceTypes )
+    {
+        this( config, clock, null, resourceTypes );
+    }
+
+    /**
+     * @param scheduler runs the background deadlock detector, if one is configured through
+     * {@link GraphDatabaseSettings#lock_deadlock_detection_interval}. May be {@code null} otherwise.
+     */
+    @SuppressWarnings( "unchecked" )
+    public ForsetiLockManager( Config config, Clock clock, JobScheduler scheduler, ResourceType... resourceTypes )
     {
         int maxResourceId = findMaxResourceId( resourceTypes );
-        this.lockMaps = new ConcurrentMap[maxResourceId];
+        this.lockMaps = new LockTable[maxResourceId];
         this.resourceTypes = new ResourceType[maxResourceId];
 
         /* Wait strategies per resource type */
         WaitStrategy<AcquireLockTimeoutException>[] waitStrategies = new WaitStrategy[maxResourceId];
+        AdaptiveWaitStrategy[] adaptiveWaitStrategies =
+                config.get( GraphDatabaseSettings.lock_adaptive_wait ) ? new AdaptiveWaitStrategy[maxResourceId] : null;
 
         for ( ResourceType type : resourceTypes )
         {
-            this.lockMaps[type.typeId()] = new ConcurrentHashMap<>( 16, 0.6f, 512 );
+            this.lockMaps[type.typeId()] = new LockTable();
             waitStrategies[type.typeId()] = type.waitStrategy();
+            if ( adaptiveWaitStrategies != null )
+            {
+                adaptiveWaitStrategies[type.typeId()] = new AdaptiveWaitStrategy();
+            }
             this.resourceTypes[type.typeId()] = type;
         }
         // TODO Using a FlyweightPool here might still be more than what we actually need.
@@ -217,7 +266,21 @@ public class ForsetiLockManager implements Locks
         // TODO be good enough. In fact, we could add the required fields for such a stack
         // TODO to the ForsetiClient objects themselves, making the stack garbage-free in
         // TODO the (presumably) common case of client re-use.
-        clientPool = new ForsetiClientFlyweightPool( config, clock, lockMaps, waitStrategies );
+        int escalationThreshold = config.get( GraphDatabaseSettings.lock_escalation_threshold );
+        this.intentLocks = escalationThreshold > 0 ? new LockTable( 1 ) : null;
+        ConcurrentMap<Integer,ForsetiClient> clientsById = new ConcurrentHashMap<>();
+        long detectionIntervalMillis = config.get( GraphDatabaseSettings.lock_deadlock_detection_interval ).toMillis();
+        if ( detectionIntervalMillis > 0 && scheduler == null )
+        {
+            throw new IllegalArgumentException( "A job scheduler is needed to run the background deadlock detector " +
+                    "configured through " + GraphDatabaseSettings.lock_deadlock_detection_interval.name() );
+        }
+        this.deadlockDetector = detectionIntervalMillis > 0
+                                ? new ForsetiDeadlockDetector( clientsById.values(), DeadlockStrategies.DEFAULT,
+                                        scheduler, detectionIntervalMillis )
+                                : null;
+        clientPool = new ForsetiClientFlyweightPool( config, clock, lockMaps, waitStrategies, intentLocks,
+                escalationThreshold, clientsById, deadlockDetector, adaptiveWaitStrategies );
     }
 
     /**
@@ -247,13 +310,22 @@ public class ForsetiLockManager implements Locks
             if ( lockMaps[i] != null )
             {
                 ResourceType type = resourceTypes[i];
-                for ( Map.Entry<Long,Lock> entry : lockMaps[i].entrySet() )
+                lockMaps[i].visit( ( resourceId, lock ) ->
                 {
-                    Lock lock = entry.getValue();
-                    out.visit( type, entry.getKey(), lock.describeWaitList(), 0, System.identityHashCode( lock ) );
-                }
+                    out.visit( type, resourceId, lock.describeWaitList(), 0, System.identityHashCode( lock ) );
+                    return false;
+                } );
             }
         }
+        if ( intentLocks != null )
+        {
+            intentLocks.visit( ( typeId, lock ) ->
+            {
+                out.visit( resourceTypes[(int) typeId], WHOLE_RESOURCE_TYPE, lock.describeWaitList(), 0,
+                        System.identityHashCode( lock ) );
+                return false;
+            } );
+        }
     }
 
     private int findMaxResourceId( ResourceType[] resourceTypes )
@@ -270,6 +342,10 @@ public class ForsetiLockManager implements Locks
     public void close()
     {
         this.closed = true;
+        if ( deadlockDetector != null )
+        {
+            deadlockDetector.close();
+        }
     }
 
     private static class ForsetiClientFlyweightPool extends LinkedQueuePool<ForsetiClient>
@@ -279,21 +355,32 @@ public class ForsetiLockManager implements Locks
 
         /** Re-use ids, forseti uses these in arrays, so we want to keep them low and not loose them. */
         private final Queue<Integer> unusedIds = new ConcurrentLinkedQueue<>();
-        private final ConcurrentMap<Integer,ForsetiClient> clientsById = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Integer,ForsetiClient> clientsById;
         private final Config config;
         private final Clock clock;
-        private final ConcurrentMap<Long,ForsetiLockManager.Lock>[] lockMaps;
+        private final LockTable[] lockMaps;
         private final WaitStrategy<AcquireLockTimeoutException>[] waitStrategies;
+        private final LockTable intentLocks;
+        private final int escalationThreshold;
+        private final ForsetiDeadlockDetector deadlockDetector;
+        private final AdaptiveWaitStrategy[] adaptiveWaitStrategies;
         private final DeadlockResolutionStrategy deadlockResolutionStrategy = DeadlockStrategies.DEFAULT;
 
-        ForsetiClientFlyweightPool( Config config, Clock clock, ConcurrentMap<Long,Lock>[] lockMaps,
-                WaitStrategy<AcquireLockTimeoutException>[] waitStrategies )
+        ForsetiClientFlyweightPool( Config config, Clock clock, LockTable[] lockMaps,
+                WaitStrategy<AcquireLockTimeoutException>[] waitStrategies, LockTable intentLocks,
+                int escalationThreshold, ConcurrentMap<Integer,ForsetiClient> clientsById,
+                ForsetiDeadlockDetector deadlockDetector, AdaptiveWaitStrategy[] adaptiveWaitStrategies )
         {
             super( 128, null );
             this.config = config;
             this.clock = clock;
             this.lockMaps = lockMaps;
             this.waitStrategies = waitStrategies;
+            this.intentLocks = intentLocks;
+            this.escalationThreshold = escalationThreshold;
+            this.clientsById = clientsById;
+            this.deadlockDetector = deadlockDetector;
+            this.adaptiveWaitStrategies = adaptiveWaitStrategies;
         }
 
         @Override
@@ -306,7 +393,8 @@ public class ForsetiLockManager implements Locks
             }
             long lockAcquisitionTimeoutMillis = config.get( GraphDatabaseSettings.lock_acquisition_timeout ).toMillis();
             ForsetiClient client = new ForsetiClient( id, lockMaps, waitStrategies, this,
-                    deadlockResolutionStrategy, clientsById::get, lockAcquisitionTimeoutMillis, clock );
+                    deadlockResolutionStrategy, clientsById::get, lockAcquisitionTimeoutMillis, clock,
+                    intentLocks, escalationThreshold, deadlockDetector, adaptiveWaitStrategies );
             clientsById.put( id, client );
             return client;
         }
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.enterprise.lock.forseti;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
+
+/**
+ * Concurrent table of the global locks of one resource type, keyed by resource id.
+ * <p>
+ * This replaces a {@code ConcurrentHashMap<Long,Lock>}, which would box every resource id and allocate a map node
+ * for every lock that gets acquired. Here resource ids are kept as primitive longs in open addressing tables, so
+ * acquiring and releasing a lock that isn't contended allocates nothing, apart from the lock itself in the case of
+ * shared locks.
+ * <p>
+ * The key space is split over a number of stripes, each one a linear probing table guarded by a
+ * {@link StampedLock}. Lookups are optimistic and only fall back to taking the read lock if a concurrent update
+ * to the same stripe interfered. Removals shift subsequent entries back instead of leaving tombstones, so that
+ * tables don't degrade as locks come and go, and stripes shrink again once a large transaction has released
+ * its locks.
+ * <p>
+ * Clients that would rather not poll a contended lock can {@link #parkWhileHeld(long, ForsetiLockManager.Lock, long)
+ * park} on its stripe. Replacing or removing a lock, or {@link #signal(long) signalling} a change to one, wakes up
+ * the threads parked on that stripe.
+ */
+final class LockTable
+{
+    static final int DEFAULT_STRIPES = 256;
+    private static final int MIN_STRIPE_CAPACITY = 8;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    LockTable()
+    {
+        this( DEFAULT_STRIPES );
+    }
+
+    LockTable( int stripeCount )
+    {
+        if ( Integer.bitCount( stripeCount ) != 1 )
+        {
+            throw new IllegalArgumentException( "Stripe count must be a power of two, but was " + stripeCount );
+        }
+        this.stripes = new Stripe[stripeCount];
+        this.stripeMask = stripeCount - 1;
+        for ( int i = 0; i < stripeCount; i++ )
+        {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @return the lock for the given resource, or {@code null} if there is none.
+     */
+    ForsetiLockManager.Lock get( long resourceId )
+    {
+        long hash = hash( resourceId );
+        return stripe( hash ).get( resourceId, hash );
+    }
+
+    /**
+     * Associates the given lock with the resource, unless there's already a lock for it.
+     *
+     * @return the lock already associated with the resource, or {@code null} if the given lock was installed.
+     */
+    ForsetiLockManager.Lock putIfAbsent( long resourceId, ForsetiLockManager.Lock lock )
+    {
+        long hash = hash( resourceId );
+        return stripe( hash ).put( resourceId, hash, lock, false );
+    }
+
+    /**
+     * Associates the given lock with the resource, replacing any lock already associated with it.
+     *
+     * @return the lock previously associated with the resource, or {@code null} if there was none.
+     */
+    ForsetiLockManager.Lock put( long resourceId, ForsetiLockManager.Lock lock )
+    {
+        long hash = hash( resourceId );
+        return stripe( hash ).put( resourceId, hash, lock, true );
+    }
+
+    /**
+     * Removes the lock of the given resource, if any.
+     */
+    void remove( long resourceId )
+    {
+        long hash = hash( resourceId );
+        stripe( hash ).remove( resourceId, hash );
+    }
+
+    /**
+     * Parks the calling thread for at most the given number of nanoseconds, or until the lock of the given resource
+     * is no longer the given one, or changes state. Any change to a lock in the same stripe wakes the thread up, so
+     * callers must check the lock again when this returns.
+     */
+    void parkWhileHeld( long resourceId, ForsetiLockManager.Lock lock, long nanos )
+    {
+        long hash = hash( resourceId );
+        Stripe stripe = stripe( hash );
+        Thread thread = Thread.currentThread();
+        stripe.waiters.add( thread );
+        try
+        {
+            // The lock may have been released before we got on the wait queue, in which case nobody would wake us
+            if ( stripe.get( resourceId, hash ) == lock )
+            {
+                LockSupport.parkNanos( this, nanos );
+            }
+        }
+        finally
+        {
+            stripe.waiters.remove( thread );
+        }
+    }
+
+    /**
+     * Wakes up threads parked on the stripe of the given resource. Replacing or removing locks does this already,
+     * this is for changes to the state of a lock that stays in the table, like a shared lock losing a holder.
+     */
+    void signal( long resourceId )
+    {
+        stripe( hash( resourceId ) ).wakeWaiters();
+    }
+
+    /**
+     * Visits all locks currently in the table. Each stripe is read-locked while being visited, so the visitor
+     * must not modify this table.
+     */
+    <E extends Exception> void visit( PrimitiveLongObjectVisitor<ForsetiLockManager.Lock,E> visitor ) throws E
+    {
+        for ( Stripe stripe : stripes )
+        {
+            if ( stripe.visit( visitor ) )
+            {
+                return;
+            }
+        }
+    }
+
+    private Stripe stripe( long hash )
+    {
+        // Slots within a stripe are picked from the low bits, so pick stripes from the high bits
+        return stripes[(int) (hash >>> 40) & stripeMask];
+    }
+
+    private static long hash( long resourceId )
+    {
+        long hash = resourceId * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static final class Stripe
+    {
+        private final StampedLock lock = new StampedLock();
+        private long[] keys = new long[MIN_STRIPE_CAPACITY];
+        private ForsetiLockManager.Lock[] values = new ForsetiLockManager.Lock[MIN_STRIPE_CAPACITY];
+        private int size;
+
+        /** Threads parked until a lock in this stripe changes. */
+        private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+        ForsetiLockManager.Lock get( long key, long hash )
+        {
+            long stamp = lock.tryOptimisticRead();
+            ForsetiLockManager.Lock value = find( keys, values, key, hash );
+            if ( !lock.validate( stamp ) )
+            {
+                stamp = lock.readLock();
+                try
+                {
+                    value = find( keys, values, key, hash );
+                }
+                finally
+                {
+                    lock.unlockRead( stamp );
+                }
+            }
+            return value;
+        }
+
+        ForsetiLockManager.Lock put( long key, long hash, ForsetiLockManager.Lock value, boolean replace )
+        {
+            boolean wake = false;
+            long stamp = lock.writeLock();
+            try
+            {
+                int mask = values.length - 1;
+                int slot = (int) hash & mask;
+                ForsetiLockManager.Lock existing;
+                while ( (existing = values[slot]) != null )
+                {
+                    if ( keys[slot] == key )
+                    {
+                        if ( replace )
+                        {
+                            values[slot] = value;
+                            wake = true;
+                        }
+                        return existing;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = value;
+                if ( ++size > values.length >>> 1 )
+                {
+                    resize( values.length << 1 );
+                }
+                return null;
+            }
+            finally
+            {
+                lock.unlockWrite( stamp );
+                if ( wake )
+                {
+                    wakeWaiters();
+                }
+            }
+        }
+
+        void remove( long key, long hash )
+        {
+            long stamp = lock.writeLock();
+            try
+            {
+                int mask = values.length - 1;
+                int slot = (int) hash & mask;
+                while ( true )
+                {
+                    if ( values[slot] == null )
+                    {
+                        return;
+                    }
+                    if ( keys[slot] == key )
+                    {
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+
+                // Shift back entries following the removed one, unless they are already in their ideal position
+                // as seen from the hole, i.e. their home slot lies cyclically within (hole, candidate].
+                int hole = slot;
+                int candidate = slot;
+                while ( true )
+                {
+                    candidate = (candidate + 1) & mask;
+                    if ( values[candidate] == null )
+                    {
+                        break;
+                    }
+                    int home = (int) hash( keys[candidate] ) & mask;
+                    boolean staysPut = hole <= candidate
+                                       ? hole < home && home <= candidate
+                                       : hole < home || home <= candidate;
+                    if ( !staysPut )
+                    {
+                        keys[hole] = keys[candidate];
+                        values[hole] = values[candidate];
+                        hole = candidate;
+                    }
+                }
+                values[hole] = null;
+
+                if ( --size < values.length >>> 3 && values.length > MIN_STRIPE_CAPACITY )
+                {
+                    resize( values.length >>> 1 );
+                }
+            }
+            finally
+            {
+                lock.unlockWrite( stamp );
+            }
+            wakeWaiters();
+        }
+
+        void wakeWaiters()
+        {
+            if ( !waiters.isEmpty() )
+            {
+                for ( Thread waiter : waiters )
+                {
+                    LockSupport.unpark( waiter );
+                }
+            }
+        }
+
+        <E extends Exception> boolean visit( PrimitiveLongObjectVisitor<ForsetiLockManager.Lock,E> visitor ) throws E
+        {
+            long stamp = lock.readLock();
+            try
+            {
+                for ( int i = 0; i < values.length; i++ )
+                {
+                    ForsetiLockManager.Lock value = values[i];
+                    if ( value != null && visitor.visited( keys[i], value ) )
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            finally
+            {
+                lock.unlockRead( stamp );
+            }
+        }
+
+        private void resize( int capacity )
+        {
+            long[] newKeys = new long[capacity];
+            ForsetiLockManager.Lock[] newValues = new ForsetiLockManager.Lock[capacity];
+            int mask = capacity - 1;
+            for ( int i = 0; i < values.length; i++ )
+            {
+                ForsetiLockManager.Lock value = values[i];
+                if ( value != null )
+                {
+                    int slot = (int) hash( keys[i] ) & mask;
+                    while ( newValues[slot] != null )
+                    {
+                        slot = (slot + 1) & mask;
+                    }
+                    newKeys[slot] = keys[i];
+                    newValues[slot] = value;
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        /**
+         * May be called without holding the lock, in which case the result must be validated. An optimistic reader
+         * racing with a resize may see the old keys together with the new values, or the other way around, and the
+         * probe is bounded so that a racing update can't keep it going around the table.
+         */
+        private static ForsetiLockManager.Lock find( long[] keys, ForsetiLockManager.Lock[] values, long key,
+                long hash )
+        {
+            int mask = Math.min( keys.length, values.length ) - 1;
+            int slot = (int) hash & mask;
+            for ( int probes = 0; probes <= mask; probes++ )
+            {
+                ForsetiLockManager.Lock value = values[slot];
+                if ( value == null )
+                {
+                    return null;
+                }
+                if ( keys[slot] == key )
+                {
+                    return value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+    }
+}
@@ -210,6 +210,23 @@ public class ListQueriesProcedureTest
         }
     }
 
+    @Test
+    public void shouldProvideTransactionStateMemory() throws Exception
+    {
+        // given
+        String query = "UNWIND range(1, 100) AS i CREATE (:Dummy {v: i}) WITH count(*) AS created " +
+                "MATCH (n:Locked) SET n.v = created";
+        try ( Resource<Node> test = test( () -> db.createNode( label( "Locked" ) ), query ) )
+        {
+            // when
+            Map<String,Object> data = getQueryListing( query );
+
+            // then
+            assertThat( data, hasEntry( equalTo( "transactionStateMemory" ), instanceOf( Long.class ) ) );
+            assertThat( (Long) data.get( "transactionStateMemory" ), greaterThan( 0L ) );
+        }
+    }
+
     @Test
     public void shouldListActiveLocks() throws Exception
     {
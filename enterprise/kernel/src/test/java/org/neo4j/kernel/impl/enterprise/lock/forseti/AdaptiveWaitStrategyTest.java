@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.enterprise.lock.forseti;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveWaitStrategyTest
+{
+    @Test
+    public void shouldSpinBrieflyWhenNothingIsKnownAboutWaits() throws Exception
+    {
+        AdaptiveWaitStrategy strategy = new AdaptiveWaitStrategy();
+
+        assertEquals( 0, strategy.parkNanos( 0 ) );
+        assertTrue( strategy.parkNanos( AdaptiveWaitStrategy.MIN_SPIN_NANOS ) > 0 );
+    }
+
+    @Test
+    public void shouldSpinThroughWaitsExpectedToBeShort() throws Exception
+    {
+        AdaptiveWaitStrategy strategy = new AdaptiveWaitStrategy();
+        long shortWait = TimeUnit.MICROSECONDS.toNanos( 10 );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            strategy.waited( shortWait );
+        }
+
+        assertEquals( 0, strategy.parkNanos( shortWait ) );
+        assertTrue( strategy.parkNanos( 3 * shortWait ) > 0 );
+    }
+
+    @Test
+    public void shouldParkRightAwayForWaitsExpectedToBeLong() throws Exception
+    {
+        AdaptiveWaitStrategy strategy = new AdaptiveWaitStrategy();
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            strategy.waited( TimeUnit.MILLISECONDS.toNanos( 5 ) );
+        }
+
+        assertTrue( strategy.expectedWaitNanos() > AdaptiveWaitStrategy.MAX_SPIN_NANOS );
+        assertEquals( AdaptiveWaitStrategy.MAX_PARK_NANOS, strategy.parkNanos( 0 ) );
+    }
+
+    @Test
+    public void shouldGoBackToSpinningWhenWaitsGetShorter() throws Exception
+    {
+        AdaptiveWaitStrategy strategy = new AdaptiveWaitStrategy();
+        for ( int i = 0; i < 100; i++ )
+        {
+            strategy.waited( TimeUnit.MILLISECONDS.toNanos( 5 ) );
+        }
+
+        for ( int i = 0; i < 200; i++ )
+        {
+            strategy.waited( TimeUnit.MICROSECONDS.toNanos( 1 ) );
+        }
+
+        assertEquals( 0, strategy.parkNanos( 0 ) );
+    }
+}
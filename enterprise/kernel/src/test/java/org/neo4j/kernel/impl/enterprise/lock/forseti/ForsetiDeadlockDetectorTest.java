@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.enterprise.lock.forseti;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.kernel.DeadlockDetectedException;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.locking.Locks;
+import org.neo4j.kernel.impl.locking.ResourceTypes;
+import org.neo4j.kernel.impl.util.Neo4jJobScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.kernel.impl.locking.LockTracer.NONE;
+import static org.neo4j.kernel.impl.locking.ResourceTypes.NODE;
+
+public class ForsetiDeadlockDetectorTest
+{
+    private final Config config =
+            Config.defaults( GraphDatabaseSettings.lock_deadlock_detection_interval, "10ms" );
+    private final Neo4jJobScheduler scheduler = new Neo4jJobScheduler();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private Locks locks;
+
+    @Before
+    public void setUp()
+    {
+        scheduler.init();
+        locks = new ForsetiLockManager( config, Clock.systemUTC(), scheduler, ResourceTypes.values() );
+    }
+
+    @After
+    public void shutDown() throws Exception
+    {
+        executor.shutdownNow();
+        executor.awaitTermination( 1, TimeUnit.MINUTES );
+        locks.close();
+        scheduler.shutdown();
+    }
+
+    @Test( timeout = 60_000 )
+    public void shouldAbortOneClientInTwoClientDeadlock() throws Exception
+    {
+        assertEquals( 1, countDeadlockedClientsInCycleOf( 2 ) );
+    }
+
+    @Test( timeout = 60_000 )
+    public void shouldAbortOneClientInLongerWaitCycle() throws Exception
+    {
+        assertEquals( 1, countDeadlockedClientsInCycleOf( 5 ) );
+    }
+
+    @Test( timeout = 60_000 )
+    public void shouldNotAbortClientsThatAreOnlyWaiting() throws Exception
+    {
+        // Given
+        Locks.Client holder = locks.newClient();
+        holder.acquireExclusive( NONE, NODE, 0 );
+
+        // When
+        Future<?> waiter = executor.submit( () ->
+        {
+            try ( Locks.Client client = locks.newClient() )
+            {
+                client.acquireExclusive( NONE, NODE, 0 );
+            }
+        } );
+        Thread.sleep( 500 );
+        holder.close();
+
+        // Then
+        waiter.get();
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRequireJobSchedulerForBackgroundDeadlockDetection() throws Exception
+    {
+        new ForsetiLockManager( config, Clock.systemUTC(), ResourceTypes.values() );
+    }
+
+    /**
+     * Lets each client grab the lock of its own node, and then wait for the lock of the node of the next client, such
+     * that they all end up waiting for each other.
+     */
+    private int countDeadlockedClientsInCycleOf( int clients ) throws Exception
+    {
+        CountDownLatch allHoldingTheirOwnLock = new CountDownLatch( clients );
+        List<Future<?>> futures = new ArrayList<>();
+        for ( int i = 0; i < clients; i++ )
+        {
+            long ownNode = i;
+            long nextNode = (i + 1) % clients;
+            futures.add( executor.submit( () ->
+            {
+                try ( Locks.Client client = locks.newClient() )
+                {
+                    client.acquireExclusive( NONE, NODE, ownNode );
+                    allHoldingTheirOwnLock.countDown();
+                    allHoldingTheirOwnLock.await();
+                    client.acquireExclusive( NONE, NODE, nextNode );
+                }
+                return null;
+            } ) );
+        }
+
+        int deadlocked = 0;
+        for ( Future<?> future : futures )
+        {
+            try
+            {
+                future.get();
+            }
+            catch ( ExecutionException e )
+            {
+                assertTrue( e.getCause().toString(), e.getCause() instanceof DeadlockDetectedException );
+                deadlocked++;
+            }
+        }
+        return deadlocked;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.enterprise.lock.forseti;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.locking.ActiveLock;
+import org.neo4j.kernel.impl.locking.Locks;
+import org.neo4j.kernel.impl.locking.ResourceTypes;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.kernel.impl.locking.LockTracer.NONE;
+import static org.neo4j.kernel.impl.locking.ResourceTypes.NODE;
+import static org.neo4j.kernel.impl.locking.ResourceTypes.RELATIONSHIP;
+
+public class ForsetiLockEscalationTest
+{
+    private static final int THRESHOLD = 5;
+
+    private final Locks locks = new ForsetiLockManager(
+            Config.defaults( GraphDatabaseSettings.lock_escalation_threshold, String.valueOf( THRESHOLD ) ),
+            Clock.systemUTC(), ResourceTypes.values() );
+
+    @After
+    public void closeLocks()
+    {
+        locks.close();
+    }
+
+    @Test
+    public void shouldEscalateExclusiveLocksWhenAlone() throws Exception
+    {
+        try ( Locks.Client client = locks.newClient() )
+        {
+            // When
+            acquireExclusiveNodes( client, 0, 10 );
+
+            // Then
+            assertEquals( 1, client.activeLockCount() );
+            List<ActiveLock> activeLocks = client.activeLocks().collect( Collectors.toList() );
+            assertEquals( singletonList( ActiveLock.exclusiveLock( NODE, ForsetiLockManager.WHOLE_RESOURCE_TYPE ) ),
+                    activeLocks );
+        }
+    }
+
+    @Test
+    public void shouldNotEscalateBelowThreshold() throws Exception
+    {
+        try ( Locks.Client client = locks.newClient() )
+        {
+            // When
+            acquireExclusiveNodes( client, 0, THRESHOLD - 1 );
+
+            // Then
+            assertEquals( THRESHOLD - 1, client.activeLockCount() );
+        }
+    }
+
+    @Test
+    public void escalatedLockShouldExcludeOtherClientsFromWholeResourceType() throws Exception
+    {
+        Locks.Client escalated = locks.newClient();
+        try ( Locks.Client other = locks.newClient() )
+        {
+            // Given
+            acquireExclusiveNodes( escalated, 0, 10 );
+
+            // Then
+            assertFalse( other.trySharedLock( NODE, 1000 ) );
+            assertFalse( other.tryExclusiveLock( NODE, 1000 ) );
+            assertTrue( other.tryExclusiveLock( RELATIONSHIP, 1000 ) );
+
+            // When
+            escalated.close();
+
+            // Then
+            assertTrue( other.tryExclusiveLock( NODE, 1000 ) );
+        }
+    }
+
+    @Test
+    public void shouldNotEscalateWhileOtherClientsHoldLocksOfSameType() throws Exception
+    {
+        try ( Locks.Client client = locks.newClient();
+              Locks.Client other = locks.newClient() )
+        {
+            // Given
+            other.acquireShared( NONE, NODE, 1000 );
+
+            // When
+            acquireExclusiveNodes( client, 0, 10 );
+
+            // Then
+            assertEquals( 10, client.activeLockCount() );
+            assertTrue( other.trySharedLock( NODE, 1001 ) );
+            assertFalse( other.tryExclusiveLock( NODE, 0 ) );
+        }
+    }
+
+    @Test
+    public void shouldRetryEscalationOnceOtherClientsAreDone() throws Exception
+    {
+        try ( Locks.Client client = locks.newClient() )
+        {
+            // Given
+            try ( Locks.Client other = locks.newClient() )
+            {
+                other.acquireShared( NONE, NODE, 1000 );
+                acquireExclusiveNodes( client, 0, THRESHOLD );
+                assertEquals( THRESHOLD, client.activeLockCount() );
+            }
+
+            // When
+            acquireExclusiveNodes( client, THRESHOLD, 2 * THRESHOLD );
+
+            // Then
+            assertEquals( 1, client.activeLockCount() );
+        }
+    }
+
+    @Test
+    public void shouldAllowReacquiringAndReleasingIndividualLocksAfterEscalation() throws Exception
+    {
+        try ( Locks.Client client = locks.newClient() )
+        {
+            // Given
+            acquireExclusiveNodes( client, 0, 10 );
+
+            // When
+            client.acquireExclusive( NONE, NODE, 3 );
+            client.acquireShared( NONE, NODE, 20 );
+            client.releaseExclusive( NODE, 3 );
+            client.releaseShared( NODE, 20 );
+            client.releaseExclusive( NODE, 7 );
+
+            // Then
+            assertTrue( client.reEnterExclusive( NODE, 8 ) );
+            assertEquals( 1, client.activeLockCount() );
+        }
+    }
+
+    @Test
+    public void shouldNotEscalateWhenDisabled() throws Exception
+    {
+        Locks defaultLocks = new ForsetiLockManager( Config.defaults(), Clock.systemUTC(), ResourceTypes.values() );
+        try ( Locks.Client client = defaultLocks.newClient() )
+        {
+            // When
+            acquireExclusiveNodes( client, 0, 1_000 );
+
+            // Then
+            assertEquals( 1_000, client.activeLockCount() );
+        }
+        finally
+        {
+            defaultLocks.close();
+        }
+    }
+
+    private static void acquireExclusiveNodes( Locks.Client client, long fromNodeId, long toNodeId )
+    {
+        for ( long nodeId = fromNodeId; nodeId < toNodeId; nodeId++ )
+        {
+            client.acquireExclusive( NONE, NODE, nodeId );
+        }
+    }
+}
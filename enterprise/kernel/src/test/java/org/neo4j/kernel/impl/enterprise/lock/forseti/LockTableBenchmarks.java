@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.enterprise.lock.forseti;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Compares the striped {@link LockTable} with the {@link ConcurrentHashMap} it replaced in the Forseti lock manager,
+ * under the workload of {@link LockTableStressIT}: every thread installs, looks up and removes locks for its own
+ * resources, while also peeking at the locks of others. Throughput, bytes allocated per operation and time spent
+ * in garbage collection are printed for increasing numbers of threads.
+ */
+@Ignore( "These are rudimentary benchmarks, but implemented via the jUnit framework to make them easy to run " +
+         "from an IDE." )
+public class LockTableBenchmarks
+{
+    private static final int[] THREAD_COUNTS = {8, 32, 64, 128};
+    private static final int RESOURCES_PER_THREAD = 1_000;
+    private static final long WARMUP_MILLIS = TimeUnit.SECONDS.toMillis( 5 );
+    private static final long DURATION_MILLIS = TimeUnit.SECONDS.toMillis( 10 );
+
+    @Test
+    public void lockTable() throws Exception
+    {
+        benchmark( "LockTable", () -> new LockTableOperations( new LockTable() ) );
+    }
+
+    @Test
+    public void concurrentHashMap() throws Exception
+    {
+        // Configured the way ForsetiLockManager configured its maps before they were replaced
+        benchmark( "ConcurrentHashMap", () -> new ConcurrentMapOperations( new ConcurrentHashMap<>( 16, 0.6f, 512 ) ) );
+    }
+
+    private static void benchmark( String name, Supplier<Operations> operations ) throws Exception
+    {
+        run( operations.get(), THREAD_COUNTS[THREAD_COUNTS.length - 1], WARMUP_MILLIS );
+        for ( int threads : THREAD_COUNTS )
+        {
+            System.out.println( name + " with " + threads + " threads: " + run( operations.get(), threads,
+                    DURATION_MILLIS ) );
+        }
+    }
+
+    private static Result run( Operations operations, int threads, long durationMillis ) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            AtomicBoolean stop = new AtomicBoolean();
+            CountDownLatch start = new CountDownLatch( 1 );
+            List<Future<long[]>> futures = new ArrayList<>();
+            for ( int i = 0; i < threads; i++ )
+            {
+                long firstResource = (long) i * RESOURCES_PER_THREAD;
+                futures.add( executor.submit( () -> work( operations, threads, firstResource, start, stop ) ) );
+            }
+            long gcMillisBefore = gcMillis();
+            long gcCountBefore = gcCount();
+            start.countDown();
+            Thread.sleep( durationMillis );
+            stop.set( true );
+
+            long totalOperations = 0;
+            long totalAllocated = 0;
+            for ( Future<long[]> future : futures )
+            {
+                long[] counts = future.get();
+                totalOperations += counts[0];
+                totalAllocated += counts[1];
+            }
+            return new Result( totalOperations, totalAllocated, durationMillis,
+                    gcCount() - gcCountBefore, gcMillis() - gcMillisBefore );
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination( 1, TimeUnit.MINUTES );
+        }
+    }
+
+    private static long[] work( Operations operations, int threads, long firstResource, CountDownLatch start,
+            AtomicBoolean stop ) throws InterruptedException
+    {
+        ForsetiLockManager.Lock[] myLocks = new ForsetiLockManager.Lock[RESOURCES_PER_THREAD];
+        for ( int i = 0; i < myLocks.length; i++ )
+        {
+            myLocks[i] = new ExclusiveLock( null );
+        }
+        boolean[] installed = new boolean[RESOURCES_PER_THREAD];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        start.await();
+        long allocatedBefore = allocatedBytes();
+        long count = 0;
+        while ( !stop.get() )
+        {
+            int offset = random.nextInt( RESOURCES_PER_THREAD );
+            long resourceId = firstResource + offset;
+            if ( installed[offset] )
+            {
+                operations.get( resourceId );
+                operations.remove( resourceId );
+                installed[offset] = false;
+            }
+            else
+            {
+                operations.putIfAbsent( resourceId, myLocks[offset] );
+                installed[offset] = true;
+            }
+            operations.get( random.nextLong( (long) threads * RESOURCES_PER_THREAD ) );
+            count += 3;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        for ( int offset = 0; offset < RESOURCES_PER_THREAD; offset++ )
+        {
+            if ( installed[offset] )
+            {
+                operations.remove( firstResource + offset );
+            }
+        }
+        return new long[]{count, allocated};
+    }
+
+    private static long allocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes( Thread.currentThread().getId() );
+    }
+
+    private static long gcCount()
+    {
+        long count = 0;
+        for ( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            count += Math.max( 0, gc.getCollectionCount() );
+        }
+        return count;
+    }
+
+    private static long gcMillis()
+    {
+        long millis = 0;
+        for ( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            millis += Math.max( 0, gc.getCollectionTime() );
+        }
+        return millis;
+    }
+
+    private interface Operations
+    {
+        ForsetiLockManager.Lock get( long resourceId );
+
+        ForsetiLockManager.Lock putIfAbsent( long resourceId, ForsetiLockManager.Lock lock );
+
+        void remove( long resourceId );
+    }
+
+    private static class LockTableOperations implements Operations
+    {
+        private final LockTable table;
+
+        LockTableOperations( LockTable table )
+        {
+            this.table = table;
+        }
+
+        @Override
+        public ForsetiLockManager.Lock get( long resourceId )
+        {
+            return table.get( resourceId );
+        }
+
+        @Override
+        public ForsetiLockManager.Lock putIfAbsent( long resourceId, ForsetiLockManager.Lock lock )
+        {
+            return table.putIfAbsent( resourceId, lock );
+        }
+
+        @Override
+        public void remove( long resourceId )
+        {
+            table.remove( resourceId );
+        }
+    }
+
+    private static class ConcurrentMapOperations implements Operations
+    {
+        private final ConcurrentMap<Long,ForsetiLockManager.Lock> map;
+
+        ConcurrentMapOperations( ConcurrentMap<Long,ForsetiLockManager.Lock> map )
+        {
+            this.map = map;
+        }
+
+        @Override
+        public ForsetiLockManager.Lock get( long resourceId )
+        {
+            return map.get( resourceId );
+        }
+
+        @Override
+        public ForsetiLockManager.Lock putIfAbsent( long resourceId, ForsetiLockManager.Lock lock )
+        {
+            return map.putIfAbsent( resourceId, lock );
+        }
+
+        @Override
+        public void remove( long resourceId )
+        {
+            map.remove( resourceId );
+        }
+    }
+
+    private static class Result
+    {
+        private final long operations;
+        private final long allocatedBytes;
+        private final long durationMillis;
+        private final long gcCount;
+        private final long gcMillis;
+
+        Result( long operations, long allocatedBytes, long durationMillis, long gcCount, long gcMillis )
+        {
+            this.operations = operations;
+            this.allocatedBytes = allocatedBytes;
+            this.durationMillis = durationMillis;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "%,d ops/s, %.2f bytes allocated/op, %d collections taking %d ms",
+                    operations * 1000 / durationMillis, (double) allocatedBytes / operations, gcCount, gcMillis );
+        }
+    }
+}
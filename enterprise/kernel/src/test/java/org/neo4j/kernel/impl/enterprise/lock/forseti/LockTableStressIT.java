@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.enterprise.lock.forseti;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers a {@link LockTable} from 64 threads the way the lock manager does: every thread installs, looks up and
+ * removes locks for resources, while also reading locks installed by others. Each thread owns its own range of
+ * resource ids, so that it can verify that its locks never get lost or mixed up with those of other threads.
+ */
+public class LockTableStressIT
+{
+    private static final int THREADS = 64;
+    private static final int RESOURCES_PER_THREAD = 1_000;
+    private static final long DURATION_MILLIS = TimeUnit.SECONDS.toMillis( 5 );
+
+    @Test
+    public void shouldKeepLocksOfConcurrentClientsApart() throws Exception
+    {
+        LockTable table = new LockTable();
+        ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+        try
+        {
+            AtomicBoolean stop = new AtomicBoolean();
+            CountDownLatch start = new CountDownLatch( 1 );
+            List<Future<Long>> futures = new ArrayList<>();
+            for ( int i = 0; i < THREADS; i++ )
+            {
+                long firstResource = (long) i * RESOURCES_PER_THREAD;
+                futures.add( executor.submit( () -> work( table, firstResource, start, stop ) ) );
+            }
+            start.countDown();
+            Thread.sleep( DURATION_MILLIS );
+            stop.set( true );
+
+            long totalOperations = 0;
+            for ( Future<Long> future : futures )
+            {
+                totalOperations += future.get();
+            }
+            assertTrue( totalOperations > 0 );
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination( 1, TimeUnit.MINUTES );
+        }
+    }
+
+    private static long work( LockTable table, long firstResource, CountDownLatch start, AtomicBoolean stop )
+            throws InterruptedException
+    {
+        ForsetiLockManager.Lock[] myLocks = new ForsetiLockManager.Lock[RESOURCES_PER_THREAD];
+        for ( int i = 0; i < myLocks.length; i++ )
+        {
+            myLocks[i] = new ExclusiveLock( null );
+        }
+        boolean[] installed = new boolean[RESOURCES_PER_THREAD];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        start.await();
+        long count = 0;
+        while ( !stop.get() )
+        {
+            int offset = random.nextInt( RESOURCES_PER_THREAD );
+            long resourceId = firstResource + offset;
+            if ( installed[offset] )
+            {
+                assertSame( myLocks[offset], table.get( resourceId ) );
+                table.remove( resourceId );
+                installed[offset] = false;
+            }
+            else
+            {
+                assertNull( table.putIfAbsent( resourceId, myLocks[offset] ) );
+                installed[offset] = true;
+            }
+            // Peek at a resource of some other thread, as a client checking for a lock held by someone else would
+            table.get( random.nextLong( (long) THREADS * RESOURCES_PER_THREAD ) );
+            count += 3;
+        }
+
+        for ( int offset = 0; offset < RESOURCES_PER_THREAD; offset++ )
+        {
+            if ( installed[offset] )
+            {
+                assertSame( myLocks[offset], table.get( firstResource + offset ) );
+                table.remove( firstResource + offset );
+            }
+        }
+        return count;
+    }
+}
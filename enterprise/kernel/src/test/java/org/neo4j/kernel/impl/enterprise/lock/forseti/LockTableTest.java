@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.enterprise.lock.forseti;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class LockTableTest
+{
+    @Test
+    public void shouldOnlyPutLockIfAbsent() throws Exception
+    {
+        // Given
+        LockTable table = new LockTable();
+        ForsetiLockManager.Lock first = mock( ForsetiLockManager.Lock.class );
+        ForsetiLockManager.Lock second = mock( ForsetiLockManager.Lock.class );
+
+        // When
+        assertNull( table.putIfAbsent( 42, first ) );
+        ForsetiLockManager.Lock existing = table.putIfAbsent( 42, second );
+
+        // Then
+        assertSame( first, existing );
+        assertSame( first, table.get( 42 ) );
+    }
+
+    @Test
+    public void shouldReplaceLockOnPut() throws Exception
+    {
+        // Given
+        LockTable table = new LockTable();
+        ForsetiLockManager.Lock first = mock( ForsetiLockManager.Lock.class );
+        ForsetiLockManager.Lock second = mock( ForsetiLockManager.Lock.class );
+        table.putIfAbsent( 42, first );
+
+        // When
+        ForsetiLockManager.Lock previous = table.put( 42, second );
+
+        // Then
+        assertSame( first, previous );
+        assertSame( second, table.get( 42 ) );
+    }
+
+    @Test
+    public void shouldRemoveLock() throws Exception
+    {
+        // Given
+        LockTable table = new LockTable();
+        table.putIfAbsent( 42, mock( ForsetiLockManager.Lock.class ) );
+
+        // When
+        table.remove( 42 );
+        table.remove( 43 );
+
+        // Then
+        assertNull( table.get( 42 ) );
+    }
+
+    @Test
+    public void shouldBehaveLikeAMapThroughGrowingShrinkingAndCollisions() throws Exception
+    {
+        // Given a single stripe, so that every key competes for the same slots
+        LockTable table = new LockTable( 1 );
+        Map<Long,ForsetiLockManager.Lock> expected = new HashMap<>();
+        Random random = new Random( 1234 );
+
+        // When
+        for ( int i = 0; i < 50_000; i++ )
+        {
+            long resourceId = random.nextInt( (i / 5_000) % 2 == 0 ? 5_000 : 100 ) - 50;
+            switch ( random.nextInt( 3 ) )
+            {
+            case 0:
+                ForsetiLockManager.Lock lock = mock( ForsetiLockManager.Lock.class );
+                assertSame( expected.putIfAbsent( resourceId, lock ), table.putIfAbsent( resourceId, lock ) );
+                break;
+            case 1:
+                expected.remove( resourceId );
+                table.remove( resourceId );
+                break;
+            default:
+                assertSame( expected.get( resourceId ), table.get( resourceId ) );
+            }
+        }
+
+        // Then
+        Map<Long,ForsetiLockManager.Lock> visited = new HashMap<>();
+        table.visit( ( resourceId, lock ) ->
+        {
+            visited.put( resourceId, lock );
+            return false;
+        } );
+        assertEquals( expected, visited );
+    }
+
+    @Test
+    public void shouldStopVisitingWhenVisitorSaysSo() throws Exception
+    {
+        // Given
+        LockTable table = new LockTable();
+        for ( long resourceId = 0; resourceId < 100; resourceId++ )
+        {
+            table.putIfAbsent( resourceId, mock( ForsetiLockManager.Lock.class ) );
+        }
+
+        // When
+        int[] visits = new int[1];
+        table.visit( ( resourceId, lock ) -> ++visits[0] == 10 );
+
+        // Then
+        assertEquals( 10, visits[0] );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRequirePowerOfTwoStripes() throws Exception
+    {
+        new LockTable( 100 );
+    }
+
+    @Test
+    public void shouldWakeUpThreadParkedOnLockWhenItIsRemoved() throws Exception
+    {
+        // Given
+        LockTable table = new LockTable();
+        ForsetiLockManager.Lock lock = mock( ForsetiLockManager.Lock.class );
+        table.putIfAbsent( 42, lock );
+        Thread waiter = new Thread( () -> table.parkWhileHeld( 42, lock, TimeUnit.MINUTES.toNanos( 10 ) ) );
+        waiter.start();
+        while ( waiter.getState() != Thread.State.TIMED_WAITING )
+        {
+            Thread.yield();
+        }
+
+        // When
+        table.remove( 42 );
+
+        // Then
+        waiter.join( TimeUnit.MINUTES.toMillis( 1 ) );
+        assertFalse( waiter.isAlive() );
+    }
+
+    @Test
+    public void shouldNotParkOnLockThatIsNoLongerInTheTable() throws Exception
+    {
+        // Given
+        LockTable table = new LockTable();
+        ForsetiLockManager.Lock lock = mock( ForsetiLockManager.Lock.class );
+        table.putIfAbsent( 42, lock );
+        table.put( 42, mock( ForsetiLockManager.Lock.class ) );
+
+        // When
+        long startNanos = System.nanoTime();
+        table.parkWhileHeld( 42, lock, TimeUnit.MINUTES.toNanos( 10 ) );
+
+        // Then
+        assertTrue( System.nanoTime() - startNanos < TimeUnit.MINUTES.toNanos( 1 ) );
+    }
+}
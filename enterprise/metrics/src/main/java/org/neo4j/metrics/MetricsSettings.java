@@ -85,6 +85,11 @@ public class MetricsSettings implements LoadableConfig
     public static Setting<Boolean> neoCheckPointingEnabled = buildSetting(
             "metrics.neo4j.checkpointing.enabled", BOOLEAN ).inherits( neoEnabled ).build();
 
+    @Description( "Enable reporting metrics about Neo4j locking; how often and how long transactions wait for locks, " +
+                  "per resource type." )
+    public static Setting<Boolean> neoLocksEnabled = buildSetting(
+            "metrics.neo4j.locks.enabled", BOOLEAN ).inherits( neoEnabled ).build();
+
     @Description( "Enable reporting metrics about the Neo4j log rotation; when it occurs and how much time it takes to "
                   + "complete." )
     public static Setting<Boolean> neoLogRotationEnabled = buildSetting(
@@ -24,11 +24,13 @@ import com.codahale.metrics.MetricRegistry;
 import java.util.function.Supplier;
 
 import org.neo4j.causalclustering.core.consensus.CoreMetaData;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.io.pagecache.monitoring.PageCacheCounters;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.ha.cluster.member.ClusterMembers;
 import org.neo4j.kernel.impl.api.LogRotationMonitor;
 import org.neo4j.kernel.impl.factory.OperationalMode;
+import org.neo4j.kernel.impl.locking.LockWaitMonitor;
 import org.neo4j.kernel.impl.logging.LogService;
 import org.neo4j.kernel.impl.spi.KernelContext;
 import org.neo4j.kernel.impl.store.stats.StoreEntityCounters;
@@ -48,6 +50,7 @@ import org.neo4j.metrics.source.db.BoltMetrics;
 import org.neo4j.metrics.source.db.CheckPointingMetrics;
 import org.neo4j.metrics.source.db.CypherMetrics;
 import org.neo4j.metrics.source.db.EntityCountMetrics;
+import org.neo4j.metrics.source.db.LockMetrics;
 import org.neo4j.metrics.source.db.LogRotationMetrics;
 import org.neo4j.metrics.source.db.PageCacheMetrics;
 import org.neo4j.metrics.source.db.TransactionMetrics;
@@ -79,6 +82,8 @@ public class Neo4jMetricsBuilder
 
         LogRotationMonitor logRotationMonitor();
 
+        LockWaitMonitor lockWaitMonitor();
+
         StoreEntityCounters entityCountStats();
 
         Supplier<ClusterMembers> clusterMembers();
@@ -130,6 +135,20 @@ public class Neo4jMetricsBuilder
             result = true;
         }
 
+        if ( config.get( MetricsSettings.neoLocksEnabled ) )
+        {
+            if ( config.get( GraphDatabaseSettings.lock_wait_tracing ) )
+            {
+                life.add( new LockMetrics( registry, dependencies.monitors(), dependencies.lockWaitMonitor() ) );
+                result = true;
+            }
+            else
+            {
+                logService.getUserLog( getClass() ).warn( "Lock metrics was enabled but lock waits are not traced, " +
+                        "enable " + GraphDatabaseSettings.lock_wait_tracing.name() + " to report them." );
+            }
+        }
+
         if ( config.get( MetricsSettings.neoCountsEnabled ) )
         {
             life.add( new EntityCountMetrics( registry, dependencies.entityCountStats() ) );
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2002-2017 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.metrics.source.db;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.kernel.impl.annotations.Documented;
+import org.neo4j.kernel.impl.locking.DefaultLockTracer;
+import org.neo4j.kernel.impl.locking.LockWaitMonitor;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+import org.neo4j.kernel.monitoring.Monitors;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+@Documented( ".Database Lock Metrics" )
+public class LockMetrics extends LifecycleAdapter
+{
+    private static final String LOCKS_PREFIX = "neo4j.locks";
+
+    @Documented( "The total number of times transactions had to wait for a lock so far" )
+    public static final String LOCK_WAITS = name( LOCKS_PREFIX, "waits" );
+    @Documented( "The total time transactions spent waiting for locks so far" )
+    public static final String LOCK_WAIT_TOTAL_TIME = name( LOCKS_PREFIX, "wait_total_time" );
+    @Documented( "Histograms, one per resource type, of how many microseconds transactions waited for locks" )
+    public static final String LOCK_WAIT_TIME = name( LOCKS_PREFIX, "wait_time" );
+
+    private final MetricRegistry registry;
+    private final Monitors monitors;
+    private final LockWaitMonitor lockWaitMonitor;
+    private final DefaultLockTracer.Monitor listener;
+
+    public LockMetrics( MetricRegistry registry, Monitors monitors, LockWaitMonitor lockWaitMonitor )
+    {
+        this.registry = registry;
+        this.monitors = monitors;
+        this.lockWaitMonitor = lockWaitMonitor;
+        this.listener = ( resourceType, exclusive, waitNanos ) ->
+                registry.histogram( name( LOCK_WAIT_TIME, resourceType.name().toLowerCase( Locale.ROOT ) ) )
+                        .update( TimeUnit.NANOSECONDS.toMicros( waitNanos ) );
+    }
+
+    @Override
+    public void start()
+    {
+        monitors.addMonitorListener( listener );
+
+        registry.register( LOCK_WAITS, (Gauge<Long>) lockWaitMonitor::numberOfLockWaits );
+        registry.register( LOCK_WAIT_TOTAL_TIME, (Gauge<Long>) lockWaitMonitor::lockWaitAccumulatedTotalTimeMillis );
+    }
+
+    @Override
+    public void stop()
+    {
+        monitors.removeMonitorListener( listener );
+
+        registry.removeMatching( ( name, metric ) -> name.startsWith( LOCKS_PREFIX ) );
+    }
+}